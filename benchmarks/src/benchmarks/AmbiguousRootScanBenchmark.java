@@ -0,0 +1,73 @@
+package benchmarks;
+
+import bartlett.BartlettHeapBuilder;
+import bartlett.MostlyCopyingGarbageCollector;
+import bartlett.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bartlett's evacuateRoots on a stack of `stackWords` ambiguous words. The
+ * words are random values in the range of the heap pointers, so most of them
+ * land inside objects or in free cells. Every word is checked against the
+ * object start bitmap of its page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class AmbiguousRootScanBenchmark {
+
+    private static final int PAGE_SIZE = 16;
+
+    @Param({"1000000"})
+    public int heapSize;
+
+    @Param({"100000", "1000000", "10000000"})
+    public int stackWords;
+
+    private Page[] generatedHeap;
+    private int[] generatedStack;
+
+    private Page[] heap;
+    private int[] stack;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        generatedHeap = new BartlettHeapBuilder(PAGE_SIZE).generateValidHeap(heapSize);
+        Random random = new Random(42);
+        generatedStack = new int[stackWords];
+        for (int i = 0; i < stackWords; i++) {
+            generatedStack[i] = random.nextInt(heapSize);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        heap = Workloads.copyPages(generatedHeap);
+        stack = generatedStack.clone();
+    }
+
+    @Benchmark
+    public int[] evacuateRoots() {
+        MostlyCopyingGarbageCollector garbageCollector =
+                new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+        garbageCollector.evacuateRoots();
+        return stack;
+    }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import bartlett.BartlettHeapBuilder;
+import cache.CacheHierarchy;
+import cache.HeapTraversal;
+import cache.TracingCellHeap;
+import cheneys.ArrayCellHeap;
+import cheneys.CopyOrder;
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapGenerator;
+import cheneys.IntCopyingGarbageCollector;
+import cheneys.WorkloadSpec;
+import engine.BartlettEngine;
+import engine.EngineRegistry;
+import engine.HeapView;
+import engine.IntHeapView;
+import engine.StringHeapView;
+
+/**
+ * Simulated cache misses of the collectors and of a mutator walk of the heap
+ * they leave, on the typical hierarchy of CacheHierarchy, for the heaps of every
+ * shape of the HeapGenerator :
+ * <ul>
+ * <li>int Cheney : every phase of a collection of a traced int heap, then a
+ * walk of the copied nodes.</li>
+ * <li>Cheney in every copy order : a walk of the copied nodes (the String heap
+ * is not traced).</li>
+ * <li>Bartlett in compacting mode, for every page size : a walk of the pages
+ * after a collection.</li>
+ * </ul>
+ * The walk visits the live nodes depth-first and reads all their cells. It is
+ * run twice, the first walk brings the heap in the caches (after the int
+ * collection, the caches it left), the second one only misses where the nodes
+ * are far apart. The misses are given per 1000 accesses, with the simulated
+ * cycles.
+ * <p>
+ * Usage : CacheSimulation [heap size] [line bytes] [page sizes, comma separated]
+ */
+public class CacheSimulation {
+
+    public static void main(String[] args) {
+        int heapSize = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int lineBytes = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        String[] pageSizes = (args.length > 2 ? args[2] : "16,64,256").split(",");
+
+        System.out.printf("%-7s %-30s %-14s %12s %9s %9s %9s %14s%n", "SHAPE", "ENGINE", "PHASE", "ACCESSES",
+                "L1 /1000", "L2 /1000", "LLC /1000", "CYCLES");
+        for (WorkloadSpec.Shape shape : WorkloadSpec.Shape.values()) {
+            HeapGenerator generator = new HeapGenerator(new WorkloadSpec(shape));
+            String[] heap = generator.generateHeap(heapSize);
+            int[] stack = generator.generateStack();
+
+            CacheHierarchy hierarchy = CacheHierarchy.typical(lineBytes);
+            int[] roots = stack.clone();
+            IntCopyingGarbageCollector garbageCollector = new IntCopyingGarbageCollector(
+                    new TracingCellHeap(new ArrayCellHeap(generator.generateIntHeap(heapSize)), hierarchy), roots);
+            hierarchy.setPhase("evacuateRoots");
+            garbageCollector.evacuateRoots();
+            hierarchy.setPhase("scavenge");
+            garbageCollector.scavenge();
+            hierarchy.setPhase("clearOldMemory");
+            garbageCollector.clearOldMemory();
+            garbageCollector.flip();
+            walk(hierarchy, new IntHeapView(((TracingCellHeap) garbageCollector.getHeap()).getHeap(),
+                    generator.getSymbols()), roots);
+            print(shape, "int-cheney", hierarchy);
+
+            for (CopyOrder order : CopyOrder.values()) {
+                String[] copy = heap.clone();
+                int[] copyStack = stack.clone();
+                CopyingGarbageCollector cheney = new CopyingGarbageCollector(copy, copyStack);
+                cheney.setCopyOrder(order);
+                cheney.evacuateRoots();
+                cheney.scavenge();
+                cheney.clearOldMemory();
+                cheney.flip();
+                hierarchy = CacheHierarchy.typical(lineBytes);
+                walk(hierarchy, new StringHeapView(copy), copyStack);
+                print(shape, "cheney " + order, hierarchy);
+            }
+
+            for (String pageSize : pageSizes) {
+                int[] pageStack = stack.clone();
+                BartlettEngine bartlett = new BartlettEngine("bartlett", new BartlettHeapBuilder(
+                        Integer.parseInt(pageSize)).buildFromHeap(heap, pageStack), pageStack,
+                        EngineRegistry.COMPACTION_THRESHOLD);
+                bartlett.collect();
+                hierarchy = CacheHierarchy.typical(lineBytes);
+                walk(hierarchy, bartlett.getHeap(), bartlett.getRoots());
+                print(shape, "bartlett-compacting " + pageSize, hierarchy);
+                bartlett.shutdown();
+            }
+        }
+    }
+
+    private static void walk(CacheHierarchy hierarchy, HeapView heap, int[] roots) {
+        hierarchy.setPhase("first walk");
+        HeapTraversal.traverse(heap, roots, hierarchy);
+        hierarchy.setPhase("walk");
+        HeapTraversal.traverse(heap, roots, hierarchy);
+    }
+
+    private static void print(WorkloadSpec.Shape shape, String engine, CacheHierarchy hierarchy) {
+        for (CacheHierarchy.Phase phase : hierarchy.getPhases()) {
+            System.out.printf("%-7s %-30s %-14s %12d %9.2f %9.2f %9.2f %14d%n", shape, engine, phase.getName(),
+                    phase.getAccesses(), 1000 * phase.getMissRatio(0), 1000 * phase.getMissRatio(1),
+                    1000 * phase.getMissRatio(2), phase.getCycles());
+        }
+    }
+}
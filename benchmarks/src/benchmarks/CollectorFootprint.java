@@ -0,0 +1,74 @@
+package benchmarks;
+
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.MarkCompactGarbageCollector;
+
+/**
+ * Peak footprint of a collection by Cheney's collector and by the sliding
+ * mark-compact collector, on the random heaps of MarkCompactCollectorBenchmark.
+ * The footprint is the memory that the collector needs at once :
+ * <ul>
+ * <li>Cheney : the two semispaces, each one as large as the cells in use.</li>
+ * <li>Mark-compact : the cells in use, the mark bitmap, the block offsets and
+ * the largest mark stack.</li>
+ * </ul>
+ * The nodes are not copied by value (cells hold shared Strings), so a cell is
+ * counted as one reference of REFERENCE_BYTES. The heaps of both collectors are
+ * collected and checked to keep the same number of objects.
+ * <p>
+ * Usage : CollectorFootprint [heap sizes, comma separated] [root ratio]
+ */
+public class CollectorFootprint {
+
+    private static final int REFERENCE_BYTES = 4;   //Compressed references
+
+    public static void main(String[] args) {
+        String[] heapSizes = (args.length > 0 ? args[0] : "250000,1000000,5000000").split(",");
+        double rootRatio = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+
+        System.out.printf("%10s %6s %12s %12s %14s %12s %14s %8s%n", "HEAP SIZE", "LIVE", "CELLS IN USE",
+                "LIVE CELLS", "CHENEY BYTES", "MARK STACK", "LISP2 BYTES", "RATIO");
+        for (String heapSize : heapSizes) {
+            for (double liveFraction : new double[]{0.25, 1.0}) {
+                measure(Integer.parseInt(heapSize), rootRatio, liveFraction);
+            }
+        }
+    }
+
+    private static void measure(int heapSize, double rootRatio, double liveFraction) {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        String[] generatedHeap = heapBuilder.generateValidHeap(heapSize);
+        int[] generatedStack = Workloads.cheneyStack(heapBuilder, heapSize, rootRatio, liveFraction);
+        int cellsInUse = 0;
+        while (generatedHeap[cellsInUse] != null) {
+            cellsInUse++;
+        }
+
+        String[] cheneyHeap = new String[2 * cellsInUse];                  //Smallest heap Cheney can collect
+        System.arraycopy(generatedHeap, 0, cheneyHeap, 0, cellsInUse);
+        CopyingGarbageCollector copyingCollector = new CopyingGarbageCollector(cheneyHeap, generatedStack.clone());
+        copyingCollector.evacuateRoots();
+        copyingCollector.scavenge();
+
+        String[] markCompactHeap = new String[cellsInUse];                 //No reserve
+        System.arraycopy(generatedHeap, 0, markCompactHeap, 0, cellsInUse);
+        MarkCompactGarbageCollector garbageCollector = new MarkCompactGarbageCollector(markCompactHeap,
+                generatedStack.clone());
+        garbageCollector.collect();
+        if (garbageCollector.numberOfObjectsMarked != copyingCollector.numberOfObjectsCopied) {
+            throw new IllegalStateException("The collectors kept " + copyingCollector.numberOfObjectsCopied
+                    + " and " + garbageCollector.numberOfObjectsMarked + " objects");
+        }
+
+        long cheneyBytes = (long) cheneyHeap.length * REFERENCE_BYTES;
+        long bitmapWords = (cellsInUse + 63) / 64;
+        long markCompactBytes = (long) markCompactHeap.length * REFERENCE_BYTES
+                + bitmapWords * Long.BYTES                                  //Mark bitmap
+                + bitmapWords * Integer.BYTES                               //Block offsets
+                + (long) garbageCollector.maxMarkStackSize * Integer.BYTES;
+        System.out.printf("%10d %6.2f %12d %12d %14d %12d %14d %8.2f%n", heapSize, liveFraction, cellsInUse,
+                garbageCollector.getTop(), cheneyBytes, garbageCollector.maxMarkStackSize, markCompactBytes,
+                (double) markCompactBytes / cheneyBytes);
+    }
+}
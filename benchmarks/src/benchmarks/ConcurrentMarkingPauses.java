@@ -0,0 +1,106 @@
+package benchmarks;
+
+import cheneys.ConcurrentMarkSweepGarbageCollector;
+
+import java.util.Arrays;
+
+/**
+ * Pauses of the concurrent mark-sweep collector and cost of its SATB barrier,
+ * for live heaps of growing size. The live heap is a list of LIST_LENGTH nodes
+ * (5 cells per element) in a heap 4 times larger, the mutator allocates short
+ * lived nodes to start the cycles and, between them, walks the list and
+ * rewrites its values in batches of BATCH stores. A batch is timed, and counted
+ * as marking if a cycle was marking during the whole batch, or as idle if none
+ * was, so the overhead of the barrier is the difference of the two times (no
+ * overhead is printed if no batch ran while marking).
+ * <p>
+ * The remark pause should stay near constant when the live heap grows, while
+ * the concurrent marking grows with it.
+ * <p>
+ * Usage : ConcurrentMarkingPauses [list lengths, comma separated] [allocations]
+ */
+public class ConcurrentMarkingPauses {
+
+    private static final int BATCH = 256;           //Stores of a timed batch
+    private static final int BATCH_INTERVAL = 64;   //Allocations between two batches
+
+    private static final int LIST = 0;
+    private static final int TEMPORARY = 1;
+    private static final int CURSOR = 2;
+    private static final int VALUE = 3;
+    private static final int OTHER_VALUE = 4;
+    private static final int END = 5;
+
+    public static void main(String[] args) {
+        String[] lengths = (args.length > 0 ? args[0] : "10000,50000,250000,1000000").split(",");
+        int allocations = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+
+        System.out.printf("%10s %10s %7s %12s %11s %11s %12s %12s %10s %10s %12s %9s%n", "LIVE CELLS",
+                "HEAP", "CYCLES", "INIT MARK us", "REMARK us", "MAX REM us", "CONC MARK ms", "STORES", "LOGGED",
+                "IDLE ns", "MARKING ns", "OVERHEAD");
+        for (String length : lengths) {
+            measure(Integer.parseInt(length), allocations);
+        }
+    }
+
+    private static void measure(int listLength, int allocations) {
+        int[] stack = new int[6];
+        Arrays.fill(stack, -1);
+        ConcurrentMarkSweepGarbageCollector garbageCollector = new ConcurrentMarkSweepGarbageCollector(
+                new String[20 * listLength], stack);
+
+        garbageCollector.allocateNull(END);
+        garbageCollector.copySlot(LIST, END);
+        for (int i = 0; i < listLength; i++) {
+            garbageCollector.allocateInteger(VALUE, i);
+            garbageCollector.allocateListConstructor(LIST, VALUE, LIST);
+        }
+        garbageCollector.allocateInteger(OTHER_VALUE, -1);
+        garbageCollector.copySlot(CURSOR, LIST);
+        int position = 0;
+
+        long idleNanos = 0;
+        long idleStores = 0;
+        long markingNanos = 0;
+        long markingStores = 0;
+        for (int i = 0; i < allocations; i++) {
+            garbageCollector.allocateInteger(TEMPORARY, i);
+            garbageCollector.allocateListConstructor(TEMPORARY, TEMPORARY, TEMPORARY);
+            if (i % BATCH_INTERVAL != 0) {
+                continue;
+            }
+            garbageCollector.allocateInteger(VALUE, i);
+            boolean markingBefore = garbageCollector.isMarking();
+            long start = System.nanoTime();
+            for (int j = 0; j < BATCH; j++) {
+                garbageCollector.storePointer(CURSOR, 1, j % 2 == 0 ? VALUE : OTHER_VALUE);
+                garbageCollector.loadPointer(CURSOR, CURSOR, 2);
+                if (++position == listLength) {
+                    garbageCollector.copySlot(CURSOR, LIST);
+                    position = 0;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            boolean markingAfter = garbageCollector.isMarking();
+            if (markingBefore && markingAfter) {
+                markingNanos += nanos;
+                markingStores += BATCH;
+            } else if (!markingBefore && !markingAfter) {
+                idleNanos += nanos;
+                idleStores += BATCH;
+            }
+        }
+        garbageCollector.collect();
+
+        int cycles = garbageCollector.cycles;
+        double idle = idleStores == 0 ? 0 : (double) idleNanos / idleStores;
+        double marking = markingStores == 0 ? 0 : (double) markingNanos / markingStores;
+        System.out.printf("%10d %10d %7d %12.1f %11.1f %11.1f %12.2f %12d %10d %10.1f %12.1f %9s%n",
+                garbageCollector.liveCells, garbageCollector.getHeap().length, cycles,
+                garbageCollector.initialMarkNanos / 1e3 / cycles, garbageCollector.remarkNanos / 1e3 / cycles,
+                garbageCollector.maxRemarkNanos / 1e3, garbageCollector.concurrentMarkNanos / 1e6 / cycles,
+                garbageCollector.barrierStores, garbageCollector.loggedPointers, idle, marking,
+                idle == 0 || marking == 0 ? "-" : String.format("%.1f%%", 100 * (marking - idle) / idle));
+        garbageCollector.shutdown();
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import cheneys.CopyOrder;
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapGenerator;
+import cheneys.WorkloadSpec;
+import monitoring.GcEvent;
+
+/**
+ * Locality of the nodes copied by Cheney's collector in every copy order, for
+ * the heaps of every shape of the HeapGenerator. For every shape and order the
+ * same heap is collected twice (the second collection copies the nodes in the
+ * order of the first one), and the second collection prints its pause, the
+ * average cells between a node and the nodes it points to, the part of the
+ * pointers that cross a cache line and the nodes scanned twice.
+ * <p>
+ * Usage : CopyOrderLocality [heap size] [block cells]
+ */
+public class CopyOrderLocality {
+
+    public static void main(String[] args) {
+        int heapSize = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int blockCells = args.length > 1 ? Integer.parseInt(args[1]) : CopyingGarbageCollector.DEFAULT_BLOCK_CELLS;
+
+        System.out.printf("%-7s %-26s %10s %12s %10s %10s%n", "SHAPE", "ORDER", "PAUSE ms", "DISTANCE",
+                "CROSSINGS", "RESCANNED");
+        for (WorkloadSpec.Shape shape : WorkloadSpec.Shape.values()) {
+            HeapGenerator generator = new HeapGenerator(new WorkloadSpec(shape));
+            String[] heap = generator.generateHeap(heapSize);
+            int[] stack = generator.generateStack();
+            for (CopyOrder order : CopyOrder.values()) {
+                CopyingGarbageCollector garbageCollector = new CopyingGarbageCollector(heap.clone(), stack.clone());
+                garbageCollector.setCopyOrder(order);
+                garbageCollector.setBlockCells(blockCells);
+                GcEvent[] last = new GcEvent[1];
+                garbageCollector.addListener(event -> last[0] = event);
+                int rescanned = 0;
+                for (int i = 0; i < 2; i++) {
+                    garbageCollector.evacuateRoots();
+                    garbageCollector.scavenge();
+                    rescanned = garbageCollector.numberOfObjectsRescanned;
+                    garbageCollector.clearOldMemory();
+                    garbageCollector.flip();
+                }
+                System.out.printf("%-7s %-26s %10.2f %12.1f %10.3f %10d%n", shape, order,
+                        last[0].getPauseNanos() / 1e6, last[0].getAveragePointerDistance(),
+                        last[0].getLineCrossingRatio(), rescanned);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package benchmarks;
+
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.IntCopyingGarbageCollector;
+import cheneys.OffHeapCellHeap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full Cheney collection (evacuateRoots, scavenge, clearOldMemory, flip)
+ * of a random heap, for the String, int array and off-heap engines. The heap
+ * and the stack are restored before every invocation, outside of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class CopyingCollectorBenchmark {
+
+    @Param({"250000", "1000000", "5000000"})
+    public int heapSize;
+
+    @Param({"0.01", "0.1"})
+    public double rootRatio;
+
+    @Param({"0.25", "1.0"})
+    public double liveFraction;
+
+    private String[] generatedHeap;
+    private int[] generatedIntHeap;
+    private int[] generatedStack;
+
+    private String[] heap;
+    private int[] intHeap;
+    private OffHeapCellHeap offHeap;
+    private int[] stack;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        generatedHeap = heapBuilder.generateValidHeap(heapSize);
+        generatedIntHeap = heapBuilder.encodeHeap(generatedHeap);
+        generatedStack = Workloads.cheneyStack(heapBuilder, heapSize, rootRatio, liveFraction);
+        heap = new String[heapSize];
+        intHeap = new int[heapSize];
+        offHeap = new OffHeapCellHeap(heapSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        System.arraycopy(generatedHeap, 0, heap, 0, heapSize);
+        System.arraycopy(generatedIntHeap, 0, intHeap, 0, heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            offHeap.set(i, generatedIntHeap[i]);
+        }
+        stack = generatedStack.clone();
+    }
+
+    @Benchmark
+    public int stringHeap() {
+        CopyingGarbageCollector garbageCollector = new CopyingGarbageCollector(heap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        int copiedObjects = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        return copiedObjects;
+    }
+
+    @Benchmark
+    public int intHeap() {
+        IntCopyingGarbageCollector garbageCollector = new IntCopyingGarbageCollector(intHeap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        int copiedObjects = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        return copiedObjects;
+    }
+
+    @Benchmark
+    public int offHeap() {
+        IntCopyingGarbageCollector garbageCollector = new IntCopyingGarbageCollector(offHeap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        int copiedObjects = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        return copiedObjects;
+    }
+}
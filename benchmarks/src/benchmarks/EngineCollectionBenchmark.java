@@ -0,0 +1,87 @@
+package benchmarks;
+
+import cheneys.HeapBuilder;
+import engine.Collector;
+import engine.EngineRegistry;
+import monitoring.GcEvent;
+import verify.HeapSnapshot;
+import verify.HeapVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full collection of the same random heap by every engine of the
+ * registry, selected by name. The engine is created from the heap before every
+ * invocation, so the conversion to its heap representation is not measured.
+ * With verify, every collection is checked by the HeapVerifier, the snapshot
+ * and the verification are not measured either.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class EngineCollectionBenchmark {
+
+    @Param({"cheney", "int-cheney", "parallel-cheney", "bartlett", "bartlett-compacting", "mark-compact", "mark-sweep"})
+    public String engine;
+
+    @Param({"250000", "1000000"})
+    public int heapSize;
+
+    @Param({"0.01"})
+    public double rootRatio;
+
+    @Param({"0.25", "1.0"})
+    public double liveFraction;
+
+    @Param({"false"})
+    public boolean verify;
+
+    private String[] generatedHeap;
+    private int[] generatedStack;
+    private Collector collector;
+    private HeapSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        generatedHeap = heapBuilder.generateValidHeap(heapSize);
+        generatedStack = Workloads.cheneyStack(heapBuilder, heapSize, rootRatio, liveFraction);
+    }
+
+    @Setup(Level.Invocation)
+    public void create() {
+        collector = EngineRegistry.create(engine, generatedHeap, generatedStack);
+        if (verify) {
+            snapshot = HeapSnapshot.take(collector.getHeap(), collector.getRoots());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdown() {
+        if (verify) {
+            HeapVerifier.forEngine(engine).check(snapshot, collector.getHeap(), collector.getRoots());
+        }
+        collector.shutdown();
+    }
+
+    @Benchmark
+    public GcEvent collect() {
+        return collector.collect();
+    }
+}
@@ -0,0 +1,363 @@
+package benchmarks;
+
+import bartlett.Page;
+import bartlett.PageAllocator;
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.MarkSweepGarbageCollector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Runs the same allocation workload on the mark-sweep collector, the Bartlett
+ * page allocator and Cheney's collector, and reports for every one of them the
+ * collections, their pauses and, after a last collection, the heap it occupies
+ * and its fragmentation :
+ * <ul>
+ * <li>Mark-sweep : external fragmentation, the part of the free cells that are
+ * not in the largest free chunk. The heap is swept before it is measured.</li>
+ * <li>Bartlett, in compacting mode : the part of the pages in use that does not
+ * hold live cells.</li>
+ * <li>Cheney : 0, the live nodes are compacted.</li>
+ * </ul>
+ * The workload allocates nodes of every size (NULL nodes of 1 cell, CONSTR nodes
+ * of 3 to 11 cells) and keeps a part of them in random stack slots. The INT and
+ * NULL nodes are kept in the first half of the stack, the pointers of the other
+ * nodes are taken from it, so the live nodes are bounded by the stack. Allocations are given stack slots, not pointers, so the pointers
+ * are read after the engine has made room for the node.
+ * <p>
+ * Usage : FragmentationComparison [heap size] [allocations] [stack slots]
+ */
+public class FragmentationComparison {
+
+    private static final double KEEP_RATIO = 0.3;   //Part of the nodes stored in a stack slot
+    private static final int PAGE_SIZE = 16;
+    private static final double COMPACTION_THRESHOLD = 0.5;     //Bartlett evacuates the pages less than half live
+
+    public static void main(String[] args) {
+        int heapSize = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int allocations = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int slots = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        System.out.printf("%-12s %11s %10s %10s %10s %12s %12s %14s%n", "ENGINE", "COLLECTIONS", "PAUSE ms",
+                "MAX ms", "SWEEP ms", "LIVE CELLS", "HEAP CELLS", "FRAGMENTATION");
+        long liveCells = run(new MarkSweepEngine(heapSize, slots), allocations);
+        run(new BartlettEngine(heapSize, slots, liveCells), allocations);
+        run(new CheneyEngine(heapSize, slots), allocations);
+    }
+
+    private static long run(Engine engine, int allocations) {
+        Random random = new Random(7);
+        int slots = engine.stack.length;
+        for (int i = 0; i < allocations; i++) {
+            int kind = random.nextInt(5);
+            int pointers = kind == 1 ? 2 : kind == 2 ? random.nextInt(9) : kind == 3 ? 1 : 0;
+            int[] sources = new int[pointers];
+            for (int j = 0; j < pointers; j++) {
+                sources[j] = random.nextInt(slots / 2);
+            }
+            int node = engine.allocate(kind, sources);
+            if (random.nextDouble() < KEEP_RATIO) {                         //Leaves in the first half of the stack
+                engine.stack[(kind == 0 || kind == 4 ? 0 : slots / 2) + random.nextInt(slots / 2)] = node;
+            }
+        }
+        engine.collect();
+        System.out.printf("%-12s %11d %10.2f %10.2f %10.2f %12d %12d %14.3f%n", engine.name, engine.collections(),
+                engine.pauseNanos() / 1e6, engine.maxPauseNanos() / 1e6, engine.sweepNanos() / 1e6,
+                engine.liveCells(), engine.heapCells(), engine.fragmentation());
+        return engine.liveCells();
+    }
+
+    /**
+     * Allocation interface of an engine. The kinds are 0 INT, 1 CONS, 2 CONSTR,
+     * 3 TYPE and 4 NULL, the pointers of the node are the values of the given
+     * stack slots (an INT node is allocated in the empty ones).
+     */
+    private abstract static class Engine {
+        final String name;
+        final int[] stack;
+
+        Engine(String name, int slots) {
+            this.name = name;
+            stack = new int[slots];
+            Arrays.fill(stack, -1);
+        }
+
+        int allocate(int kind, int[] sources) {
+            for (int source : sources) {
+                if (stack[source] == -1) {
+                    stack[source] = allocateNode(0, new int[0]);
+                }
+            }
+            return allocateNode(kind, sources);
+        }
+
+        int[] pointers(int[] sources) {
+            int[] pointers = new int[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                pointers[i] = stack[sources[i]];
+            }
+            return pointers;
+        }
+
+        abstract int allocateNode(int kind, int[] sources);
+
+        abstract void collect();
+
+        abstract int collections();
+
+        abstract long pauseNanos();
+
+        abstract long maxPauseNanos();
+
+        long sweepNanos() {
+            return 0;
+        }
+
+        abstract long liveCells();
+
+        abstract long heapCells();
+
+        abstract double fragmentation();
+    }
+
+    private static final class MarkSweepEngine extends Engine {
+        private final MarkSweepGarbageCollector garbageCollector;
+
+        MarkSweepEngine(int heapSize, int slots) {
+            super("MarkSweep", slots);
+            garbageCollector = new MarkSweepGarbageCollector(new String[heapSize], stack);
+        }
+
+        @Override
+        int allocateNode(int kind, int[] sources) {
+            int[] pointers = pointers(sources);
+            switch (kind) {
+                case 0:
+                    return garbageCollector.allocateInteger(kind);
+                case 1:
+                    return garbageCollector.allocateListConstructor(pointers[0], pointers[1]);
+                case 2:
+                    return garbageCollector.allocateDataConstructor("c", pointers);
+                case 3:
+                    return garbageCollector.allocateType(pointers[0], "t");
+                default:
+                    return garbageCollector.allocateNull();
+            }
+        }
+
+        @Override
+        void collect() {
+            garbageCollector.collect();
+            garbageCollector.finishSweep();
+        }
+
+        @Override
+        int collections() {
+            return garbageCollector.collections;
+        }
+
+        @Override
+        long pauseNanos() {
+            return garbageCollector.pauseNanos;
+        }
+
+        @Override
+        long maxPauseNanos() {
+            return garbageCollector.maxPauseNanos;
+        }
+
+        @Override
+        long sweepNanos() {
+            return garbageCollector.sweepNanos;
+        }
+
+        @Override
+        long liveCells() {
+            return garbageCollector.liveCells;
+        }
+
+        @Override
+        long heapCells() {
+            return garbageCollector.getHeap().length - garbageCollector.getFreeCells();
+        }
+
+        @Override
+        double fragmentation() {
+            return garbageCollector.getFragmentation();
+        }
+    }
+
+    private static final class BartlettEngine extends Engine {
+        private final Page[] heap;
+        private final PageAllocator allocator;
+        private final long liveCells;           //Live cells of the same workload, counted by the mark-sweep collector
+
+        BartlettEngine(int heapSize, int slots, long liveCells) {
+            super("Bartlett", slots);
+            this.liveCells = liveCells;
+            heap = new Page[heapSize / PAGE_SIZE];
+            for (int i = 0; i < heap.length; i++) {
+                heap[i] = new Page(i, PAGE_SIZE);
+            }
+            allocator = new PageAllocator(heap, stack, COMPACTION_THRESHOLD);
+        }
+
+        @Override
+        int allocateNode(int kind, int[] sources) {
+            int[] pointers = pointers(sources);
+            switch (kind) {
+                case 0:
+                    return allocator.allocateInteger(kind);
+                case 1:
+                    return allocator.allocateListConstructor(pointers[0], pointers[1]);
+                case 2:
+                    return allocator.allocateDataConstructor("c", pointers);
+                case 3:
+                    return allocator.allocateType(pointers[0], "t");
+                default:
+                    return allocator.allocateNull();
+            }
+        }
+
+        @Override
+        void collect() {
+            allocator.collect();
+        }
+
+        @Override
+        int collections() {
+            return allocator.collections;
+        }
+
+        @Override
+        long pauseNanos() {
+            return allocator.collectionNanos;
+        }
+
+        @Override
+        long maxPauseNanos() {
+            return allocator.maxCollectionNanos;
+        }
+
+        @Override
+        long liveCells() {
+            return liveCells;
+        }
+
+        @Override
+        long heapCells() {
+            return (long) (heap.length - allocator.getFreePages()) * PAGE_SIZE;
+        }
+
+        @Override
+        double fragmentation() {
+            return heapCells() == 0 ? 0 : 1 - (double) liveCells / heapCells();
+        }
+    }
+
+    /**
+     * Cheney's collector with a bump allocator in the semispace in use.
+     */
+    private static final class CheneyEngine extends Engine {
+        private final String[] heap;
+        private final CopyingGarbageCollector garbageCollector;
+        private int start;                      //Start of the semispace in use
+        private int next;                       //Next free cell of the semispace in use
+        private int collections;
+        private long pauseNanos;
+        private long maxPauseNanos;
+
+        CheneyEngine(int heapSize, int slots) {
+            super("Cheney", slots);
+            heap = new String[heapSize];
+            garbageCollector = new CopyingGarbageCollector(heap, stack);
+        }
+
+        @Override
+        int allocateNode(int kind, int[] sources) {
+            int size = kind == 0 ? HeapBuilder.INT_SIZE : kind == 1 ? HeapBuilder.CONS_SIZE
+                    : kind == 2 ? sources.length + 3 : kind == 3 ? HeapBuilder.TYPE_SIZE : HeapBuilder.NULL_SIZE;
+            if (next + size > start + heap.length / 2) {
+                collect();
+                if (next + size > start + heap.length / 2) {
+                    throw new IllegalStateException("Heap is full");
+                }
+            }
+            int[] pointers = pointers(sources);             //Read after the collection
+            int node = next;
+            switch (kind) {
+                case 0:
+                    write(CopyingGarbageCollector.NODE_INT, String.valueOf(kind));
+                    break;
+                case 1:
+                    write(CopyingGarbageCollector.NODE_CONS, String.valueOf(pointers[0]), String.valueOf(pointers[1]));
+                    break;
+                case 2:
+                    write(CopyingGarbageCollector.NODE_CONSTR, "c", String.valueOf(pointers.length));
+                    for (int pointer : pointers) {
+                        write(String.valueOf(pointer));
+                    }
+                    break;
+                case 3:
+                    write(CopyingGarbageCollector.NODE_TYPE, String.valueOf(pointers[0]), "t");
+                    break;
+                default:
+                    write(CopyingGarbageCollector.NODE_NULL);
+            }
+            return node;
+        }
+
+        private void write(String... cells) {
+            for (String cell : cells) {
+                heap[next++] = cell;
+            }
+        }
+
+        @Override
+        void collect() {
+            long begin = System.nanoTime();
+            garbageCollector.evacuateRoots();
+            garbageCollector.scavenge();
+            next = garbageCollector.getNextTo();
+            garbageCollector.clearOldMemory();
+            garbageCollector.flip();
+            start = start == 0 ? heap.length / 2 : 0;                       //The nodes are in the to-space
+            long pause = System.nanoTime() - begin;
+            collections++;
+            pauseNanos += pause;
+            maxPauseNanos = Math.max(maxPauseNanos, pause);
+        }
+
+        @Override
+        int collections() {
+            return collections;
+        }
+
+        @Override
+        long pauseNanos() {
+            return pauseNanos;
+        }
+
+        @Override
+        long maxPauseNanos() {
+            return maxPauseNanos;
+        }
+
+        @Override
+        long liveCells() {
+            return next - start;
+        }
+
+        @Override
+        long heapCells() {
+            return liveCells();
+        }
+
+        @Override
+        double fragmentation() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import cheneys.HeapBuilder;
+import cheneys.HeapGenerator;
+import cheneys.WorkloadSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of a heap and its stack by HeapBuilder.generateValidHeap, that
+ * keeps the positions in an ArrayList of Integer, against the HeapGenerator
+ * with the same fill fraction and type odds, in the String and in the int
+ * representation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class HeapGenerationBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int heapSize;
+
+    @Param({"DAG", "TREES"})
+    public WorkloadSpec.Shape shape;
+
+    @Benchmark
+    public int[] heapBuilder() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        heapBuilder.generateValidHeap(heapSize);
+        return heapBuilder.generateValidStack(heapBuilder.getNodesPositions(), heapSize / 100);
+    }
+
+    @Benchmark
+    public int[] stringHeap() {
+        HeapGenerator generator = new HeapGenerator(spec());
+        generator.generateHeap(heapSize);
+        return generator.generateStack();
+    }
+
+    @Benchmark
+    public int[] intHeap() {
+        HeapGenerator generator = new HeapGenerator(spec());
+        generator.generateIntHeap(heapSize);
+        return generator.generateStack();
+    }
+
+    private WorkloadSpec spec() {
+        WorkloadSpec spec = new WorkloadSpec(shape);
+        spec.roots = heapSize / 100;
+        return spec;
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.MarkCompactGarbageCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full collection of the same random heap by Cheney's collector and by the
+ * sliding mark-compact collector. Cheney's heap has heapSize cells, the nodes
+ * and a to-space of the same size. The mark-compact heap only has the heapSize / 2
+ * cells of the nodes. The heaps and the stack are restored before every
+ * invocation, outside of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class MarkCompactCollectorBenchmark {
+
+    @Param({"250000", "1000000", "5000000"})
+    public int heapSize;
+
+    @Param({"0.01", "0.1"})
+    public double rootRatio;
+
+    @Param({"0.25", "1.0"})
+    public double liveFraction;
+
+    private String[] generatedHeap;
+    private int[] generatedStack;
+
+    private String[] cheneyHeap;
+    private String[] markCompactHeap;
+    private int[] stack;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        generatedHeap = heapBuilder.generateValidHeap(heapSize);
+        generatedStack = Workloads.cheneyStack(heapBuilder, heapSize, rootRatio, liveFraction);
+        cheneyHeap = new String[heapSize];
+        markCompactHeap = new String[heapSize / 2];
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        System.arraycopy(generatedHeap, 0, cheneyHeap, 0, heapSize);
+        System.arraycopy(generatedHeap, 0, markCompactHeap, 0, heapSize / 2);
+        stack = generatedStack.clone();
+    }
+
+    @Benchmark
+    public int cheney() {
+        CopyingGarbageCollector garbageCollector = new CopyingGarbageCollector(cheneyHeap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        int copiedObjects = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        return copiedObjects;
+    }
+
+    @Benchmark
+    public int markCompact() {
+        MarkCompactGarbageCollector garbageCollector = new MarkCompactGarbageCollector(markCompactHeap, stack);
+        garbageCollector.collect();
+        return garbageCollector.numberOfObjectsMarked;
+    }
+}
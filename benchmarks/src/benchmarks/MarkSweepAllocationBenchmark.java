@@ -0,0 +1,93 @@
+package benchmarks;
+
+import bartlett.Page;
+import bartlett.PageAllocator;
+import cheneys.MarkSweepGarbageCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation throughput of the mark-sweep free lists and of the Bartlett page
+ * allocator, collections (and the lazy sweep) included, on the workload of
+ * PageAllocatorBenchmark : NODES list nodes with garbagePerNode integers between
+ * them, on an empty heap of heapSize cells, the list being dropped every
+ * LIST_LENGTH nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class MarkSweepAllocationBenchmark {
+
+    private static final int NODES = 200000;
+    private static final int LIST_LENGTH = 1000;
+    private static final int PAGE_SIZE = 16;
+
+    @Param({"1000000"})
+    public int heapSize;
+
+    @Param({"0", "4", "16"})
+    public int garbagePerNode;
+
+    private MarkSweepGarbageCollector markSweep;
+    private PageAllocator pageAllocator;
+    private int[] stack;
+
+    @Setup(Level.Invocation)
+    public void emptyHeaps() {
+        stack = new int[]{-1};
+        markSweep = new MarkSweepGarbageCollector(new String[heapSize], stack);
+        Page[] heap = new Page[heapSize / PAGE_SIZE];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, PAGE_SIZE);
+        }
+        pageAllocator = new PageAllocator(heap, stack);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public int[] markSweep() {
+        for (int i = 0; i < NODES; i++) {
+            if (i % LIST_LENGTH == 0) {
+                stack[0] = markSweep.allocateNull();
+            }
+            int value = markSweep.allocateInteger(i);
+            stack[0] = markSweep.allocateListConstructor(value, stack[0]);
+            for (int j = 0; j < garbagePerNode; j++) {
+                markSweep.allocateInteger(j);
+            }
+        }
+        return stack;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public int[] pageAllocator() {
+        for (int i = 0; i < NODES; i++) {
+            if (i % LIST_LENGTH == 0) {
+                stack[0] = pageAllocator.allocateNull();
+            }
+            int value = pageAllocator.allocateInteger(i);
+            stack[0] = pageAllocator.allocateListConstructor(value, stack[0]);
+            for (int j = 0; j < garbagePerNode; j++) {
+                pageAllocator.allocateInteger(j);
+            }
+        }
+        return stack;
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.MarkSweepGarbageCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pause of one collection of the same random heap by Cheney's collector and by
+ * the mark-sweep collector. The mark-sweep pause is the marking only, the sweep
+ * is lazy and done by the allocations ; markSweepAndSweep also sweeps the whole
+ * heap. The heap and the stack are restored before every invocation, outside of
+ * the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class MarkSweepCollectorBenchmark {
+
+    @Param({"250000", "1000000", "5000000"})
+    public int heapSize;
+
+    @Param({"0.01", "0.1"})
+    public double rootRatio;
+
+    @Param({"0.25", "1.0"})
+    public double liveFraction;
+
+    private String[] generatedHeap;
+    private int[] generatedStack;
+
+    private String[] heap;
+    private int[] stack;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        generatedHeap = heapBuilder.generateValidHeap(heapSize);
+        generatedStack = Workloads.cheneyStack(heapBuilder, heapSize, rootRatio, liveFraction);
+        heap = new String[heapSize];
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        System.arraycopy(generatedHeap, 0, heap, 0, heapSize);
+        stack = generatedStack.clone();
+    }
+
+    @Benchmark
+    public int cheney() {
+        CopyingGarbageCollector garbageCollector = new CopyingGarbageCollector(heap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        int copiedObjects = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        return copiedObjects;
+    }
+
+    @Benchmark
+    public long markSweep() {
+        MarkSweepGarbageCollector garbageCollector = new MarkSweepGarbageCollector(heap, stack);
+        garbageCollector.collect();
+        return garbageCollector.liveCells;
+    }
+
+    @Benchmark
+    public long markSweepAndSweep() {
+        MarkSweepGarbageCollector garbageCollector = new MarkSweepGarbageCollector(heap, stack);
+        garbageCollector.collect();
+        garbageCollector.finishSweep();
+        return garbageCollector.getFreeCells();
+    }
+}
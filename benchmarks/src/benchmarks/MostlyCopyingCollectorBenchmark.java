@@ -0,0 +1,75 @@
+package benchmarks;
+
+import bartlett.BartlettHeapBuilder;
+import bartlett.MostlyCopyingGarbageCollector;
+import bartlett.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full Bartlett collection (evacuateRoots, scavenge, copyToNewSpace,
+ * clearOldMemory) of a random paged heap. The heap and the stack are
+ * restored before every invocation, outside of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class MostlyCopyingCollectorBenchmark {
+
+    @Param({"250000", "1000000"})
+    public int heapSize;
+
+    @Param({"0.01", "0.1"})
+    public double rootRatio;
+
+    @Param({"0.25", "1.0"})
+    public double liveFraction;
+
+    @Param({"4", "16", "80"})
+    public int pageSize;
+
+    private Page[] generatedHeap;
+    private int[] generatedStack;
+
+    private Page[] heap;
+    private int[] stack;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        BartlettHeapBuilder heapBuilder = new BartlettHeapBuilder(pageSize);
+        generatedHeap = heapBuilder.generateValidHeap(heapSize);
+        generatedStack = Workloads.bartlettStack(heapBuilder, heapSize, rootRatio, liveFraction);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        heap = Workloads.copyPages(generatedHeap);
+        stack = generatedStack.clone();
+    }
+
+    @Benchmark
+    public Page[] collect() {
+        MostlyCopyingGarbageCollector garbageCollector =
+                new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        garbageCollector.copyToNewSpace();
+        garbageCollector.clearOldMemory();
+        return heap;
+    }
+}
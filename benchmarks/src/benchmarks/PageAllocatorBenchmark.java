@@ -0,0 +1,76 @@
+package benchmarks;
+
+import bartlett.Page;
+import bartlett.PageAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation throughput of the Bartlett page allocator, collections included.
+ * Every invocation allocates NODES list nodes, with garbagePerNode integers
+ * between them, on an empty heap of heapSize cells. The list is dropped every
+ * LIST_LENGTH nodes, so the live data stays small and the heap is collected
+ * many times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class PageAllocatorBenchmark {
+
+    private static final int NODES = 200000;
+    private static final int LIST_LENGTH = 1000;
+
+    @Param({"1000000"})
+    public int heapSize;
+
+    @Param({"4", "16", "80"})
+    public int pageSize;
+
+    @Param({"0", "4", "16"})
+    public int garbagePerNode;
+
+    private PageAllocator allocator;
+    private int[] stack;
+
+    @Setup(Level.Invocation)
+    public void emptyHeap() {
+        Page[] heap = new Page[heapSize / pageSize];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, pageSize);
+        }
+        stack = new int[]{-1};
+        allocator = new PageAllocator(heap, stack);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public int[] allocate() {
+        for (int i = 0; i < NODES; i++) {
+            if (i % LIST_LENGTH == 0) {
+                stack[0] = allocator.allocateNull();
+            }
+            int value = allocator.allocateInteger(i);
+            stack[0] = allocator.allocateListConstructor(value, stack[0]);
+            for (int j = 0; j < garbagePerNode; j++) {
+                allocator.allocateInteger(j);
+            }
+        }
+        return stack;
+    }
+}
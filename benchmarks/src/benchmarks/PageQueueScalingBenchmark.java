@@ -0,0 +1,75 @@
+package benchmarks;
+
+import bartlett.BartlettHeapBuilder;
+import bartlett.MostlyCopyingGarbageCollector;
+import bartlett.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full Bartlett collection of heaps from 1K to 1M pages, with the same
+ * page size, root ratio and live fraction. The time divided by the number of
+ * pages should stay flat, promotion and pointer relocation through the page
+ * queue are O(1).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class PageQueueScalingBenchmark {
+
+    private static final int PAGE_SIZE = 8;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int pages;
+
+    @Param({"0.01"})
+    public double rootRatio;
+
+    @Param({"0.5"})
+    public double liveFraction;
+
+    private Page[] generatedHeap;
+    private int[] generatedStack;
+
+    private Page[] heap;
+    private int[] stack;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        BartlettHeapBuilder heapBuilder = new BartlettHeapBuilder(PAGE_SIZE);
+        generatedHeap = heapBuilder.generateValidHeap(pages * PAGE_SIZE);
+        generatedStack = Workloads.bartlettStack(heapBuilder, pages * PAGE_SIZE, rootRatio, liveFraction);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        heap = Workloads.copyPages(generatedHeap);
+        stack = generatedStack.clone();
+    }
+
+    @Benchmark
+    public Page[] collect() {
+        MostlyCopyingGarbageCollector garbageCollector =
+                new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        garbageCollector.copyToNewSpace();
+        garbageCollector.clearOldMemory();
+        return heap;
+    }
+}
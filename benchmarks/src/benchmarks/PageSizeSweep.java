@@ -0,0 +1,263 @@
+package benchmarks;
+
+import bartlett.MostlyCopyingGarbageCollector;
+import bartlett.Page;
+import bartlett.PageAllocator;
+import monitoring.GcEvent;
+import util.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the same workload on Bartlett heaps of different page sizes, in parallel,
+ * and reports for every page size :
+ * <ul>
+ * <li>the pages promoted and the cells they hold,</li>
+ * <li>the promotion granularity, cells of the promoted pages per live cell,</li>
+ * <li>the retained garbage, dead cells that survive because they share a page with live ones,</li>
+ * <li>the median time of a full collection.</li>
+ * </ul>
+ * The workload is a sequence of random nodes that point to recent (and a few
+ * older) nodes, with roots chosen among them. It is allocated in the same order
+ * with a PageAllocator on every heap, so only the page layout changes. The live
+ * cells are found by tracing the workload itself.
+ * <p>
+ * Usage : PageSizeSweep [nodes] [page sizes, comma separated] [threads]
+ */
+public class PageSizeSweep {
+
+    private static final int REPETITIONS = 5;   //Collections per page size, the median time is reported
+    private static final int WINDOW = 16;       //Most pointers go to one of the last WINDOW nodes
+    private static final double ROOT_RATIO = 0.001;
+
+    private final int[] tags;               //Node type of every node, as in BartlettHeapBuilder
+    private final int[][] pointers;         //Nodes that every node points to
+    private final int[] roots;              //Nodes referenced by the stack
+    private final long liveCells;
+
+    public PageSizeSweep(int nodes, long seed) {
+        Random random = new Random(seed);
+        tags = new int[nodes];
+        pointers = new int[nodes][];
+        for (int i = 0; i < nodes; i++) {
+            tags[i] = i == 0 ? 1 : random.nextInt(12) + 1;
+            int numberOfPointers;
+            switch (tags[i]) {
+                case 5:
+                case 8:
+                    numberOfPointers = random.nextInt(8) + 1;
+                    break;
+                case 6:
+                    numberOfPointers = 2;
+                    break;
+                case 9:
+                case 11:
+                case 12:
+                    numberOfPointers = 1;
+                    break;
+                default:
+                    numberOfPointers = 0;
+            }
+            pointers[i] = new int[numberOfPointers];
+            for (int j = 0; j < numberOfPointers; j++) {
+                pointers[i][j] = random.nextInt(10) == 0
+                        ? random.nextInt(i) : Math.max(0, i - 1 - random.nextInt(WINDOW));
+            }
+        }
+        roots = new int[Math.max(1, (int) (nodes * ROOT_RATIO))];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = random.nextInt(nodes);
+        }
+        liveCells = traceLiveCells();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int[] pageSizes = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{4, 8, 16, 32, 80, 128, 256};
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        PageSizeSweep sweep = new PageSizeSweep(nodes, 42);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> results = new ArrayList<>();
+        for (int pageSize : pageSizes) {
+            results.add(executor.submit(() -> sweep.run(pageSize)));
+        }
+
+        System.out.println("NODES : " + nodes + ", ROOTS : " + sweep.roots.length + ", LIVE CELLS : " + sweep.liveCells
+                + ", THREADS : " + threads);
+        System.out.printf("%9s %14s %14s %12s %17s %12s %12s %13s%n", "PAGE SIZE", "PAGES PROMOTED", "PROMOTED CELLS",
+                "GRANULARITY", "RETAINED GARBAGE", "RETAINED %", "PAGE FILL %", "COLLECTION ms");
+        for (Future<Result> future : results) {
+            Result result = future.get();
+            System.out.printf("%9d %14d %14d %12.2f %17d %12.1f %12.1f %13.3f%n", result.pageSize, result.pagesPromoted,
+                    result.promotedCells, result.granularity(sweep.liveCells), result.promotedCells - sweep.liveCells,
+                    100.0 * (result.promotedCells - sweep.liveCells) / result.promotedCells,
+                    100.0 * result.promotedCells / ((long) result.pagesPromoted * result.pageSize),
+                    result.medianNanos / 1e6);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Allocate the workload on a heap of the given page size and collect it
+     * REPETITIONS times, on a new heap each time.
+     */
+    public Result run(int pageSize) {
+        Result result = new Result(pageSize);
+        long[] pauses = new long[REPETITIONS];
+        for (int r = 0; r < REPETITIONS; r++) {
+            int[] stack = new int[roots.length];
+            Page[] heap = allocate(pageSize, stack);
+            MostlyCopyingGarbageCollector collector = new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+            List<GcEvent> events = new ArrayList<>();
+            collector.addListener(events::add);
+            long start = System.nanoTime();
+            collector.evacuateRoots();
+            collector.scavenge();
+            collector.copyToNewSpace();
+            collector.clearOldMemory();
+            pauses[r] = System.nanoTime() - start;
+            result.pagesPromoted = events.get(0).pagesPromoted;
+            result.promotedCells = events.get(0).cellsCopied;
+        }
+        Arrays.sort(pauses);
+        result.medianNanos = pauses[REPETITIONS / 2];
+        return result;
+    }
+
+    /**
+     * Allocate the nodes in order on a new heap, the stack gets the roots.
+     */
+    private Page[] allocate(int pageSize, int[] stack) {
+        long cells = 0;
+        for (int i = 0; i < tags.length; i++) {
+            cells += size(i);
+        }
+        Page[] heap = new Page[(int) (4 * cells / pageSize) + 16];   //Room for the page padding, no collection
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, pageSize);
+        }
+        Arrays.fill(stack, -1);
+        PageAllocator allocator = new PageAllocator(heap, stack);
+        int[] addresses = new int[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            addresses[i] = allocateNode(allocator, i, addresses);
+        }
+        if (allocator.collections > 0) {
+            throw new IllegalStateException("The workload heap of page size " + pageSize + " was collected");
+        }
+        for (int i = 0; i < roots.length; i++) {
+            stack[i] = addresses[roots[i]];
+        }
+        return heap;
+    }
+
+    private int allocateNode(PageAllocator allocator, int node, int[] addresses) {
+        int[] targets = new int[pointers[node].length];
+        for (int j = 0; j < targets.length; j++) {
+            targets[j] = addresses[pointers[node][j]];
+        }
+        switch (tags[node]) {
+            case 1:
+                return allocator.allocateInteger(node);
+            case 2:
+                return allocator.allocateDouble(node / 2.0);
+            case 3:
+                return allocator.allocateChar('c');
+            case 4:
+                return allocator.allocateBoolean(true);
+            case 5:
+                return allocator.allocateDataConstructor("constr", targets);
+            case 6:
+                return allocator.allocateListConstructor(targets[0], targets[1]);
+            case 7:
+                return allocator.allocateNull();
+            case 8:
+                return allocator.allocateLambda("func", targets);
+            case 9:
+                return allocator.allocateIndirection(targets[0]);
+            case 10:
+                return allocator.allocateVariable("var");
+            case 11:
+                return allocator.allocateType(targets[0], "type");
+            default:
+                return allocator.allocateWeak(targets[0]);
+        }
+    }
+
+    /**
+     * Cells of a node.
+     */
+    private int size(int node) {
+        switch (tags[node]) {
+            case 5:
+            case 8:
+                return pointers[node].length + 3;
+            case 6:
+            case 11:
+                return 3;
+            case 7:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Cells of the nodes reachable from the roots through strong pointers.
+     */
+    private long traceLiveCells() {
+        boolean[] marked = new boolean[tags.length];
+        IntList gray = new IntList();
+        for (int root : roots) {
+            if (!marked[root]) {
+                marked[root] = true;
+                gray.add(root);
+            }
+        }
+        long cells = 0;
+        while (!gray.isEmpty()) {
+            int node = gray.pop();
+            cells += size(node);
+            if (tags[node] == 12) {
+                continue;                                   //Weak pointer
+            }
+            for (int target : pointers[node]) {
+                if (!marked[target]) {
+                    marked[target] = true;
+                    gray.add(target);
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Measures of the collections of one page size.
+     */
+    public static final class Result {
+        public final int pageSize;
+        public int pagesPromoted;
+        public long promotedCells;          //Used cells of the promoted pages
+        public long medianNanos;
+
+        Result(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Cells of the promoted pages per live cell.
+         */
+        public double granularity(long liveCells) {
+            return (double) pagesPromoted * pageSize / liveCells;
+        }
+    }
+}
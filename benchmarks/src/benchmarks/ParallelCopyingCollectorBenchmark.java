@@ -0,0 +1,81 @@
+package benchmarks;
+
+import cheneys.HeapBuilder;
+import cheneys.ParallelCopyingGarbageCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full collection of a random heap by the parallel Cheney collector, to
+ * measure how collection time scales with the number of workers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ParallelCopyingCollectorBenchmark {
+
+    @Param({"5000000", "20000000"})
+    public int heapSize;
+
+    @Param({"0.1"})
+    public double rootRatio;
+
+    @Param({"1.0"})
+    public double liveFraction;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int workers;
+
+    private int[] generatedHeap;
+    private int[] generatedStack;
+
+    private int[] heap;
+    private int[] stack;
+    private ParallelCopyingGarbageCollector garbageCollector;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        generatedHeap = heapBuilder.generateValidIntHeap(heapSize);
+        generatedStack = Workloads.cheneyStack(heapBuilder, heapSize, rootRatio, liveFraction);
+        heap = new int[heapSize];
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        System.arraycopy(generatedHeap, 0, heap, 0, heapSize);
+        stack = generatedStack.clone();
+        garbageCollector = new ParallelCopyingGarbageCollector(heap, stack, workers);
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdown() {
+        garbageCollector.shutdown();
+    }
+
+    @Benchmark
+    public int collect() {
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        int copiedObjects = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        return copiedObjects;
+    }
+}
@@ -0,0 +1,155 @@
+package benchmarks;
+
+import engine.EngineRegistry;
+import engine.MutatorEngine;
+import monitoring.GcEvent;
+import trace.TraceReplayer;
+import trace.TraceWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Replays a trace file on every mutator engine of the registry and prints,
+ * for each one, the time of the replay (collections included), the events per
+ * microsecond and the collections. If the file does not exist, a random
+ * workload of the given number of events is recorded in it first :
+ * <p>
+ * The first half of the SLOTS stack slots holds leaves (INT, DOUBLE, CHAR,
+ * BOOL, VAR and NULL nodes), the second half nodes with pointers to leaves
+ * (CONS, CONSTR of 1 to 24 pointers, LAMBDA, IND, TYPE and WEAK nodes). Pointers
+ * of the second half nodes are rewritten with stores and loaded back into the
+ * first half, roots are pushed from one slot to another and popped. The live
+ * graph is bounded by the stack, so any heap of a few times SLOTS * 30 cells
+ * can replay it, unless the engine keeps dead nodes : Bartlett's collector
+ * scavenges every node of a promoted page, so without compaction the heap may
+ * be full.
+ * <p>
+ * Usage : TraceReplay [trace file] [heap size] [events]
+ */
+public class TraceReplay {
+
+    private static final int SLOTS = 512;
+    private static final int COLLECT_INTERVAL = 1000000;   //Events between two explicit collections
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "workload.gct");
+        int heapSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        long events = args.length > 2 ? Long.parseLong(args[2]) : 10000000;
+
+        if (!Files.exists(path)) {
+            long start = System.nanoTime();
+            try (TraceWriter writer = new TraceWriter(path, SLOTS)) {
+                record(writer, events);
+            }
+            System.out.printf("Recorded %d events in %s, %d bytes, %.0f ms%n", events, path, Files.size(path),
+                    (System.nanoTime() - start) / 1e6);
+        }
+        System.out.printf("%-20s %12s %10s %14s %12s %12s%n", "ENGINE", "EVENTS", "REPLAY ms", "EVENTS PER us",
+                "ALLOCATIONS", "COLLECTIONS");
+        for (String name : EngineRegistry.mutatorNames()) {
+            TraceReplayer replayer = new TraceReplayer();
+            MutatorEngine engine;
+            try {
+                engine = replayer.replay(path, name, heapSize);
+            } catch (IllegalStateException e) {                  //The dead nodes that the engine keeps fill the heap
+                System.out.printf("%-20s %s%n", name, e.getMessage());
+                continue;
+            }
+            GcEvent last = engine.collect();
+            System.out.printf("%-20s %12d %10.1f %14.2f %12d %12d%n", name, replayer.events, replayer.replayNanos / 1e6,
+                    replayer.events / (replayer.replayNanos / 1e3), replayer.allocations, last.cycle - 1);
+            engine.shutdown();
+        }
+    }
+
+    private static void record(TraceWriter writer, long events) {
+        Random random = new Random(7);
+        int leaves = SLOTS / 2;
+        int[] pointerCounts = new int[SLOTS];                   //Strong pointers of the node of a second half slot
+        for (int slot = 0; slot < leaves; slot++) {
+            writer.allocateInteger(slot, slot);
+        }
+        for (int slot = leaves; slot < SLOTS; slot++) {
+            writer.allocateIndirection(slot, slot - leaves);
+            pointerCounts[slot] = 1;
+        }
+        while (writer.events < events) {
+            int leaf = random.nextInt(leaves);
+            int node = leaves + random.nextInt(leaves);
+            switch (random.nextInt(16)) {
+                case 0:
+                    writer.allocateInteger(leaf, random.nextInt(1000) - 500);
+                    break;
+                case 1:
+                    writer.allocateDouble(leaf, random.nextDouble());
+                    break;
+                case 2:
+                    writer.allocateChar(leaf, (char) ('a' + random.nextInt(26)));
+                    break;
+                case 3:
+                    writer.allocateBoolean(leaf, random.nextBoolean());
+                    break;
+                case 4:
+                    writer.allocateVariable(leaf, "v" + random.nextInt(100));
+                    break;
+                case 5:
+                    writer.allocateNull(leaf);
+                    break;
+                case 6:
+                case 7:
+                    writer.allocateListConstructor(node, leaf, random.nextInt(leaves));
+                    pointerCounts[node] = 2;
+                    break;
+                case 8:
+                case 9:
+                    int[] pointers = new int[1 + random.nextInt(random.nextInt(8) == 0 ? 24 : 6)];
+                    for (int i = 0; i < pointers.length; i++) {
+                        pointers[i] = random.nextInt(leaves);
+                    }
+                    if (random.nextBoolean()) {
+                        writer.allocateDataConstructor(node, "c" + pointers.length, pointers);
+                    } else {
+                        writer.allocateLambda(node, "f" + pointers.length, pointers);
+                    }
+                    pointerCounts[node] = pointers.length;
+                    break;
+                case 10:
+                    writer.allocateIndirection(node, leaf);
+                    pointerCounts[node] = 1;
+                    break;
+                case 11:
+                    writer.allocateType(node, leaf, "t");
+                    pointerCounts[node] = 1;
+                    break;
+                case 12:
+                    writer.allocateWeak(node, leaf);
+                    pointerCounts[node] = 0;
+                    break;
+                case 13:
+                    if (pointerCounts[node] > 0) {
+                        writer.storePointer(node, random.nextInt(pointerCounts[node]), leaf);
+                    }
+                    break;
+                case 14:
+                    if (pointerCounts[node] > 0) {
+                        writer.loadPointer(leaf, node, random.nextInt(pointerCounts[node]));
+                    }
+                    break;
+                default:
+                    int other = leaves + random.nextInt(leaves);        //Pop a root, and push another one in its slot
+                    if (other != node) {
+                        writer.popRoot(other);
+                        writer.pushRoot(other, node);
+                        pointerCounts[other] = pointerCounts[node];
+                    }
+            }
+            if (writer.events % COLLECT_INTERVAL == 0) {
+                writer.collect();
+            }
+        }
+    }
+}
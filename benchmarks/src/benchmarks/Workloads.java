@@ -0,0 +1,52 @@
+package benchmarks;
+
+import bartlett.BartlettHeapBuilder;
+import bartlett.Page;
+import cheneys.HeapBuilder;
+
+import java.util.ArrayList;
+
+/**
+ * Builds the heaps and stacks that are collected by the benchmarks.
+ * <p>
+ * Objects created by the builders only point to previously created objects,
+ * so roots that are chosen among the first liveFraction of the objects keep
+ * (at most) that fraction of the heap alive.
+ */
+final class Workloads {
+
+    private Workloads() {
+    }
+
+    /**
+     * Stack of a Cheney heap, with heapSize * rootRatio roots.
+     */
+    static int[] cheneyStack(HeapBuilder heapBuilder, int heapSize, double rootRatio, double liveFraction) {
+        return heapBuilder.generateValidStack(livePrefix(heapBuilder.getNodesPositions(), liveFraction),
+                Math.max(1, (int) (heapSize * rootRatio)));
+    }
+
+    /**
+     * Stack of a Bartlett heap, with heapSize * rootRatio roots.
+     */
+    static int[] bartlettStack(BartlettHeapBuilder heapBuilder, int heapSize, double rootRatio, double liveFraction) {
+        return heapBuilder.generateValidStack(livePrefix(heapBuilder.getNodesPositions(), liveFraction),
+                Math.max(1, (int) (heapSize * rootRatio)));
+    }
+
+    /**
+     * Deep copy of a Bartlett heap.
+     */
+    static Page[] copyPages(Page[] heap) {
+        Page[] copy = new Page[heap.length];
+        for (int i = 0; i < heap.length; i++) {
+            copy[i] = heap[i].copy();
+        }
+        return copy;
+    }
+
+    private static ArrayList<Integer> livePrefix(ArrayList<Integer> nodePositions, double liveFraction) {
+        int live = Math.max(1, (int) (nodePositions.size() * liveFraction));
+        return new ArrayList<>(nodePositions.subList(0, live));
+    }
+}
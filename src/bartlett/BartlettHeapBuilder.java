@@ -1,6 +1,7 @@
 package bartlett;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 
 /**
@@ -13,18 +14,33 @@ import java.util.ArrayList;
 public class BartlettHeapBuilder {
 
     private int heapSize;               //Heap size in cells
+    private final int pageSize;         //Cells of every page of the heaps
     public int numberOfObjects;         //Number of objects in heap
 
     //Holds the objects (or nodes) positions in heap
     private ArrayList<Integer> nodesPositions = new ArrayList<>();
 
+    /**
+     * Builder of heaps with pages of the default size.
+     */
+    public BartlettHeapBuilder() {
+        this(Page.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Builder of heaps with pages of the given size.
+     */
+    public BartlettHeapBuilder(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
     /**
      * Example heap from tutorial sheets.
      * first simple test, no weak pointers , no lambda and constr nodes.
      */
     public Page[] buildHeapExample1(int size) {
         this.heapSize = size;                                 //Size in words
-        Page[] heap = new Page[this.heapSize / Page.PAGE_SIZE];
+        Page[] heap = new Page[this.heapSize / pageSize];
 
         for (int i = 0; i < heap.length; i++) {
             heap[i] = (2 * i < heap.length) ? createAllocatedPage(i, i % 4) : createFreePage(i);
@@ -35,36 +51,36 @@ public class BartlettHeapBuilder {
     /**
      * Builds the same heap as the one is explained through
      * graph in report.
-     * Page size is 6 to be able to fit the biggest node.(Lambda & constr)
+     * Page size must be at least 6 to be able to fit the biggest node.(Lambda & constr)
      */
     public Page[] buildHeapDescribedInReport(int size) {
         this.heapSize = size;                                 //Size in words
-        Page[] heap = new Page[this.heapSize / Page.PAGE_SIZE];
+        Page[] heap = new Page[this.heapSize / pageSize];
 
-        heap[0] = new Page(0);
+        heap[0] = new Page(0, pageSize);
         heap[0].addWeak(2);
         heap[0].addInteger(10);
         heap[0].addChar('c');
 
-        heap[1] = new Page(1);
+        heap[1] = new Page(1, pageSize);
         heap[1].addType(2, "aType");
         heap[1].addIndirection(18);
 
-        heap[2] = new Page(2);
+        heap[2] = new Page(2, pageSize);
         heap[2].addWeak(28);
 
-        heap[3] = new Page(3);
+        heap[3] = new Page(3, pageSize);
         heap[3].addLambda("func", 3, new int[]{2, 4, 6});
 
-        heap[4] = new Page(4);
+        heap[4] = new Page(4, pageSize);
         heap[4].addDataConstructor("constr", 1, new int[]{9});
         heap[4].addDouble(7.1);
 
-        heap[5] = new Page(5);
+        heap[5] = new Page(5, pageSize);
         heap[5].addBoolean(false);
         heap[5].addVariable("x");
 
-        heap[6] = new Page(6);
+        heap[6] = new Page(6, pageSize);
         heap[6].addListConstructor(30, 32);
         heap[6].addWeak(32);
         heap[6].addNull();
@@ -76,11 +92,224 @@ public class BartlettHeapBuilder {
         return heap;
     }
 
+    /**
+     * Generates a heap of size given by the parameter. The first 45% of the
+     * pages are allocated, each one is filled with random objects until
+     * the next object does not fit in it. Objects point to the previous
+     * inserted objects.
+     */
+    public Page[] generateValidHeap(int size) {
+        Random random = new Random(1);
+        this.heapSize = size;
+        Page[] heap = new Page[this.heapSize / pageSize];
+        int allocatedPages = (int) (heap.length * 0.45);
+
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = createFreePage(i);
+        }
+        nodesPositions.add(heap[0].addInteger(10));         //Add an object manually, so others can point to it
+        numberOfObjects++;
+
+        for (int i = 0; i < allocatedPages; i++) {
+            int position;
+            do {
+                position = createObject(heap[i], random.nextInt(12) + 1);
+                if (position != -1) {
+                    nodesPositions.add(position);
+                    numberOfObjects++;
+                }
+            } while (position != -1);
+        }
+        return heap;
+    }
+
+    /**
+     * Lays out the nodes of a heap of Cheney's format (nodes from the first
+     * cell, until the first empty cell) in pages, so that the same graph can be
+     * collected by Bartlett's algorithm. Small nodes are added one after the
+     * other and a node that does not fit starts the next page, a node larger
+     * than a page takes a run of fresh pages. The pointers of the nodes and the
+     * roots of the stack are relocated, the heap has at least twice the pages in
+     * use, so a compacting collection always finds fresh pages.
+     *
+     * @param cells The heap of Cheney's format.
+     * @param stack The roots, rewritten to the new positions. Negative values are empty slots.
+     */
+    public Page[] buildFromHeap(String[] cells, int[] stack) {
+        int[] positions = new int[cells.length];            //New position of every node, by old position
+        int page = 0;
+        int offset = 0;
+        int end = 0;
+        while (end < cells.length && cells[end] != null) {
+            int size = cheneyNodeSize(cells, end);
+            if (size > pageSize) {
+                page += offset == 0 ? 0 : 1;
+                positions[end] = page * pageSize;
+                page += Page.pagesFor(size, pageSize);
+                offset = 0;
+            } else {
+                if (offset + size > pageSize) {
+                    page++;
+                    offset = 0;
+                }
+                positions[end] = page * pageSize + offset;
+                offset += size;
+            }
+            end += size;
+        }
+        int usedPages = page + (offset == 0 ? 0 : 1);
+
+        this.heapSize = Math.max(cells.length / pageSize, 2 * usedPages) * pageSize;
+        Page[] heap = new Page[this.heapSize / pageSize];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = createFreePage(i);
+        }
+        for (int node = 0; node < end; node += cheneyNodeSize(cells, node)) {
+            nodesPositions.add(copyNode(heap, cells, node, positions));
+            numberOfObjects++;
+        }
+        for (int i = 0; i < stack.length; i++) {
+            stack[i] = stack[i] < 0 ? stack[i] : positions[stack[i]];
+        }
+        return heap;
+    }
+
+    /**
+     * Given node positions this method returns and array of valid roots.
+     */
+    public int[] generateValidStack(ArrayList<Integer> nodePositions, int roots) {
+        Random rand = new Random(178);
+        int[] stack = new int[roots];
+        for (int i = 0; i < roots; i++) {
+            stack[i] = nodePositions.get(rand.nextInt(nodePositions.size()));
+        }
+        return stack;
+    }
+
+    /**
+     * Get the objects positions.
+     */
+    public ArrayList<Integer> getNodesPositions() {
+        return nodesPositions;
+    }
+
+    /**
+     * Creates an object into page. If the object has a pointer attribute, it
+     * points to one of the previous inserted objects.
+     *
+     * @return Returns the position of the object, or -1 if it does not fit in page.
+     */
+    private int createObject(Page page, int objectType) {
+        switch (objectType) {
+            case 1:
+                return page.addInteger(100);
+            case 2:
+                return page.addDouble(10.5);
+            case 3:
+                return page.addChar('c');
+            case 4:
+                return page.addBoolean(true);
+            case 5:
+                return page.addDataConstructor("constr", 1, new int[]{previousNode(1)});
+            case 6:
+                return page.addListConstructor(previousNode(1), previousNode(2));
+            case 7:
+                return page.addNull();
+            case 8:
+                return page.addLambda("func", 1, new int[]{previousNode(3)});
+            case 9:
+                return page.addIndirection(previousNode(1));
+            case 10:
+                return page.addVariable("var");
+            case 11:
+                return page.addType(previousNode(4), "type");
+            case 12:
+                return page.addWeak(previousNode(1));
+        }
+        return -1;
+    }
+
+    /**
+     * Add a node of a heap of Cheney's format at its new position, with its
+     * pointers relocated.
+     */
+    private int copyNode(Page[] heap, String[] cells, int node, int[] positions) {
+        Page page = heap[positions[node] / pageSize];
+        String value = cells[node].equals(MostlyCopyingGarbageCollector.NODE_NULL) ? null : cells[node + 1];
+        switch (cells[node]) {
+            case MostlyCopyingGarbageCollector.NODE_INT:
+                return page.addInteger(Integer.valueOf(value));
+            case MostlyCopyingGarbageCollector.NODE_DOUBLE:
+                return page.addDouble(Double.valueOf(value));
+            case MostlyCopyingGarbageCollector.NODE_CHAR:
+                return page.addChar(value.charAt(0));
+            case MostlyCopyingGarbageCollector.NODE_BOOL:
+                return page.addBoolean(Boolean.valueOf(value));
+            case MostlyCopyingGarbageCollector.NODE_CONSTR:
+            case MostlyCopyingGarbageCollector.NODE_LAMBDA:
+                int n = Integer.valueOf(cells[node + 2]);
+                int[] pointers = new int[n];
+                for (int i = 0; i < n; i++) {
+                    pointers[i] = positions[Integer.valueOf(cells[node + 3 + i])];
+                }
+                boolean constructor = cells[node].equals(MostlyCopyingGarbageCollector.NODE_CONSTR);
+                if (n + 3 > pageSize) {
+                    int firstPage = positions[node] / pageSize;
+                    return constructor ? Page.addLargeDataConstructor(heap, firstPage, value, pointers)
+                            : Page.addLargeLambda(heap, firstPage, value, pointers);
+                }
+                return constructor ? page.addDataConstructor(value, n, pointers) : page.addLambda(value, n, pointers);
+            case MostlyCopyingGarbageCollector.NODE_CONS:
+                return page.addListConstructor(positions[Integer.valueOf(value)],
+                        positions[Integer.valueOf(cells[node + 2])]);
+            case MostlyCopyingGarbageCollector.NODE_NULL:
+                return page.addNull();
+            case MostlyCopyingGarbageCollector.NODE_IND:
+                return page.addIndirection(positions[Integer.valueOf(value)]);
+            case MostlyCopyingGarbageCollector.NODE_VAR:
+                return page.addVariable(value);
+            case MostlyCopyingGarbageCollector.NODE_TYPE:
+                return page.addType(positions[Integer.valueOf(value)], cells[node + 2]);
+            default:
+                if (!value.equals(MostlyCopyingGarbageCollector.NODE_NULL)) {
+                    return page.addWeak(positions[Integer.valueOf(value)]);
+                }
+                int position = page.addWeak(0);                     //Cleared weak pointer
+                page.getMemory()[position % pageSize + 1] = MostlyCopyingGarbageCollector.NODE_NULL;
+                return position;
+        }
+    }
+
+    /**
+     * Size of a node of a heap of Cheney's format.
+     */
+    private static int cheneyNodeSize(String[] cells, int node) {
+        switch (cells[node]) {
+            case MostlyCopyingGarbageCollector.NODE_CONSTR:
+            case MostlyCopyingGarbageCollector.NODE_LAMBDA:
+                return Integer.valueOf(cells[node + 2]) + 3;
+            case MostlyCopyingGarbageCollector.NODE_CONS:
+            case MostlyCopyingGarbageCollector.NODE_TYPE:
+                return 3;
+            case MostlyCopyingGarbageCollector.NODE_NULL:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Position of the k-th previous inserted object.
+     */
+    private int previousNode(int k) {
+        return nodesPositions.get(Math.max(0, nodesPositions.size() - k));
+    }
+
     /**
      * Create pages with nodes.
      */
     private Page createAllocatedPage(int position, int pageKind) {
-        Page page = new Page(position);
+        Page page = new Page(position, pageSize);
         switch (pageKind) {
             case 0:
                 nodesPositions.add(page.addWeak(12));
@@ -108,7 +337,7 @@ public class BartlettHeapBuilder {
      * Create empty pages.
      */
     private Page createFreePage(int position) {
-        return new Page(position);
+        return new Page(position, pageSize);
     }
 
 
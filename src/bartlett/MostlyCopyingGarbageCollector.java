@@ -1,7 +1,11 @@
 package bartlett;
 
+import monitoring.GcEvent;
+import monitoring.GcListener;
+import util.IntList;
+
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -13,18 +17,32 @@ import java.util.List;
  * PHASE 1
  * Algorithm evacuates the root :
  *          Update page space to 1 (promotion).
- *          Add page to LinkedList.
+ *          Add page to the page queue.
  *          Update the root
  *
  * PHASE 2
- * Collector Scavenges the LinkedList:
- *          Traverse all the Pages in LinkList, evacuate the pages that are pointed.
+ * Collector Scavenges the page queue:
+ *          Traverse all the Pages in the page queue, evacuate the pages that are pointed.
  *          Do this until all the pages that are referenced by promoted objects have space == 1.
  *
  * PHASE 3
- * Update the weak pointers that have been promoted by traversing the Linked List.
- * Set the LinkedList as the next old memory.
- * Clear linkedList and reset the pointers.
+ * Update the weak pointers that have been promoted.
+ * Set the page queue as the next old memory.
+ * Clear the page queue and reset the pointers.
+ * The page queue maps every heap page to its position, so promotion and pointer
+ * relocation are O(1).
+ * Nodes larger than a page take a run of contiguous pages, the first page holds
+ * the node start and the others are continuation pages. A run is promoted as a
+ * whole, so the node stays contiguous in the new space.
+ *
+ * COMPACTING MODE
+ * With a compaction threshold, evacuateRoots first marks the live nodes to find
+ * the live cells of every page. Pages referenced by ambiguous roots are pinned
+ * and promoted as before. The other pages whose live cells are below threshold *
+ * pageSize are sparse: scavenge copies their live nodes one by one into fresh
+ * empty pages, which are added to the queue, and leaves a forwarding address in
+ * a side table. Only exact (heap) pointers reach a sparse page, so the nodes can
+ * move without losing the safety of the ambiguous roots.
  */
 public class MostlyCopyingGarbageCollector {
 
@@ -45,6 +63,7 @@ public class MostlyCopyingGarbageCollector {
 
     private Page[] heap;
     private int[] stack;
+    private final int pageSize;         //Cells of every page of the heap
     private int[] space;               //The space "attribute" associate with each page
 
     private int oldFirstPage;           //First page of the old space
@@ -53,12 +72,53 @@ public class MostlyCopyingGarbageCollector {
     private int newLastPage;            //Last page of the new space
     private int scan;                   //Pages that have been scavenged
     private int allocPages;             //Number of allocated pages in heap
-    private LinkedList<Page> queue;
+    private PageQueue queue;            //Promoted pages
+    private IntList weakNodes = new IntList();  //Weak nodes met by scavenge, as position in queue * pageSize + index in page
+    private List<GcListener> listeners = new ArrayList<>();
+    private GcEvent event = new GcEvent("Bartlett", 1);   //Measures of the collection until the old memory is cleared
+
+    private final double compactionThreshold;   //Live fraction below which a page is evacuated, 0 if not compacting
+    private int[] liveCellsInPage;              //Live cells of every page, found by the mark phase
+    private boolean[] sparse;                   //Pages whose live nodes are copied instead of promoting the page
+    private int[][] forwards;                   //New address of the copied nodes of a sparse page, by index in page
+    private IntList freePages = new IntList();  //Empty pages that receive the copied nodes
+    private int nextFreePage;                   //Position of the next fresh page in freePages
+    private int freshPage = -1;                 //Page that copied nodes are appended to
+
+    public int liveCells;                       //Live cells found by the mark phase
+    public int pagesPinned;                     //Pages promoted by the ambiguous roots
+    public int pagesEvacuated;                  //Sparse pages
+    public int objectsCopied;                   //Nodes copied out of sparse pages
+    public double fragmentationBefore;          //Free fraction of the pages that hold live cells, before the collection
+    public double fragmentationAfter;           //Free fraction of the pages that are kept, after the collection
 
+    /**
+     * Construct new collector, given the heap pages, the stack with roots and the
+     * number of allocated pages. The page size is the size of the heap pages, they
+     * must all have the same size.
+     */
     public MostlyCopyingGarbageCollector(Page[] heap, int[] stack, int allocPages) {
+        this(heap, stack, allocPages, 0);
+    }
+
+    /**
+     * Construct new collector in compacting mode.
+     *
+     * @param compactionThreshold Pages that are not pinned by an ambiguous root and whose
+     *                            live cells are below this fraction of the page are
+     *                            evacuated node by node into fresh pages. 0 disables it.
+     */
+    public MostlyCopyingGarbageCollector(Page[] heap, int[] stack, int allocPages, double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
         this.heap = heap;
         this.stack = stack;
         this.allocPages = allocPages;
+        this.pageSize = heap.length == 0 ? Page.DEFAULT_PAGE_SIZE : heap[0].getPageSize();
+        for (Page page : heap) {
+            if (page.getPageSize() != pageSize) {
+                throw new IllegalArgumentException("Pages of size " + page.getPageSize() + " and " + pageSize + " in the same heap");
+            }
+        }
         init();
     }
 
@@ -67,7 +127,7 @@ public class MostlyCopyingGarbageCollector {
      */
     private void init() {
         this.space = new int[heap.length];          //initialized with zeros that indicate the page belongs to old space
-        queue = new LinkedList<>();                 //initialize the linked list that promoted pages will added to its tail.
+        queue = new PageQueue(heap.length);         //initialize the queue that promoted pages will added to its tail.
 
         //init useful variables
         oldFirstPage = 0;
@@ -77,43 +137,84 @@ public class MostlyCopyingGarbageCollector {
 
     }
 
+    public int getPageSize() {
+        return pageSize;
+    }
+
     /**
      * Find first memory cell of page.
      */
     public int pageToCp(int pageIndex) {
-        return pageIndex * Page.PAGE_SIZE;
+        return pageIndex * pageSize;
     }
 
     /**
      * Find page from pointer value.
      */
     public int cpToPage(int cpIndex) {
-        return cpIndex / Page.PAGE_SIZE;
+        return cpIndex / pageSize;
     }
 
     /**
-     * Evacuate the roots, checks for ambiguous roots.
+     * Resolve a pointer, that may point inside an object, to the start of the object.
+     *
+     * @return The pointer to the first cell of the object, or -1 if the pointer
+     * does not point to an object.
+     */
+    public int findObjectStart(int pointerValue) {
+        if (pointerValue < 0 || pointerValue >= heap.length * pageSize) {
+            return -1;
+        }
+        int pageIndex = cpToPage(pointerValue);
+        Page page = heap[pageIndex];
+        int indexInPage = page.findObjectStart(pointerValue % pageSize);
+        if (indexInPage < 0 && pointerValue % pageSize < page.getRunCells()) {
+            return pageToCp(pageIndex - page.getRunOffset());     //Inside a large object
+        }
+        return indexInPage < 0 ? -1 : pointerValue - pointerValue % pageSize + indexInPage;
+    }
+
+    /**
+     * Evacuate the roots, checks for ambiguous roots. A root that points inside
+     * an object keeps the object alive, its page is promoted without moving the
+     * object, so the root keeps its offset in the page.
      */
     public void evacuateRoots() {
+        long start = System.nanoTime();
+        if (!listeners.isEmpty() && queue.isEmpty()) {
+            for (Page p : heap) {
+                event.cellsInUse += p.getUsedSpace();
+            }
+        }
+        if (compactionThreshold > 0 && queue.isEmpty()) {
+            markLiveNodes();
+        }
         for (int i = 0; i < stack.length; i++) {
             int pageIndex = cpToPage(stack[i]);     //Find page index
             if (checkAmbiguousRoot(stack[i])) {
                 int posInQueue = evacuate(pageIndex);   //Evacuate page
-                stack[i] = (posInQueue * Page.PAGE_SIZE) + (stack[i] % Page.PAGE_SIZE); //Update Root
+                stack[i] = (posInQueue * pageSize) + (stack[i] % pageSize); //Update Root
             }
         }
+        if (compactionThreshold > 0) {
+            findSparsePages();
+        }
+        event.evacuateRootsNanos += System.nanoTime() - start;
     }
 
     /**
      * Traverse the heap, and scavenge every node that
-     * belongs to promoted page.
+     * belongs to promoted page. The nodes are found from the
+     * object start bitmap of the page, so payload cells are never
+     * mistaken for tags.
      */
     public void scavenge() {
+        long start = System.nanoTime();
         for (int i = scan; i < queue.size(); i++) {
             Page p = queue.get(i);
             String[] pageMemory = p.getMemory();
 
-            for (int j = 0; j < pageMemory.length; j++) {
+            for (int j = p.nextObjectStart(0); j >= 0; j = p.nextObjectStart(j + 1)) {
                 switch (pageMemory[j]) {
                     case NODE_INT:
                         /**Do nothing*/
@@ -128,7 +229,7 @@ public class MostlyCopyingGarbageCollector {
                         /**Do nothing*/
                         break;
                     case NODE_CONSTR:
-                        scavengeUnknownSizeNode(p, j);
+                        scavengeNodeOfAnySize(p, i, j);
                         break;
                     case NODE_CONS:
                         scavengeListConstructorNode(p, j);
@@ -136,7 +237,7 @@ public class MostlyCopyingGarbageCollector {
                     case NODE_NULL:
                         break;
                     case NODE_LAMBDA:
-                        scavengeUnknownSizeNode(p, j);
+                        scavengeNodeOfAnySize(p, i, j);
                         break;
                     case NODE_IND:
                         scavengeUniquePointerNode(p, j);
@@ -148,38 +249,81 @@ public class MostlyCopyingGarbageCollector {
                         scavengeUniquePointerNode(p, j);
                         break;
                     case NODE_WEAK:
-                        /**Do nothing, weak pointer cannot evacuates a node*/
+                        /**Weak pointer cannot evacuates a node, it is updated at the end*/
+                        weakNodes.add(i * pageSize + j);
                         break;
                 }
             }
             scan++;
         }
+        long scavenged = System.nanoTime();
+        event.scavengeNanos += scavenged - start;
         updateWeakPointers();
+        event.updateWeakPointersNanos += System.nanoTime() - scavenged;
     }
 
     /**
      * Copy the queue to the heap.
      */
     public void copyToNewSpace() {
+        long start = System.nanoTime();
         int i = 0;
         for (Page p : queue) {
             heap[i] = p;
             i++;
         }
+        event.copyToNewSpaceNanos += System.nanoTime() - start;
     }
 
     /**
-     * Clear the unpromoted pages.
+     * Clear the unpromoted pages. This ends the collection, the listeners
+     * get its measures.
      */
     public void clearOldMemory() {
+        long start = System.nanoTime();
         //Need to created new Page objects to the new memory space.
         for (int i = queue.size(); i < heap.length; i++) {
-            heap[i] = new Page(i);
+            heap[i] = new Page(i, pageSize);
         }
-        queue.clear();                  //Clear Linked List
+        event.pagesPromoted = queue.size();
+        event.objectsCopied = objectsCopied;
+        for (Page p : queue) {
+            event.cellsCopied += p.getUsedSpace();
+        }
+        if (compactionThreshold > 0) {
+            fragmentationAfter = queue.isEmpty() ? 0 : 1 - (double) liveCells / (queue.size() * pageSize);
+            sparse = null;
+            forwards = null;
+            freshPage = -1;
+        }
+        queue.clear();                  //Clear the queue
         Arrays.fill(space, OLD_SPACE);  //Reset all the page space flags.
         scan = 0;
+        event.clearOldMemoryNanos += System.nanoTime() - start;
+
+        for (GcListener listener : listeners) {
+            listener.onCollection(event);
+        }
+        event = new GcEvent("Bartlett", event.cycle + 1);
+    }
+
+    /**
+     * Replace the stack of the next collection, used by the allocator to add
+     * the pointers of the node it allocates as roots.
+     */
+    void setStack(int[] stack) {
+        this.stack = stack;
+    }
+
+    /**
+     * Add a listener of the collections, it is called when the old memory is cleared.
+     */
+    public void addListener(GcListener listener) {
+        listeners.add(listener);
+    }
 
+    public void removeListener(GcListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -188,7 +332,7 @@ public class MostlyCopyingGarbageCollector {
     public void printHeap() {
         if (heap != null) {
             System.out.println("HEAP : ");
-            System.out.println("PAGE SIZE : " + Page.PAGE_SIZE);
+            System.out.println("PAGE SIZE : " + pageSize);
             for (int i = 0; i < heap.length; i++) {
 
                 System.out.println("    PAGE " + i + " -> " + Arrays.toString(heap[i].getMemory()));
@@ -204,7 +348,7 @@ public class MostlyCopyingGarbageCollector {
     }
 
     /**
-     * Print the linkedList, named queue which holds
+     * Print the page queue, named queue which holds
      * the promoted pages. A page is identified as
      * promoted if space array has 1 instead of zero
      * at page index.
@@ -220,6 +364,17 @@ public class MostlyCopyingGarbageCollector {
         }
     }
 
+    /**
+     * Print the measures of the compacting mode.
+     */
+    public void printFragmentation() {
+        System.out.println("LIVE CELLS     : " + liveCells);
+        System.out.println("PAGES PINNED   : " + pagesPinned + ", EVACUATED : " + pagesEvacuated
+                + ", NODES COPIED : " + objectsCopied);
+        System.out.printf("FRAGMENTATION  : %.1f%% before, %.1f%% after%n",
+                100 * fragmentationBefore, 100 * fragmentationAfter);
+    }
+
     /**
      * Print the space array.
      */
@@ -230,15 +385,19 @@ public class MostlyCopyingGarbageCollector {
     /**
      * Evacuate/promote the page because of the referenced object inside it.
      * DO NOT copy anything just update space bit that is associated
-     * with the page in the space array.
+     * with the page in the space array. The pages of a large object are
+     * promoted together, so they stay contiguous in the queue.
      */
     private int evacuate(int pageIndex) {
         if (!(space[pageIndex] == NEW_SPACE)) {
-            space[pageIndex] = NEW_SPACE;           //Instead of copying it change the page space
-            queue.add(heap[pageIndex]);             //Add page to queue
-            return queue.size() - 1;
+            int firstPage = pageIndex - heap[pageIndex].getRunOffset();
+            int lastPage = firstPage + heap[firstPage].getRunLength();
+            for (int i = firstPage; i < lastPage; i++) {
+                space[i] = NEW_SPACE;               //Instead of copying it change the page space
+                queue.add(i, heap[i]);              //Add page to queue
+            }
         }
-        return queue.indexOf(heap[pageIndex]);
+        return queue.positionOf(pageIndex);
 
     }
 
@@ -247,16 +406,7 @@ public class MostlyCopyingGarbageCollector {
      * which they belong (if it is not promoted), and update the pointer.
      */
     private void scavengeUniquePointerNode(Page p, int indexInPageMemory) {
-        String[] pageMemory = p.getMemory();
-        int pageIndex;
-        int pointerPosInPage = indexInPageMemory + 1;
-        int pointerValue = Integer.valueOf(pageMemory[pointerPosInPage]);
-        if (space[cpToPage(pointerValue)] != NEW_SPACE) {
-            pageIndex = cpToPage(pointerValue);
-            evacuate(pageIndex);
-            promotePage(cpToPage(pointerValue));
-        }
-        updatePointer(pageMemory, pointerPosInPage, pointerValue);
+        scavengePointer(p.getMemory(), indexInPageMemory + 1);
     }
 
     /**
@@ -264,28 +414,20 @@ public class MostlyCopyingGarbageCollector {
      */
     private void scavengeListConstructorNode(Page p, int indexInPageMemory) {
         String[] pageMemory = p.getMemory();
-        int pageIndex;
-        int pointer1PosInPage = indexInPageMemory + 1;
-        int pointer2PosInPage = indexInPageMemory + 2;
-        int pointerValue1 = Integer.valueOf(pageMemory[pointer1PosInPage]);
-        int pointerValue2 = Integer.valueOf(pageMemory[pointer1PosInPage]);
-
-        //First Pointer
-        if (space[cpToPage(pointerValue1)] != NEW_SPACE) {
-
-            pageIndex = cpToPage(pointerValue1);
-            evacuate(pageIndex);
-            promotePage(cpToPage(pointerValue2));
-        }
-        updatePointer(pageMemory, pointer1PosInPage, pointerValue1);
+        scavengePointer(pageMemory, indexInPageMemory + 1);     //First Pointer
+        scavengePointer(pageMemory, indexInPageMemory + 2);     //Second Pointer
+    }
 
-        //Second Pointer
-        if (space[cpToPage(pointerValue2)] != NEW_SPACE) {
-            pageIndex = cpToPage(pointerValue2);
-            evacuate(pageIndex);
-            promotePage(cpToPage(pointerValue2));
+    /**
+     * Scavenge DataConstructor and Lambda nodes, the node may be a large
+     * object that starts at the page in the given queue position.
+     */
+    private void scavengeNodeOfAnySize(Page p, int posInQueue, int indexInPageMemory) {
+        if (p.getRunLength() > 1) {
+            scavengeLargeNode(posInQueue);
+        } else {
+            scavengeUnknownSizeNode(p, indexInPageMemory);
         }
-        updatePointer(pageMemory, pointer2PosInPage, pointerValue2);
     }
 
     /**
@@ -293,68 +435,237 @@ public class MostlyCopyingGarbageCollector {
      */
     private void scavengeUnknownSizeNode(Page p, int indexInPageMemory) {
         String[] pageMemory = p.getMemory();
-        int pageIndex;
-        int numberOfPointers = Integer.valueOf(pageMemory[2]);
+        int numberOfPointers = Integer.valueOf(pageMemory[indexInPageMemory + 2]);
         for (int i = 0; i < numberOfPointers; i++) {
-            int pointerPosInPage = indexInPageMemory + 3 + i;
-            int pointerValue = Integer.valueOf(pageMemory[pointerPosInPage]);
-            if (space[cpToPage(pointerValue)] != NEW_SPACE) {
-                pageIndex = cpToPage(pointerValue);
-                evacuate(pageIndex);
-                promotePage(cpToPage(pointerValue));
+            scavengePointer(pageMemory, indexInPageMemory + 3 + i);
+        }
+    }
+
+    /**
+     * Scavenge a DataConstructor or Lambda node that spans the run of pages
+     * starting at the given queue position. Cell k of the node is in page
+     * posInQueue + k / pageSize of the queue.
+     */
+    private void scavengeLargeNode(int posInQueue) {
+        int numberOfPointers = Integer.valueOf(queue.get(posInQueue + 2 / pageSize).getMemory()[2 % pageSize]);
+        for (int i = 0; i < numberOfPointers; i++) {
+            int cell = 3 + i;
+            scavengePointer(queue.get(posInQueue + cell / pageSize).getMemory(), cell % pageSize);
+        }
+    }
+
+    /**
+     * Promote the page of the node that a pointer cell references, and update the pointer.
+     * A node of a sparse page is copied instead.
+     */
+    private void scavengePointer(String[] pageMemory, int pointerPosInPage) {
+        int pointerValue = Integer.valueOf(pageMemory[pointerPosInPage]);
+        if (sparse != null) {
+            int newLocation = sparse[cpToPage(pointerValue)] ? copyNode(pointerValue) : forwardedLocation(pointerValue);
+            if (newLocation >= 0) {
+                pageMemory[pointerPosInPage] = String.valueOf(newLocation);
+                return;
             }
-            updatePointer(pageMemory, pointerPosInPage, pointerValue);
         }
+        if (space[cpToPage(pointerValue)] != NEW_SPACE) {
+            evacuate(cpToPage(pointerValue));
+            promotePage(cpToPage(pointerValue));
+        }
+        updatePointer(pageMemory, pointerPosInPage, pointerValue);
     }
 
     /**
      * This is the last  phase of the algorithm before clearing. The weakpointers
      * that belong to a promoted page are part of the live objects. Their value
-     * will be updated to refer to the live object.
+     * will be updated to refer to the live object, or set to NULL if its page
+     * was not promoted. Only the weak nodes met by scavenge are visited.
      */
     private void updateWeakPointers() {
-        for (Page p : heap) {
-            String[] pageMemory = p.getMemory();
-            for (int i = 0; i < Page.PAGE_SIZE; i++) {
-                if (pageMemory[i].equals(NODE_WEAK)) {
-                    int pointerValue = Integer.valueOf(pageMemory[i + 1]);
-                    if (space[cpToPage(pointerValue)] == 1) {    //If points to a promoted page, update the pointer
-                        updatePointer(pageMemory, i + 1, pointerValue);
-                    }
-                }
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int weakNode = weakNodes.get(i);
+            String[] pageMemory = queue.get(weakNode / pageSize).getMemory();
+            int pointerPosInPage = weakNode % pageSize + 1;
+            if (pageMemory[pointerPosInPage].equals(NODE_NULL)) {
+                continue;                                       //Object was collected by a previous collection
+            }
+            int pointerValue = Integer.valueOf(pageMemory[pointerPosInPage]);
+            int forwarded = forwardedLocation(pointerValue);
+            if (forwarded >= 0) {                               //If points to a copied node, use its copy
+                pageMemory[pointerPosInPage] = String.valueOf(forwarded);
+                event.weakPointersUpdated++;
+            } else if (space[cpToPage(pointerValue)] == NEW_SPACE) {    //If points to a promoted page, update the pointer
+                updatePointer(pageMemory, pointerPosInPage, pointerValue);
+                event.weakPointersUpdated++;
+            } else {
+                pageMemory[pointerPosInPage] = NODE_NULL;       //The object it points has been collected
+                event.weakPointersCleared++;
             }
         }
+        weakNodes.clear();
     }
 
     /**
      * Updates the pointer using the page location that it references in the
-     * linked list (queue).
+     * page queue.
      */
     private void updatePointer(String[] pageMemory, int pointerPosInPage, int pointerValue) {
-        pageMemory[pointerPosInPage] = String.valueOf(queue.indexOf(heap[cpToPage(pointerValue)]) //Update the pointer so it points to a promoted page
-                * Page.PAGE_SIZE + Integer.valueOf(pageMemory[pointerPosInPage]) % Page.PAGE_SIZE); //Use the position in LinkedList to identify the new page location
+        pageMemory[pointerPosInPage] = String.valueOf(queue.positionOf(cpToPage(pointerValue)) //Update the pointer so it points to a promoted page
+                * pageSize + Integer.valueOf(pageMemory[pointerPosInPage]) % pageSize); //Use the position in the queue to identify the new page location
     }
 
     /**
      * Checks for ambiguous root.
-     * If root points to an objects is considered as root.
+     * If root points to a cell of an object is considered as root, the
+     * object start bitmap of the page is tested instead of the cell value.
      */
     private boolean checkAmbiguousRoot(int pointerValue) {
-        boolean isRoot = false;
-        List<String> nodes = Arrays.asList(NODE_INT, NODE_DOUBLE, NODE_CHAR, NODE_BOOL,
-                NODE_CONSTR, NODE_CONS, NODE_NULL, NODE_LAMBDA, NODE_IND, NODE_VAR,
-                NODE_TYPE, NODE_WEAK);
-        try {
-            if (nodes.contains(heap[cpToPage(pointerValue)].getMemory()[pointerValue % Page.PAGE_SIZE])) {
-                isRoot = true;
-            } else {
-                isRoot = false;
+        return findObjectStart(pointerValue) >= 0;
+    }
+
+    /**
+     * Mark the nodes reachable from the stack through strong pointers, and count
+     * the live cells of every page. Ambiguous roots are resolved as in evacuateRoots.
+     */
+    private void markLiveNodes() {
+        long[] marks = new long[(heap.length * pageSize + 63) >>> 6];
+        liveCellsInPage = new int[heap.length];
+        IntList gray = new IntList();
+        for (int root : stack) {
+            markNode(findObjectStart(root), marks, gray);
+        }
+        liveCells = 0;
+        while (!gray.isEmpty()) {
+            int node = gray.pop();
+            int pageIndex = cpToPage(node);
+            Page page = heap[pageIndex];
+            int size = page.getNodeSize(node % pageSize);
+            liveCells += size;
+            for (int cells = size, i = pageIndex; cells > 0; cells -= pageSize, i++) {
+                liveCellsInPage[i] += Math.min(cells, pageSize);    //The cells of a large node are in its run
+            }
+            switch (cell(node)) {
+                case NODE_CONSTR:
+                case NODE_LAMBDA:
+                    int numberOfPointers = Integer.valueOf(cell(node + 2));
+                    for (int i = 0; i < numberOfPointers; i++) {
+                        markNode(findObjectStart(Integer.valueOf(cell(node + 3 + i))), marks, gray);
+                    }
+                    break;
+                case NODE_CONS:
+                    markNode(findObjectStart(Integer.valueOf(cell(node + 1))), marks, gray);
+                    markNode(findObjectStart(Integer.valueOf(cell(node + 2))), marks, gray);
+                    break;
+                case NODE_IND:
+                case NODE_TYPE:
+                    markNode(findObjectStart(Integer.valueOf(cell(node + 1))), marks, gray);
+                    break;
+                default:                                        //No strong pointers
+                    break;
             }
-        } catch (IndexOutOfBoundsException e) {
-            //pointer does not contain pointer for sure...
         }
 
-        return isRoot;
+        int pagesWithLiveCells = 0;
+        for (int live : liveCellsInPage) {
+            if (live > 0) {
+                pagesWithLiveCells++;
+            }
+        }
+        fragmentationBefore = pagesWithLiveCells == 0 ? 0 : 1 - (double) liveCells / (pagesWithLiveCells * pageSize);
+    }
+
+    private void markNode(int node, long[] marks, IntList gray) {
+        if (node >= 0 && (marks[node >>> 6] & (1L << node)) == 0) {
+            marks[node >>> 6] |= 1L << node;
+            gray.add(node);
+        }
+    }
+
+    /**
+     * Cell of the heap, before the collection moves pages.
+     */
+    private String cell(int pointerValue) {
+        return heap[cpToPage(pointerValue)].getMemory()[pointerValue % pageSize];
+    }
+
+    /**
+     * After the roots pinned their pages, choose the sparse pages and the empty
+     * pages that will receive their nodes.
+     */
+    private void findSparsePages() {
+        sparse = new boolean[heap.length];
+        forwards = new int[heap.length][];
+        freePages.clear();
+        nextFreePage = 0;
+        pagesPinned = queue.size();
+        pagesEvacuated = 0;
+        objectsCopied = 0;
+        for (int i = 0; i < heap.length; i++) {
+            Page page = heap[i];
+            if (space[i] == NEW_SPACE || page.getRunLength() > 1 || page.isContinuation()) {
+                continue;
+            }
+            if (page.getUsedSpace() == 0) {
+                freePages.add(i);
+            } else if (liveCellsInPage[i] > 0 && liveCellsInPage[i] < compactionThreshold * pageSize) {
+                sparse[i] = true;
+                pagesEvacuated++;
+            }
+        }
+    }
+
+    /**
+     * Copy a node of a sparse page to the fresh page, unless it has been copied.
+     *
+     * @return The pointer to the copy, as position in queue * pageSize + index
+     * in page, or -1 if there is no empty page left.
+     */
+    private int copyNode(int pointerValue) {
+        int forwarded = forwardedLocation(pointerValue);
+        if (forwarded >= 0) {
+            return forwarded;
+        }
+        int pageIndex = cpToPage(pointerValue);
+        Page page = heap[pageIndex];
+        int node = page.findObjectStart(pointerValue % pageSize);
+        int size = page.getNodeSize(node);
+
+        //A fresh page that has been scavenged can not receive nodes any more
+        int indexInFresh = freshPage < 0 || queue.positionOf(freshPage) < scan ? -1
+                : heap[freshPage].addCopy(page, node, size);
+        if (indexInFresh < 0) {
+            if (nextFreePage == freePages.size()) {
+                sparse[pageIndex] = false;                      //Promote the page instead
+                pagesEvacuated--;
+                return -1;
+            }
+            freshPage = freePages.get(nextFreePage++);
+            evacuate(freshPage);
+            indexInFresh = heap[freshPage].addCopy(page, node, size);
+        }
+
+        if (forwards[pageIndex] == null) {
+            forwards[pageIndex] = new int[pageSize];
+            Arrays.fill(forwards[pageIndex], -1);
+        }
+        int newLocation = queue.positionOf(freshPage) * pageSize + indexInFresh;
+        forwards[pageIndex][node] = newLocation;
+        objectsCopied++;
+        return newLocation + pointerValue % pageSize - node;
+    }
+
+    /**
+     * The location of the copy of the node that a pointer references.
+     *
+     * @return The pointer to the copy, or -1 if the node has not been copied.
+     */
+    private int forwardedLocation(int pointerValue) {
+        if (forwards == null || forwards[cpToPage(pointerValue)] == null) {
+            return -1;
+        }
+        Page page = heap[cpToPage(pointerValue)];
+        int node = page.findObjectStart(pointerValue % pageSize);
+        int newLocation = forwards[cpToPage(pointerValue)][node];
+        return newLocation < 0 ? -1 : newLocation + pointerValue % pageSize - node;
     }
 
     private void promotePage(int pageIndex) {
@@ -18,23 +18,37 @@ public class Page {
     private static final int TYPE_SIZE = 3;
     private static final int WEAK_SIZE = 2;
 
-    public static int PAGE_SIZE = 4;    //Default page size
+    public static final int DEFAULT_PAGE_SIZE = 4;  //Page size of heaps that do not choose one
 
 
+    private final int pageSize;             //Cells of the page, the same for every page of a heap
     private String[] memory;
     private int next;                       //Page Next free cell, "consp" in Barlett's paper
     private int freeSpace;                  //Page number of free cells, "conscnt" in Barlett's paper
     private int pageLocation;               //Page Location is its sequence number in page, it is neaded
     // only to construct page its value will NOT be updated!
+    private long[] objectStarts;            //Bitmap with a bit set at the first cell of every node
+    private int runLength = 1;              //Pages of the large object that starts in this page
+    private int runOffset;                  //Distance from the first page of the run, 0 if not a continuation page
+    private int runCells;                   //Cells of a continuation page that belong to the large object
 
 
     /**
-     * Construct ew page, given its initial location in heap.
+     * Construct ew page of the default size, given its initial location in heap.
      */
     public Page(int pageLocation) {
-        this.memory = new String[PAGE_SIZE];
+        this(pageLocation, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Construct ew page, given its initial location in heap and its size.
+     */
+    public Page(int pageLocation, int pageSize) {
+        this.pageSize = pageSize;
+        this.memory = new String[pageSize];
         this.pageLocation = pageLocation;
-        freeSpace = PAGE_SIZE;
+        freeSpace = pageSize;
+        objectStarts = new long[(pageSize + 63) >>> 6];
         Arrays.fill(memory, "NIL");
     }
 
@@ -50,7 +64,8 @@ public class Page {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_INT;
             memory[next++] = String.valueOf(value);
             freeSpace -= INT_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -66,7 +81,8 @@ public class Page {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_DOUBLE;
             memory[next++] = String.valueOf(value);
             freeSpace -= DOUBLE_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -82,7 +98,8 @@ public class Page {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_CHAR;
             memory[next++] = String.valueOf(value);
             freeSpace -= CHAR_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -98,7 +115,8 @@ public class Page {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_BOOL;
             memory[next++] = String.valueOf(value);
             freeSpace -= BOOL_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -112,7 +130,7 @@ public class Page {
      */
     public int addDataConstructor(String constructor, int n, int[] pointerValues) {
         int nodePositionInPage = next;
-        if (CONS_SIZE <= freeSpace) {
+        if (n + 3 <= freeSpace) {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_CONSTR;
             memory[next++] = constructor;
             memory[next++] = String.valueOf(n);
@@ -120,7 +138,8 @@ public class Page {
                 memory[next++] = String.valueOf(pointer);
             }
             freeSpace -= n + 3;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -138,7 +157,8 @@ public class Page {
             memory[next++] = String.valueOf(pointerValue1);
             memory[next++] = String.valueOf(pointerValue2);
             freeSpace -= CONS_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
 
@@ -152,7 +172,8 @@ public class Page {
         if (NULL_SIZE <= freeSpace) {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_NULL;
             freeSpace -= NULL_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -174,7 +195,8 @@ public class Page {
                 memory[next++] = String.valueOf(pointer);
             }
             freeSpace -= n + 3;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -190,7 +212,8 @@ public class Page {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_IND;
             memory[next++] = String.valueOf(pointerValue);
             freeSpace -= IND_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
 
         return -1;
@@ -207,7 +230,8 @@ public class Page {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_VAR;
             memory[next++] = variable;
             freeSpace -= VAR_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -225,7 +249,8 @@ public class Page {
             memory[next++] = String.valueOf(pointerValue);
             memory[next++] = type;
             freeSpace -= TYPE_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
         }
         return -1;
     }
@@ -241,17 +266,225 @@ public class Page {
             memory[next++] = MostlyCopyingGarbageCollector.NODE_WEAK;
             memory[next++] = String.valueOf(pointerValue);
             freeSpace -= WEAK_SIZE;
-            return pageLocation * PAGE_SIZE + nodePositionInPage;
+            markObjectStart(nodePositionInPage);
+            return pageLocation * pageSize + nodePositionInPage;
+        }
+        return -1;
+    }
+
+    /**
+     * Add a data constructor node that does not fit in a page. The node takes
+     * a run of contiguous empty pages, starting at firstPage.
+     *
+     * @param heap          The heap pages.
+     * @param firstPage     Index of the first page of the run.
+     * @param constructor   Value constructor which is represented as String.
+     * @param pointerValues Pointer values.
+     * @return The pointer to the node, or -1 if the pages are not empty.
+     */
+    public static int addLargeDataConstructor(Page[] heap, int firstPage, String constructor, int[] pointerValues) {
+        return addLargeNode(heap, firstPage, MostlyCopyingGarbageCollector.NODE_CONSTR, constructor, pointerValues);
+    }
+
+    /**
+     * Add a lambda function node that does not fit in a page. The node takes
+     * a run of contiguous empty pages, starting at firstPage.
+     *
+     * @param heap          The heap pages.
+     * @param firstPage     Index of the first page of the run.
+     * @param function      Function identifier which is represented as String.
+     * @param pointerValues Pointer values.
+     * @return The pointer to the node, or -1 if the pages are not empty.
+     */
+    public static int addLargeLambda(Page[] heap, int firstPage, String function, int[] pointerValues) {
+        return addLargeNode(heap, firstPage, MostlyCopyingGarbageCollector.NODE_LAMBDA, function, pointerValues);
+    }
+
+    /**
+     * Number of pages of the given page size that a node of the given size takes.
+     */
+    public static int pagesFor(int size, int pageSize) {
+        return (size + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * Write the cells of the node one after the other in the pages of the run.
+     * The first page holds the node start, the others are continuation pages.
+     * The free cells at the end of the last page can be used by small nodes.
+     */
+    private static int addLargeNode(Page[] heap, int firstPage, String tag, String name, int[] pointerValues) {
+        if (firstPage < 0 || firstPage >= heap.length) {
+            return -1;
+        }
+        int pageSize = heap[firstPage].pageSize;
+        int size = pointerValues.length + 3;
+        int pages = pagesFor(size, pageSize);
+        if (firstPage + pages > heap.length) {
+            return -1;
+        }
+        for (int i = firstPage; i < firstPage + pages; i++) {
+            if (heap[i].next != 0 || heap[i].runOffset != 0 || heap[i].pageSize != pageSize) {
+                return -1;
+            }
+        }
+
+        String[] cells = new String[size];
+        cells[0] = tag;
+        cells[1] = name;
+        cells[2] = String.valueOf(pointerValues.length);
+        for (int i = 0; i < pointerValues.length; i++) {
+            cells[i + 3] = String.valueOf(pointerValues[i]);
+        }
+        for (int i = 0; i < pages; i++) {
+            Page page = heap[firstPage + i];
+            int length = Math.min(pageSize, size - i * pageSize);
+            System.arraycopy(cells, i * pageSize, page.memory, 0, length);
+            page.next = length;
+            page.freeSpace = pageSize - length;
+            page.runOffset = i;
+            page.runCells = i == 0 ? 0 : length;
+        }
+        Page head = heap[firstPage];
+        head.runLength = pages;
+        head.markObjectStart(0);
+        return head.pageLocation * pageSize;
+    }
+
+    /**
+     * Number of pages of the large object that starts in this page, 1 for
+     * pages of small objects.
+     */
+    public int getRunLength() {
+        return runLength;
+    }
+
+    /**
+     * Distance of a continuation page from the first page of its large object.
+     */
+    public int getRunOffset() {
+        return runOffset;
+    }
+
+    /**
+     * Number of cells, from the start of a continuation page, that belong
+     * to the large object.
+     */
+    public int getRunCells() {
+        return runCells;
+    }
+
+    public boolean isContinuation() {
+        return runOffset > 0;
+    }
+
+    /**
+     * Number of cells of the node that starts at the given cell of the page,
+     * the cells of a large node continue in the next pages.
+     */
+    public int getNodeSize(int indexInPage) {
+        switch (memory[indexInPage]) {
+            case MostlyCopyingGarbageCollector.NODE_CONSTR:
+            case MostlyCopyingGarbageCollector.NODE_LAMBDA:
+                return Integer.valueOf(memory[indexInPage + 2]) + 3;
+            case MostlyCopyingGarbageCollector.NODE_CONS:
+                return CONS_SIZE;
+            case MostlyCopyingGarbageCollector.NODE_TYPE:
+                return TYPE_SIZE;
+            case MostlyCopyingGarbageCollector.NODE_NULL:
+                return NULL_SIZE;
+            default:
+                return INT_SIZE;
+        }
+    }
+
+    /**
+     * Append a copy of a node of another page, used by the compacting collector.
+     *
+     * @return The position of the copy in this page, or -1 if it does not fit.
+     */
+    int addCopy(Page from, int indexInPage, int size) {
+        int nodePositionInPage = next;
+        if (size <= freeSpace) {
+            System.arraycopy(from.memory, indexInPage, memory, next, size);
+            next += size;
+            freeSpace -= size;
+            markObjectStart(nodePositionInPage);
+            return nodePositionInPage;
         }
         return -1;
     }
 
+    private void markObjectStart(int indexInPage) {
+        objectStarts[indexInPage >>> 6] |= 1L << indexInPage;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
     public String[] getMemory() {
         return memory;
     }
 
+    /**
+     * Number of cells of the page that hold nodes.
+     */
+    public int getUsedSpace() {
+        return memory.length - freeSpace;
+    }
+
     public void clearPageMemory() {
         Arrays.fill(memory, null);
+        Arrays.fill(objectStarts, 0L);
+    }
+
+    /**
+     * Checks if a node starts at the given cell of the page.
+     */
+    public boolean isObjectStart(int indexInPage) {
+        return indexInPage >= 0 && indexInPage < next
+                && (objectStarts[indexInPage >>> 6] & (1L << indexInPage)) != 0;
+    }
+
+    /**
+     * Find the node that contains the given cell of the page.
+     *
+     * @return The first cell of the node, or -1 if the cell is not part of a node.
+     */
+    public int findObjectStart(int indexInPage) {
+        if (indexInPage < 0 || indexInPage >= next) {
+            return -1;
+        }
+        int word = indexInPage >>> 6;
+        long bits = objectStarts[word] & (-1L >>> (63 - (indexInPage & 63)));  //Bits up to the cell
+        while (bits == 0) {
+            if (--word < 0) {
+                return -1;
+            }
+            bits = objectStarts[word];
+        }
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Find the first node that starts at or after the given cell of the page.
+     *
+     * @return The first cell of the node, or -1 if there is no such node.
+     */
+    public int nextObjectStart(int indexInPage) {
+        if (indexInPage >= next) {
+            return -1;
+        }
+        int word = indexInPage >>> 6;
+        long bits = objectStarts[word] & (-1L << indexInPage);  //Bits from the cell
+        while (bits == 0) {
+            if (++word == objectStarts.length) {
+                return -1;
+            }
+            bits = objectStarts[word];
+        }
+        int start = (word << 6) + Long.numberOfTrailingZeros(bits);
+        return start < next ? start : -1;
     }
 
     public int getPageLocation() {
@@ -263,13 +496,28 @@ public class Page {
     }
 
     public void displayPage(int queueIndex) {
-        System.out.println("    PAGE SIZE     -> " + PAGE_SIZE);
+        System.out.println("    PAGE SIZE     -> " + pageSize);
         System.out.println("    FREE SPACE    -> " + freeSpace);
         System.out.println("    INDEX IN HEAP -> " + pageLocation);
         System.out.println("    INDEX IN LIST -> " + queueIndex);
         System.out.println("    MEMORY        ->" + Arrays.toString(memory) + "\n");
     }
 
+    /**
+     * Deep copy of the page, the copy has its own memory.
+     */
+    public Page copy() {
+        Page page = new Page(pageLocation, pageSize);
+        System.arraycopy(memory, 0, page.memory, 0, memory.length);
+        System.arraycopy(objectStarts, 0, page.objectStarts, 0, objectStarts.length);
+        page.next = next;
+        page.freeSpace = freeSpace;
+        page.runLength = runLength;
+        page.runOffset = runOffset;
+        page.runCells = runCells;
+        return page;
+    }
+
     @Override
     protected Object clone() throws CloneNotSupportedException {
         return super.clone();
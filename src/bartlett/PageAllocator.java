@@ -0,0 +1,360 @@
+package bartlett;
+
+import monitoring.GcListener;
+import util.IntList;
+
+import java.util.Arrays;
+
+/**
+ * Mutator-facing allocator over the pages of a Bartlett heap. Nodes are bump
+ * allocated in the current page (the next free cell of the page). When the node
+ * does not fit, the next page of the free-page list becomes the current page,
+ * and when the list is empty the heap is collected by the mostly copying
+ * collector. The free-page list is rebuilt after the old memory is cleared,
+ * it holds the empty pages of the heap in ascending order.
+ * <p>
+ * Nodes larger than a page take a run of contiguous free pages.
+ * <p>
+ * Allocations may collect and move nodes. The pointers that are given to an
+ * allocation method are roots of the collection and they are updated, any other
+ * pointer kept by the mutator outside the stack is not valid after an allocation.
+ */
+public class PageAllocator {
+
+    private Page[] heap;
+    private int[] stack;
+    private MostlyCopyingGarbageCollector collector;
+    private IntList freePages = new IntList();  //Empty pages in ascending order
+    private int nextFreePage;                   //Position of the next page to take in freePages
+    private Page currentPage;                   //Page that nodes are bump allocated in, null if none
+    private final int[] arguments = new int[2]; //Pointers given to an allocation
+    private final int reservePages;             //Free pages kept for the nodes copied by a compacting collection
+
+    public int collections;
+    public long allocatedObjects;
+    public long allocatedCells;
+    public long pagesTaken;
+    public long collectionNanos;        //Total time of collections
+    public long maxCollectionNanos;
+
+    /**
+     * Construct new allocator over a heap. The pages that hold nodes are in use,
+     * the empty ones are free.
+     *
+     * @param heap  The heap pages.
+     * @param stack Stack with roots, negative values are empty slots.
+     */
+    public PageAllocator(Page[] heap, int[] stack) {
+        this(heap, stack, 0);
+    }
+
+    /**
+     * Construct new allocator over a heap, collected in compacting mode. The
+     * collection starts when an eighth of the pages are left, so the collector
+     * has empty pages to copy the nodes of sparse pages into.
+     *
+     * @param compactionThreshold Live fraction below which the collector evacuates a page, 0 disables it.
+     */
+    public PageAllocator(Page[] heap, int[] stack, double compactionThreshold) {
+        this.heap = heap;
+        this.stack = stack;
+        this.reservePages = compactionThreshold > 0 ? heap.length / 8 : 0;
+        rebuildFreePages();
+        collector = new MostlyCopyingGarbageCollector(heap, stack, heap.length - freePages.size(), compactionThreshold);
+    }
+
+    public MostlyCopyingGarbageCollector getCollector() {
+        return collector;
+    }
+
+    /**
+     * Add an integer node.
+     */
+    public int allocateInteger(int value) {
+        return allocate(2, 0, page -> page.addInteger(value));
+    }
+
+    /**
+     * Add a double node.
+     */
+    public int allocateDouble(double value) {
+        return allocate(2, 0, page -> page.addDouble(value));
+    }
+
+    /**
+     * Add a char node.
+     */
+    public int allocateChar(char value) {
+        return allocate(2, 0, page -> page.addChar(value));
+    }
+
+    /**
+     * Add a boolean node.
+     */
+    public int allocateBoolean(boolean value) {
+        return allocate(2, 0, page -> page.addBoolean(value));
+    }
+
+    /**
+     * Add a variable identifier node.
+     */
+    public int allocateVariable(String variable) {
+        return allocate(2, 0, page -> page.addVariable(variable));
+    }
+
+    /**
+     * Add a null node.
+     */
+    public int allocateNull() {
+        return allocate(1, 0, Page::addNull);
+    }
+
+    /**
+     * Add a list constructor node.
+     */
+    public int allocateListConstructor(int pointerValue1, int pointerValue2) {
+        arguments[0] = pointerValue1;
+        arguments[1] = pointerValue2;
+        return allocate(3, 2, page -> page.addListConstructor(arguments[0], arguments[1]));
+    }
+
+    /**
+     * Add an indirection node.
+     */
+    public int allocateIndirection(int pointerValue) {
+        arguments[0] = pointerValue;
+        return allocate(2, 1, page -> page.addIndirection(arguments[0]));
+    }
+
+    /**
+     * Add a weak pointer node.
+     */
+    public int allocateWeak(int pointerValue) {
+        arguments[0] = pointerValue;
+        return allocate(2, 1, page -> page.addWeak(arguments[0]));
+    }
+
+    /**
+     * Add a type node.
+     */
+    public int allocateType(int pointerValue, String type) {
+        arguments[0] = pointerValue;
+        return allocate(3, 1, page -> page.addType(arguments[0], type));
+    }
+
+    /**
+     * Add a data constructor node. The pointers are updated if the allocation collects.
+     */
+    public int allocateDataConstructor(String constructor, int[] pointerValues) {
+        if (pointerValues.length + 3 > collector.getPageSize()) {
+            return allocateLarge(pointerValues, first -> Page.addLargeDataConstructor(heap, first, constructor, pointerValues));
+        }
+        return allocate(pointerValues.length + 3, pointerValues.length, pointerValues,
+                page -> page.addDataConstructor(constructor, pointerValues.length, pointerValues));
+    }
+
+    /**
+     * Add a lambda node. The pointers are updated if the allocation collects.
+     */
+    public int allocateLambda(String function, int[] pointerValues) {
+        if (pointerValues.length + 3 > collector.getPageSize()) {
+            return allocateLarge(pointerValues, first -> Page.addLargeLambda(heap, first, function, pointerValues));
+        }
+        return allocate(pointerValues.length + 3, pointerValues.length, pointerValues,
+                page -> page.addLambda(function, pointerValues.length, pointerValues));
+    }
+
+    /**
+     * Collect the heap and rebuild the free-page list.
+     */
+    public void collect() {
+        collect(0, null);
+    }
+
+    /**
+     * Add a listener of the collections of the heap.
+     */
+    public void addListener(GcListener listener) {
+        collector.addListener(listener);
+    }
+
+    public void removeListener(GcListener listener) {
+        collector.removeListener(listener);
+    }
+
+    /**
+     * Number of pages that are left in the free-page list.
+     */
+    public int getFreePages() {
+        return freePages.size() - nextFreePage;
+    }
+
+    public Page[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    public void printStatistics() {
+        System.out.println("COLLECTIONS       : " + collections + " total " + collectionNanos / 1000 + "us"
+                + " avg " + (collections == 0 ? 0 : collectionNanos / collections / 1000) + "us"
+                + " max " + maxCollectionNanos / 1000 + "us");
+        System.out.println("ALLOCATED         : " + allocatedObjects + " objects, " + allocatedCells + " cells, "
+                + pagesTaken + " pages");
+        System.out.println("FREE PAGES        : " + getFreePages() + " / " + heap.length);
+    }
+
+    /**
+     * Allocate a node that fits in a page without pointers.
+     */
+    private int allocate(int size, int numberOfPointers, PageWrite write) {
+        return allocate(size, numberOfPointers, arguments, write);
+    }
+
+    /**
+     * Bump allocate size cells in the current page, take a free page if the node
+     * does not fit and collect if there is no free page (or only the reserve is left).
+     * The reserve is used if the collection could not free more pages.
+     *
+     * @param pointers Pointers of the new node, they are roots if the allocation collects.
+     */
+    private int allocate(int size, int numberOfPointers, int[] pointers, PageWrite write) {
+        int node = currentPage == null ? -1 : write.add(currentPage);
+        if (node < 0) {
+            if (getFreePages() <= reservePages) {
+                collect(numberOfPointers, pointers);
+                if (getFreePages() == 0) {
+                    throw new IllegalStateException("Heap is full");
+                }
+            }
+            currentPage = takePage(freePages.get(nextFreePage++));
+            node = write.add(currentPage);
+        }
+        allocatedObjects++;
+        allocatedCells += size;
+        return node;
+    }
+
+    /**
+     * Allocate a node that does not fit in a page, in a run of contiguous free
+     * pages. The run is searched in the free-page list, the heap is collected if
+     * there is none.
+     */
+    private int allocateLarge(int[] pointerValues, RunWrite write) {
+        int pages = Page.pagesFor(pointerValues.length + 3, collector.getPageSize());
+        int position = findRun(pages);
+        if (position < 0) {
+            collect(pointerValues.length, pointerValues);
+            position = findRun(pages);
+            if (position < 0) {
+                throw new IllegalStateException("Heap is full");
+            }
+        }
+        int firstPage = freePages.get(position);
+        for (int i = 0; i < pages; i++) {
+            takePage(firstPage + i);
+        }
+        removeFreePages(position, pages);
+        allocatedObjects++;
+        allocatedCells += pointerValues.length + 3;
+        return write.add(firstPage);
+    }
+
+    /**
+     * Find pages consecutive heap pages in the free-page list.
+     *
+     * @return The position of the first page in the list, or -1.
+     */
+    private int findRun(int pages) {
+        int runStart = nextFreePage;
+        for (int i = nextFreePage; i < freePages.size(); i++) {
+            if (i > runStart && freePages.get(i) != freePages.get(i - 1) + 1) {
+                runStart = i;
+            }
+            if (i - runStart + 1 == pages) {
+                return runStart;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove count pages of the free-page list, starting at the given position.
+     */
+    private void removeFreePages(int position, int count) {
+        for (int i = position + count; i < freePages.size(); i++) {
+            freePages.set(i - count, freePages.get(i));
+        }
+        for (int i = 0; i < count; i++) {
+            freePages.pop();
+        }
+    }
+
+    /**
+     * Take a free page, the page location is set to its index in heap, so the
+     * nodes added to it get pointers to this page.
+     */
+    private Page takePage(int pageIndex) {
+        Page page = heap[pageIndex];
+        page.setPageLocation(pageIndex);
+        pagesTaken++;
+        return page;
+    }
+
+    /**
+     * Run a whole collection, with the pointers of the node being allocated as
+     * extra roots.
+     */
+    private void collect(int numberOfPointers, int[] pointers) {
+        long start = System.nanoTime();
+        int[] roots = Arrays.copyOf(stack, stack.length + numberOfPointers);
+        for (int i = 0; i < numberOfPointers; i++) {
+            roots[stack.length + i] = pointers[i];
+        }
+        collector.setStack(roots);
+        collector.evacuateRoots();
+        collector.scavenge();
+        collector.copyToNewSpace();
+        collector.clearOldMemory();
+        System.arraycopy(roots, 0, stack, 0, stack.length);
+        for (int i = 0; i < numberOfPointers; i++) {
+            pointers[i] = roots[stack.length + i];
+        }
+
+        currentPage = null;         //The current page has been promoted or cleared
+        rebuildFreePages();
+        collections++;
+        long pause = System.nanoTime() - start;
+        collectionNanos += pause;
+        maxCollectionNanos = Math.max(maxCollectionNanos, pause);
+    }
+
+    /**
+     * Rebuild the free-page list with the empty pages of the heap.
+     */
+    private void rebuildFreePages() {
+        freePages.clear();
+        nextFreePage = 0;
+        for (int i = 0; i < heap.length; i++) {
+            if (heap[i].getUsedSpace() == 0 && !heap[i].isContinuation()) {
+                freePages.add(i);
+            }
+        }
+    }
+
+    /**
+     * Adds a node to a page, returns its pointer or -1 if it does not fit.
+     */
+    private interface PageWrite {
+        int add(Page page);
+    }
+
+    /**
+     * Adds a large node to the run of pages starting at a page index.
+     */
+    private interface RunWrite {
+        int add(int firstPage);
+    }
+}
@@ -0,0 +1,96 @@
+package bartlett;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Queue of the promoted pages of the mostly copying collector. Pages are kept
+ * in an array in promotion order, and an int array maps the index of a page in
+ * the heap to its position in the queue, so adding a page, finding its position
+ * and getting the page at a position are all O(1).
+ */
+public class PageQueue implements Iterable<Page> {
+
+    private Page[] pages;               //Promoted pages, in promotion order
+    private int[] pageIndexes;          //Heap index of the page at each position
+    private final int[] positions;      //Position in queue of each heap page, -1 if it is not queued
+    private int size;
+
+    /**
+     * Construct an empty queue for a heap of the given number of pages.
+     */
+    public PageQueue(int heapPages) {
+        pages = new Page[Math.max(16, heapPages / 8)];
+        pageIndexes = new int[pages.length];
+        positions = new int[heapPages];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Add the page at the tail of the queue.
+     *
+     * @param pageIndex Index of the page in the heap.
+     * @return The position of the page in the queue.
+     */
+    public int add(int pageIndex, Page page) {
+        if (size == pages.length) {
+            pages = Arrays.copyOf(pages, pages.length * 2);
+            pageIndexes = Arrays.copyOf(pageIndexes, pageIndexes.length * 2);
+        }
+        pages[size] = page;
+        pageIndexes[size] = pageIndex;
+        positions[pageIndex] = size;
+        return size++;
+    }
+
+    /**
+     * Position in the queue of a heap page, -1 if it has not been added.
+     */
+    public int positionOf(int pageIndex) {
+        return positions[pageIndex];
+    }
+
+    public Page get(int position) {
+        return pages[position];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all the pages, the cost depends on the pages in the queue only.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[pageIndexes[i]] = -1;
+            pages[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Page> iterator() {
+        return new Iterator<Page>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public Page next() {
+                if (position >= size) {
+                    throw new NoSuchElementException();
+                }
+                return pages[position++];
+            }
+        };
+    }
+}
@@ -0,0 +1,195 @@
+package cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cache.CacheHierarchy.java                                                     <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Simulated memory hierarchy, a list of cache levels (L1, L2, LLC) with the
+ * same line size in front of the memory. An access goes to the first level,
+ * and to the next one while it misses, so every level it missed in now holds
+ * the line.
+ * <p>
+ * The accesses are counted by phase : the phase set by setPhase gets the reads,
+ * the writes and the misses of every level until the next one is set, so the
+ * phases of a collection and a mutator traversal of the same heap are measured
+ * separately. The cost of a phase is given in cycles, the hit latency of the
+ * level that held the line, or the memory latency.
+ */
+public class CacheHierarchy implements MemoryTracer {
+
+    public static final String DEFAULT_PHASE = "default";
+
+    private final CacheLevel[] levels;
+    private final int lineShift;
+    private final int memoryLatency;
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private Phase phase;
+
+    public CacheHierarchy(int memoryLatency, CacheLevel... levels) {
+        if (levels.length == 0) {
+            throw new IllegalArgumentException("No cache level");
+        }
+        for (CacheLevel level : levels) {
+            if (level.getLineBytes() != levels[0].getLineBytes()) {
+                throw new IllegalArgumentException("The levels must have the same line size");
+            }
+        }
+        this.levels = levels;
+        this.memoryLatency = memoryLatency;
+        lineShift = Integer.numberOfTrailingZeros(levels[0].getLineBytes());
+        setPhase(DEFAULT_PHASE);
+    }
+
+    /**
+     * A desktop hierarchy : 32KB 8-way L1 (4 cycles), 256KB 8-way L2 (12
+     * cycles), 8MB 16-way LLC (40 cycles) and a memory of 200 cycles.
+     */
+    public static CacheHierarchy typical(int lineBytes) {
+        return new CacheHierarchy(200,
+                new CacheLevel("L1", 32 * 1024, 8, lineBytes, 4),
+                new CacheLevel("L2", 256 * 1024, 8, lineBytes, 12),
+                new CacheLevel("LLC", 8 * 1024 * 1024, 16, lineBytes, 40));
+    }
+
+    /**
+     * Count the next accesses in the given phase, the caches keep their lines.
+     */
+    public void setPhase(String name) {
+        phase = phases.get(name);
+        if (phase == null) {
+            phase = new Phase(name, levels.length);
+            phases.put(name, phase);
+        }
+    }
+
+    @Override
+    public void read(long address) {
+        phase.reads++;
+        access(address);
+    }
+
+    @Override
+    public void write(long address) {
+        phase.writes++;
+        access(address);
+    }
+
+    private void access(long address) {
+        long line = address >>> lineShift;
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i].access(line)) {
+                phase.cycles += levels[i].getLatency();
+                return;
+            }
+            phase.misses[i]++;
+        }
+        phase.cycles += memoryLatency;
+    }
+
+    /**
+     * Measures of a phase, null if it has no access.
+     */
+    public Phase getPhase(String name) {
+        Phase measured = phases.get(name);
+        return measured == null || measured.getAccesses() == 0 ? null : measured;
+    }
+
+    public List<Phase> getPhases() {
+        List<Phase> measured = new ArrayList<>();
+        for (Phase p : phases.values()) {
+            if (p.getAccesses() > 0) {
+                measured.add(p);
+            }
+        }
+        return measured;
+    }
+
+    public CacheLevel[] getLevels() {
+        return levels;
+    }
+
+    /**
+     * Empty the caches and forget the phases.
+     */
+    public void reset() {
+        for (CacheLevel level : levels) {
+            level.reset();
+        }
+        phases.clear();
+        setPhase(DEFAULT_PHASE);
+    }
+
+    public void printStatistics() {
+        for (Phase p : getPhases()) {
+            System.out.println(p);
+        }
+    }
+
+    /**
+     * Accesses of one phase and their misses in every level.
+     */
+    public final class Phase {
+        private final String name;
+        private final long[] misses;
+        private long reads;
+        private long writes;
+        private long cycles;
+
+        private Phase(String name, int levels) {
+            this.name = name;
+            misses = new long[levels];
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getAccesses() {
+            return reads + writes;
+        }
+
+        /**
+         * Misses of a level, from 0 for the first one.
+         */
+        public long getMisses(int level) {
+            return misses[level];
+        }
+
+        /**
+         * Misses of a level per access of the phase.
+         */
+        public double getMissRatio(int level) {
+            return getAccesses() == 0 ? 0 : (double) misses[level] / getAccesses();
+        }
+
+        /**
+         * Simulated cycles of the accesses.
+         */
+        public long getCycles() {
+            return cycles;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder description = new StringBuilder(name + " : reads " + reads + " writes " + writes);
+            for (int i = 0; i < levels.length; i++) {
+                description.append(String.format(" %s misses %d (%.4f)", levels[i].getName(), misses[i],
+                        getMissRatio(i)));
+            }
+            return description.append(" cycles ").append(cycles).toString();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cache;
+
+import java.util.Arrays;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cache.CacheLevel.java                                                         <br>
+ * ----------------------------------------------------------------------------  <br>
+ * One level of a simulated cache : a set-associative cache of sizeBytes bytes,
+ * with lines of lineBytes bytes and ways lines per set. A line that misses is
+ * brought in the cache (reads and writes alike) in place of the least recently
+ * used line of its set. Only the lines are simulated, not their content.
+ */
+public class CacheLevel {
+
+    private final String name;
+    private final int sizeBytes;
+    private final int ways;
+    private final int lineBytes;
+    private final int latency;          //Cycles of a hit
+    private final int sets;
+    private final long[] lines;         //Line of every way, plus one, 0 if the way is empty
+    private final long[] lastUse;       //Clock of the last access of every way
+    private long clock;
+
+    public long accesses;
+    public long misses;
+
+    public CacheLevel(String name, int sizeBytes, int ways, int lineBytes, int latency) {
+        if (lineBytes <= 0 || Integer.bitCount(lineBytes) != 1) {
+            throw new IllegalArgumentException("Line size must be a power of 2 : " + lineBytes);
+        }
+        if (ways <= 0 || sizeBytes < ways * lineBytes) {
+            throw new IllegalArgumentException(name + " cannot hold " + ways + " lines of " + lineBytes + " bytes");
+        }
+        this.name = name;
+        this.sizeBytes = sizeBytes;
+        this.ways = ways;
+        this.lineBytes = lineBytes;
+        this.latency = latency;
+        sets = sizeBytes / (ways * lineBytes);
+        lines = new long[sets * ways];
+        lastUse = new long[sets * ways];
+    }
+
+    /**
+     * Access a line (an address divided by the line size).
+     *
+     * @return true if the line was in the cache.
+     */
+    public boolean access(long line) {
+        accesses++;
+        clock++;
+        int first = (int) (line % sets) * ways;
+        int victim = first;
+        for (int i = first; i < first + ways; i++) {
+            if (lines[i] == line + 1) {
+                lastUse[i] = clock;
+                return true;
+            }
+            if (lastUse[i] < lastUse[victim]) {
+                victim = i;
+            }
+        }
+        misses++;
+        lines[victim] = line + 1;
+        lastUse[victim] = clock;
+        return false;
+    }
+
+    /**
+     * Empty the cache and set the counters to 0.
+     */
+    public void reset() {
+        Arrays.fill(lines, 0);
+        Arrays.fill(lastUse, 0);
+        clock = 0;
+        accesses = 0;
+        misses = 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getLineBytes() {
+        return lineBytes;
+    }
+
+    public int getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + sizeBytes / 1024 + "KB " + ways + "-way " + lineBytes + "B lines";
+    }
+}
@@ -0,0 +1,52 @@
+package cache;
+
+import engine.HeapView;
+import util.IntList;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cache.HeapTraversal.java                                                      <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Mutator walk of a heap for the cache simulator : the nodes reachable from the
+ * roots through strong pointers are visited in depth-first order, the first
+ * pointer of a node first, and every cell of a visited node is read. The walk
+ * works on a HeapView, so the heap of every engine can be walked, a cell is at
+ * the address of its pointer times 4.
+ */
+public final class HeapTraversal {
+
+    private HeapTraversal() {
+    }
+
+    /**
+     * Walk the heap and give the cells read to the tracer.
+     *
+     * @return The number of nodes visited.
+     */
+    public static int traverse(HeapView heap, int[] roots, MemoryTracer tracer) {
+        long[] visited = new long[(heap.length() >>> 6) + 1];
+        IntList pending = new IntList();
+        int nodes = 0;
+        for (int i = roots.length - 1; i >= 0; i--) {
+            if (roots[i] >= 0) {
+                pending.add(roots[i]);
+            }
+        }
+        while (!pending.isEmpty()) {
+            int node = pending.pop();
+            if ((visited[node >>> 6] & 1L << node) != 0) {
+                continue;
+            }
+            visited[node >>> 6] |= 1L << node;
+            nodes++;
+            int size = heap.nodeSize(node);
+            for (int i = 0; i < size; i++) {
+                tracer.read(TracingCellHeap.address(node + i));
+            }
+            for (int i = heap.pointerCount(node) - 1; i >= 0; i--) {
+                pending.add(heap.pointer(node, i));
+            }
+        }
+        return nodes;
+    }
+}
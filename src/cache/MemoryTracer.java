@@ -0,0 +1,16 @@
+package cache;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cache.MemoryTracer.java                                                       <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Receives the memory accesses of a heap, as byte addresses. A TracingCellHeap
+ * gives it every cell that a collector reads and writes, a HeapTraversal every
+ * cell that a mutator walk reads.
+ */
+public interface MemoryTracer {
+
+    void read(long address);
+
+    void write(long address);
+}
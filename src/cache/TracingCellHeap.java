@@ -0,0 +1,69 @@
+package cache;
+
+import cheneys.CellHeap;
+import cheneys.OffHeapCellHeap;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cache.TracingCellHeap.java                                                    <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Decorator of a CellHeap that gives every cell read and written to a
+ * MemoryTracer, so a collector of the int representation drives the cache
+ * simulator without being modified. A cell is 4 bytes, at the address of its
+ * index times 4. A copy reads and writes every cell, a fill writes them.
+ */
+public class TracingCellHeap implements CellHeap {
+
+    private final CellHeap heap;
+    private final MemoryTracer tracer;
+
+    public TracingCellHeap(CellHeap heap, MemoryTracer tracer) {
+        this.heap = heap;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public int length() {
+        return heap.length();
+    }
+
+    @Override
+    public int get(int cell) {
+        tracer.read(address(cell));
+        return heap.get(cell);
+    }
+
+    @Override
+    public void set(int cell, int value) {
+        tracer.write(address(cell));
+        heap.set(cell, value);
+    }
+
+    @Override
+    public void copy(int from, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            tracer.read(address(from + i));
+            tracer.write(address(to + i));
+        }
+        heap.copy(from, to, length);
+    }
+
+    @Override
+    public void fill(int from, int to, int value) {
+        for (int i = from; i < to; i++) {
+            tracer.write(address(i));
+        }
+        heap.fill(from, to, value);
+    }
+
+    /**
+     * The decorated heap, its accesses are not traced.
+     */
+    public CellHeap getHeap() {
+        return heap;
+    }
+
+    public static long address(int cell) {
+        return (long) cell * OffHeapCellHeap.CELL_BYTES;
+    }
+}
@@ -0,0 +1,44 @@
+package cheneys;
+
+import java.util.Arrays;
+
+/**
+ * Heap backend that keeps the cells in an int array on the JVM heap.
+ */
+public class ArrayCellHeap implements CellHeap {
+
+    private final int[] cells;
+
+    public ArrayCellHeap(int[] cells) {
+        this.cells = cells;
+    }
+
+    @Override
+    public int length() {
+        return cells.length;
+    }
+
+    @Override
+    public int get(int cell) {
+        return cells[cell];
+    }
+
+    @Override
+    public void set(int cell, int value) {
+        cells[cell] = value;
+    }
+
+    @Override
+    public void copy(int from, int to, int length) {
+        System.arraycopy(cells, from, cells, to, length);
+    }
+
+    @Override
+    public void fill(int from, int to, int value) {
+        Arrays.fill(cells, from, to, value);
+    }
+
+    public int[] getCells() {
+        return cells;
+    }
+}
@@ -0,0 +1,117 @@
+package cheneys;
+
+import java.util.Arrays;
+
+/**
+ * Card table over the cells of a heap. The heap is split in cards of cardSize
+ * cells (a power of two) and a pointer store marks the card of the cell it
+ * writes as dirty, so a collection only scans the dirty cards instead of
+ * tracing the whole space.
+ * <p>
+ * To scan a card from its first node, the table also keeps a crossing map :
+ * for every card, the start of the node that covers the first cell of the card.
+ * It is filled by recordNode when a node is placed in the space.
+ */
+public class CardTable {
+
+    private final int cardSize;         //Cells per card
+    private final int cardShift;        //log2 of cardSize
+    private final byte[] cards;         //1 if the card is dirty
+    private final int[] firstNode;      //Node that covers the first cell of each card, -1 if none
+
+    public int cardsScanned;            //Cards examined by the last scan of the table
+    public int dirtyCards;              //Dirty cards found by the last scan of the table
+    public long cellsScanned;           //Cells of dirty cards scanned by the last scan of the table
+
+    /**
+     * Construct a card table.
+     *
+     * @param cells    Number of cells covered by the table.
+     * @param cardSize Cells per card, a power of two.
+     */
+    public CardTable(int cells, int cardSize) {
+        if (cardSize <= 0 || Integer.bitCount(cardSize) != 1) {
+            throw new IllegalArgumentException("Card size must be a power of two : " + cardSize);
+        }
+        this.cardSize = cardSize;
+        this.cardShift = Integer.numberOfTrailingZeros(cardSize);
+        int numberOfCards = (int) (((long) cells + cardSize - 1) >>> cardShift);
+        cards = new byte[numberOfCards];
+        firstNode = new int[numberOfCards];
+        Arrays.fill(firstNode, -1);
+    }
+
+    /**
+     * Mark the card of a cell as dirty.
+     */
+    public void mark(int cell) {
+        cards[cell >>> cardShift] = 1;
+    }
+
+    public boolean isDirty(int card) {
+        return cards[card] != 0;
+    }
+
+    /**
+     * Mark a card as clean.
+     */
+    public void clean(int card) {
+        cards[card] = 0;
+    }
+
+    /**
+     * Mark all cards as clean and forget all the nodes.
+     */
+    public void clear() {
+        Arrays.fill(cards, (byte) 0);
+        Arrays.fill(firstNode, -1);
+    }
+
+    /**
+     * Record a node placed in the space, for the crossing map.
+     */
+    public void recordNode(int node, int size) {
+        int card = node >>> cardShift;
+        if (card << cardShift == node) {
+            firstNode[card] = node;
+        }
+        int lastCard = (node + size - 1) >>> cardShift;
+        for (int c = card + 1; c <= lastCard; c++) {
+            firstNode[c] = node;
+        }
+    }
+
+    /**
+     * Start of the node that covers the first cell of a card, -1 if none.
+     */
+    public int firstNode(int card) {
+        return firstNode[card];
+    }
+
+    public int cardOf(int cell) {
+        return cell >>> cardShift;
+    }
+
+    public int cardStart(int card) {
+        return card << cardShift;
+    }
+
+    public int getCardSize() {
+        return cardSize;
+    }
+
+    public int numberOfCards() {
+        return cards.length;
+    }
+
+    /**
+     * Number of dirty cards in the table.
+     */
+    public int dirtyCount() {
+        int dirty = 0;
+        for (byte card : cards) {
+            dirty += card;
+        }
+        return dirty;
+    }
+}
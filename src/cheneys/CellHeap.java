@@ -0,0 +1,44 @@
+package cheneys;
+
+/**
+ * Backend of the int heap representation that is collected by the
+ * IntCopyingGarbageCollector. A heap is a sequence of 32 bit cells,
+ * addressed by cell index, and every node has a fixed binary layout :
+ * <pre>
+ *  INT, CHAR, BOOL      [tag][value]
+ *  DOUBLE, VAR          [tag][symbol]
+ *  IND, WEAK            [tag][pointer]
+ *  CONS                 [tag][pointer][pointer]
+ *  TYPE                 [tag][pointer][symbol]
+ *  CONSTR, LAMBDA       [tag][symbol][n][pointer 1]..[pointer n]
+ *  NULL                 [tag]
+ *  forwarded node       [FORWARD_BIT | new location] ...
+ * </pre>
+ */
+public interface CellHeap {
+
+    /**
+     * Number of cells in heap.
+     */
+    int length();
+
+    /**
+     * Read a cell.
+     */
+    int get(int cell);
+
+    /**
+     * Write a cell.
+     */
+    void set(int cell, int value);
+
+    /**
+     * Copy length cells from one location to another, the two ranges must not overlap.
+     */
+    void copy(int from, int to, int length);
+
+    /**
+     * Set all the cells in [from, to) to the given value.
+     */
+    void fill(int from, int to, int value);
+}
@@ -0,0 +1,677 @@
+package cheneys;
+
+import util.IntList;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static cheneys.IntCopyingGarbageCollector.NODE_CONS;
+import static cheneys.IntCopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.IntCopyingGarbageCollector.NODE_IND;
+import static cheneys.IntCopyingGarbageCollector.NODE_INT;
+import static cheneys.IntCopyingGarbageCollector.NODE_LAMBDA;
+import static cheneys.IntCopyingGarbageCollector.NODE_NULL;
+import static cheneys.IntCopyingGarbageCollector.NODE_TYPE;
+import static cheneys.IntCopyingGarbageCollector.NODE_WEAK;
+import static cheneys.IntCopyingGarbageCollector.NULL_POINTER;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.ConcurrentCopyingGarbageCollector.java                                <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Concurrent copying collector over the int heap representation. A background
+ * collector thread copies the live nodes while the mutator keeps working through
+ * the methods of this class. Every node starts with a Brooks word, the address
+ * of its current copy (the node itself until it is copied) :
+ * <pre>
+ *  [brooks][tag][payload ...]
+ * </pre>
+ * Pointers are addresses of Brooks words and cell numbers are counted from the
+ * tag, like in the other int collectors. The forwarding is published by a
+ * compare-and-set of the Brooks word, the whole node stays readable.
+ * <p>
+ * A cycle has two short pauses, the flip with the evacuation of the roots and a
+ * final one that evacuates the stack again, finishes the gray nodes and updates
+ * the weak pointers. Between them the collector scans its gray queue
+ * concurrently. The mutator then :
+ * <ul>
+ * <li>reads through the Brooks word, so it follows the current copy,</li>
+ * <li>evacuates a node before writing into it, so the old copy is never written,</li>
+ * <li>shades the pointers it stores (Dijkstra barrier), so no copied node is
+ * left pointing to the old semispace,</li>
+ * <li>allocates black nodes from the end of the new semispace.</li>
+ * </ul>
+ * Both threads may copy the same node, the one that loses the compare-and-set
+ * of the Brooks word drops its copy.
+ * <p>
+ * The mutator keeps its pointers in the stack : every method works on stack
+ * slots, and holds the read lock of the collector, the pauses hold the write lock.
+ */
+public class ConcurrentCopyingGarbageCollector {
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int[] heap;           //Array that represents the heap
+    private final int[] stack;          //Array that represents the stack with roots
+    private final int semispaceSize;    //Cells of a semispace
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object monitor = new Object();            //Cycle requests and completions
+    private final Thread collector;
+
+    private final AtomicInteger copyTop = new AtomicInteger();  //Next free cell for copied nodes
+    private volatile int allocationTop; //Start of the allocated nodes, allocation goes down
+    private int fromSpaceStart;         //The start position of the old semispace
+    private int toSpaceStart;           //The start position of the new semispace
+    private int copyLimit;              //Cells of the new semispace the copy may still need
+    private boolean copying;            //Between the two pauses of a cycle
+    private volatile RuntimeException failure;              //Error of the collector thread
+
+    private IntList gray = new IntList();                   //Gray nodes of the collector
+    private IntList mutatorGray = new IntList();            //Gray nodes copied by the mutator
+    private final IntList weakNodes = new IntList();        //Weak nodes copied by the collector
+    private final IntList mutatorWeakNodes = new IntList(); //Weak nodes copied or allocated by the mutator
+    private int collectorCopies;
+    private long collectorCopiedCells;
+    private int mutatorCopies;
+    private long mutatorCopiedCells;
+
+    private boolean cycleRequested;     //Guarded by monitor
+    private boolean cycleRunning;       //Guarded by monitor
+    private boolean running = true;     //Guarded by monitor
+    private int completedCycles;        //Guarded by monitor
+
+    public int numberOfObjectsCopied;   //Objects copied by the last cycle
+    public int cycles;
+    public long pauseNanos;             //Total time of the pauses
+    public long maxPauseNanos;
+    public long collectorNanos;         //Time of the concurrent phase
+    public long copiedCells;            //Cells copied by all the cycles
+    public long mutatorStallNanos;      //Time the mutator waited for pauses and free space
+
+    /**
+     * Construct new collector and its heap, and start the collector thread.
+     *
+     * @param semispaceSize Cells of each of the two semispaces.
+     * @param stack         Stack with roots, negative values are empty slots.
+     */
+    public ConcurrentCopyingGarbageCollector(int semispaceSize, int[] stack) {
+        this.semispaceSize = semispaceSize;
+        this.stack = stack;
+        heap = new int[2 * semispaceSize];
+        fromSpaceStart = semispaceSize;
+        toSpaceStart = 0;
+        allocationTop = semispaceSize;
+        collector = new Thread(this::runCollector, "concurrent-copying-collector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    /**
+     * Add an integer node in a stack slot.
+     */
+    public void allocateInteger(int slot, int value) {
+        allocateScalar(slot, NODE_INT, value);
+    }
+
+    /**
+     * Add a DOUBLE, CHAR, BOOL or VAR node in a stack slot, the value is its int encoding.
+     */
+    public void allocateScalar(int slot, int tag, int value) {
+        enter();
+        try {
+            int node = allocate(2);
+            heap[node + 1] = tag;
+            heap[node + 2] = value;
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a null node in a stack slot.
+     */
+    public void allocateNull(int slot) {
+        enter();
+        try {
+            int node = allocate(1);
+            heap[node + 1] = NODE_NULL;
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a list constructor node in a stack slot, its pointers are the nodes of two other slots.
+     */
+    public void allocateListConstructor(int slot, int pointerSlot1, int pointerSlot2) {
+        enter();
+        try {
+            int node = allocate(3);
+            heap[node + 1] = NODE_CONS;
+            heap[node + 2] = shade(stack[pointerSlot1]);
+            heap[node + 3] = shade(stack[pointerSlot2]);
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add an indirection node in a stack slot.
+     */
+    public void allocateIndirection(int slot, int pointerSlot) {
+        enter();
+        try {
+            int node = allocate(2);
+            heap[node + 1] = NODE_IND;
+            heap[node + 2] = shade(stack[pointerSlot]);
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a weak pointer node in a stack slot.
+     */
+    public void allocateWeak(int slot, int pointerSlot) {
+        enter();
+        try {
+            int node = allocate(2);
+            heap[node + 1] = NODE_WEAK;
+            heap[node + 2] = resolve(stack[pointerSlot]);   //Weak pointers are not shaded
+            if (copying) {
+                mutatorWeakNodes.add(node);
+            }
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a type node in a stack slot, the type is a symbol.
+     */
+    public void allocateType(int slot, int pointerSlot, int type) {
+        enter();
+        try {
+            int node = allocate(3);
+            heap[node + 1] = NODE_TYPE;
+            heap[node + 2] = shade(stack[pointerSlot]);
+            heap[node + 3] = type;
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a data constructor node in a stack slot, its pointers are the nodes of other slots.
+     */
+    public void allocateDataConstructor(int slot, int constructor, int[] pointerSlots) {
+        allocateUnknownSizeNode(slot, NODE_CONSTR, constructor, pointerSlots);
+    }
+
+    /**
+     * Add a lambda node in a stack slot, its pointers are the nodes of other slots.
+     */
+    public void allocateLambda(int slot, int function, int[] pointerSlots) {
+        allocateUnknownSizeNode(slot, NODE_LAMBDA, function, pointerSlots);
+    }
+
+    /**
+     * Read a cell of the node of a stack slot, cell 0 is the tag.
+     */
+    public int readValue(int objectSlot, int cell) {
+        enter();
+        try {
+            return (int) CELLS.getVolatile(heap, resolve(stack[objectSlot]) + 1 + cell);
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Load a pointer of the node of a stack slot into a stack slot.
+     */
+    public void loadPointer(int slot, int objectSlot, int cell) {
+        enter();
+        try {
+            int value = (int) CELLS.getVolatile(heap, resolve(stack[objectSlot]) + 1 + cell);
+            stack[slot] = resolve(value);
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Store the node of a stack slot in a pointer of the node of another slot.
+     */
+    public void storePointer(int objectSlot, int cell, int valueSlot) {
+        enter();
+        try {
+            int node = stack[objectSlot];
+            int value = stack[valueSlot];
+            if (copying) {
+                node = evacuate(node, true);                //Never write the old copy
+                stack[objectSlot] = node;
+                value = heap[node + 1] == NODE_WEAK ? resolve(value) : shade(value);
+            }
+            CELLS.setVolatile(heap, node + 1 + cell, value);
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Copy a stack slot into another one.
+     */
+    public void copySlot(int slot, int fromSlot) {
+        enter();
+        try {
+            stack[slot] = stack[fromSlot];
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Empty a stack slot.
+     */
+    public void clearSlot(int slot) {
+        enter();
+        try {
+            stack[slot] = -1;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Run a whole cycle and wait for its end.
+     */
+    public void collect() {
+        long start = System.nanoTime();
+        awaitCycle();
+        mutatorStallNanos += System.nanoTime() - start;
+        checkFailure();
+    }
+
+    /**
+     * Stop the collector thread.
+     */
+    public void shutdown() {
+        synchronized (monitor) {
+            running = false;
+            monitor.notifyAll();
+        }
+        try {
+            collector.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Print the pauses, the mutator stalls and the collector throughput.
+     */
+    public void printStatistics() {
+        System.out.println("CYCLES            : " + cycles + " pauses total " + pauseNanos / 1000 + "us"
+                + " max " + maxPauseNanos / 1000 + "us");
+        System.out.println("MUTATOR STALLS    : " + mutatorStallNanos / 1000 + "us");
+        System.out.println("COLLECTOR         : " + copiedCells + " cells copied in " + collectorNanos / 1000 + "us ("
+                + (collectorNanos == 0 ? 0 : copiedCells * 1000000 / collectorNanos) + " cells/ms)");
+        System.out.println("COPIED OBJECTS    : " + numberOfObjectsCopied + " in the last cycle");
+    }
+
+    public int[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    /**
+     * Size in cells of the node that starts at the given position, Brooks word included.
+     */
+    public static int nodeSize(int[] heap, int node) {
+        return IntCopyingGarbageCollector.nodeSize(heap, node + 1) + 1;
+    }
+
+    private void allocateUnknownSizeNode(int slot, int tag, int identifier, int[] pointerSlots) {
+        enter();
+        try {
+            int node = allocate(pointerSlots.length + 3);
+            heap[node + 1] = tag;
+            heap[node + 2] = identifier;
+            heap[node + 3] = pointerSlots.length;
+            for (int i = 0; i < pointerSlots.length; i++) {
+                heap[node + 4 + i] = shade(stack[pointerSlots[i]]);
+            }
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Take the read lock, the time spent waiting for a pause is a stall.
+     */
+    private void enter() {
+        checkFailure();
+        if (!lock.readLock().tryLock()) {
+            long start = System.nanoTime();
+            lock.readLock().lock();
+            mutatorStallNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void exit() {
+        lock.readLock().unlock();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Collector failed", failure);
+        }
+    }
+
+    /**
+     * Allocate size cells plus the Brooks word at the end of the new semispace,
+     * with the read lock held. A cycle is requested when half of the semispace
+     * is used, if the cells do not fit the mutator waits for a whole cycle.
+     */
+    private int allocate(int size) {
+        size++;                                             //Brooks word
+        if (!hasRoom(size)) {
+            exit();
+            long start = System.nanoTime();
+            awaitCycle();
+            lock.readLock().lock();
+            mutatorStallNanos += System.nanoTime() - start;
+            checkFailure();
+            if (!hasRoom(size)) {
+                throw new IllegalStateException("Heap is full");
+            }
+        }
+        int node = allocationTop - size;
+        heap[node] = node;                                  //Brooks word of a new node points to itself
+        allocationTop = node;
+        if (!copying && usedCells() > semispaceSize / 2) {
+            requestCycle();
+        }
+        return node;
+    }
+
+    /**
+     * Check if size cells can be allocated, keeping the cells the copy may still need.
+     */
+    private boolean hasRoom(int size) {
+        int top = copyTop.get();
+        return allocationTop - size >= (copying ? Math.max(copyLimit, top) : top);
+    }
+
+    /**
+     * Cells of the new semispace used by copied and allocated nodes.
+     */
+    private int usedCells() {
+        return copyTop.get() - toSpaceStart + toSpaceStart + semispaceSize - allocationTop;
+    }
+
+    private boolean inFromSpace(int node) {
+        return node >= fromSpaceStart && node < fromSpaceStart + semispaceSize;
+    }
+
+    /**
+     * Follow the Brooks word of a node.
+     */
+    private int resolve(int node) {
+        if (node < 0) {
+            return node;
+        }
+        return (int) CELLS.getAcquire(heap, node);
+    }
+
+    /**
+     * Shade a pointer stored by the mutator : evacuate its node while copying.
+     */
+    private int shade(int node) {
+        return copying ? evacuate(node, true) : node;
+    }
+
+    /**
+     * Evacuate node. Copy the node to the new semi space and publish the copy in
+     * its Brooks word, unless it has already been copied.
+     *
+     * @param byMutator True if the mutator copies the node.
+     * @return The location of the node in the new semi space.
+     */
+    private int evacuate(int node, boolean byMutator) {
+        if (node < 0 || !inFromSpace(node)) {
+            return node;
+        }
+        int forward = (int) CELLS.getAcquire(heap, node);
+        if (forward != node) {
+            return forward;                                 //Node has been copied
+        }
+
+        int size = nodeSize(heap, node);
+        int nodeNewLocation = copyTop.getAndAdd(size);
+        if (nodeNewLocation + size > allocationTop) {
+            throw new IllegalStateException("New semispace is full");
+        }
+        heap[nodeNewLocation] = nodeNewLocation;
+        System.arraycopy(heap, node + 1, heap, nodeNewLocation + 1, size - 1);     //Copy tag and payload
+        int witness = (int) CELLS.compareAndExchange(heap, node, node, nodeNewLocation);
+        if (witness != node) {                              //The other thread copied it first
+            copyTop.compareAndSet(nodeNewLocation + size, nodeNewLocation);      //Drop the copy if it is the last one
+            return witness;
+        }
+
+        boolean weak = heap[nodeNewLocation + 1] == NODE_WEAK;
+        if (byMutator) {
+            mutatorCopies++;
+            mutatorCopiedCells += size;
+            if (weak) {
+                mutatorWeakNodes.add(nodeNewLocation);
+            }
+            synchronized (mutatorGray) {
+                mutatorGray.add(nodeNewLocation);
+            }
+        } else {
+            collectorCopies++;
+            collectorCopiedCells += size;
+            if (weak) {
+                weakNodes.add(nodeNewLocation);
+            }
+            gray.add(nodeNewLocation);
+        }
+        return nodeNewLocation;
+    }
+
+    /**
+     * Scavenge a gray node of the new semispace. A cell that the mutator
+     * wrote meanwhile is left as it is, the mutator stores shaded pointers.
+     */
+    private void scavengeNode(int node) {
+        switch (heap[node + 1]) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                int n = heap[node + 3];                     //Number of pointers
+                for (int i = 0; i < n; i++) {
+                    scavengeCell(node + 4 + i);
+                }
+                break;
+            case NODE_CONS:
+                scavengeCell(node + 2);
+                scavengeCell(node + 3);
+                break;
+            case NODE_IND:
+            case NODE_TYPE:
+                scavengeCell(node + 2);
+                break;
+            default:                                        //No strong pointers
+                break;
+        }
+    }
+
+    private void scavengeCell(int cell) {
+        int value = (int) CELLS.getVolatile(heap, cell);
+        int newValue = evacuate(value, false);
+        if (newValue != value) {
+            CELLS.compareAndSet(heap, cell, value, newValue);
+        }
+    }
+
+    /**
+     * Scavenge the gray nodes of the collector and of the mutator until there are none.
+     */
+    private void drainGray() {
+        while (true) {
+            while (!gray.isEmpty()) {
+                scavengeNode(gray.pop());
+            }
+            synchronized (mutatorGray) {
+                if (mutatorGray.isEmpty()) {
+                    return;
+                }
+                IntList swap = gray;
+                gray = mutatorGray;
+                mutatorGray = swap;
+            }
+        }
+    }
+
+    private void evacuateStack() {
+        for (int i = 0; i < stack.length; i++) {
+            if (stack[i] >= 0) {
+                stack[i] = evacuate(stack[i], false);
+            }
+        }
+    }
+
+    /**
+     * Update the weak pointers of the weak nodes copied or allocated by the cycle.
+     */
+    private void updateWeakPointers(IntList weakNodes) {
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int weakNode = weakNodes.get(i);
+            int weakPointerValue = heap[weakNode + 2];
+            if (weakPointerValue >= 0 && inFromSpace(weakPointerValue)) {
+                int forward = heap[weakPointerValue];
+                heap[weakNode + 2] = forward != weakPointerValue ? forward : NULL_POINTER;
+            }
+        }
+        weakNodes.clear();
+    }
+
+    private void runCollector() {
+        while (true) {
+            synchronized (monitor) {
+                while (!cycleRequested && running) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                cycleRequested = false;
+                cycleRunning = true;
+            }
+            try {
+                if (failure == null) {
+                    runCycle();
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            synchronized (monitor) {
+                cycleRunning = false;
+                completedCycles++;
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A cycle : flip pause, concurrent copy, final pause.
+     */
+    private void runCycle() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            int used = usedCells();
+            fromSpaceStart = toSpaceStart;
+            toSpaceStart = toSpaceStart == 0 ? semispaceSize : 0;
+            copyTop.set(toSpaceStart);
+            allocationTop = toSpaceStart + semispaceSize;
+            copyLimit = toSpaceStart + used;                //Copies never take more than the used cells
+            collectorCopies = mutatorCopies = 0;
+            collectorCopiedCells = mutatorCopiedCells = 0;
+            evacuateStack();                                //Evacuate roots
+            copying = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        pause(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        drainGray();
+        collectorNanos += System.nanoTime() - start;
+
+        start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            evacuateStack();                                //The mutator may have loaded old pointers
+            drainGray();
+            updateWeakPointers(weakNodes);
+            updateWeakPointers(mutatorWeakNodes);
+            copying = false;
+            numberOfObjectsCopied = collectorCopies + mutatorCopies;
+            copiedCells += collectorCopiedCells + mutatorCopiedCells;
+            cycles++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        pause(System.nanoTime() - start);
+    }
+
+    private void pause(long nanos) {
+        pauseNanos += nanos;
+        maxPauseNanos = Math.max(maxPauseNanos, nanos);
+    }
+
+    private void requestCycle() {
+        synchronized (monitor) {
+            cycleRequested = true;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Request a cycle and wait for the end of a cycle that starts after the request.
+     */
+    private void awaitCycle() {
+        synchronized (monitor) {
+            int target = completedCycles + (cycleRunning ? 2 : 1);
+            cycleRequested = true;
+            monitor.notifyAll();
+            while (completedCycles < target && running) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a collection", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,772 @@
+package cheneys;
+
+import util.IntList;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static cheneys.CopyingGarbageCollector.NODE_CONS;
+import static cheneys.CopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.CopyingGarbageCollector.NODE_IND;
+import static cheneys.CopyingGarbageCollector.NODE_INT;
+import static cheneys.CopyingGarbageCollector.NODE_LAMBDA;
+import static cheneys.CopyingGarbageCollector.NODE_NULL;
+import static cheneys.CopyingGarbageCollector.NODE_TYPE;
+import static cheneys.CopyingGarbageCollector.NODE_WEAK;
+import static cheneys.CopyingGarbageCollector.firstPointer;
+import static cheneys.CopyingGarbageCollector.nodeSize;
+import static cheneys.CopyingGarbageCollector.pointerCount;
+import static cheneys.HeapBuilder.CONS_SIZE;
+import static cheneys.HeapBuilder.IND_SIZE;
+import static cheneys.HeapBuilder.INT_SIZE;
+import static cheneys.HeapBuilder.NULL_SIZE;
+import static cheneys.HeapBuilder.TYPE_SIZE;
+import static cheneys.MarkSweepGarbageCollector.TAG_FREE;
+import static cheneys.MarkSweepGarbageCollector.TAG_FREE_CELL;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.ConcurrentMarkSweepGarbageCollector.java                              <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Concurrent mark-sweep collector over the String heap of the
+ * CopyingGarbageCollector. A background collector thread marks the live nodes
+ * (tri-colour marking : a marked node is gray while it is in the gray list and
+ * black after its pointers are marked) while the mutator keeps working through
+ * the methods of this class. A cycle has two short pauses :
+ * <ul>
+ * <li>the initial mark, that marks the nodes of the stack,</li>
+ * <li>the remark, that marks the pointers logged by the mutator since the last
+ * time the collector took them, and clears the weak pointers to unmarked nodes.</li>
+ * </ul>
+ * The marking keeps the nodes reachable at the initial mark (snapshot at the
+ * beginning). Between the pauses the mutator :
+ * <ul>
+ * <li>logs the pointer it overwrites, if its node is not marked yet (SATB
+ * barrier), so no node of the snapshot is hidden from the collector,</li>
+ * <li>logs the pointers it loads from weak nodes,</li>
+ * <li>allocates black nodes, they are marked and never scanned.</li>
+ * </ul>
+ * The stack is not scanned again by the remark, so the final pause does not
+ * depend on the live heap.
+ * <p>
+ * Nodes never move. The free cells are chunks with the headers of the
+ * MarkSweepGarbageCollector and the sweep is lazy : the mutator sweeps the
+ * next SWEEP_BLOCK cells when it runs out of free runs, and bump allocates in
+ * the runs. The sweep reads the bitmap of the last cycle while the collector
+ * marks in the other one, the bitmaps are swapped at the remark.
+ * <p>
+ * The mutator keeps its pointers in the stack : every method works on stack
+ * slots, and holds the read lock of the collector, the pauses hold the write lock.
+ */
+public class ConcurrentMarkSweepGarbageCollector {
+
+    public static final int SWEEP_BLOCK = 256;              //Cells swept when the free runs run out
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(String[].class);
+    private static final VarHandle MARKS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final String[] heap;        //Array that represents the heap
+    private final int[] stack;          //Array that represents the stack with roots
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object monitor = new Object();            //Cycle requests and completions
+    private final Thread collector;
+
+    private long[] marks;               //Bit per cell, set at the first cell of a marked node
+    private long[] sweepMarks;          //Marks of the last cycle, read by the sweep
+    private volatile boolean marking;   //Between the two pauses of a cycle
+    private volatile RuntimeException failure;              //Error of the collector thread
+
+    private final IntList runs = new IntList();             //Start and size of the free runs found by the sweep
+    private int nextRun;                //Next pair of runs
+    private int free;                   //Next free cell of the current run
+    private int freeEnd;                //End of the current run
+    private int sweep;                  //Next cell to sweep, heap.length if the sweep is done
+    private long allocatedSinceCycle;   //Cells allocated since the last remark
+    private boolean triggered;          //A cycle has been requested since the last remark
+
+    private final IntList gray = new IntList();             //Gray nodes of the collector
+    private IntList logged = new IntList();                 //Pointers logged by the mutator
+    private IntList taken = new IntList();                  //Logged pointers taken by the collector
+    private final IntList weakNodes = new IntList();        //Weak nodes marked by the collector
+    private final IntList mutatorWeakNodes = new IntList(); //Weak nodes allocated while marking
+    private long collectorMarkedCells;
+    private long blackCells;            //Cells allocated while marking
+
+    private boolean cycleRequested;     //Guarded by monitor
+    private boolean cycleRunning;       //Guarded by monitor
+    private boolean running = true;     //Guarded by monitor
+    private int completedCycles;        //Guarded by monitor
+
+    public int cycles;
+    public long liveCells;              //Cells marked by the last cycle, black nodes included
+    public long pauseNanos;             //Total time of the pauses
+    public long maxPauseNanos;
+    public long initialMarkNanos;       //Total time of the initial mark pauses
+    public long remarkNanos;            //Total time of the remark pauses
+    public long maxRemarkNanos;
+    public long concurrentMarkNanos;    //Time of the concurrent marking
+    public long barrierStores;          //Pointers stored while marking
+    public long loggedPointers;         //Pointers logged by the barrier
+    public long mutatorStallNanos;      //Time the mutator waited for pauses and free cells
+    public long allocatedObjects;
+    public long allocatedCells;
+    public long sweptBlocks;
+    public long sweepNanos;             //Total time of the lazy sweep, during allocation
+
+    /**
+     * Construct new collector over a heap and start the collector thread. The
+     * nodes of the heap are in its first cells, until the first empty (null)
+     * cell, the cells after them are free.
+     *
+     * @param stack Stack with roots, negative values are empty slots.
+     */
+    public ConcurrentMarkSweepGarbageCollector(String[] heap, int[] stack) {
+        this.heap = heap;
+        this.stack = stack;
+        marks = new long[(heap.length + 63) >>> 6];
+        sweepMarks = new long[marks.length];
+        int top = 0;
+        while (top < heap.length && heap[top] != null) {
+            top++;
+        }
+        if (top < heap.length) {
+            free = top;
+            freeEnd = heap.length;
+            writeHeader(top, heap.length - top);
+        }
+        liveCells = top;
+        sweep = heap.length;                //Nothing to sweep before the first cycle
+        collector = new Thread(this::runCollector, "concurrent-mark-sweep-collector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    /**
+     * Add an integer node in a stack slot.
+     */
+    public void allocateInteger(int slot, int value) {
+        allocateScalar(slot, NODE_INT, String.valueOf(value));
+    }
+
+    /**
+     * Add a DOUBLE, CHAR, BOOL or VAR node in a stack slot.
+     */
+    public void allocateScalar(int slot, String tag, String value) {
+        enter();
+        try {
+            int node = allocate(INT_SIZE);
+            heap[node] = tag;
+            heap[node + 1] = value;
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a null node in a stack slot.
+     */
+    public void allocateNull(int slot) {
+        enter();
+        try {
+            int node = allocate(NULL_SIZE);
+            heap[node] = NODE_NULL;
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a list constructor node in a stack slot, its pointers are the nodes of two other slots.
+     */
+    public void allocateListConstructor(int slot, int pointerSlot1, int pointerSlot2) {
+        enter();
+        try {
+            int node = allocate(CONS_SIZE);
+            heap[node] = NODE_CONS;
+            heap[node + 1] = String.valueOf(stack[pointerSlot1]);
+            heap[node + 2] = String.valueOf(stack[pointerSlot2]);
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add an indirection node in a stack slot.
+     */
+    public void allocateIndirection(int slot, int pointerSlot) {
+        allocatePointer(slot, NODE_IND, pointerSlot);
+    }
+
+    /**
+     * Add a weak pointer node in a stack slot.
+     */
+    public void allocateWeak(int slot, int pointerSlot) {
+        allocatePointer(slot, NODE_WEAK, pointerSlot);
+    }
+
+    /**
+     * Add a type node in a stack slot.
+     */
+    public void allocateType(int slot, int pointerSlot, String type) {
+        enter();
+        try {
+            int node = allocate(TYPE_SIZE);
+            heap[node] = NODE_TYPE;
+            heap[node + 1] = String.valueOf(stack[pointerSlot]);
+            heap[node + 2] = type;
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Add a data constructor node in a stack slot, its pointers are the nodes of other slots.
+     */
+    public void allocateDataConstructor(int slot, String constructor, int[] pointerSlots) {
+        allocateUnknownSizeNode(slot, NODE_CONSTR, constructor, pointerSlots);
+    }
+
+    /**
+     * Add a lambda node in a stack slot, its pointers are the nodes of other slots.
+     */
+    public void allocateLambda(int slot, String function, int[] pointerSlots) {
+        allocateUnknownSizeNode(slot, NODE_LAMBDA, function, pointerSlots);
+    }
+
+    /**
+     * Read a cell of the node of a stack slot, cell 0 is the tag.
+     */
+    public String readValue(int objectSlot, int cell) {
+        enter();
+        try {
+            return (String) CELLS.getVolatile(heap, stack[objectSlot] + cell);
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Load a pointer of the node of a stack slot into a stack slot. A pointer
+     * loaded from a weak node while marking is logged, so it is not cleared
+     * while the mutator holds it.
+     */
+    public void loadPointer(int slot, int objectSlot, int cell) {
+        enter();
+        try {
+            int node = stack[objectSlot];
+            String value = (String) CELLS.getVolatile(heap, node + cell);
+            int pointer = value.equals(NODE_NULL) ? -1 : Integer.valueOf(value);
+            if (marking && heap[node].equals(NODE_WEAK)) {
+                log(pointer);
+            }
+            stack[slot] = pointer;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Store the node of a stack slot in a pointer of the node of another slot.
+     * While marking, the overwritten pointer is logged (SATB barrier), unless
+     * it is a weak pointer.
+     */
+    public void storePointer(int objectSlot, int cell, int valueSlot) {
+        enter();
+        try {
+            int node = stack[objectSlot];
+            if (marking) {
+                barrierStores++;
+                String old = (String) CELLS.getVolatile(heap, node + cell);
+                if (!heap[node].equals(NODE_WEAK)) {
+                    log(Integer.valueOf(old));
+                }
+            }
+            CELLS.setVolatile(heap, node + cell, String.valueOf(stack[valueSlot]));
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Copy a stack slot into another one.
+     */
+    public void copySlot(int slot, int fromSlot) {
+        enter();
+        try {
+            stack[slot] = stack[fromSlot];
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Empty a stack slot.
+     */
+    public void clearSlot(int slot) {
+        enter();
+        try {
+            stack[slot] = -1;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Sweep the rest of the heap, the free runs then hold all the free cells.
+     */
+    public void finishSweep() {
+        enter();
+        try {
+            while (sweep < heap.length) {
+                sweepBlock();
+            }
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Run a whole cycle and wait for its end.
+     */
+    public void collect() {
+        long start = System.nanoTime();
+        awaitCycle();
+        mutatorStallNanos += System.nanoTime() - start;
+        checkFailure();
+    }
+
+    /**
+     * Check if a cycle is between its two pauses.
+     */
+    public boolean isMarking() {
+        return marking;
+    }
+
+    /**
+     * Stop the collector thread.
+     */
+    public void shutdown() {
+        synchronized (monitor) {
+            running = false;
+            monitor.notifyAll();
+        }
+        try {
+            collector.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Print the pauses, the marking, the barrier and the mutator stalls.
+     */
+    public void printStatistics() {
+        System.out.println("CYCLES            : " + cycles + " pauses total " + pauseNanos / 1000 + "us"
+                + " max " + maxPauseNanos / 1000 + "us");
+        System.out.println("INITIAL MARK      : " + initialMarkNanos / 1000 + "us"
+                + " avg " + (cycles == 0 ? 0 : initialMarkNanos / cycles / 1000) + "us");
+        System.out.println("REMARK            : " + remarkNanos / 1000 + "us"
+                + " avg " + (cycles == 0 ? 0 : remarkNanos / cycles / 1000) + "us"
+                + " max " + maxRemarkNanos / 1000 + "us");
+        System.out.println("CONCURRENT MARK   : " + concurrentMarkNanos / 1000 + "us, " + liveCells
+                + " live cells in the last cycle");
+        System.out.println("BARRIER           : " + barrierStores + " stores while marking, " + loggedPointers
+                + " pointers logged");
+        System.out.println("MUTATOR STALLS    : " + mutatorStallNanos / 1000 + "us");
+        System.out.println("LAZY SWEEP        : " + sweptBlocks + " blocks " + sweepNanos / 1000 + "us");
+    }
+
+    public String[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    private void allocatePointer(int slot, String tag, int pointerSlot) {
+        enter();
+        try {
+            int node = allocate(IND_SIZE);
+            heap[node] = tag;
+            heap[node + 1] = String.valueOf(stack[pointerSlot]);
+            if (marking && tag.equals(NODE_WEAK)) {
+                mutatorWeakNodes.add(node);
+            }
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    private void allocateUnknownSizeNode(int slot, String tag, String identifier, int[] pointerSlots) {
+        enter();
+        try {
+            int node = allocate(pointerSlots.length + 3);
+            heap[node] = tag;
+            heap[node + 1] = identifier;
+            heap[node + 2] = String.valueOf(pointerSlots.length);
+            for (int i = 0; i < pointerSlots.length; i++) {
+                heap[node + 3 + i] = String.valueOf(stack[pointerSlots[i]]);
+            }
+            stack[slot] = node;
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Take the read lock, the time spent waiting for a pause is a stall.
+     */
+    private void enter() {
+        checkFailure();
+        if (!lock.readLock().tryLock()) {
+            long start = System.nanoTime();
+            lock.readLock().lock();
+            mutatorStallNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void exit() {
+        lock.readLock().unlock();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Collector failed", failure);
+        }
+    }
+
+    /**
+     * Log a pointer overwritten or loaded by the mutator while marking, if its
+     * node is not marked yet.
+     */
+    private void log(int pointer) {
+        if (pointer < 0 || isMarked(marks, pointer)) {
+            return;
+        }
+        loggedPointers++;
+        synchronized (monitor) {
+            logged.add(pointer);
+        }
+    }
+
+    /**
+     * Allocate size cells with the read lock held, black while marking. A cycle
+     * is requested when half of the cells left free by the last one are used, if
+     * the cells do not fit the mutator waits for a whole cycle.
+     */
+    private int allocate(int size) {
+        int node = takeCells(size);
+        if (node < 0) {
+            exit();
+            long start = System.nanoTime();
+            awaitCycle();
+            lock.readLock().lock();
+            mutatorStallNanos += System.nanoTime() - start;
+            checkFailure();
+            node = takeCells(size);
+            if (node < 0) {
+                throw new IllegalStateException("Heap is full");
+            }
+        }
+        if (marking) {
+            MARKS.getAndBitwiseOr(marks, node >>> 6, 1L << node);
+            blackCells += size;
+        }
+        allocatedObjects++;
+        allocatedCells += size;
+        allocatedSinceCycle += size;
+        if (!triggered && allocatedSinceCycle > (heap.length - liveCells) / 2) {
+            triggered = true;
+            requestCycle();
+        }
+        return node;
+    }
+
+    /**
+     * Bump allocate in the current run, or in the next run that fits. The heap
+     * is swept block by block until one is found.
+     *
+     * @return The first cell, or -1 if the whole heap is swept and no run fits.
+     */
+    private int takeCells(int size) {
+        while (true) {
+            if (free + size <= freeEnd) {
+                int node = free;
+                free += size;
+                return node;
+            }
+            sealRun();
+            if (nextRun < runs.size()) {
+                free = runs.get(nextRun);
+                freeEnd = free + runs.get(nextRun + 1);
+                nextRun += 2;
+                continue;
+            }
+            if (sweep < heap.length) {
+                sweepBlock();
+                continue;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Write the header of a free chunk over the rest of the current run, the
+     * runs that are too small are left until the next sweep.
+     */
+    private void sealRun() {
+        if (free < freeEnd) {
+            writeHeader(free, freeEnd - free);
+        }
+        free = freeEnd = 0;
+    }
+
+    /**
+     * Sweep the next SWEEP_BLOCK cells with the marks of the last cycle. The
+     * dead nodes and the free chunks that follow each other are merged into a
+     * run, that may go past the block, up to the next marked node.
+     */
+    private void sweepBlock() {
+        long start = System.nanoTime();
+        int end = Math.min(heap.length, sweep + SWEEP_BLOCK);
+        while (sweep < end) {
+            if (isMarked(sweepMarks, sweep)) {
+                sweep += nodeSize(heap, sweep);
+                continue;
+            }
+            int run = sweep;
+            while (sweep < heap.length && !isMarked(sweepMarks, sweep)) {
+                sweep += cellsAt(sweep);
+            }
+            writeHeader(run, sweep - run);
+            runs.add(run);
+            runs.add(sweep - run);
+        }
+        sweptBlocks++;
+        sweepNanos += System.nanoTime() - start;
+    }
+
+    private void writeHeader(int chunk, int size) {
+        if (size == 1) {
+            heap[chunk] = TAG_FREE_CELL;
+        } else {
+            heap[chunk] = TAG_FREE;
+            heap[chunk + 1] = String.valueOf(size);
+        }
+    }
+
+    /**
+     * Set the mark bit of a node, the node is gray until its pointers are marked.
+     */
+    private void markNode(int node) {
+        if (node < 0) {
+            return;
+        }
+        long bit = 1L << node;
+        long word = (long) MARKS.getAndBitwiseOr(marks, node >>> 6, bit);
+        if ((word & bit) == 0) {
+            collectorMarkedCells += nodeSize(heap, node);
+            gray.add(node);
+        }
+    }
+
+    private static boolean isMarked(long[] marks, int cell) {
+        return ((long) MARKS.getVolatile(marks, cell >>> 6) & (1L << cell)) != 0;
+    }
+
+    /**
+     * Mark the pointers of a gray node, the layout of the pointers is the one
+     * of CopyingGarbageCollector.firstPointer and pointerCount. A pointer that the mutator
+     * overwrites meanwhile has been logged.
+     */
+    private void scanNode(int node) {
+        if (heap[node].equals(NODE_WEAK)) {
+            weakNodes.add(node);                            //A weak pointer does not keep its node alive
+            return;
+        }
+        int pointer = firstPointer(heap, node);
+        for (int i = pointerCount(heap, node); i > 0; i--) {
+            markCell(pointer++);
+        }
+    }
+
+    private void markCell(int cell) {
+        markNode(Integer.valueOf((String) CELLS.getVolatile(heap, cell)));
+    }
+
+    /**
+     * Scan the gray nodes and the pointers logged by the mutator until there are none.
+     */
+    private void drainGray() {
+        while (true) {
+            while (!gray.isEmpty()) {
+                scanNode(gray.pop());
+            }
+            synchronized (monitor) {
+                if (logged.isEmpty()) {
+                    return;
+                }
+                IntList swap = taken;
+                taken = logged;
+                logged = swap;
+            }
+            for (int i = 0; i < taken.size(); i++) {
+                markNode(taken.get(i));
+            }
+            taken.clear();
+        }
+    }
+
+    /**
+     * Set the weak pointers to unmarked nodes to NULL.
+     */
+    private void updateWeakPointers(IntList weakNodes) {
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int pointerCell = weakNodes.get(i) + 1;
+            if (!heap[pointerCell].equals(NODE_NULL) && !isMarked(marks, Integer.valueOf(heap[pointerCell]))) {
+                heap[pointerCell] = NODE_NULL;
+            }
+        }
+        weakNodes.clear();
+    }
+
+    private void runCollector() {
+        while (true) {
+            synchronized (monitor) {
+                while (!cycleRequested && running) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                cycleRequested = false;
+                cycleRunning = true;
+            }
+            try {
+                if (failure == null) {
+                    runCycle();
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            synchronized (monitor) {
+                cycleRunning = false;
+                completedCycles++;
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A cycle : initial mark pause, concurrent marking, remark pause. The
+     * bitmap of the cycle before the last one is cleared first, outside of the
+     * pauses, no one reads it. A pause is timed once the write lock is held,
+     * the time the mutator waits for it is a stall.
+     */
+    private void runCycle() {
+        Arrays.fill(marks, 0);
+        collectorMarkedCells = 0;
+
+        lock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            blackCells = 0;
+            for (int root : stack) {
+                markNode(root);
+            }
+            marking = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long pause = System.nanoTime() - start;
+        initialMarkNanos += pause;
+        pause(pause);
+
+        start = System.nanoTime();
+        drainGray();
+        concurrentMarkNanos += System.nanoTime() - start;
+
+        lock.writeLock().lock();
+        start = System.nanoTime();
+        try {
+            drainGray();
+            updateWeakPointers(weakNodes);
+            updateWeakPointers(mutatorWeakNodes);
+            marking = false;
+            liveCells = collectorMarkedCells + blackCells;
+            long[] swap = sweepMarks;                       //The sweep starts again with the new marks
+            sweepMarks = marks;
+            marks = swap;
+            sealRun();
+            runs.clear();
+            nextRun = 0;
+            sweep = 0;
+            allocatedSinceCycle = 0;
+            triggered = false;
+            cycles++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        pause = System.nanoTime() - start;
+        remarkNanos += pause;
+        maxRemarkNanos = Math.max(maxRemarkNanos, pause);
+        pause(pause);
+    }
+
+    private void pause(long nanos) {
+        pauseNanos += nanos;
+        maxPauseNanos = Math.max(maxPauseNanos, nanos);
+    }
+
+    private void requestCycle() {
+        synchronized (monitor) {
+            cycleRequested = true;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Request a cycle and wait for the end of a cycle that starts after the request.
+     */
+    private void awaitCycle() {
+        synchronized (monitor) {
+            int target = completedCycles + (cycleRunning ? 2 : 1);
+            cycleRequested = true;
+            monitor.notifyAll();
+            while (completedCycles < target && running) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a collection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cells of the node or free chunk that starts at the given cell.
+     */
+    private int cellsAt(int cell) {
+        switch (heap[cell]) {
+            case TAG_FREE:
+                return Integer.valueOf(heap[cell + 1]);
+            case TAG_FREE_CELL:
+                return 1;
+            default:
+                return nodeSize(heap, cell);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package cheneys;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.CopyOrder.java                                                        <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Order in which the CopyingGarbageCollector scans the copied nodes, and so
+ * the order of the nodes in the new semispace.
+ * <ul>
+ * <li>BREADTH_FIRST : Cheney's order, the nodes are scanned in the order they
+ * were copied. The children of a node are copied together, but far from it.</li>
+ * <li>APPROXIMATELY_DEPTH_FIRST : Moon's order. A second scan pointer scans the
+ * nodes of the block that is being filled before the main scan goes on, so the
+ * children of a node are copied next to it. The main scan scans these nodes
+ * again when it gets to them.</li>
+ * <li>HIERARCHICAL : Wilson, Lam and Moher's hierarchical decomposition, the
+ * scan of the last block of Moon's order without the second scan : the nodes
+ * already scanned are marked in a bitmap and skipped by the main scan.</li>
+ * </ul>
+ */
+public enum CopyOrder {
+    BREADTH_FIRST, APPROXIMATELY_DEPTH_FIRST, HIERARCHICAL
+}
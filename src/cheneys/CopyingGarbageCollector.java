@@ -1,11 +1,23 @@
 package cheneys;
 
+import monitoring.GcEvent;
+import monitoring.GcListener;
+import util.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * ----------------------------------------------------------------------------  <br>
  * cheneys.CopyingGarbageCollector.java created byTheo Dimopoulos on 17-11-2016.                                <br>
  * Email:   dimopoulosth.td@gmail.com | td41@st-andrews.ac.uk                             <br>
  * ----------------------------------------------------------------------------  <br>
  * This class represents a garbage collector implemeting the Cheney's algorithm.
+ * The copied nodes are scanned in breadth-first order, unless an other
+ * CopyOrder is set. The listeners also get the locality of the copied nodes :
+ * the distance between a node and the nodes it points to, and the pointers to
+ * an other cache line of lineCells cells.
  *
  * @author Theo Dimopoulos
  * @version 17-11-2016
@@ -25,6 +37,8 @@ public class CopyingGarbageCollector {
     public static final String NODE_TYPE = "TYPE";
     public static final String NODE_WEAK = "WEAK";
     public static final String TAG_FORWARD = "FWD";
+    public static final int DEFAULT_BLOCK_CELLS = 256;
+    public static final int DEFAULT_LINE_CELLS = 16;    //64 byte lines of 4 byte cells
 
 
     private String[] heap;              //Array that represents the heap
@@ -34,8 +48,20 @@ public class CopyingGarbageCollector {
     private int fromSpaceStart;         //The start position of the old semispace
     private int toSpaceStart;           //The start position of the new semispace
     private int flip;                   //Counter that indicates the odd/even flip to identify new & old semispace
+    private int[] nullForwards = new int[0];    //New location + 1 of the NULL nodes by old semispace cell, no cell for FWD
+    private boolean nullsForwarded;             //nullForwards has entries to reset at flip
+    private List<GcListener> listeners = new ArrayList<>();
+    private IntList weakNodes = new IntList();          //Weak nodes copied by the collection
+    private GcEvent event = new GcEvent("Cheney", 1);     //Measures of the collection until the next flip
+    private CopyOrder copyOrder = CopyOrder.BREADTH_FIRST;
+    private int blockCells = DEFAULT_BLOCK_CELLS;       //Block scanned first by the depth-first orders
+    private int lineCells = DEFAULT_LINE_CELLS;         //Cache line of the locality measures
+    private int partialScan;                            //Scan of the last block, for the depth-first orders
+    private int lastBlockNode;                          //First node copied in the last block
+    private long[] scannedNodes = new long[0];          //First cells of the nodes scanned by partialScan, hierarchical order
 
     public int numberOfObjectsCopied;
+    public int numberOfObjectsRescanned;                //Nodes scanned twice, Moon's order
 
     /**
      * Construct new collector, given a heap and stack with roots.
@@ -44,7 +70,7 @@ public class CopyingGarbageCollector {
         this.heap = heap;
         this.stack = stack;
         fromSpaceStart = 0;
-        scan = toSpaceStart = nextTo = heap.length / 2;
+        scan = toSpaceStart = nextTo = lastBlockNode = heap.length / 2;
 
 
     }
@@ -55,6 +81,7 @@ public class CopyingGarbageCollector {
      * stack with roots.
      */
     public void evacuateRoots() {
+        long start = System.nanoTime();
         for (int i = 0; i < stack.length; i++) {
             if (stack[i] == -1)
                 continue;
@@ -63,58 +90,134 @@ public class CopyingGarbageCollector {
             int newLocation = nextTo;
             if (!heap[root].equals("FWD")) {                 //Root is not evacuated
                 evacuate(root);                              //Evacuate node that root points
+            } else {
+                newLocation = Integer.valueOf(forwardingPointer(root));   //Root shared with a previous one
             }
             stack[i] = newLocation;                          //Update the root
 
         }
+        event.evacuateRootsNanos += System.nanoTime() - start;
     }
 
     /**
      * Implements the scavenging phase.
      */
     public void scavenge() {
-        do {
-            doScavenging();
-        } while (scan < nextTo);
+        long start = System.nanoTime();
+        if (copyOrder == CopyOrder.BREADTH_FIRST) {
+            while (scan < nextTo) {                     //No node to scan when the stack is empty
+                doScavenging();
+            }
+        } else {
+            scavengeLastBlockFirst();
+        }
+        long scavenged = System.nanoTime();
+        event.scavengeNanos += scavenged - start;
 
         updateWeakPointers();   //Update the weak pointer that are in new semispace
+        event.updateWeakPointersNanos += System.nanoTime() - scavenged;
     }
 
     /**
-     * Perform the flip between the new semi spaces.
+     * Perform the flip between the new semi spaces. The listeners get the
+     * measures of the collection that ends.
      */
     public void flip() {
+        if (!listeners.isEmpty()) {
+            event.objectsCopied = numberOfObjectsCopied;
+            event.cellsCopied = nextTo - toSpaceStart;
+            if (event.cellsInUse == 0) {                //Old memory was not cleared
+                event.cellsInUse = usedCells(fromSpaceStart);
+            }
+            measureLocality();
+            for (GcListener listener : listeners) {
+                listener.onCollection(event);
+            }
+        }
+        event = new GcEvent("Cheney", event.cycle + 1);
+        if (nullsForwarded) {
+            Arrays.fill(nullForwards, 0);
+            nullsForwarded = false;
+        }
         if (flip % 2 == 0) {
-            toSpaceStart = scan = nextTo = 0;
+            toSpaceStart = scan = nextTo = lastBlockNode = 0;
             fromSpaceStart = heap.length / 2;
         } else {
-            toSpaceStart = scan = nextTo = heap.length / 2;
+            toSpaceStart = scan = nextTo = lastBlockNode = heap.length / 2;
             fromSpaceStart = 0;
         }
         flip++;
         numberOfObjectsCopied = 0;
+        numberOfObjectsRescanned = 0;
     }
 
     /**
      * Clear the old semi space.
      */
     public void clearOldMemory() {
+        long start = System.nanoTime();
+        if (!listeners.isEmpty()) {
+            event.cellsInUse = usedCells(fromSpaceStart);
+        }
         if (flip % 2 == 0) {
             for (int i = fromSpaceStart; i < heap.length / 2; i++) {
                 if (heap[i] == null) {
-                    return;
+                    break;
                 } else
                     heap[i] = null;
             }
         } else {
             for (int i = fromSpaceStart; i < heap.length; i++) {
                 if (heap[i] == null) {
-                    return;
+                    break;
                 } else
                     heap[i] = null;
             }
         }
+        event.clearOldMemoryNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Add a listener of the collections, it is called at every flip.
+     */
+    public void addListener(GcListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GcListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Set the order of the next collections.
+     */
+    public void setCopyOrder(CopyOrder copyOrder) {
+        this.copyOrder = copyOrder;
+    }
 
+    public CopyOrder getCopyOrder() {
+        return copyOrder;
+    }
+
+    /**
+     * Set the block of the depth-first orders, the nodes copied in the last
+     * block are scanned before the other ones.
+     */
+    public void setBlockCells(int blockCells) {
+        if (blockCells <= 0) {
+            throw new IllegalArgumentException("Block of " + blockCells + " cells");
+        }
+        this.blockCells = blockCells;
+    }
+
+    /**
+     * Set the cache line of the locality measures.
+     */
+    public void setLineCells(int lineCells) {
+        if (lineCells <= 0) {
+            throw new IllegalArgumentException("Line of " + lineCells + " cells");
+        }
+        this.lineCells = lineCells;
     }
 
     /**
@@ -132,6 +235,84 @@ public class CopyingGarbageCollector {
         return stack;
     }
 
+    /**
+     * Size in cells of the node that starts at the given position.
+     */
+    public static int nodeSize(String[] heap, int position) {
+        String tag = heap[position];
+        return nodeSize(tag, hasPointerCount(tag) ? Integer.valueOf(heap[position + 2]) : 0);
+    }
+
+    /**
+     * Cell of the first pointer of the node that starts at the given position.
+     * Weak pointers are not counted as pointers.
+     */
+    public static int firstPointer(String[] heap, int position) {
+        return position + firstPointerOffset(heap[position]);
+    }
+
+    /**
+     * Number of pointers of the node that starts at the given position, they
+     * are in the cells that follow firstPointer. Weak pointers are not counted.
+     */
+    public static int pointerCount(String[] heap, int position) {
+        String tag = heap[position];
+        return pointerCount(tag, hasPointerCount(tag) ? Integer.valueOf(heap[position + 2]) : 0);
+    }
+
+    /**
+     * True for the nodes whose number of pointers is in their third cell,
+     * after the tag and the identifier : CONSTR and LAMBDA.
+     */
+    public static boolean hasPointerCount(String tag) {
+        return tag.equals(NODE_CONSTR) || tag.equals(NODE_LAMBDA);
+    }
+
+    /**
+     * Size in cells of a node with the given tag. The number of pointers is
+     * the third cell of the node when hasPointerCount, it is ignored otherwise.
+     */
+    public static int nodeSize(String tag, int numberOfPointers) {
+        switch (tag) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return numberOfPointers + 3;                //Tag, identifier, number of pointers and the pointers
+            case NODE_CONS:
+                return HeapBuilder.CONS_SIZE;
+            case NODE_TYPE:
+                return HeapBuilder.TYPE_SIZE;
+            case NODE_NULL:
+                return HeapBuilder.NULL_SIZE;
+            default:
+                return HeapBuilder.INT_SIZE;                //Tag and a value or a pointer
+        }
+    }
+
+    /**
+     * Number of pointers of a node with the given tag, as for nodeSize.
+     */
+    public static int pointerCount(String tag, int numberOfPointers) {
+        switch (tag) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return numberOfPointers;
+            case NODE_CONS:
+                return 2;
+            case NODE_IND:
+            case NODE_TYPE:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Offset in a node with the given tag of its first pointer.
+     */
+    public static int firstPointerOffset(String tag) {
+        return hasPointerCount(tag) ? 3 : 1;
+    }
+
     /**
      * Evacuate node. Copy the node to the new semi space.
      */
@@ -139,6 +320,9 @@ public class CopyingGarbageCollector {
         String nodeTag = heap[root];                //Get Node tag
         int nodeNewLocation = nextTo;               //Store the new location
         heap[nextTo++] = nodeTag;                   //Copy Node  tag
+        if (nodeNewLocation / blockCells != lastBlockNode / blockCells) {
+            lastBlockNode = nodeNewLocation;        //First node of a new block
+        }
 
 
         switch (nodeTag) {
@@ -194,8 +378,17 @@ public class CopyingGarbageCollector {
         }
         heap[root] = "FWD";
         numberOfObjectsCopied++;
+        if (NODE_WEAK.equals(nodeTag)) {
+            weakNodes.add(nodeNewLocation);                         //Updated at the end of scavenging
+        }
         if (nodeTag != NODE_NULL) {                                   //If it was not a null value
             heap[root + 1] = String.valueOf(nodeNewLocation);       //FWD to new location
+        } else {
+            if (nullForwards.length == 0) {                         //A NULL node is a single cell
+                nullForwards = new int[heap.length / 2];
+            }
+            nullForwards[root - fromSpaceStart] = nodeNewLocation + 1;
+            nullsForwarded = true;
         }
         //System.out.println(Arrays.toString(heap));
     }
@@ -231,8 +424,7 @@ public class CopyingGarbageCollector {
                 scavengeCell(heap[scan]);               //update pointers
                 break;
             case NODE_NULL:
-                scan++;
-                break;
+                break;                                  //Null node is only its tag
             case NODE_LAMBDA:
                 scan++;                                //skip function identifier
                 int l = Integer.valueOf(heap[scan++]); //skip number of arguments
@@ -257,57 +449,149 @@ public class CopyingGarbageCollector {
     }
 
     /**
-     * Scavenge a cell, copy the node into the new space.
+     * Scavenging of the depth-first orders. The nodes of the last block are
+     * scanned by partialScan as long as there are some, the main scan only
+     * scans a node when the last block is scanned. partialScan starts from the
+     * main scan, the nodes before it are scanned.
+     */
+    private void scavengeLastBlockFirst() {
+        boolean hierarchical = copyOrder == CopyOrder.HIERARCHICAL;
+        if (hierarchical) {
+            clearScannedNodes();
+        }
+        partialScan = toSpaceStart;
+        while (true) {
+            partialScan = Math.max(partialScan, Math.max(lastBlockNode, scan));
+            if (partialScan < nextTo) {
+                int node = partialScan;
+                partialScan = scanNode(node);
+                if (hierarchical) {
+                    scannedNodes[node >>> 6] |= 1L << node;
+                } else {
+                    numberOfObjectsRescanned++;                 //The main scan gets to it later
+                }
+            } else if (scan < nextTo) {
+                if (hierarchical && (scannedNodes[scan >>> 6] & 1L << scan) != 0) {
+                    scan += nodeSize(heap, scan);
+                } else {
+                    doScavenging();
+                }
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Scan the node at the given position with the scavenging of the main
+     * scan, and return the end of the node.
+     */
+    private int scanNode(int position) {
+        int mainScan = scan;
+        scan = position;
+        doScavenging();
+        int end = scan;
+        scan = mainScan;
+        return end;
+    }
+
+    private void clearScannedNodes() {
+        if (scannedNodes.length == 0) {
+            scannedNodes = new long[(heap.length >>> 6) + 1];
+        }
+        Arrays.fill(scannedNodes, toSpaceStart >>> 6, ((toSpaceStart + heap.length / 2) >>> 6) + 1, 0);
+    }
+
+    /**
+     * Scavenge a cell, copy the node into the new space. The cell of a node
+     * that is scanned again already points to the new semispace.
      */
     private void scavengeCell(String node) {
         int n = Integer.valueOf(node);
+        if (n >= toSpaceStart && n < toSpaceStart + heap.length / 2) {
+            scan++;
+            return;
+        }
         int oldNextTo = nextTo;
         if (!heap[n].equals("FWD")) {
             evacuate(n);
             heap[scan++] = String.valueOf(oldNextTo);
         } else {
-            heap[scan++] = heap[n + 1]; //Node has a FWD so update the pointer
+            heap[scan++] = forwardingPointer(n); //Node has a FWD so update the pointer
         }
 
     }
 
     /**
-     * Update weak pointers.
+     * Pointer to the new location of a forwarded node.
+     */
+    private String forwardingPointer(int node) {
+        int offset = node - fromSpaceStart;
+        if (offset >= 0 && offset < nullForwards.length && nullForwards[offset] != 0) {
+            return String.valueOf(nullForwards[offset] - 1);
+        }
+        return heap[node + 1];
+    }
+
+    /**
+     * Update weak pointers. Only the weak nodes copied by the collection
+     * are visited.
      */
     private void updateWeakPointers() {
-        int start = toSpaceStart;
-        int stop = start + heap.length / 2;
-        do {
-            if (heap[start].equals(NODE_WEAK)) {
-                try {
-                    int weakPointerValue = Integer.valueOf(heap[start + 1]);
-                    if (heap[weakPointerValue].equals(TAG_FORWARD)) {
-                        heap[start + 1] = heap[weakPointerValue + 1];   //update weak pointer
-                    } else {
-                        // heap[start] = null;
-                        heap[start + 1] = "NULL";                         //This pointer is pointed by root by the node that points in collected
-                    }
-                } catch (NumberFormatException e) {
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int start = weakNodes.get(i);
+            try {
+                int weakPointerValue = Integer.valueOf(heap[start + 1]);
+                if (heap[weakPointerValue].equals(TAG_FORWARD)) {
+                    heap[start + 1] = forwardingPointer(weakPointerValue);   //update weak pointer
+                    event.weakPointersUpdated++;
+                } else {
+                    // heap[start] = null;
+                    heap[start + 1] = "NULL";                         //This pointer is pointed by root by the node that points in collected
+                    event.weakPointersCleared++;
+                }
+            } catch (NumberFormatException e) {
 
+            }
+        }
+        weakNodes.clear();
+    }
+
+    /**
+     * Locality of the copied nodes : the cells between a node and the nodes
+     * of its strong pointers, and the pointers to a node in an other line.
+     */
+    private void measureLocality() {
+        long pointers = 0;
+        long distance = 0;
+        long crossings = 0;
+        int position = toSpaceStart;
+        while (position < nextTo) {
+            int first = firstPointer(heap, position);
+            int count = pointerCount(heap, position);
+            for (int i = 0; i < count; i++) {
+                int child = Integer.valueOf(heap[first + i]);
+                distance += Math.abs(child - position);
+                if (child / lineCells != position / lineCells) {
+                    crossings++;
                 }
             }
-            start += nextNode(heap[start], start);
-        } while (start < nextTo);
+            pointers += count;
+            position += nodeSize(heap, position);
+        }
+        event.pointersMeasured = pointers;
+        event.pointerDistance = distance;
+        event.lineCrossings = crossings;
     }
 
     /**
-     * Find the next Node.
+     * Cells in use in a semispace, until its first free cell.
      */
-    private int nextNode(String nodeTag, int currentPosition) {
-
-        if (nodeTag.equals(NODE_INT) || nodeTag.equals(NODE_DOUBLE) || nodeTag.equals(NODE_CHAR)
-                || nodeTag.equals(NODE_BOOL) || nodeTag.equals(NODE_IND) || nodeTag.equals(NODE_VAR) || nodeTag.equals(NODE_WEAK)) {
-            return 2;
-        } else if (nodeTag.equals(NODE_CONS) || nodeTag.equals(NODE_TYPE)) {
-            return 3;
-        } else if (nodeTag.equals(NODE_CONSTR) || nodeTag.equals(NODE_LAMBDA)) {
-            return Integer.valueOf(heap[currentPosition + 2]);
-        } else
-            return 1;
+    private int usedCells(int semispaceStart) {
+        int i = semispaceStart;
+        while (i < semispaceStart + heap.length / 2 && heap[i] != null) {
+            i++;
+        }
+        return i - semispaceStart;
     }
 }
@@ -0,0 +1,678 @@
+package cheneys;
+
+import util.IntList;
+
+import java.util.Arrays;
+
+import static cheneys.IntCopyingGarbageCollector.FORWARD_BIT;
+import static cheneys.IntCopyingGarbageCollector.NODE_CONS;
+import static cheneys.IntCopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.IntCopyingGarbageCollector.NODE_FREE;
+import static cheneys.IntCopyingGarbageCollector.NODE_IND;
+import static cheneys.IntCopyingGarbageCollector.NODE_INT;
+import static cheneys.IntCopyingGarbageCollector.NODE_LAMBDA;
+import static cheneys.IntCopyingGarbageCollector.NODE_NULL;
+import static cheneys.IntCopyingGarbageCollector.NODE_TYPE;
+import static cheneys.IntCopyingGarbageCollector.NODE_WEAK;
+import static cheneys.IntCopyingGarbageCollector.NULL_POINTER;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.GenerationalGarbageCollector.java                                     <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Generational collector over the int heap representation. The heap is split in
+ * an old space and a nursery, the nursery is a pair of semispaces collected with
+ * Cheney's algorithm :
+ * <pre>
+ *  [ old space | nursery semispace 0 | nursery semispace 1 ]
+ * </pre>
+ * New nodes are allocated in the nursery. A minor collection copies the live
+ * young nodes to the other nursery semispace, and promotes to the old space the
+ * ones that survived promotionAge minor collections (or all the survivors that
+ * do not fit in the nursery semispace). The roots of a minor
+ * collection are the stack and the remembered set, the old cells that point
+ * into the nursery. The remembered set is kept by the write barrier of
+ * writePointer, so old nodes are never traced by a minor collection and its cost
+ * depends on the surviving young nodes only.
+ * <p>
+ * Instead of the remembered set, the collector can keep a card table over the
+ * old space. The write barrier then marks the card of the cell, and a minor
+ * collection scans the pointers of the dirty cards as extra roots.
+ * <p>
+ * A full collection copies all the live nodes to the start of the old space,
+ * through a scratch space of the old space size. It runs instead of a minor
+ * collection when the old space could not take a whole nursery of promotions.
+ * <p>
+ * Allocations may collect and move nodes. The pointers that are given to an
+ * allocation method are updated, any other address kept by the mutator outside
+ * the stack is not valid after an allocation.
+ */
+public class GenerationalGarbageCollector {
+
+    private int[] heap;                 //Array that represents the heap
+    private int[] stack;                //Array that represents the stack with roots
+    private int[] ages;                 //Number of minor collections survived by each young node
+    private int[] scratch;              //To space of full collections
+
+    private final int oldSize;          //Cells of the old space
+    private final int nurserySize;      //Cells of a nursery semispace
+    private final int promotionAge;     //Survivals before a node is promoted
+    private int oldTop;                 //Next free cell in old space
+    private int nurseryStart;           //Start of the nursery semispace in use
+    private int nurseryTop;             //Next free cell in the nursery semispace in use
+    private int scan;                   //Scavenge pointer in the nursery semispace
+    private int promotedScan;           //Scavenge pointer of the promoted nodes
+
+    private IntList rememberedSet = new IntList();          //Old cells that point to young nodes
+    private IntList rememberedWeakSet = new IntList();      //Old weak pointer cells that point to young nodes
+    private long[] remembered;                              //Bit per old cell, set if the cell is remembered
+    private CardTable cardTable;                            //Replaces the remembered set if not null
+    private IntList weakNodes = new IntList();              //Weak nodes copied by the current collection
+    private final int[] arguments = new int[2];             //Pointers given to an allocation
+    private boolean tenureAll;                              //Promote every survivor of the minor collection
+
+    public int numberOfObjectsCopied;   //Objects copied by the last collection
+    public int numberOfObjectsPromoted; //Objects promoted by the last collection
+    public int minorCollections;
+    public int fullCollections;
+    public long minorPauseNanos;        //Total time of minor collections
+    public long maxMinorPauseNanos;
+    public long fullPauseNanos;         //Total time of full collections
+    public long maxFullPauseNanos;
+
+    /**
+     * Construct new collector and its heap.
+     *
+     * @param oldSize      Cells of the old space.
+     * @param nurserySize  Cells of each of the two nursery semispaces.
+     * @param promotionAge Number of minor collections a node survives before it is promoted.
+     * @param stack        Stack with roots, negative values are empty slots.
+     */
+    public GenerationalGarbageCollector(int oldSize, int nurserySize, int promotionAge, int[] stack) {
+        this.oldSize = oldSize;
+        this.nurserySize = nurserySize;
+        this.promotionAge = promotionAge;
+        this.stack = stack;
+        heap = new int[oldSize + 2 * nurserySize];
+        ages = new int[2 * nurserySize];
+        remembered = new long[(oldSize + 63) / 64];
+        nurseryStart = nurseryTop = oldSize;
+    }
+
+    /**
+     * Construct new collector and its heap, with a card table over the old space
+     * instead of a remembered set.
+     *
+     * @param cardSize Cells per card, a power of two.
+     */
+    public GenerationalGarbageCollector(int oldSize, int nurserySize, int promotionAge, int cardSize, int[] stack) {
+        this(oldSize, nurserySize, promotionAge, stack);
+        cardTable = new CardTable(oldSize, cardSize);
+    }
+
+    /**
+     * Add an integer node.
+     */
+    public int allocateInteger(int value) {
+        return allocateScalar(NODE_INT, value);
+    }
+
+    /**
+     * Add a DOUBLE, CHAR, BOOL or VAR node, the value is its int encoding.
+     */
+    public int allocateScalar(int tag, int value) {
+        int node = allocate(2, 0, null);
+        heap[node] = tag;
+        heap[node + 1] = value;
+        return node;
+    }
+
+    /**
+     * Add a null node.
+     */
+    public int allocateNull() {
+        int node = allocate(1, 0, null);
+        heap[node] = NODE_NULL;
+        return node;
+    }
+
+    /**
+     * Add a list constructor node.
+     */
+    public int allocateListConstructor(int pointerValue1, int pointerValue2) {
+        arguments[0] = pointerValue1;
+        arguments[1] = pointerValue2;
+        int node = allocate(3, 2, arguments);
+        heap[node] = NODE_CONS;
+        initializePointer(node, 1, arguments[0]);
+        initializePointer(node, 2, arguments[1]);
+        return node;
+    }
+
+    /**
+     * Add an indirection node.
+     */
+    public int allocateIndirection(int pointerValue) {
+        return allocateUniquePointerNode(NODE_IND, pointerValue);
+    }
+
+    /**
+     * Add a weak pointer node.
+     */
+    public int allocateWeak(int pointerValue) {
+        return allocateUniquePointerNode(NODE_WEAK, pointerValue);
+    }
+
+    /**
+     * Add a type node, the type is a symbol.
+     */
+    public int allocateType(int pointerValue, int type) {
+        arguments[0] = pointerValue;
+        int node = allocate(3, 1, arguments);
+        heap[node] = NODE_TYPE;
+        initializePointer(node, 1, arguments[0]);
+        heap[node + 2] = type;
+        return node;
+    }
+
+    /**
+     * Add a data constructor node. The pointers are updated if the allocation collects.
+     */
+    public int allocateDataConstructor(int constructor, int[] pointerValues) {
+        return allocateUnknownSizeNode(NODE_CONSTR, constructor, pointerValues);
+    }
+
+    /**
+     * Add a lambda node. The pointers are updated if the allocation collects.
+     */
+    public int allocateLambda(int function, int[] pointerValues) {
+        return allocateUnknownSizeNode(NODE_LAMBDA, function, pointerValues);
+    }
+
+    /**
+     * Read a pointer (or any other cell) of a node.
+     */
+    public int readPointer(int node, int cell) {
+        return heap[node + cell];
+    }
+
+    /**
+     * Write barrier. Store a pointer in a node and remember the cell (or
+     * mark its card) if an old node now points to a young one.
+     */
+    public void writePointer(int node, int cell, int pointerValue) {
+        heap[node + cell] = pointerValue;
+        if (node < oldSize && pointerValue >= oldSize) {
+            remember(node + cell, heap[node] == NODE_WEAK);
+        }
+    }
+
+    /**
+     * Collect the nursery, or the whole heap if the old space may not
+     * have room for the promoted nodes.
+     */
+    public void collect() {
+        if (oldSize - oldTop < nurseryTop - nurseryStart) {
+            fullCollection();
+        } else {
+            minorCollection();
+        }
+    }
+
+    /**
+     * Collect the nursery. Live young nodes are copied to the other nursery
+     * semispace or promoted to the old space. If the old space may not have
+     * room for them, the whole heap is collected instead.
+     */
+    public void minorCollection() {
+        if (oldSize - oldTop < nurseryTop - nurseryStart) {    //Promotions could overflow into the nursery
+            fullCollection();
+            return;
+        }
+        long start = System.nanoTime();
+        int fromSpaceStart = nurseryStart;
+        nurseryStart = nurseryStart == oldSize ? oldSize + nurserySize : oldSize;
+        scan = nurseryTop = nurseryStart;
+        promotedScan = oldTop;
+        numberOfObjectsCopied = numberOfObjectsPromoted = 0;
+
+        for (int i = 0; i < stack.length; i++) {                //Evacuate roots
+            if (stack[i] >= 0) {
+                stack[i] = evacuateYoung(stack[i]);
+            }
+        }
+        if (cardTable != null) {
+            scanDirtyCards(promotedScan);                       //Evacuate the pointers of dirty cards
+        } else {
+            IntList oldRememberedSet = rememberedSet;           //Evacuate remembered cells
+            rememberedSet = new IntList(oldRememberedSet.size());
+            for (int i = 0; i < oldRememberedSet.size(); i++) {
+                int cell = oldRememberedSet.get(i);
+                clearRemembered(cell);
+                heap[cell] = evacuateYoung(heap[cell]);
+                if (heap[cell] >= oldSize) {
+                    remember(cell, false);
+                }
+            }
+        }
+
+        while (scan < nurseryTop || promotedScan < oldTop) {    //Scavenge survivors and promoted nodes
+            while (scan < nurseryTop) {
+                scan += scavengeNode(scan, false);
+            }
+            while (promotedScan < oldTop) {
+                promotedScan += scavengeNode(promotedScan, true);
+            }
+        }
+        updateYoungWeakPointers();
+
+        Arrays.fill(heap, fromSpaceStart, fromSpaceStart + nurserySize, NODE_FREE);
+        Arrays.fill(ages, fromSpaceStart - oldSize, fromSpaceStart - oldSize + nurserySize, 0);
+
+        long pause = System.nanoTime() - start;
+        minorCollections++;
+        minorPauseNanos += pause;
+        maxMinorPauseNanos = Math.max(maxMinorPauseNanos, pause);
+    }
+
+    /**
+     * Collect the whole heap. All the live nodes are copied to the start of the
+     * old space, the nursery is empty afterwards.
+     */
+    public void fullCollection() {
+        long start = System.nanoTime();
+        if (scratch == null) {
+            scratch = new int[oldSize];
+        }
+        int top = 0;
+        numberOfObjectsCopied = numberOfObjectsPromoted = 0;
+        weakNodes.clear();
+
+        for (int i = 0; i < stack.length; i++) {
+            if (stack[i] >= 0) {
+                int tag = heap[stack[i]];
+                if (tag >= 0) {
+                    top = evacuateFull(stack[i], top);
+                }
+                stack[i] = heap[stack[i]] & ~FORWARD_BIT;
+            }
+        }
+        int fullScan = 0;
+        while (fullScan < top) {
+            int size = nodeSize(scratch, fullScan);
+            int firstPointer = firstPointer(scratch, fullScan);
+            int lastPointer = lastPointer(scratch, fullScan);
+            for (int cell = fullScan + firstPointer; cell <= fullScan + lastPointer; cell++) {
+                int pointer = scratch[cell];
+                if (heap[pointer] >= 0) {
+                    top = evacuateFull(pointer, top);
+                }
+                scratch[cell] = heap[pointer] & ~FORWARD_BIT;
+            }
+            fullScan += size;
+        }
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int weakNode = weakNodes.get(i);
+            int weakPointerValue = scratch[weakNode + 1];
+            if (weakPointerValue != NULL_POINTER) {
+                int target = heap[weakPointerValue];
+                scratch[weakNode + 1] = target < 0 ? target & ~FORWARD_BIT : NULL_POINTER;
+            }
+        }
+        weakNodes.clear();
+
+        System.arraycopy(scratch, 0, heap, 0, top);
+        Arrays.fill(heap, top, heap.length, NODE_FREE);
+        Arrays.fill(scratch, 0, top, NODE_FREE);
+        Arrays.fill(ages, 0);
+        Arrays.fill(remembered, 0);
+        rememberedSet.clear();
+        rememberedWeakSet.clear();
+        if (cardTable != null) {
+            cardTable.clear();
+            for (int node = 0; node < top; node += nodeSize(heap, node)) {
+                cardTable.recordNode(node, nodeSize(heap, node));
+            }
+        }
+        oldTop = top;
+        nurseryStart = nurseryTop = oldSize;
+
+        long pause = System.nanoTime() - start;
+        fullCollections++;
+        fullPauseNanos += pause;
+        maxFullPauseNanos = Math.max(maxFullPauseNanos, pause);
+    }
+
+    /**
+     * Print the pause times of minor and full collections.
+     */
+    public void printStatistics() {
+        System.out.println("MINOR COLLECTIONS : " + minorCollections + " total " + minorPauseNanos / 1000 + "us"
+                + " avg " + (minorCollections == 0 ? 0 : minorPauseNanos / minorCollections / 1000) + "us"
+                + " max " + maxMinorPauseNanos / 1000 + "us");
+        System.out.println("FULL COLLECTIONS  : " + fullCollections + " total " + fullPauseNanos / 1000 + "us"
+                + " avg " + (fullCollections == 0 ? 0 : fullPauseNanos / fullCollections / 1000) + "us"
+                + " max " + maxFullPauseNanos / 1000 + "us");
+        System.out.println("OLD SPACE         : " + oldTop + " / " + oldSize + " cells");
+        if (cardTable != null) {
+            System.out.println("CARD TABLE        : " + cardTable.dirtyCards + " dirty of " + cardTable.cardsScanned
+                    + " cards scanned, " + cardTable.cellsScanned + " cells, card size " + cardTable.getCardSize());
+        } else {
+            System.out.println("REMEMBERED SET    : " + (rememberedSet.size() + rememberedWeakSet.size()) + " cells");
+        }
+    }
+
+    public int[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    public int getOldSize() {
+        return oldSize;
+    }
+
+    /**
+     * Get the next free cell of the old space.
+     */
+    public int getOldTop() {
+        return oldTop;
+    }
+
+    /**
+     * Number of cells in use in the nursery.
+     */
+    public int getNurseryUsed() {
+        return nurseryTop - nurseryStart;
+    }
+
+    /**
+     * Number of remembered cells, or of dirty cards if the collector has a card table.
+     */
+    public int getRememberedSetSize() {
+        if (cardTable != null) {
+            return cardTable.dirtyCount();
+        }
+        return rememberedSet.size() + rememberedWeakSet.size();
+    }
+
+    public CardTable getCardTable() {
+        return cardTable;
+    }
+
+    /**
+     * Check if a node is in the old space.
+     */
+    public boolean isOld(int node) {
+        return node < oldSize;
+    }
+
+    private int allocateUniquePointerNode(int tag, int pointerValue) {
+        arguments[0] = pointerValue;
+        int node = allocate(2, 1, arguments);
+        heap[node] = tag;
+        initializePointer(node, 1, arguments[0]);
+        return node;
+    }
+
+    private int allocateUnknownSizeNode(int tag, int identifier, int[] pointerValues) {
+        int node = allocate(pointerValues.length + 3, pointerValues.length, pointerValues);
+        heap[node] = tag;
+        heap[node + 1] = identifier;
+        heap[node + 2] = pointerValues.length;
+        for (int i = 0; i < pointerValues.length; i++) {
+            initializePointer(node, 3 + i, pointerValues[i]);
+        }
+        return node;
+    }
+
+    /**
+     * Allocate size cells in the nursery, collecting if it is full. A node that
+     * does not fit in an empty nursery is allocated in the old space.
+     *
+     * @param pointers Pointers of the new node, they are roots if the allocation collects.
+     */
+    private int allocate(int size, int numberOfPointers, int[] pointers) {
+        if (nurseryTop + size > nurseryStart + nurserySize) {
+            int[] savedStack = stack;
+            stack = withPointers(savedStack, numberOfPointers, pointers);
+            collect();
+            if (nurseryTop + size > nurseryStart + nurserySize) {
+                if (oldSize - oldTop >= nurseryTop - nurseryStart) {
+                    tenureAll = true;                           //Survivors fill the nursery, promote them all
+                    minorCollection();
+                    tenureAll = false;
+                } else {
+                    fullCollection();
+                }
+            }
+            for (int i = 0; i < numberOfPointers; i++) {
+                pointers[i] = stack[savedStack.length + i];
+            }
+            System.arraycopy(stack, 0, savedStack, 0, savedStack.length);
+            stack = savedStack;
+
+            if (nurseryTop + size > nurseryStart + nurserySize) {
+                if (oldTop + size > oldSize) {
+                    throw new IllegalStateException("Heap is full");
+                }
+                int node = oldTop;                              //Pretenure the node
+                oldTop += size;
+                if (cardTable != null) {
+                    cardTable.recordNode(node, size);
+                }
+                return node;
+            }
+        }
+        int node = nurseryTop;
+        nurseryTop += size;
+        return node;
+    }
+
+    private static int[] withPointers(int[] stack, int numberOfPointers, int[] pointers) {
+        int[] roots = Arrays.copyOf(stack, stack.length + numberOfPointers);
+        for (int i = 0; i < numberOfPointers; i++) {
+            roots[stack.length + i] = pointers[i];
+        }
+        return roots;
+    }
+
+    /**
+     * Write a pointer of a new node through the write barrier, a pretenured node may point to young ones.
+     */
+    private void initializePointer(int node, int cell, int pointerValue) {
+        writePointer(node, cell, pointerValue);
+    }
+
+    /**
+     * Evacuate a young node of the nursery semispace that is collected.
+     *
+     * @return The new location of the node, or the pointer itself for old nodes.
+     */
+    private int evacuateYoung(int node) {
+        if (node < oldSize || node == NULL_POINTER) {
+            return node;
+        }
+        int tag = heap[node];
+        if (tag < 0) {
+            return tag & ~FORWARD_BIT;
+        }
+        int size = nodeSize(heap, node);
+        int age = ages[node - oldSize] + 1;
+        int nodeNewLocation;
+        if (age >= promotionAge || tenureAll || nurseryTop + size > nurseryStart + nurserySize) {
+            nodeNewLocation = oldTop;                           //Promote, early if the survivors do not fit
+            oldTop += size;
+            numberOfObjectsPromoted++;
+            if (cardTable != null) {
+                cardTable.recordNode(nodeNewLocation, size);
+            }
+        } else {
+            nodeNewLocation = nurseryTop;                       //Copy to the other nursery semispace
+            nurseryTop += size;
+            ages[nodeNewLocation - oldSize] = age;
+        }
+        System.arraycopy(heap, node, heap, nodeNewLocation, size);
+        heap[node] = FORWARD_BIT | nodeNewLocation;
+        if (tag == NODE_WEAK) {
+            weakNodes.add(nodeNewLocation);
+        }
+        numberOfObjectsCopied++;
+        return nodeNewLocation;
+    }
+
+    /**
+     * Scavenge a survivor or promoted node. Promoted nodes that still point
+     * to young nodes are added to the remembered set.
+     *
+     * @return The size of the node.
+     */
+    private int scavengeNode(int node, boolean promoted) {
+        int lastPointer = lastPointer(heap, node);
+        for (int cell = node + firstPointer(heap, node); cell <= node + lastPointer; cell++) {
+            heap[cell] = evacuateYoung(heap[cell]);
+            if (promoted && heap[cell] >= oldSize) {
+                remember(cell, false);
+            }
+        }
+        return nodeSize(heap, node);
+    }
+
+    /**
+     * Update the weak pointers of the nodes copied by a minor collection and
+     * the remembered weak pointers of the old space (or those of the dirty cards).
+     */
+    private void updateYoungWeakPointers() {
+        IntList oldRememberedWeakSet = rememberedWeakSet;
+        rememberedWeakSet = new IntList(oldRememberedWeakSet.size());
+        for (int i = 0; i < oldRememberedWeakSet.size(); i++) {
+            clearRemembered(oldRememberedWeakSet.get(i));
+            weakNodes.add(oldRememberedWeakSet.get(i) - 1);
+        }
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int weakNode = weakNodes.get(i);
+            int weakPointerValue = heap[weakNode + 1];
+            if (weakPointerValue >= oldSize) {
+                int target = heap[weakPointerValue];
+                if (target < 0) {
+                    heap[weakNode + 1] = target & ~FORWARD_BIT;    //Target survived
+                } else if (weakPointerValue < nurseryStart || weakPointerValue >= nurseryStart + nurserySize) {
+                    heap[weakNode + 1] = NULL_POINTER;             //Target was collected
+                }
+                if (weakNode < oldSize && heap[weakNode + 1] >= oldSize) {
+                    remember(weakNode + 1, true);
+                }
+            }
+        }
+        weakNodes.clear();
+    }
+
+    /**
+     * Copy a node of either space to the scratch space of a full collection.
+     *
+     * @return The new top of the scratch space.
+     */
+    private int evacuateFull(int node, int top) {
+        int size = nodeSize(heap, node);
+        if (top + size > oldSize) {
+            throw new IllegalStateException("Heap is full");
+        }
+        System.arraycopy(heap, node, scratch, top, size);
+        if (heap[node] == NODE_WEAK) {
+            weakNodes.add(top);
+        }
+        heap[node] = FORWARD_BIT | top;
+        numberOfObjectsCopied++;
+        return top + size;
+    }
+
+    /**
+     * Scan the pointers of the dirty cards of the old space below limit, as roots
+     * of a minor collection. A card stays dirty if it still points to young nodes.
+     */
+    private void scanDirtyCards(int limit) {
+        cardTable.cardsScanned = cardTable.dirtyCards = 0;
+        cardTable.cellsScanned = 0;
+        int numberOfCards = limit == 0 ? 0 : cardTable.cardOf(limit - 1) + 1;
+        for (int card = 0; card < numberOfCards; card++) {
+            cardTable.cardsScanned++;
+            if (!cardTable.isDirty(card)) {
+                continue;
+            }
+            cardTable.dirtyCards++;
+            cardTable.clean(card);
+            int cardStart = cardTable.cardStart(card);
+            int cardEnd = Math.min(cardStart + cardTable.getCardSize(), limit);
+            cardTable.cellsScanned += cardEnd - cardStart;
+            int node = cardTable.firstNode(card);
+            while (node >= 0 && node < cardEnd) {
+                int first = Math.max(node + firstPointer(heap, node), cardStart);
+                int last = Math.min(node + lastPointer(heap, node), cardEnd - 1);
+                for (int cell = first; cell <= last; cell++) {
+                    heap[cell] = evacuateYoung(heap[cell]);
+                    if (heap[cell] >= oldSize) {
+                        cardTable.mark(cell);
+                    }
+                }
+                if (heap[node] == NODE_WEAK && node + 1 >= cardStart && node + 1 < cardEnd) {
+                    weakNodes.add(node);                        //Updated with the weak nodes of the collection
+                }
+                node += nodeSize(heap, node);
+            }
+        }
+    }
+
+    private void remember(int cell, boolean weak) {
+        if (cardTable != null) {
+            cardTable.mark(cell);
+            return;
+        }
+        long bit = 1L << (cell & 63);
+        if ((remembered[cell >>> 6] & bit) == 0) {
+            remembered[cell >>> 6] |= bit;
+            (weak ? rememberedWeakSet : rememberedSet).add(cell);
+        }
+    }
+
+    private void clearRemembered(int cell) {
+        remembered[cell >>> 6] &= ~(1L << (cell & 63));
+    }
+
+    private static int nodeSize(int[] cells, int node) {
+        return IntCopyingGarbageCollector.nodeSize(cells, node);
+    }
+
+    /**
+     * Offset of the first strong pointer cell of a node.
+     */
+    private static int firstPointer(int[] cells, int node) {
+        switch (cells[node]) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Offset of the last strong pointer cell of a node, less than
+     * firstPointer if the node has no strong pointers.
+     */
+    private static int lastPointer(int[] cells, int node) {
+        switch (cells[node]) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return cells[node + 2] + 2;
+            case NODE_CONS:
+                return 2;
+            case NODE_IND:
+            case NODE_TYPE:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cheneys;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Random;
 
 
@@ -13,20 +14,23 @@ import java.util.Random;
  */
 public class HeapBuilder {
 
-    private static final int INT_SIZE = 2;
-    private static final int DOUBLE_SIZE = 2;
-    private static final int CHAR_SIZE = 2;
-    private static final int BOOL_SIZE = 2;
-    private static final int CONS_SIZE = 3;
-    private static final int NULL_SIZE = 1;
-    private static final int IND_SIZE = 2;
-    private static final int VAR_SIZE = 2;
-    private static final int TYPE_SIZE = 3;
-    private static final int WEAK_SIZE = 2;
+    public static final int INT_SIZE = 2;
+    public static final int DOUBLE_SIZE = 2;
+    public static final int CHAR_SIZE = 2;
+    public static final int BOOL_SIZE = 2;
+    public static final int CONS_SIZE = 3;
+    public static final int NULL_SIZE = 1;
+    public static final int IND_SIZE = 2;
+    public static final int VAR_SIZE = 2;
+    public static final int TYPE_SIZE = 3;
+    public static final int WEAK_SIZE = 2;
     private int heapLength;
     private int next = 0;
     //Holds the objects (or nodes) positions in
     private ArrayList<Integer> nodesPositions = new ArrayList<>();
+    //Symbol table of the int heap representation, holds identifiers and doubles
+    private ArrayList<String> symbols = new ArrayList<>();
+    private HashMap<String, Integer> symbolIndexes = new HashMap<>();
     public int numberOfObjects;    //number of objects in heap
 
     /**
@@ -118,6 +122,160 @@ public class HeapBuilder {
         return heap;
     }
 
+    /**
+     * Generates a heap of size given by the parameter, in the int
+     * representation collected by the IntCopyingGarbageCollector.
+     * The heap contains the same nodes as the one of generateValidHeap.
+     */
+    public int[] generateValidIntHeap(int size) {
+        return encodeHeap(generateValidHeap(size));
+    }
+
+    /**
+     * Generates the heap of generateValidIntHeap in off-heap memory.
+     */
+    public OffHeapCellHeap generateValidOffHeap(int size) {
+        return OffHeapCellHeap.of(generateValidIntHeap(size));
+    }
+
+    /**
+     * Encodes a String heap into the int representation. The nodes that
+     * are allocated from the start of the heap are encoded, node by node,
+     * until the first free cell.
+     *
+     * @param heap The heap that represents the memory.
+     * @return An int heap of the same length, with the same node layout.
+     */
+    public int[] encodeHeap(String[] heap) {
+        int[] cells = new int[heap.length];
+        int position = 0;
+        while (position < heap.length && heap[position] != null) {
+            int tag = tagCode(heap[position]);
+            if (tag == IntCopyingGarbageCollector.NODE_FREE) {
+                break;                                                  //Not a node, end of allocated memory
+            }
+            cells[position] = tag;
+            switch (tag) {
+                case IntCopyingGarbageCollector.NODE_INT:
+                    cells[position + 1] = Integer.valueOf(heap[position + 1]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_CHAR:
+                    cells[position + 1] = heap[position + 1].charAt(0);
+                    break;
+                case IntCopyingGarbageCollector.NODE_BOOL:
+                    cells[position + 1] = Boolean.valueOf(heap[position + 1]) ? 1 : 0;
+                    break;
+                case IntCopyingGarbageCollector.NODE_DOUBLE:
+                case IntCopyingGarbageCollector.NODE_VAR:
+                    cells[position + 1] = symbol(heap[position + 1]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_CONSTR:
+                case IntCopyingGarbageCollector.NODE_LAMBDA:
+                    cells[position + 1] = symbol(heap[position + 1]);    //Constructor or function identifier
+                    int n = Integer.valueOf(heap[position + 2]);
+                    cells[position + 2] = n;
+                    for (int i = 0; i < n; i++) {
+                        cells[position + 3 + i] = pointer(heap[position + 3 + i]);
+                    }
+                    break;
+                case IntCopyingGarbageCollector.NODE_CONS:
+                    cells[position + 1] = pointer(heap[position + 1]);
+                    cells[position + 2] = pointer(heap[position + 2]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_TYPE:
+                    cells[position + 1] = pointer(heap[position + 1]);
+                    cells[position + 2] = symbol(heap[position + 2]);    //Type identifier
+                    break;
+                case IntCopyingGarbageCollector.NODE_IND:
+                case IntCopyingGarbageCollector.NODE_WEAK:
+                    cells[position + 1] = pointer(heap[position + 1]);
+                    break;
+            }
+            position += IntCopyingGarbageCollector.nodeSize(cells, position);
+        }
+        return cells;
+    }
+
+    /**
+     * Decodes an int heap, that was encoded by this builder, back to
+     * the String representation. Free cells are decoded to null, so the
+     * old semispace should be cleared before decoding a collected heap.
+     */
+    public String[] decodeHeap(int[] cells) {
+        String[] heap = new String[cells.length];
+        int position = 0;
+        while (position < cells.length) {
+            int tag = cells[position];
+            if (tag == IntCopyingGarbageCollector.NODE_FREE) {
+                position++;
+                continue;
+            }
+            switch (tag) {
+                case IntCopyingGarbageCollector.NODE_INT:
+                    heap[position] = CopyingGarbageCollector.NODE_INT;
+                    heap[position + 1] = String.valueOf(cells[position + 1]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_DOUBLE:
+                    heap[position] = CopyingGarbageCollector.NODE_DOUBLE;
+                    heap[position + 1] = symbols.get(cells[position + 1]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_CHAR:
+                    heap[position] = CopyingGarbageCollector.NODE_CHAR;
+                    heap[position + 1] = String.valueOf((char) cells[position + 1]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_BOOL:
+                    heap[position] = CopyingGarbageCollector.NODE_BOOL;
+                    heap[position + 1] = String.valueOf(cells[position + 1] == 1);
+                    break;
+                case IntCopyingGarbageCollector.NODE_CONSTR:
+                case IntCopyingGarbageCollector.NODE_LAMBDA:
+                    heap[position] = tag == IntCopyingGarbageCollector.NODE_CONSTR
+                            ? CopyingGarbageCollector.NODE_CONSTR : CopyingGarbageCollector.NODE_LAMBDA;
+                    heap[position + 1] = symbols.get(cells[position + 1]);
+                    heap[position + 2] = String.valueOf(cells[position + 2]);
+                    for (int i = 0; i < cells[position + 2]; i++) {
+                        heap[position + 3 + i] = String.valueOf(cells[position + 3 + i]);
+                    }
+                    break;
+                case IntCopyingGarbageCollector.NODE_CONS:
+                    heap[position] = CopyingGarbageCollector.NODE_CONS;
+                    heap[position + 1] = String.valueOf(cells[position + 1]);
+                    heap[position + 2] = String.valueOf(cells[position + 2]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_NULL:
+                    heap[position] = CopyingGarbageCollector.NODE_NULL;
+                    break;
+                case IntCopyingGarbageCollector.NODE_IND:
+                    heap[position] = CopyingGarbageCollector.NODE_IND;
+                    heap[position + 1] = String.valueOf(cells[position + 1]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_VAR:
+                    heap[position] = CopyingGarbageCollector.NODE_VAR;
+                    heap[position + 1] = symbols.get(cells[position + 1]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_TYPE:
+                    heap[position] = CopyingGarbageCollector.NODE_TYPE;
+                    heap[position + 1] = String.valueOf(cells[position + 1]);
+                    heap[position + 2] = symbols.get(cells[position + 2]);
+                    break;
+                case IntCopyingGarbageCollector.NODE_WEAK:
+                    heap[position] = CopyingGarbageCollector.NODE_WEAK;
+                    heap[position + 1] = cells[position + 1] == IntCopyingGarbageCollector.NULL_POINTER
+                            ? CopyingGarbageCollector.NODE_NULL : String.valueOf(cells[position + 1]);
+                    break;
+            }
+            position += IntCopyingGarbageCollector.nodeSize(cells, position);
+        }
+        return heap;
+    }
+
+    /**
+     * Get the symbol table of the int heap representation.
+     */
+    public ArrayList<String> getSymbols() {
+        return symbols;
+    }
+
     /**
      * Add an integer node into heap.
      *
@@ -367,16 +525,83 @@ public class HeapBuilder {
      * Given node positions this method returns and array of valid roots.
      */
     public int[] generateValidStack(ArrayList<Integer> nodePositions, int roots) {
+        int[] positions = new int[nodePositions.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = nodePositions.get(i);
+        }
+        return generateValidStack(positions, roots);
+    }
+
+    /**
+     * Given node positions, such as the ones of a HeapGenerator, this method
+     * returns an array of valid roots. The roots are the same as the ones of
+     * the ArrayList version for the same positions.
+     */
+    public int[] generateValidStack(int[] nodePositions, int roots) {
         Random rand = new Random(178);
-        int min = 0;
-        int max = nodePositions.size() - 1;
         int[] stack = new int[roots];
         for (int i = 0; i < roots; i++) {
-            stack[i] = nodePositions.get(rand.nextInt(max - min + 1) + min);
+            stack[i] = nodePositions[rand.nextInt(nodePositions.length)];
         }
         return stack;
     }
 
+    /**
+     * Index of a symbol in the symbol table, the symbol is
+     * added if it is not already there.
+     */
+    private int symbol(String value) {
+        Integer index = symbolIndexes.get(value);
+        if (index == null) {
+            index = symbols.size();
+            symbols.add(value);
+            symbolIndexes.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Pointer value of a cell, a cleared weak pointer holds NULL.
+     */
+    private int pointer(String value) {
+        return value.equals(CopyingGarbageCollector.NODE_NULL)
+                ? IntCopyingGarbageCollector.NULL_POINTER : Integer.valueOf(value);
+    }
+
+    /**
+     * Int code of a String node tag, NODE_FREE if the cell is not a tag.
+     */
+    private static int tagCode(String nodeTag) {
+        switch (nodeTag) {
+            case CopyingGarbageCollector.NODE_INT:
+                return IntCopyingGarbageCollector.NODE_INT;
+            case CopyingGarbageCollector.NODE_DOUBLE:
+                return IntCopyingGarbageCollector.NODE_DOUBLE;
+            case CopyingGarbageCollector.NODE_CHAR:
+                return IntCopyingGarbageCollector.NODE_CHAR;
+            case CopyingGarbageCollector.NODE_BOOL:
+                return IntCopyingGarbageCollector.NODE_BOOL;
+            case CopyingGarbageCollector.NODE_CONSTR:
+                return IntCopyingGarbageCollector.NODE_CONSTR;
+            case CopyingGarbageCollector.NODE_CONS:
+                return IntCopyingGarbageCollector.NODE_CONS;
+            case CopyingGarbageCollector.NODE_NULL:
+                return IntCopyingGarbageCollector.NODE_NULL;
+            case CopyingGarbageCollector.NODE_LAMBDA:
+                return IntCopyingGarbageCollector.NODE_LAMBDA;
+            case CopyingGarbageCollector.NODE_IND:
+                return IntCopyingGarbageCollector.NODE_IND;
+            case CopyingGarbageCollector.NODE_VAR:
+                return IntCopyingGarbageCollector.NODE_VAR;
+            case CopyingGarbageCollector.NODE_TYPE:
+                return IntCopyingGarbageCollector.NODE_TYPE;
+            case CopyingGarbageCollector.NODE_WEAK:
+                return IntCopyingGarbageCollector.NODE_WEAK;
+            default:
+                return IntCopyingGarbageCollector.NODE_FREE;
+        }
+    }
+
     /**
      * Adds some objects to heap, so random objects (which may have pointer attribute)
      * can be created and point to them if necessary.
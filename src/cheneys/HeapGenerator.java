@@ -0,0 +1,653 @@
+package cheneys;
+
+import util.IntList;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static cheneys.WorkloadSpec.BOOL;
+import static cheneys.WorkloadSpec.CHAR;
+import static cheneys.WorkloadSpec.CONS;
+import static cheneys.WorkloadSpec.CONSTR;
+import static cheneys.WorkloadSpec.DOUBLE;
+import static cheneys.WorkloadSpec.IND;
+import static cheneys.WorkloadSpec.INT;
+import static cheneys.WorkloadSpec.LAMBDA;
+import static cheneys.WorkloadSpec.NULL;
+import static cheneys.WorkloadSpec.TYPE;
+import static cheneys.WorkloadSpec.VAR;
+import static cheneys.WorkloadSpec.WEAK;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.HeapGenerator.java                                                    <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Generates the heaps described by a WorkloadSpec, in the String representation
+ * or directly in the int representation, so a heap of hundreds of millions of
+ * cells does not need a String heap to be encoded.
+ * <p>
+ * The filled part of the heap is split in segments of segmentCells cells, that
+ * are generated in parallel. A segment is a sequence of structures, the cells
+ * left at its end are filled with unreachable INT nodes, so the nodes follow
+ * each other from the first cell of the heap until the first free one. Every
+ * segment has its own random generator, seeded by the spec seed and its index,
+ * so the heap only depends on the spec, not on the number of threads. The
+ * positions of the nodes are kept in int lists, no position is boxed.
+ */
+public class HeapGenerator {
+
+    //Symbols of the generated heaps, the symbol table of the int representation
+    public static final List<String> SYMBOLS = Collections.unmodifiableList(Arrays.asList(
+            "constr", "func", "type", "x", "y", "z", "var", "0.5", "1.5", "7.1", "10.5"));
+    private static final int CONSTRUCTOR_SYMBOL = 0;
+    private static final int FUNCTION_SYMBOL = 1;
+    private static final int TYPE_SYMBOL = 2;
+    private static final int VARIABLE_SYMBOL = 3;
+    private static final int VARIABLES = 4;
+    private static final int DOUBLE_SYMBOL = 7;
+    private static final int DOUBLES = 4;
+
+    private static final int[] VALUE_TYPES = {INT, DOUBLE, CHAR, BOOL, VAR};
+    private static final int VALUE_SIZE = 2;
+    private static final int CONS_SIZE = 3;
+
+    //Node tags of the two representations, indexed by the WorkloadSpec types
+    private static final String[] STRING_TAGS = {CopyingGarbageCollector.NODE_INT,
+            CopyingGarbageCollector.NODE_DOUBLE, CopyingGarbageCollector.NODE_CHAR, CopyingGarbageCollector.NODE_BOOL,
+            CopyingGarbageCollector.NODE_CONSTR, CopyingGarbageCollector.NODE_CONS, CopyingGarbageCollector.NODE_NULL,
+            CopyingGarbageCollector.NODE_LAMBDA, CopyingGarbageCollector.NODE_IND, CopyingGarbageCollector.NODE_VAR,
+            CopyingGarbageCollector.NODE_TYPE, CopyingGarbageCollector.NODE_WEAK};
+    private static final int[] INT_TAGS = {IntCopyingGarbageCollector.NODE_INT,
+            IntCopyingGarbageCollector.NODE_DOUBLE, IntCopyingGarbageCollector.NODE_CHAR,
+            IntCopyingGarbageCollector.NODE_BOOL, IntCopyingGarbageCollector.NODE_CONSTR,
+            IntCopyingGarbageCollector.NODE_CONS, IntCopyingGarbageCollector.NODE_NULL,
+            IntCopyingGarbageCollector.NODE_LAMBDA, IntCopyingGarbageCollector.NODE_IND,
+            IntCopyingGarbageCollector.NODE_VAR, IntCopyingGarbageCollector.NODE_TYPE,
+            IntCopyingGarbageCollector.NODE_WEAK};
+
+    private final WorkloadSpec spec;
+    private final double[] typeWeights;         //Cumulative weights of the node types
+    private final double[] valueWeights;        //Cumulative weights of the value types, for the leaves
+    private int[] nodePositions = new int[0];
+    private int[] sharedNodes = new int[0];     //Nodes that may have more than one pointer to them
+    private int[] structureRoots = new int[0];
+    private int[] structureStarts = new int[0];
+    private int[] structureEnds = new int[0];
+    private int[] structureShared = new int[0]; //Index of the first shared node of a structure, one more entry for the end
+    private int[] liveStructures = new int[0];
+    private long liveCells;
+
+    public int numberOfObjects;
+    public int numberOfStructures;
+    public int segments;
+    public long generationNanos;
+
+    public HeapGenerator(WorkloadSpec spec) {
+        spec.validate();
+        this.spec = spec;
+        typeWeights = cumulative(spec.typeWeights);
+        double[] weights = new double[VALUE_TYPES.length];
+        for (int i = 0; i < VALUE_TYPES.length; i++) {
+            weights[i] = spec.typeWeights[VALUE_TYPES[i]];
+        }
+        valueWeights = cumulative(weights);
+    }
+
+    /**
+     * Generates a String heap of the given size.
+     */
+    public String[] generateHeap(int size) {
+        String[] heap = new String[size];
+        generate(size, new StringCells(heap));
+        return heap;
+    }
+
+    /**
+     * Generates a heap of the given size in the int representation, its
+     * symbol table is SYMBOLS.
+     */
+    public int[] generateIntHeap(int size) {
+        int[] cells = new int[size];
+        generate(new ArrayCellHeap(cells));
+        return cells;
+    }
+
+    /**
+     * Generates a heap of the given size in off-heap memory, its symbol table
+     * is SYMBOLS. The nodes are written in place, no int array of the heap is
+     * made.
+     */
+    public OffHeapCellHeap generateOffHeap(int size) {
+        OffHeapCellHeap heap = new OffHeapCellHeap(size);
+        generate(heap);
+        return heap;
+    }
+
+    /**
+     * Generates the nodes in a heap of free cells, such as a new OffHeapCellHeap.
+     */
+    public void generate(CellHeap heap) {
+        generate(heap.length(), new IntCells(heap));
+    }
+
+    /**
+     * Stack of spec.roots roots. Every live structure has its root node on the
+     * stack, the other roots point to random nodes of the live structures, so
+     * the live cells do not depend on them. The stack is empty (-1) if no
+     * structure is live.
+     */
+    public int[] generateStack() {
+        Random random = new Random(spec.seed + 1);
+        int[] stack = new int[spec.roots];
+        for (int i = 0; i < stack.length; i++) {
+            if (liveStructures.length == 0) {
+                stack[i] = -1;
+            } else if (i < liveStructures.length) {
+                stack[i] = structureRoots[liveStructures[i]];
+            } else {
+                int structure = liveStructures[random.nextInt(liveStructures.length)];
+                int from = structureShared[structure];
+                int to = structureShared[structure + 1];
+                stack[i] = to > from ? sharedNodes[from + random.nextInt(to - from)] : structureRoots[structure];
+            }
+        }
+        return stack;
+    }
+
+    /**
+     * Positions of all the nodes, in heap order, including the unreachable
+     * nodes that fill the end of the segments.
+     */
+    public int[] getNodePositions() {
+        return nodePositions;
+    }
+
+    public int[] getStructureRoots() {
+        return structureRoots;
+    }
+
+    /**
+     * Cells of the structures that are given a root by generateStack, the
+     * live cells of the heap.
+     */
+    public long getLiveCells() {
+        return liveCells;
+    }
+
+    public List<String> getSymbols() {
+        return SYMBOLS;
+    }
+
+    private void generate(int size, Cells cells) {
+        long start = System.nanoTime();
+        int filled = (int) (size * spec.fillFraction);
+        int count = (int) (((long) filled + spec.segmentCells - 1) / spec.segmentCells);
+        Segment[] parts = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            int from = i * spec.segmentCells;
+            parts[i] = new Segment(from, Math.min(filled, from + spec.segmentCells), cells,
+                    new SplittableRandom(spec.seed * 0x9E3779B97F4A7C15L + i));
+        }
+        IntStream.range(0, count).parallel().forEach(i -> parts[i].generate());
+        merge(parts);
+        chooseLiveStructures();
+        segments = count;
+        generationNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Concatenates the lists of the segments, the shared node indexes of the
+     * structures are offset by the shared nodes of the previous segments.
+     */
+    private void merge(Segment[] parts) {
+        int nodes = 0;
+        int shared = 0;
+        int structures = 0;
+        for (Segment part : parts) {
+            nodes += part.nodes.size();
+            shared += part.shared.size();
+            structures += part.roots.size();
+        }
+        nodePositions = new int[nodes];
+        sharedNodes = new int[shared];
+        structureRoots = new int[structures];
+        structureStarts = new int[structures];
+        structureEnds = new int[structures];
+        structureShared = new int[structures + 1];
+        nodes = 0;
+        shared = 0;
+        structures = 0;
+        for (Segment part : parts) {
+            System.arraycopy(part.nodes.toArray(), 0, nodePositions, nodes, part.nodes.size());
+            System.arraycopy(part.shared.toArray(), 0, sharedNodes, shared, part.shared.size());
+            for (int i = 0; i < part.roots.size(); i++) {
+                structureRoots[structures] = part.roots.get(i);
+                structureStarts[structures] = part.starts.get(i);
+                structureEnds[structures] = part.ends.get(i);
+                structureShared[structures] = shared + part.sharedStarts.get(i);
+                structures++;
+            }
+            nodes += part.nodes.size();
+            shared += part.shared.size();
+        }
+        structureShared[structures] = shared;
+        numberOfObjects = nodes;
+        numberOfStructures = structures;
+    }
+
+    /**
+     * Picks at random the structures that the stack keeps, liveFraction of
+     * them, but no more than the roots.
+     */
+    private void chooseLiveStructures() {
+        int structures = structureRoots.length;
+        int live = (int) Math.min(spec.roots, Math.round(spec.liveFraction * structures));
+        int[] order = new int[structures];
+        for (int i = 0; i < structures; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(spec.seed);
+        for (int i = 0; i < live; i++) {                                    //Partial Fisher-Yates shuffle
+            int j = i + random.nextInt(structures - i);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        liveStructures = Arrays.copyOf(order, live);
+        liveCells = 0;
+        for (int structure : liveStructures) {
+            liveCells += structureEnds[structure] - structureStarts[structure];
+        }
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Index drawn with the odds of the cumulative weights, 0 if they are all 0.
+     */
+    private static int draw(double[] cumulative, SplittableRandom random) {
+        double total = cumulative[cumulative.length - 1];
+        if (total == 0) {
+            return 0;
+        }
+        double value = random.nextDouble() * total;
+        for (int i = 0; i < cumulative.length; i++) {
+            if (value < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    /**
+     * Generates the structures of the cells [start, end).
+     */
+    private final class Segment {
+        final int start;
+        final int end;
+        final Cells cells;
+        final SplittableRandom random;
+        final IntList nodes = new IntList(1024);
+        final IntList shared = new IntList(1024);
+        final IntList roots = new IntList();
+        final IntList starts = new IntList();
+        final IntList ends = new IntList();
+        final IntList sharedStarts = new IntList();
+        final IntList pending = new IntList();      //Nodes of the structure that no node points to yet
+        final int[] pointers;
+        int pendingHead;
+        int position;
+
+        Segment(int start, int end, Cells cells, SplittableRandom random) {
+            this.start = start;
+            this.end = end;
+            this.cells = cells;
+            this.random = random;
+            pointers = new int[spec.maxPointers + 1];
+        }
+
+        void generate() {
+            position = start;
+            while (end - position >= spec.minimumStructureCells()) {
+                starts.add(position);
+                sharedStarts.add(shared.size());
+                int limit = position + Math.min(spec.structureCells, end - position);
+                switch (spec.shape) {
+                    case LISTS:
+                        roots.add(list(limit));
+                        break;
+                    case TREES:
+                        roots.add(tree(limit, 2));
+                        break;
+                    case WIDE:
+                        roots.add(tree(limit, spec.maxPointers));
+                        break;
+                    case CYCLES:
+                        roots.add(cycle(limit));
+                        break;
+                    default:
+                        roots.add(dag(limit));
+                }
+                ends.add(position);
+            }
+            while (end - position >= VALUE_SIZE) {                          //Garbage
+                nodes.add(position);
+                cells.setTag(position, INT);
+                cells.setValue(position + 1, INT, 0);
+                position += VALUE_SIZE;
+            }
+            if (position < end) {
+                nullNode();
+            }
+        }
+
+        /**
+         * List of CONS nodes, the first one allocated points to NULL.
+         */
+        int list(int limit) {
+            int tail = nullNode();
+            while (position + VALUE_SIZE + CONS_SIZE <= limit) {
+                pointers[0] = value(VALUE_TYPES[draw(valueWeights, random)]);
+                pointers[1] = tail;
+                tail = pointerNode(CONS, 2);
+            }
+            return tail;
+        }
+
+        /**
+         * Circular list of CONS nodes, the first one allocated points to the
+         * last one, the root.
+         */
+        int cycle(int limit) {
+            int first = position + VALUE_SIZE;
+            int tail = first;                                               //Patched when the list is complete
+            while (position + VALUE_SIZE + CONS_SIZE <= limit) {
+                pointers[0] = value(VALUE_TYPES[draw(valueWeights, random)]);
+                pointers[1] = tail;
+                tail = pointerNode(CONS, 2);
+            }
+            cells.setPointer(first + 2, tail);
+            return tail;
+        }
+
+        /**
+         * Balanced tree of the given arity : the leaves are allocated first,
+         * then the oldest nodes without a pointer to them are grouped by
+         * CONS nodes (arity 2) or by CONSTR and LAMBDA nodes, until one is left.
+         */
+        int tree(int limit, int arity) {
+            int budget = limit - position;
+            int leaves = budget / VALUE_SIZE;
+            while (leaves > 1 && treeCells(leaves, arity) > budget) {
+                leaves--;
+            }
+            pending.clear();
+            pendingHead = 0;
+            for (int i = 0; i < leaves; i++) {
+                pending.add(value(VALUE_TYPES[draw(valueWeights, random)]));
+            }
+            while (pending.size() - pendingHead > 1) {
+                int n = Math.min(arity, pending.size() - pendingHead);
+                for (int i = 0; i < n; i++) {
+                    pointers[i] = pending.get(pendingHead++);
+                }
+                int type = arity == 2 ? CONS : random.nextBoolean() ? CONSTR : LAMBDA;
+                pending.add(pointerNode(type, n));
+            }
+            return pending.get(pendingHead);
+        }
+
+        /**
+         * Cells of a tree of the given leaves. Every inner node groups arity
+         * nodes but the last one, and is pointed to by one node but the root.
+         */
+        int treeCells(int leaves, int arity) {
+            int inner = (leaves - 1 + arity - 2) / (arity - 1);
+            if (arity == 2) {
+                return leaves * VALUE_SIZE + inner * CONS_SIZE;
+            }
+            return leaves * VALUE_SIZE + (leaves + inner - 1) + inner * 3;
+        }
+
+        /**
+         * Nodes of every type, whose pointers are taken from the nodes without a
+         * pointer to them (always the first one) or from the previous shared
+         * nodes of the structure. Once maxPointers nodes have no pointer to
+         * them, a CONSTR node groups them, so the root node that groups the
+         * last ones is never wider than maxPointers.
+         */
+        int dag(int limit) {
+            pending.clear();
+            pendingHead = 0;
+            int sharedStart = shared.size();
+            while (true) {
+                int waiting = pending.size() - pendingHead;
+                boolean group = waiting >= spec.maxPointers;
+                int type = group ? CONSTR : draw(typeWeights, random);
+                int n = group ? spec.maxPointers : pointerCount(type);
+                if (n > 0 && shared.size() == sharedStart) {               //Nothing to point to yet
+                    type = INT;
+                    n = 0;
+                }
+                int size = type == NULL ? 1 : n == 0 ? VALUE_SIZE : nodeSize(type, n);
+                if (position + size + waiting + 1 + 3 > limit) {            //Keep room for the root
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    boolean fromPending = type != WEAK && pendingHead < pending.size()
+                            && (i == 0 || group || random.nextBoolean());
+                    pointers[i] = fromPending ? pending.get(pendingHead++)
+                            : shared.get(sharedStart + random.nextInt(shared.size() - sharedStart));
+                }
+                pending.add(type == NULL ? nullNode() : n == 0 ? value(type) : pointerNode(type, n));
+            }
+            int waiting = pending.size() - pendingHead;
+            if (waiting == 1) {
+                return pending.get(pendingHead);
+            }
+            for (int i = 0; i < waiting; i++) {
+                pointers[i] = pending.get(pendingHead + i);
+            }
+            return pointerNode(CONSTR, waiting);
+        }
+
+        int pointerCount(int type) {
+            switch (type) {
+                case CONS:
+                    return 2;
+                case IND:
+                case TYPE:
+                case WEAK:
+                    return 1;
+                case CONSTR:
+                case LAMBDA:
+                    return 1 + random.nextInt(spec.maxPointers);
+                default:
+                    return 0;
+            }
+        }
+
+        int nodeSize(int type, int n) {
+            switch (type) {
+                case CONS:
+                case TYPE:
+                    return 3;
+                case IND:
+                case WEAK:
+                    return 2;
+                default:
+                    return n + 3;
+            }
+        }
+
+        int nullNode() {
+            int node = position;
+            cells.setTag(node, NULL);
+            nodes.add(node);
+            shared.add(node);
+            position++;
+            return node;
+        }
+
+        /**
+         * Node of a value type (INT, DOUBLE, CHAR, BOOL or VAR).
+         */
+        int value(int type) {
+            int node = position;
+            cells.setTag(node, type);
+            int value;
+            switch (type) {
+                case INT:
+                    value = random.nextInt(1000);
+                    break;
+                case DOUBLE:
+                    value = DOUBLE_SYMBOL + random.nextInt(DOUBLES);
+                    break;
+                case CHAR:
+                    value = 'a' + random.nextInt(26);
+                    break;
+                case BOOL:
+                    value = random.nextInt(2);
+                    break;
+                default:
+                    value = VARIABLE_SYMBOL + random.nextInt(VARIABLES);
+            }
+            cells.setValue(node + 1, type, value);
+            nodes.add(node);
+            shared.add(node);
+            position += VALUE_SIZE;
+            return node;
+        }
+
+        /**
+         * Node whose n pointers are in the pointers array.
+         */
+        int pointerNode(int type, int n) {
+            int node = position;
+            cells.setTag(node, type);
+            switch (type) {
+                case CONS:
+                    cells.setPointer(node + 1, pointers[0]);
+                    cells.setPointer(node + 2, pointers[1]);
+                    break;
+                case IND:
+                case WEAK:
+                    cells.setPointer(node + 1, pointers[0]);
+                    break;
+                case TYPE:
+                    cells.setPointer(node + 1, pointers[0]);
+                    cells.setValue(node + 2, TYPE, TYPE_SYMBOL);
+                    break;
+                default:
+                    cells.setValue(node + 1, type, type == CONSTR ? CONSTRUCTOR_SYMBOL : FUNCTION_SYMBOL);
+                    cells.setNumber(node + 2, n);
+                    for (int i = 0; i < n; i++) {
+                        cells.setPointer(node + 3 + i, pointers[i]);
+                    }
+            }
+            nodes.add(node);
+            shared.add(node);
+            position += nodeSize(type, n);
+            return node;
+        }
+    }
+
+    /**
+     * Writes the cells of a node in one of the heap representations. The
+     * segments write disjoint cells, from different threads.
+     */
+    private interface Cells {
+
+        void setTag(int cell, int type);
+
+        /**
+         * Value of a node of the given type : the value of an INT, CHAR or BOOL
+         * node, the symbol of the other ones.
+         */
+        void setValue(int cell, int type, int value);
+
+        void setNumber(int cell, int n);
+
+        void setPointer(int cell, int pointer);
+    }
+
+    private static final class StringCells implements Cells {
+        private final String[] heap;
+
+        StringCells(String[] heap) {
+            this.heap = heap;
+        }
+
+        @Override
+        public void setTag(int cell, int type) {
+            heap[cell] = STRING_TAGS[type];
+        }
+
+        @Override
+        public void setValue(int cell, int type, int value) {
+            switch (type) {
+                case INT:
+                    heap[cell] = String.valueOf(value);
+                    break;
+                case CHAR:
+                    heap[cell] = String.valueOf((char) value);
+                    break;
+                case BOOL:
+                    heap[cell] = String.valueOf(value == 1);
+                    break;
+                default:
+                    heap[cell] = SYMBOLS.get(value);
+            }
+        }
+
+        @Override
+        public void setNumber(int cell, int n) {
+            heap[cell] = String.valueOf(n);
+        }
+
+        @Override
+        public void setPointer(int cell, int pointer) {
+            heap[cell] = String.valueOf(pointer);
+        }
+    }
+
+    private static final class IntCells implements Cells {
+        private final CellHeap heap;
+
+        IntCells(CellHeap heap) {
+            this.heap = heap;
+        }
+
+        @Override
+        public void setTag(int cell, int type) {
+            heap.set(cell, INT_TAGS[type]);
+        }
+
+        @Override
+        public void setValue(int cell, int type, int value) {
+            heap.set(cell, value);
+        }
+
+        @Override
+        public void setNumber(int cell, int n) {
+            heap.set(cell, n);
+        }
+
+        @Override
+        public void setPointer(int cell, int pointer) {
+            heap.set(cell, pointer);
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package cheneys;
+
+import util.IntList;
+
+import java.util.Arrays;
+
+import static cheneys.IntCopyingGarbageCollector.FORWARD_BIT;
+import static cheneys.IntCopyingGarbageCollector.NODE_CONS;
+import static cheneys.IntCopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.IntCopyingGarbageCollector.NODE_FREE;
+import static cheneys.IntCopyingGarbageCollector.NODE_IND;
+import static cheneys.IntCopyingGarbageCollector.NODE_INT;
+import static cheneys.IntCopyingGarbageCollector.NODE_LAMBDA;
+import static cheneys.IntCopyingGarbageCollector.NODE_NULL;
+import static cheneys.IntCopyingGarbageCollector.NODE_TYPE;
+import static cheneys.IntCopyingGarbageCollector.NODE_WEAK;
+import static cheneys.IntCopyingGarbageCollector.NULL_POINTER;
+import static cheneys.IntCopyingGarbageCollector.nodeSize;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.IncrementalCopyingGarbageCollector.java                               <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Incremental copying collector in the style of Baker, over the int heap
+ * representation. A cycle starts with the flip and the evacuation of the roots,
+ * then the scavenging is done in bounded steps : on every allocation, or when
+ * step(budget) is called. A step scans at most budget cells of the new semispace.
+ * <p>
+ * The mutator only holds pointers to the new semispace. Nodes that are copied and
+ * not scanned yet may still point to the old semispace, so readPointer is a read
+ * barrier that evacuates the node it reads if it is in the old semispace. Reading
+ * a weak pointer this way keeps its object alive for the cycle.
+ * <p>
+ * Copied nodes are placed from the start of the new semispace, new nodes are
+ * allocated from its end (allocated black, they are never scanned) :
+ * <pre>
+ *  [ copied nodes | scan .. nextTo | free | allocated nodes ]
+ * </pre>
+ * A cycle starts when an allocation finds half of the semispace used. While it
+ * runs, allocation keeps free the cells that the copy may still need (the cells
+ * used at the flip). If an allocation does not fit, the cycle is finished at
+ * once and a new one may start. Like in the generational collector, the
+ * pointers given to an allocation method are updated, any other address kept
+ * by the mutator outside the stack is not valid after an allocation.
+ */
+public class IncrementalCopyingGarbageCollector {
+
+    private int[] heap;                 //Array that represents the heap
+    private int[] stack;                //Array that represents the stack with roots
+    private final int semispaceSize;    //Cells of a semispace
+    private final int allocationBudget; //Cells scanned on every allocation of a cycle
+    private int nextTo;                 //The next free cell for copied nodes
+    private int allocationTop;          //Start of the allocated nodes, allocation goes down
+    private int scan;                   //Pointer which is used to point the scavenge initial Location
+    private int fromSpaceStart;         //The start position of the old semispace
+    private int toSpaceStart;           //The start position of the new semispace
+    private int copyLimit;              //Cells of the new semispace the copy may still need
+    private boolean collecting;         //A cycle is running
+    private IntList weakNodes = new IntList();              //Weak nodes copied by the cycle
+    private final int[] arguments = new int[2];             //Pointers given to an allocation
+
+    public int numberOfObjectsCopied;   //Objects copied by the current (or last) cycle
+    public int cycles;
+    public int steps;
+    public int forcedCompletions;       //Cycles finished at once because an allocation did not fit
+    public long maxFlipPauseNanos;      //Longest flip and root evacuation
+    public long stepPauseNanos;         //Total time of steps
+    public long maxStepPauseNanos;
+    public long readBarrierChecks;      //Pointers read through the barrier
+    public long readBarrierEvacuations; //Reads that evacuated a node
+    public long readBarrierNanos;       //Time spent evacuating in the barrier
+
+    /**
+     * Construct new collector and its heap.
+     *
+     * @param semispaceSize    Cells of each of the two semispaces.
+     * @param allocationBudget Cells scanned on every allocation while a cycle runs.
+     * @param stack            Stack with roots, negative values are empty slots.
+     */
+    public IncrementalCopyingGarbageCollector(int semispaceSize, int allocationBudget, int[] stack) {
+        this(new int[2 * semispaceSize], allocationBudget, stack);
+    }
+
+    /**
+     * Construct new collector, given a heap and stack with roots. The nodes of
+     * the heap are at the start of its first half, until the first free cell.
+     */
+    public IncrementalCopyingGarbageCollector(int[] heap, int allocationBudget, int[] stack) {
+        this.heap = heap;
+        this.stack = stack;
+        this.semispaceSize = heap.length / 2;
+        this.allocationBudget = allocationBudget;
+        fromSpaceStart = semispaceSize;
+        toSpaceStart = 0;
+        int used = 0;
+        while (used < semispaceSize && heap[used] != NODE_FREE) {
+            used += nodeSize(heap, used);
+        }
+        scan = nextTo = used;
+        allocationTop = semispaceSize;
+    }
+
+    /**
+     * Start a cycle : flip the semispaces and evacuate the roots.
+     */
+    public void startCycle() {
+        if (collecting) {
+            throw new IllegalStateException("A cycle is running");
+        }
+        long start = System.nanoTime();
+        int used = usedCells();
+        fromSpaceStart = toSpaceStart;
+        toSpaceStart = toSpaceStart == 0 ? semispaceSize : 0;
+        scan = nextTo = toSpaceStart;
+        allocationTop = toSpaceStart + semispaceSize;
+        copyLimit = toSpaceStart + used;                    //Copies never take more than the used cells
+        collecting = true;
+        numberOfObjectsCopied = 0;
+        cycles++;
+
+        for (int i = 0; i < stack.length; i++) {            //Evacuate roots
+            if (stack[i] >= 0) {
+                stack[i] = evacuate(stack[i]);
+            }
+        }
+        maxFlipPauseNanos = Math.max(maxFlipPauseNanos, System.nanoTime() - start);
+    }
+
+    /**
+     * Scavenge at most budget cells of the new semispace. The cycle ends
+     * when there is nothing left to scan.
+     *
+     * @return True if the cycle is still running.
+     */
+    public boolean step(int budget) {
+        if (!collecting) {
+            return false;
+        }
+        long start = System.nanoTime();
+        int limit = scan + budget < scan ? Integer.MAX_VALUE : scan + budget;
+        while (scan < nextTo && scan < limit) {
+            scan += scavengeNode(scan);
+        }
+        if (scan == nextTo) {
+            updateWeakPointers();
+            collecting = false;
+        }
+        long pause = System.nanoTime() - start;
+        steps++;
+        stepPauseNanos += pause;
+        maxStepPauseNanos = Math.max(maxStepPauseNanos, pause);
+        return collecting;
+    }
+
+    /**
+     * Finish the running cycle in one step.
+     */
+    public void finishCycle() {
+        step(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Run a whole cycle.
+     */
+    public void collect() {
+        if (collecting) {
+            finishCycle();
+        }
+        startCycle();
+        finishCycle();
+    }
+
+    /**
+     * Clear the old semi space, there must be no cycle running.
+     */
+    public void clearOldMemory() {
+        if (collecting) {
+            throw new IllegalStateException("A cycle is running");
+        }
+        Arrays.fill(heap, fromSpaceStart, fromSpaceStart + semispaceSize, NODE_FREE);
+    }
+
+    /**
+     * Add an integer node.
+     */
+    public int allocateInteger(int value) {
+        return allocateScalar(NODE_INT, value);
+    }
+
+    /**
+     * Add a DOUBLE, CHAR, BOOL or VAR node, the value is its int encoding.
+     */
+    public int allocateScalar(int tag, int value) {
+        int node = allocate(2, 0, null);
+        heap[node] = tag;
+        heap[node + 1] = value;
+        return node;
+    }
+
+    /**
+     * Add a null node.
+     */
+    public int allocateNull() {
+        int node = allocate(1, 0, null);
+        heap[node] = NODE_NULL;
+        return node;
+    }
+
+    /**
+     * Add a list constructor node.
+     */
+    public int allocateListConstructor(int pointerValue1, int pointerValue2) {
+        arguments[0] = pointerValue1;
+        arguments[1] = pointerValue2;
+        int node = allocate(3, 2, arguments);
+        heap[node] = NODE_CONS;
+        heap[node + 1] = arguments[0];
+        heap[node + 2] = arguments[1];
+        return node;
+    }
+
+    /**
+     * Add an indirection node.
+     */
+    public int allocateIndirection(int pointerValue) {
+        return allocateUniquePointerNode(NODE_IND, pointerValue);
+    }
+
+    /**
+     * Add a weak pointer node.
+     */
+    public int allocateWeak(int pointerValue) {
+        return allocateUniquePointerNode(NODE_WEAK, pointerValue);
+    }
+
+    /**
+     * Add a type node, the type is a symbol.
+     */
+    public int allocateType(int pointerValue, int type) {
+        arguments[0] = pointerValue;
+        int node = allocate(3, 1, arguments);
+        heap[node] = NODE_TYPE;
+        heap[node + 1] = arguments[0];
+        heap[node + 2] = type;
+        return node;
+    }
+
+    /**
+     * Add a data constructor node. The pointers are updated if the allocation collects.
+     */
+    public int allocateDataConstructor(int constructor, int[] pointerValues) {
+        return allocateUnknownSizeNode(NODE_CONSTR, constructor, pointerValues);
+    }
+
+    /**
+     * Add a lambda node. The pointers are updated if the allocation collects.
+     */
+    public int allocateLambda(int function, int[] pointerValues) {
+        return allocateUnknownSizeNode(NODE_LAMBDA, function, pointerValues);
+    }
+
+    /**
+     * Read barrier. Read a pointer (or any other cell) of a node, a pointer to
+     * the old semispace is evacuated and updated in the node.
+     */
+    public int readPointer(int node, int cell) {
+        int value = heap[node + cell];
+        if (collecting && isPointerCell(node, cell)) {
+            readBarrierChecks++;
+            if (inFromSpace(value)) {
+                long start = System.nanoTime();
+                value = evacuate(value);
+                heap[node + cell] = value;
+                readBarrierEvacuations++;
+                readBarrierNanos += System.nanoTime() - start;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Store a pointer in a node. The mutator only holds pointers to the new
+     * semispace, so stores need no barrier.
+     */
+    public void writePointer(int node, int cell, int pointerValue) {
+        heap[node + cell] = pointerValue;
+    }
+
+    /**
+     * Print the pauses of the cycles and the read barrier overhead.
+     */
+    public void printStatistics() {
+        System.out.println("CYCLES            : " + cycles + " (" + forcedCompletions + " finished by allocation)"
+                + " max flip " + maxFlipPauseNanos / 1000 + "us");
+        System.out.println("STEPS             : " + steps + " total " + stepPauseNanos / 1000 + "us"
+                + " avg " + (steps == 0 ? 0 : stepPauseNanos / steps / 1000) + "us"
+                + " max " + maxStepPauseNanos / 1000 + "us");
+        System.out.println("READ BARRIER      : " + readBarrierChecks + " checks, " + readBarrierEvacuations
+                + " evacuations in " + readBarrierNanos / 1000 + "us");
+    }
+
+    public boolean isCollecting() {
+        return collecting;
+    }
+
+    /**
+     * Get the next free cell for copied nodes in the new semispace.
+     */
+    public int getNextTo() {
+        return nextTo;
+    }
+
+    /**
+     * Get the start of the nodes allocated in the new semispace.
+     */
+    public int getAllocationTop() {
+        return allocationTop;
+    }
+
+    public int[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    private int allocateUniquePointerNode(int tag, int pointerValue) {
+        arguments[0] = pointerValue;
+        int node = allocate(2, 1, arguments);
+        heap[node] = tag;
+        heap[node + 1] = arguments[0];
+        return node;
+    }
+
+    private int allocateUnknownSizeNode(int tag, int identifier, int[] pointerValues) {
+        int node = allocate(pointerValues.length + 3, pointerValues.length, pointerValues);
+        heap[node] = tag;
+        heap[node + 1] = identifier;
+        heap[node + 2] = pointerValues.length;
+        System.arraycopy(pointerValues, 0, heap, node + 3, pointerValues.length);
+        return node;
+    }
+
+    /**
+     * Allocate size cells at the end of the new semispace, doing a step of the
+     * running cycle. A cycle starts when half of the semispace is used, if the
+     * cells do not fit the running cycle is finished first.
+     *
+     * @param pointers Pointers of the new node, they are roots if the allocation starts a cycle.
+     */
+    private int allocate(int size, int numberOfPointers, int[] pointers) {
+        if (collecting) {
+            step(allocationBudget);
+        }
+        if (!hasRoom(size) || !collecting && usedCells() + size > semispaceSize / 2) {
+            int[] savedStack = stack;
+            stack = Arrays.copyOf(savedStack, savedStack.length + numberOfPointers);
+            for (int i = 0; i < numberOfPointers; i++) {
+                stack[savedStack.length + i] = pointers[i];
+            }
+            if (collecting) {
+                forcedCompletions++;
+                finishCycle();
+            }
+            if (!hasRoom(size) || usedCells() + size > semispaceSize / 2) {
+                startCycle();
+                step(allocationBudget);
+                if (!hasRoom(size)) {
+                    forcedCompletions++;
+                    finishCycle();
+                }
+            }
+            for (int i = 0; i < numberOfPointers; i++) {
+                pointers[i] = stack[savedStack.length + i];
+            }
+            System.arraycopy(stack, 0, savedStack, 0, savedStack.length);
+            stack = savedStack;
+
+            if (!hasRoom(size)) {
+                throw new IllegalStateException("Heap is full");
+            }
+        }
+        allocationTop -= size;
+        return allocationTop;
+    }
+
+    /**
+     * Check if size cells can be allocated, keeping the cells the copy may still need.
+     */
+    private boolean hasRoom(int size) {
+        return allocationTop - size >= (collecting ? copyLimit : nextTo);
+    }
+
+    /**
+     * Cells of the new semispace used by copied and allocated nodes.
+     */
+    private int usedCells() {
+        return nextTo - toSpaceStart + toSpaceStart + semispaceSize - allocationTop;
+    }
+
+    private boolean inFromSpace(int node) {
+        return node >= fromSpaceStart && node < fromSpaceStart + semispaceSize;
+    }
+
+    /**
+     * Check if a cell of a node holds a pointer, weak pointers included.
+     */
+    private boolean isPointerCell(int node, int cell) {
+        switch (heap[node]) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return cell >= 3 && cell < heap[node + 2] + 3;
+            case NODE_CONS:
+                return cell == 1 || cell == 2;
+            case NODE_IND:
+            case NODE_TYPE:
+            case NODE_WEAK:
+                return cell == 1;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Evacuate node. Copy the node to the new semi space, unless it
+     * has already been copied or is not in the old semispace.
+     *
+     * @return The location of the node in the new semi space.
+     */
+    private int evacuate(int node) {
+        if (!inFromSpace(node)) {
+            return node;
+        }
+        int tag = heap[node];
+        if (tag < 0) {
+            return tag & ~FORWARD_BIT;                  //Node has been copied, follow the forwarding word
+        }
+
+        int nodeNewLocation = nextTo;
+        int size = nodeSize(heap, node);
+        if (nextTo + size > allocationTop) {
+            throw new IllegalStateException("New semispace is full");
+        }
+        System.arraycopy(heap, node, heap, nextTo, size);   //Copy tag and payload
+        nextTo += size;
+
+        heap[node] = FORWARD_BIT | nodeNewLocation;     //FWD to new location
+        numberOfObjectsCopied++;
+        if (tag == NODE_WEAK) {
+            weakNodes.add(nodeNewLocation);
+        }
+        return nodeNewLocation;
+    }
+
+    /**
+     * Scavenge the node at the given location of the new semispace.
+     *
+     * @return The size of the node.
+     */
+    private int scavengeNode(int node) {
+        switch (heap[node]) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                int n = heap[node + 2];                 //Number of pointers
+                for (int i = 0; i < n; i++) {
+                    heap[node + 3 + i] = evacuate(heap[node + 3 + i]);
+                }
+                return n + 3;
+            case NODE_CONS:
+                heap[node + 1] = evacuate(heap[node + 1]);
+                heap[node + 2] = evacuate(heap[node + 2]);
+                return 3;
+            case NODE_IND:
+                heap[node + 1] = evacuate(heap[node + 1]);
+                return 2;
+            case NODE_TYPE:
+                heap[node + 1] = evacuate(heap[node + 1]);
+                return 3;
+            default:                                    //No strong pointers
+                return nodeSize(heap, node);
+        }
+    }
+
+    /**
+     * Update the weak pointers of the nodes copied by the cycle. A weak pointer
+     * read by the mutator already points to the new semispace.
+     */
+    private void updateWeakPointers() {
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int weakNode = weakNodes.get(i);
+            int weakPointerValue = heap[weakNode + 1];
+            if (inFromSpace(weakPointerValue)) {
+                int target = heap[weakPointerValue];
+                heap[weakNode + 1] = target < 0 ? target & ~FORWARD_BIT : NULL_POINTER;
+            }
+        }
+        weakNodes.clear();
+    }
+}
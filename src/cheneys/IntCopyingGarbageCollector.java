@@ -0,0 +1,255 @@
+package cheneys;
+
+import util.IntList;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.IntCopyingGarbageCollector.java                                       <br>
+ * ----------------------------------------------------------------------------  <br>
+ * This class represents a garbage collector implementing Cheney's algorithm over
+ * a primitive heap. Every cell is an int : node tags are small integer codes,
+ * pointers are raw cell indexes and scalar payloads that are not integers
+ * (doubles, identifiers) are indexes into the symbol table of the {@link HeapBuilder}
+ * that encoded the heap. The node layout is the same as the one used by
+ * {@link CopyingGarbageCollector}, so both engines can collect the same heap.
+ * <p>
+ * A forwarded node keeps only its tag cell, which is overwritten by the tagged
+ * word FORWARD_BIT | newLocation. The rest of the node is left untouched.
+ * <p>
+ * The cells are read and written through a {@link CellHeap}, so the heap may
+ * be an int array or off-heap memory.
+ */
+public class IntCopyingGarbageCollector {
+
+    public static final int NODE_FREE = 0;
+    public static final int NODE_INT = 1;
+    public static final int NODE_DOUBLE = 2;
+    public static final int NODE_CHAR = 3;
+    public static final int NODE_BOOL = 4;
+    public static final int NODE_CONSTR = 5;
+    public static final int NODE_CONS = 6;
+    public static final int NODE_NULL = 7;
+    public static final int NODE_LAMBDA = 8;
+    public static final int NODE_IND = 9;
+    public static final int NODE_VAR = 10;
+    public static final int NODE_TYPE = 11;
+    public static final int NODE_WEAK = 12;
+
+    public static final int FORWARD_BIT = 0x80000000;   //Set in the tag cell of a forwarded node
+    public static final int NULL_POINTER = -1;          //Value of a weak pointer whose object was collected
+
+    private CellHeap heap;              //Cells that represent the heap
+    private int[] stack;                //Array that represents the stack with roots
+    private int nextTo;                 //The next free cell in new semispace
+    private int scan;                   //Pointer which is used to point the scavenge initial Location
+    private int fromSpaceStart;         //The start position of the old semispace
+    private int toSpaceStart;           //The start position of the new semispace
+    private int flip;                   //Counter that indicates the odd/even flip to identify new & old semispace
+    private IntList weakNodes = new IntList();  //Weak nodes copied by the collection
+
+    public int numberOfObjectsCopied;
+
+    /**
+     * Construct new collector, given a heap and stack with roots.
+     */
+    public IntCopyingGarbageCollector(int[] heap, int[] stack) {
+        this(new ArrayCellHeap(heap), stack);
+    }
+
+    /**
+     * Construct new collector, given a heap backend and stack with roots.
+     */
+    public IntCopyingGarbageCollector(CellHeap heap, int[] stack) {
+        this.heap = heap;
+        this.stack = stack;
+        fromSpaceStart = 0;
+        scan = toSpaceStart = nextTo = heap.length() / 2;
+    }
+
+    /**
+     * Evacuate roots that are in stack.
+     * Negative values are empty stack slots.
+     */
+    public void evacuateRoots() {
+        for (int i = 0; i < stack.length; i++) {
+            if (stack[i] < 0)
+                continue;
+
+            stack[i] = evacuate(stack[i]);                   //Update the root
+        }
+    }
+
+    /**
+     * Implements the scavenging phase.
+     */
+    public void scavenge() {
+        while (scan < nextTo) {
+            doScavenging();
+        }
+
+        updateWeakPointers();   //Update the weak pointer that are in new semispace
+    }
+
+    /**
+     * Perform the flip between the new semi spaces.
+     */
+    public void flip() {
+        if (flip % 2 == 0) {
+            toSpaceStart = scan = nextTo = 0;
+            fromSpaceStart = heap.length() / 2;
+        } else {
+            toSpaceStart = scan = nextTo = heap.length() / 2;
+            fromSpaceStart = 0;
+        }
+        flip++;
+        numberOfObjectsCopied = 0;
+    }
+
+    /**
+     * Clear the old semi space.
+     */
+    public void clearOldMemory() {
+        heap.fill(fromSpaceStart, fromSpaceStart + heap.length() / 2, NODE_FREE);
+    }
+
+    /**
+     * Get the next Free memory cell in heap.
+     */
+    public int getNextTo() {
+        return nextTo;
+    }
+
+    public CellHeap getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    /**
+     * Size in cells of the node that starts at the given position.
+     */
+    public static int nodeSize(int[] heap, int position) {
+        switch (heap[position]) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return heap[position + 2] + 3;          //Tag, identifier, number of pointers and the pointers
+            case NODE_CONS:
+            case NODE_TYPE:
+                return 3;
+            case NODE_NULL:
+            case NODE_FREE:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Size in cells of the node that starts at the given position.
+     */
+    public static int nodeSize(CellHeap heap, int position) {
+        switch (heap.get(position)) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return heap.get(position + 2) + 3;
+            case NODE_CONS:
+            case NODE_TYPE:
+                return 3;
+            case NODE_NULL:
+            case NODE_FREE:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Evacuate node. Copy the node to the new semi space, unless it
+     * has already been copied.
+     *
+     * @return The location of the node in the new semi space.
+     */
+    private int evacuate(int node) {
+        int tag = heap.get(node);
+        if (tag < 0) {                                  //FORWARD_BIT is the sign bit
+            return tag & ~FORWARD_BIT;                  //Node has been copied, follow the forwarding word
+        }
+
+        int nodeNewLocation = nextTo;
+        int size = nodeSize(heap, node);
+        heap.copy(node, nextTo, size);                  //Copy tag and payload
+        nextTo += size;
+
+        heap.set(node, FORWARD_BIT | nodeNewLocation);  //FWD to new location
+        numberOfObjectsCopied++;
+        if (tag == NODE_WEAK) {
+            weakNodes.add(nodeNewLocation);             //Updated at the end of scavenging
+        }
+        return nodeNewLocation;
+    }
+
+    /**
+     * Performs scavenging of the node at scan.
+     */
+    private void doScavenging() {
+        switch (heap.get(scan)) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                int n = heap.get(scan + 2);             //Number of pointers
+                for (int i = 0; i < n; i++) {
+                    scavengeCell(scan + 3 + i);
+                }
+                scan += n + 3;
+                break;
+            case NODE_CONS:
+                scavengeCell(scan + 1);                 //update pointers
+                scavengeCell(scan + 2);
+                scan += 3;
+                break;
+            case NODE_IND:
+                scavengeCell(scan + 1);
+                scan += 2;
+                break;
+            case NODE_TYPE:
+                scavengeCell(scan + 1);
+                scan += 3;
+                break;
+            case NODE_NULL:
+                scan++;
+                break;
+            default:                                    //INT, DOUBLE, CHAR, BOOL, VAR & WEAK
+                scan += 2;
+                break;
+        }
+    }
+
+    /**
+     * Scavenge a cell, copy the node it points into the new space
+     * and update the pointer.
+     */
+    private void scavengeCell(int cell) {
+        heap.set(cell, evacuate(heap.get(cell)));
+    }
+
+    /**
+     * Update weak pointers. Only the weak nodes copied by the collection
+     * are visited.
+     */
+    private void updateWeakPointers() {
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int start = weakNodes.get(i);
+            int weakPointerValue = heap.get(start + 1);
+            if (weakPointerValue != NULL_POINTER) {
+                int target = heap.get(weakPointerValue);
+                if (target < 0) {
+                    heap.set(start + 1, target & ~FORWARD_BIT);     //update weak pointer
+                } else {
+                    heap.set(start + 1, NULL_POINTER);              //The object it points has been collected
+                }
+            }
+        }
+        weakNodes.clear();
+    }
+}
@@ -0,0 +1,285 @@
+package cheneys;
+
+import monitoring.GcEvent;
+import monitoring.GcListener;
+import util.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static cheneys.CopyingGarbageCollector.NODE_NULL;
+import static cheneys.CopyingGarbageCollector.NODE_WEAK;
+import static cheneys.CopyingGarbageCollector.firstPointer;
+import static cheneys.CopyingGarbageCollector.nodeSize;
+import static cheneys.CopyingGarbageCollector.pointerCount;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.MarkCompactGarbageCollector.java                                      <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Sliding mark-compact collector (Lisp2) over the String heap of the
+ * CopyingGarbageCollector, with the same cell layout and node tags. The nodes
+ * are in the cells [0, top) and the whole heap can be used, there is no
+ * reserve semispace. A collection has four phases :
+ * <ul>
+ * <li>mark : the nodes reachable from the stack are marked in a bitmap that
+ * has a bit for every cell of a live node.</li>
+ * <li>computeForwardingAddresses : the live nodes keep their order, so the new
+ * address of a live cell is the number of live cells below it.</li>
+ * <li>updatePointers : the roots and the pointers of the live nodes are set to
+ * the new addresses. A weak pointer to a dead node is set to NULL.</li>
+ * <li>slide : every live cell is moved down to its new address, and the cells
+ * above the new top are cleared.</li>
+ * </ul>
+ * The cell layout has no spare header cell for the forwarding address of Lisp2,
+ * so it is computed from the bitmap : the live cells below every block of 64
+ * cells are counted once, and the address of a cell is the count of its block
+ * plus a bit count in the block word. The side tables take about 1.5 bits per
+ * cell of the heap.
+ */
+public class MarkCompactGarbageCollector {
+
+    private static final int BLOCK_SHIFT = 6;  //Cells per block of the bitmap, 64
+
+    private String[] heap;                  //Array that represents the heap
+    private int[] stack;                    //Array that represents the stack with roots
+    private int top;                        //The next free cell after the slide
+    private long[] liveCells;               //Bit per cell, set for every cell of a live node
+    private int[] blockOffsets;             //Live cells below each block of the bitmap
+    private IntList gray = new IntList();               //Marked nodes whose pointers are not marked
+    private IntList weakNodes = new IntList();          //Weak nodes marked by the collection
+    private List<GcListener> listeners = new ArrayList<>();
+    private GcEvent event = new GcEvent("Lisp2", 1);    //Measures of the collection until the slide
+
+    public int numberOfObjectsMarked;       //Live objects of the last collection
+    public int numberOfObjectsMoved;        //Live objects whose address changed
+    public int maxMarkStackSize;            //Most gray nodes at once during the last mark
+
+    /**
+     * Construct new collector, given a heap and stack with roots. The nodes of
+     * the heap are in its first cells, until the first empty (null) cell.
+     */
+    public MarkCompactGarbageCollector(String[] heap, int[] stack) {
+        this.heap = heap;
+        this.stack = stack;
+        liveCells = new long[(heap.length + 63) >>> BLOCK_SHIFT];
+        blockOffsets = new int[liveCells.length];
+    }
+
+    /**
+     * Run the four phases of a collection.
+     */
+    public void collect() {
+        mark();
+        computeForwardingAddresses();
+        updatePointers();
+        slide();
+    }
+
+    /**
+     * Mark the nodes reachable from the roots that are in stack. Negative
+     * values are empty stack slots.
+     */
+    public void mark() {
+        long start = System.nanoTime();
+        Arrays.fill(liveCells, 0);
+        numberOfObjectsMarked = 0;
+        numberOfObjectsMoved = 0;
+        maxMarkStackSize = 0;
+        for (int root : stack) {
+            if (root != -1) {
+                markNode(root);
+            }
+        }
+        long rootsMarked = System.nanoTime();
+        event.evacuateRootsNanos += rootsMarked - start;
+
+        while (!gray.isEmpty()) {
+            int node = gray.pop();
+            if (heap[node].equals(NODE_WEAK)) {
+                weakNodes.add(node);                    //A weak pointer does not keep its node alive
+                continue;
+            }
+            int pointer = firstPointer(heap, node);
+            for (int i = pointerCount(heap, node); i > 0; i--) {
+                markNode(Integer.valueOf(heap[pointer++]));
+            }
+        }
+        event.scavengeNanos += System.nanoTime() - rootsMarked;
+    }
+
+    /**
+     * Count the live cells below every block of the bitmap. The new top is
+     * the number of live cells.
+     */
+    public void computeForwardingAddresses() {
+        long start = System.nanoTime();
+        int liveCellsBelow = 0;
+        for (int i = 0; i < liveCells.length; i++) {
+            blockOffsets[i] = liveCellsBelow;
+            liveCellsBelow += Long.bitCount(liveCells[i]);
+        }
+        top = liveCellsBelow;
+        event.computeForwardingNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Update the roots, the pointers of the live nodes and then the weak
+     * pointers, to the addresses the nodes will have after the slide.
+     */
+    public void updatePointers() {
+        long start = System.nanoTime();
+        for (int i = 0; i < stack.length; i++) {
+            if (stack[i] != -1) {
+                stack[i] = forwardingAddress(stack[i]);
+            }
+        }
+        for (int node = nextLiveCell(0); node >= 0; node = nextLiveCell(node + nodeSize(heap, node))) {
+            if (forwardingAddress(node) != node) {
+                numberOfObjectsMoved++;
+            }
+            int pointer = firstPointer(heap, node);
+            for (int i = pointerCount(heap, node); i > 0; i--) {   //Weak pointers are updated below
+                updatePointer(pointer++);
+            }
+        }
+        long updated = System.nanoTime();
+        event.updatePointersNanos += updated - start;
+
+        updateWeakPointers();
+        event.updateWeakPointersNanos += System.nanoTime() - updated;
+    }
+
+    /**
+     * Move the live cells down to their new addresses, in address order so no
+     * live cell is overwritten before it is moved, and clear the cells above
+     * the new top. This ends the collection, the listeners get its measures.
+     */
+    public void slide() {
+        long start = System.nanoTime();
+        int to = 0;
+        for (int i = 0; i < liveCells.length; i++) {
+            long word = liveCells[i];
+            while (word != 0) {
+                int cell = (i << BLOCK_SHIFT) + Long.numberOfTrailingZeros(word);
+                heap[to++] = heap[cell];
+                word &= word - 1;
+            }
+        }
+        long slid = System.nanoTime();
+        event.copyToNewSpaceNanos += slid - start;
+
+        int i = top;
+        while (i < heap.length && heap[i] != null) {   //Clear until the end of the old nodes
+            heap[i++] = null;
+        }
+        event.clearOldMemoryNanos += System.nanoTime() - slid;
+
+        if (!listeners.isEmpty()) {
+            event.objectsCopied = numberOfObjectsMoved;
+            event.cellsCopied = top;
+            event.cellsInUse = i;
+            for (GcListener listener : listeners) {
+                listener.onCollection(event);
+            }
+        }
+        event = new GcEvent("Lisp2", event.cycle + 1);
+    }
+
+    /**
+     * Add a listener of the collections, it is called at the end of every slide.
+     */
+    public void addListener(GcListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GcListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the next free memory cell in heap after the last collection, new
+     * nodes are added there.
+     */
+    public int getTop() {
+        return top;
+    }
+
+    public String[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    /**
+     * Mark all the cells of a node, unless it is already marked.
+     */
+    private void markNode(int node) {
+        if ((liveCells[node >>> BLOCK_SHIFT] & (1L << node)) != 0) {
+            return;
+        }
+        int end = node + nodeSize(heap, node);
+        for (int cell = node; cell < end; cell++) {
+            liveCells[cell >>> BLOCK_SHIFT] |= 1L << cell;
+        }
+        numberOfObjectsMarked++;
+        gray.add(node);
+        maxMarkStackSize = Math.max(maxMarkStackSize, gray.size());
+    }
+
+    /**
+     * The address of a live cell after the slide, the number of live cells
+     * below it.
+     */
+    private int forwardingAddress(int cell) {
+        int block = cell >>> BLOCK_SHIFT;
+        return blockOffsets[block] + Long.bitCount(liveCells[block] & ((1L << cell) - 1));
+    }
+
+    /**
+     * The first live cell at or after the given cell, or -1 if there is none.
+     */
+    private int nextLiveCell(int cell) {
+        int block = cell >>> BLOCK_SHIFT;
+        if (block >= liveCells.length) {
+            return -1;
+        }
+        long word = liveCells[block] & (-1L << cell);
+        while (word == 0) {
+            if (++block == liveCells.length) {
+                return -1;
+            }
+            word = liveCells[block];
+        }
+        return (block << BLOCK_SHIFT) + Long.numberOfTrailingZeros(word);
+    }
+
+    private void updatePointer(int pointerCell) {
+        heap[pointerCell] = String.valueOf(forwardingAddress(Integer.valueOf(heap[pointerCell])));
+    }
+
+    /**
+     * Update weak pointers. Only the weak nodes marked by the collection are
+     * visited, a pointer to a node that was not marked is set to NULL.
+     */
+    private void updateWeakPointers() {
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int pointerCell = weakNodes.get(i) + 1;
+            if (heap[pointerCell].equals(NODE_NULL)) {
+                continue;                               //Object was collected by a previous collection
+            }
+            int weakPointerValue = Integer.valueOf(heap[pointerCell]);
+            if ((liveCells[weakPointerValue >>> BLOCK_SHIFT] & (1L << weakPointerValue)) != 0) {
+                heap[pointerCell] = String.valueOf(forwardingAddress(weakPointerValue));
+                event.weakPointersUpdated++;
+            } else {
+                heap[pointerCell] = NODE_NULL;
+                event.weakPointersCleared++;
+            }
+        }
+        weakNodes.clear();
+    }
+}
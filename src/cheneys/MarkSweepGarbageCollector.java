@@ -0,0 +1,523 @@
+package cheneys;
+
+import monitoring.GcEvent;
+import monitoring.GcListener;
+import util.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static cheneys.CopyingGarbageCollector.NODE_BOOL;
+import static cheneys.CopyingGarbageCollector.NODE_CHAR;
+import static cheneys.CopyingGarbageCollector.NODE_CONS;
+import static cheneys.CopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.CopyingGarbageCollector.NODE_DOUBLE;
+import static cheneys.CopyingGarbageCollector.NODE_IND;
+import static cheneys.CopyingGarbageCollector.NODE_INT;
+import static cheneys.CopyingGarbageCollector.NODE_LAMBDA;
+import static cheneys.CopyingGarbageCollector.NODE_NULL;
+import static cheneys.CopyingGarbageCollector.NODE_TYPE;
+import static cheneys.CopyingGarbageCollector.NODE_VAR;
+import static cheneys.CopyingGarbageCollector.NODE_WEAK;
+import static cheneys.CopyingGarbageCollector.firstPointer;
+import static cheneys.CopyingGarbageCollector.nodeSize;
+import static cheneys.CopyingGarbageCollector.pointerCount;
+import static cheneys.HeapBuilder.CONS_SIZE;
+import static cheneys.HeapBuilder.IND_SIZE;
+import static cheneys.HeapBuilder.INT_SIZE;
+import static cheneys.HeapBuilder.NULL_SIZE;
+import static cheneys.HeapBuilder.TYPE_SIZE;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.MarkSweepGarbageCollector.java                                        <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Non-moving mark-sweep collector over the String heap of the
+ * CopyingGarbageCollector, with an allocator of segregated free lists. The free
+ * cells of the heap are chunks with a FREE tag and their size in the next cell
+ * (a single free cell only has the FREE_CELL tag), so the heap can still be
+ * walked chunk by chunk and node by node. There is an exact list for every fixed
+ * node size, 1 (NULL), 2 (INT, DOUBLE, CHAR, BOOL, IND, VAR, WEAK) and 3 (CONS,
+ * TYPE), and a general first-fit list of the chunks of 4 cells or more, that
+ * also takes the variable size CONSTR and LAMBDA nodes. A chunk of the general
+ * list is split, the rest of it goes back to the list of its size.
+ * <p>
+ * A collection only marks the nodes reachable from the stack, and sets the weak
+ * pointers to unmarked nodes to NULL. It empties the free lists, the sweep is
+ * lazy : when an allocation finds no chunk in the lists, the next SWEEP_BLOCK
+ * cells of the heap are swept and the dead nodes and free chunks after the
+ * sweep pointer are merged into chunks up to the next live node. The heap is
+ * collected again when it has been swept and no chunk fits.
+ * <p>
+ * Nodes never move, the pointers given to an allocation are roots of the
+ * collection it may start.
+ */
+public class MarkSweepGarbageCollector {
+
+    public static final String TAG_FREE = "FREE";           //Free chunk, its size is in the next cell
+    public static final String TAG_FREE_CELL = "FREE_CELL"; //Free chunk of one cell
+    public static final int SWEEP_BLOCK = 256;              //Cells swept when the free lists run out
+
+    private static final int LARGE = 4;     //Smallest chunk of the general list
+
+    private String[] heap;                  //Array that represents the heap
+    private int[] stack;                    //Array that represents the stack with roots
+    private long[] marks;                   //Bit per cell, set at the first cell of a marked node
+    private IntList[] sizeClasses = new IntList[LARGE];    //Free chunks of 1, 2 and 3 cells
+    private IntList largeChunks = new IntList();            //Free chunks of LARGE cells or more
+    private int sweep;                      //Next cell to sweep, heap.length if the sweep is done
+    private long freeCells;                 //Cells of the chunks in the free lists
+    private IntList gray = new IntList();               //Marked nodes whose pointers are not marked
+    private IntList weakNodes = new IntList();          //Weak nodes marked by the collection
+    private final int[] arguments = new int[2];         //Pointers given to an allocation
+    private List<GcListener> listeners = new ArrayList<>();
+    private GcEvent event = new GcEvent("MarkSweep", 1);
+
+    public int collections;
+    public long liveCells;                  //Cells of the nodes marked by the last collection
+    public long allocatedObjects;
+    public long allocatedCells;
+    public long sweptBlocks;
+    public long pauseNanos;                 //Total time of collections, the marking
+    public long maxPauseNanos;
+    public long sweepNanos;                 //Total time of the lazy sweep, during allocation
+
+    /**
+     * Construct new collector over a heap. The nodes of the heap are in its first
+     * cells, until the first empty (null) cell, the cells after them are free.
+     *
+     * @param stack Stack with roots, negative values are empty slots.
+     */
+    public MarkSweepGarbageCollector(String[] heap, int[] stack) {
+        this.heap = heap;
+        this.stack = stack;
+        marks = new long[(heap.length + 63) >>> 6];
+        for (int i = 1; i < LARGE; i++) {
+            sizeClasses[i] = new IntList();
+        }
+        int top = 0;
+        while (top < heap.length && heap[top] != null) {
+            top++;
+        }
+        if (top < heap.length) {
+            addChunk(top, heap.length - top);
+        }
+        sweep = heap.length;                //Nothing to sweep before the first collection
+    }
+
+    /**
+     * Add an integer node.
+     */
+    public int allocateInteger(int value) {
+        return allocateValue(NODE_INT, String.valueOf(value));
+    }
+
+    /**
+     * Add a double node.
+     */
+    public int allocateDouble(double value) {
+        return allocateValue(NODE_DOUBLE, String.valueOf(value));
+    }
+
+    /**
+     * Add a char node.
+     */
+    public int allocateChar(char value) {
+        return allocateValue(NODE_CHAR, String.valueOf(value));
+    }
+
+    /**
+     * Add a boolean node.
+     */
+    public int allocateBoolean(boolean value) {
+        return allocateValue(NODE_BOOL, String.valueOf(value));
+    }
+
+    /**
+     * Add a variable identifier node.
+     */
+    public int allocateVariable(String variable) {
+        return allocateValue(NODE_VAR, variable);
+    }
+
+    /**
+     * Add a null node.
+     */
+    public int allocateNull() {
+        int node = allocate(NULL_SIZE, 0);
+        heap[node] = NODE_NULL;
+        return node;
+    }
+
+    /**
+     * Add a list constructor node.
+     */
+    public int allocateListConstructor(int pointerValue1, int pointerValue2) {
+        arguments[0] = pointerValue1;
+        arguments[1] = pointerValue2;
+        int node = allocate(CONS_SIZE, 2);
+        heap[node] = NODE_CONS;
+        heap[node + 1] = String.valueOf(pointerValue1);
+        heap[node + 2] = String.valueOf(pointerValue2);
+        return node;
+    }
+
+    /**
+     * Add an indirection node.
+     */
+    public int allocateIndirection(int pointerValue) {
+        return allocatePointer(NODE_IND, pointerValue);
+    }
+
+    /**
+     * Add a weak pointer node.
+     */
+    public int allocateWeak(int pointerValue) {
+        return allocatePointer(NODE_WEAK, pointerValue);
+    }
+
+    /**
+     * Add a type node.
+     */
+    public int allocateType(int pointerValue, String type) {
+        arguments[0] = pointerValue;
+        int node = allocate(TYPE_SIZE, 1);
+        heap[node] = NODE_TYPE;
+        heap[node + 1] = String.valueOf(pointerValue);
+        heap[node + 2] = type;
+        return node;
+    }
+
+    /**
+     * Add a data constructor node.
+     */
+    public int allocateDataConstructor(String constructor, int[] pointerValues) {
+        return allocateWithPointers(NODE_CONSTR, constructor, pointerValues);
+    }
+
+    /**
+     * Add a lambda node.
+     */
+    public int allocateLambda(String function, int[] pointerValues) {
+        return allocateWithPointers(NODE_LAMBDA, function, pointerValues);
+    }
+
+    /**
+     * Mark the nodes reachable from the stack and set the weak pointers to
+     * unmarked nodes to NULL. The free lists are emptied, they are refilled by
+     * the lazy sweep.
+     */
+    public void collect() {
+        collect(0, arguments);
+    }
+
+    /**
+     * Sweep the rest of the heap, the free lists then hold all the free chunks.
+     */
+    public void finishSweep() {
+        while (sweep < heap.length) {
+            sweepBlock();
+        }
+    }
+
+    /**
+     * Cells of the chunks in the free lists.
+     */
+    public long getFreeCells() {
+        return freeCells;
+    }
+
+    /**
+     * Size of the largest chunk in the free lists.
+     */
+    public int getLargestFreeChunk() {
+        int largest = 0;
+        for (int i = 0; i < largeChunks.size(); i++) {
+            largest = Math.max(largest, chunkSize(largeChunks.get(i)));
+        }
+        for (int i = LARGE - 1; i > largest && i > 0; i--) {
+            if (!sizeClasses[i].isEmpty()) {
+                largest = i;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * External fragmentation of the free lists, the part of the free cells that
+     * are not in the largest chunk. Call finishSweep first to measure the whole
+     * heap.
+     */
+    public double getFragmentation() {
+        return freeCells == 0 ? 0 : 1 - (double) getLargestFreeChunk() / freeCells;
+    }
+
+    /**
+     * Add a listener of the collections, it is called at the end of every marking.
+     */
+    public void addListener(GcListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GcListener listener) {
+        listeners.remove(listener);
+    }
+
+    public String[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    public void printStatistics() {
+        System.out.println("COLLECTIONS       : " + collections + " total " + pauseNanos / 1000 + "us"
+                + " avg " + (collections == 0 ? 0 : pauseNanos / collections / 1000) + "us"
+                + " max " + maxPauseNanos / 1000 + "us");
+        System.out.println("LAZY SWEEP        : " + sweptBlocks + " blocks " + sweepNanos / 1000 + "us");
+        System.out.println("ALLOCATED         : " + allocatedObjects + " objects, " + allocatedCells + " cells");
+        System.out.println("FREE CELLS        : " + freeCells + " / " + heap.length + ", largest chunk "
+                + getLargestFreeChunk() + String.format(", fragmentation %.3f", getFragmentation()));
+    }
+
+    private int allocateValue(String tag, String value) {
+        int node = allocate(INT_SIZE, 0);
+        heap[node] = tag;
+        heap[node + 1] = value;
+        return node;
+    }
+
+    private int allocatePointer(String tag, int pointerValue) {
+        arguments[0] = pointerValue;
+        int node = allocate(IND_SIZE, 1);
+        heap[node] = tag;
+        heap[node + 1] = String.valueOf(pointerValue);
+        return node;
+    }
+
+    private int allocateWithPointers(String tag, String identifier, int[] pointerValues) {
+        int node = allocate(pointerValues.length + 3, pointerValues.length, pointerValues);
+        heap[node] = tag;
+        heap[node + 1] = identifier;
+        heap[node + 2] = String.valueOf(pointerValues.length);
+        for (int i = 0; i < pointerValues.length; i++) {
+            heap[node + 3 + i] = String.valueOf(pointerValues[i]);
+        }
+        return node;
+    }
+
+    private int allocate(int size, int numberOfPointers) {
+        return allocate(size, numberOfPointers, arguments);
+    }
+
+    /**
+     * Take a free chunk of size cells, sweeping the heap lazily, and collect if
+     * there is none.
+     *
+     * @param pointers Pointers of the new node, they are roots if the allocation collects.
+     */
+    private int allocate(int size, int numberOfPointers, int[] pointers) {
+        int node = takeChunk(size);
+        if (node < 0) {
+            collect(numberOfPointers, pointers);
+            node = takeChunk(size);
+            if (node < 0) {
+                throw new IllegalStateException("Heap is full");
+            }
+        }
+        allocatedObjects++;
+        allocatedCells += size;
+        return node;
+    }
+
+    /**
+     * Take a chunk of the exact size list, or split one of the general list. The
+     * heap is swept block by block until one is found, a chunk of a larger size
+     * list is split when the whole heap is swept.
+     *
+     * @return The first cell of the chunk, or -1 if the whole heap is swept and no chunk fits.
+     */
+    private int takeChunk(int size) {
+        while (true) {
+            if (size < LARGE && !sizeClasses[size].isEmpty()) {
+                freeCells -= size;
+                return sizeClasses[size].pop();
+            }
+            for (int i = 0; i < largeChunks.size(); i++) {      //First fit
+                int chunk = largeChunks.get(i);
+                int chunkSize = chunkSize(chunk);
+                if (chunkSize >= size) {
+                    largeChunks.set(i, largeChunks.get(largeChunks.size() - 1));
+                    largeChunks.pop();
+                    freeCells -= chunkSize;
+                    if (chunkSize > size) {
+                        addChunk(chunk + size, chunkSize - size);
+                    }
+                    return chunk;
+                }
+            }
+            if (sweep < heap.length) {
+                sweepBlock();
+                continue;
+            }
+            for (int i = size + 1; i < LARGE; i++) {            //Split a larger small chunk
+                if (!sizeClasses[i].isEmpty()) {
+                    int chunk = sizeClasses[i].pop();
+                    freeCells -= i;
+                    addChunk(chunk + size, i - size);
+                    return chunk;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Sweep the next SWEEP_BLOCK cells. The dead nodes and the free chunks that
+     * follow each other are merged into a chunk, that may go past the block, up
+     * to the next marked node.
+     */
+    private void sweepBlock() {
+        long start = System.nanoTime();
+        int end = Math.min(heap.length, sweep + SWEEP_BLOCK);
+        while (sweep < end) {
+            if (isMarked(sweep)) {
+                sweep += nodeSize(heap, sweep);
+                continue;
+            }
+            int chunk = sweep;
+            while (sweep < heap.length && !isMarked(sweep)) {
+                sweep += cellsAt(sweep);
+            }
+            addChunk(chunk, sweep - chunk);
+        }
+        sweptBlocks++;
+        sweepNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Mark from the stack and the pointers of the node being allocated.
+     */
+    private void collect(int numberOfPointers, int[] pointers) {
+        long start = System.nanoTime();
+        if (!listeners.isEmpty()) {
+            event.cellsInUse = heap.length - freeCells;
+        }
+        Arrays.fill(marks, 0);
+        liveCells = 0;
+        for (int root : stack) {
+            markNode(root);
+        }
+        for (int i = 0; i < numberOfPointers; i++) {
+            markNode(pointers[i]);
+        }
+        long rootsMarked = System.nanoTime();
+        event.evacuateRootsNanos += rootsMarked - start;
+
+        while (!gray.isEmpty()) {
+            int node = gray.pop();
+            if (heap[node].equals(NODE_WEAK)) {
+                weakNodes.add(node);                    //A weak pointer does not keep its node alive
+                continue;
+            }
+            int pointer = firstPointer(heap, node);
+            for (int i = pointerCount(heap, node); i > 0; i--) {
+                markNode(Integer.valueOf(heap[pointer++]));
+            }
+        }
+        long marked = System.nanoTime();
+        event.scavengeNanos += marked - rootsMarked;
+
+        updateWeakPointers();
+        event.updateWeakPointersNanos += System.nanoTime() - marked;
+
+        for (int i = 1; i < LARGE; i++) {
+            sizeClasses[i].clear();
+        }
+        largeChunks.clear();
+        freeCells = 0;
+        sweep = 0;
+        long pause = System.nanoTime() - start;
+
+        collections++;
+        pauseNanos += pause;
+        maxPauseNanos = Math.max(maxPauseNanos, pause);
+        if (!listeners.isEmpty()) {
+            event.cellsCopied = liveCells;              //Cells that survive, in place
+            for (GcListener listener : listeners) {
+                listener.onCollection(event);
+            }
+        }
+        event = new GcEvent("MarkSweep", event.cycle + 1);
+    }
+
+    private void markNode(int node) {
+        if (node < 0 || isMarked(node)) {
+            return;
+        }
+        marks[node >>> 6] |= 1L << node;
+        liveCells += nodeSize(heap, node);
+        gray.add(node);
+    }
+
+    private boolean isMarked(int cell) {
+        return (marks[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Set the weak pointers to unmarked nodes to NULL. Only the weak nodes marked
+     * by the collection are visited.
+     */
+    private void updateWeakPointers() {
+        for (int i = 0; i < weakNodes.size(); i++) {
+            int pointerCell = weakNodes.get(i) + 1;
+            if (heap[pointerCell].equals(NODE_NULL)) {
+                continue;                               //Object was collected by a previous collection
+            }
+            if (isMarked(Integer.valueOf(heap[pointerCell]))) {
+                event.weakPointersUpdated++;            //Nodes do not move, the pointer stays
+            } else {
+                heap[pointerCell] = NODE_NULL;
+                event.weakPointersCleared++;
+            }
+        }
+        weakNodes.clear();
+    }
+
+    /**
+     * Write the header of a free chunk and add it to the list of its size.
+     */
+    private void addChunk(int chunk, int size) {
+        if (size == 1) {
+            heap[chunk] = TAG_FREE_CELL;
+        } else {
+            heap[chunk] = TAG_FREE;
+            heap[chunk + 1] = String.valueOf(size);
+        }
+        if (size < LARGE) {
+            sizeClasses[size].add(chunk);
+        } else {
+            largeChunks.add(chunk);
+        }
+        freeCells += size;
+    }
+
+    private int chunkSize(int chunk) {
+        return heap[chunk].equals(TAG_FREE_CELL) ? 1 : Integer.valueOf(heap[chunk + 1]);
+    }
+
+    /**
+     * Cells of the node or free chunk that starts at the given cell.
+     */
+    private int cellsAt(int cell) {
+        switch (heap[cell]) {
+            case TAG_FREE:
+            case TAG_FREE_CELL:
+                return chunkSize(cell);
+            default:
+                return nodeSize(heap, cell);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package cheneys;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Heap backend that keeps the cells in off-heap memory, so the simulated
+ * heap does not add objects to the host JVM heap and its pauses do not
+ * distort the collector measurements.
+ * <p>
+ * The cells are stored as 4 byte words, in native byte order, in direct
+ * byte buffers of CHUNK_CELLS cells each. A single direct buffer is limited to
+ * 2GB, the chunks let a heap use the whole int address space of cells.
+ * Copies, fills and transfers from and to int arrays are done in bulk, one
+ * chunk at a time. The memory is released when the heap becomes unreachable.
+ */
+public class OffHeapCellHeap implements CellHeap {
+
+    public static final int CELL_BYTES = 4;
+    private static final int CHUNK_SHIFT = 26;
+    public static final int CHUNK_CELLS = 1 << CHUNK_SHIFT;   //256MB per chunk
+    private static final int CHUNK_MASK = CHUNK_CELLS - 1;
+    private static final int BULK_CELLS = 16;                 //Shorter copies are done cell by cell
+
+    private final ByteBuffer[] chunks;
+    private final IntBuffer[] intChunks;                        //Int views of the chunks, for the int arrays
+    private final int length;
+
+    /**
+     * Allocate an off-heap heap of the given number of cells, all cells are zero (free).
+     */
+    public OffHeapCellHeap(int length) {
+        this.length = length;
+        int numberOfChunks = (int) (((long) length + CHUNK_CELLS - 1) >>> CHUNK_SHIFT);
+        chunks = new ByteBuffer[numberOfChunks];
+        intChunks = new IntBuffer[numberOfChunks];
+        for (int i = 0; i < numberOfChunks; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(chunkCells(i) * CELL_BYTES).order(ByteOrder.nativeOrder());
+            intChunks[i] = chunks[i].asIntBuffer();
+        }
+    }
+
+    /**
+     * Copy an int heap to off-heap memory. A heap can also be generated in
+     * place, with HeapGenerator.generateOffHeap, without an int array.
+     */
+    public static OffHeapCellHeap of(int[] cells) {
+        OffHeapCellHeap heap = new OffHeapCellHeap(cells.length);
+        for (int i = 0; i < heap.chunks.length; i++) {
+            heap.intChunks[i].put(0, cells, i << CHUNK_SHIFT, heap.chunkCells(i));
+        }
+        return heap;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public int get(int cell) {
+        return chunks[cell >>> CHUNK_SHIFT].getInt((cell & CHUNK_MASK) * CELL_BYTES);
+    }
+
+    @Override
+    public void set(int cell, int value) {
+        chunks[cell >>> CHUNK_SHIFT].putInt((cell & CHUNK_MASK) * CELL_BYTES, value);
+    }
+
+    @Override
+    public void copy(int from, int to, int length) {
+        if (length < BULK_CELLS) {                              //A node, most of the time
+            for (int i = 0; i < length; i++) {
+                set(to + i, get(from + i));
+            }
+            return;
+        }
+        while (length > 0) {                                    //One part in the same chunks at a time
+            int fromOffset = from & CHUNK_MASK;
+            int toOffset = to & CHUNK_MASK;
+            int cells = Math.min(length, CHUNK_CELLS - Math.max(fromOffset, toOffset));
+            chunks[to >>> CHUNK_SHIFT].put(toOffset * CELL_BYTES, chunks[from >>> CHUNK_SHIFT],
+                    fromOffset * CELL_BYTES, cells * CELL_BYTES);
+            from += cells;
+            to += cells;
+            length -= cells;
+        }
+    }
+
+    @Override
+    public void fill(int from, int to, int value) {
+        while (from < to) {
+            int offset = from & CHUNK_MASK;
+            int cells = Math.min(to - from, CHUNK_CELLS - offset);
+            fillChunk(chunks[from >>> CHUNK_SHIFT], offset * CELL_BYTES, cells, value);
+            from += cells;
+        }
+    }
+
+    /**
+     * Fill cells of a chunk : the first BULK_CELLS are written, then the
+     * filled part is copied after itself until the cells are filled.
+     */
+    private static void fillChunk(ByteBuffer chunk, int start, int cells, int value) {
+        int filled = Math.min(cells, BULK_CELLS);
+        for (int i = 0; i < filled; i++) {
+            chunk.putInt(start + i * CELL_BYTES, value);
+        }
+        while (filled < cells) {
+            int copied = Math.min(filled, cells - filled);
+            chunk.put(start + filled * CELL_BYTES, chunk, start, copied * CELL_BYTES);
+            filled += copied;
+        }
+    }
+
+    /**
+     * Copy the cells back to an int array.
+     */
+    public int[] toArray() {
+        int[] cells = new int[length];
+        for (int i = 0; i < chunks.length; i++) {
+            intChunks[i].get(0, cells, i << CHUNK_SHIFT, chunkCells(i));
+        }
+        return cells;
+    }
+
+    /**
+     * Number of cells of a chunk, the last one may be shorter.
+     */
+    private int chunkCells(int chunk) {
+        return Math.min(CHUNK_CELLS, length - chunk * CHUNK_CELLS);
+    }
+}
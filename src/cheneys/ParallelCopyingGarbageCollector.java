@@ -0,0 +1,395 @@
+package cheneys;
+
+import util.IntList;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cheneys.IntCopyingGarbageCollector.FORWARD_BIT;
+import static cheneys.IntCopyingGarbageCollector.NODE_CONS;
+import static cheneys.IntCopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.IntCopyingGarbageCollector.NODE_IND;
+import static cheneys.IntCopyingGarbageCollector.NODE_LAMBDA;
+import static cheneys.IntCopyingGarbageCollector.NODE_TYPE;
+import static cheneys.IntCopyingGarbageCollector.NODE_WEAK;
+import static cheneys.IntCopyingGarbageCollector.NULL_POINTER;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.ParallelCopyingGarbageCollector.java                                  <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Parallel version of the IntCopyingGarbageCollector. Scavenging is done by the
+ * workers of a fork-join pool, every worker keeps its gray nodes in a local list
+ * and hands half of them to a new task when the pool runs out of queued work,
+ * so idle workers steal it.
+ * <p>
+ * A worker claims a node by a compare-and-set of its tag cell to BUSY, copies it
+ * and then publishes the forwarding word, so a node is copied exactly once. Other
+ * workers that meet a BUSY node wait for the forwarding word. Every worker copies
+ * into its own to-space allocation buffer (LAB) of LAB_SIZE cells, so the shared
+ * to-space pointer is only touched once per buffer. The last buffer of the to-space
+ * is cut to the cells left. The unused end of a buffer is left free (NODE_FREE
+ * cells), so the to-space can still be walked node by node.
+ */
+public class ParallelCopyingGarbageCollector {
+
+    public static final int BUSY = FORWARD_BIT | 0x7FFFFFFF;    //Tag of a node that is being copied
+    public static final int LAB_SIZE = 1024;                   //Cells of a to-space allocation buffer
+    private static final int SPLIT_SIZE = 64;                  //Gray nodes that are worth a new task
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int[] heap;           //Array that represents the heap
+    private final int[] stack;          //Array that represents the stack with roots
+    private final ForkJoinPool pool;    //Scavenging workers
+    private final AtomicInteger nextTo = new AtomicInteger();   //The next free cell in new semispace
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(this::newWorker);
+    private final ConcurrentLinkedQueue<Worker> allWorkers = new ConcurrentLinkedQueue<>();
+    private int fromSpaceStart;         //The start position of the old semispace
+    private int toSpaceStart;           //The start position of the new semispace
+    private int toSpaceEnd;             //The end of the new semispace
+    private int flip;                   //Counter that indicates the odd/even flip to identify new & old semispace
+    private IntList grayRoots = new IntList();  //Roots copied by evacuateRoots that are not scavenged yet
+
+    public int numberOfObjectsCopied;
+
+    /**
+     * Construct new collector, given a heap, stack with roots and the number of workers.
+     */
+    public ParallelCopyingGarbageCollector(int[] heap, int[] stack, int numberOfWorkers) {
+        this.heap = heap;
+        this.stack = stack;
+        this.pool = new ForkJoinPool(numberOfWorkers);
+        fromSpaceStart = 0;
+        toSpaceStart = heap.length / 2;
+        toSpaceEnd = heap.length;
+        nextTo.set(toSpaceStart);
+    }
+
+    /**
+     * Evacuate roots that are in stack, in parallel.
+     * Negative values are empty stack slots.
+     */
+    public void evacuateRoots() {
+        RootTask task = new RootTask(0, stack.length);
+        pool.invoke(task);
+        grayRoots = task.copied;
+        countCopiedObjects();
+    }
+
+    /**
+     * Implements the scavenging phase, in parallel.
+     */
+    public void scavenge() {
+        pool.invoke(new ScavengeTask(grayRoots));
+        grayRoots = new IntList();
+        countCopiedObjects();
+        updateWeakPointers();   //Update the weak pointer that are in new semispace
+    }
+
+    /**
+     * Perform the flip between the new semi spaces.
+     */
+    public void flip() {
+        if (flip % 2 == 0) {
+            toSpaceStart = 0;
+            fromSpaceStart = heap.length / 2;
+            toSpaceEnd = heap.length / 2;
+        } else {
+            toSpaceStart = heap.length / 2;
+            fromSpaceStart = 0;
+            toSpaceEnd = heap.length;
+        }
+        nextTo.set(toSpaceStart);
+        for (Worker worker : allWorkers) {
+            worker.reset();
+        }
+        flip++;
+        numberOfObjectsCopied = 0;
+    }
+
+    /**
+     * Clear the old semi space.
+     */
+    public void clearOldMemory() {
+        Arrays.fill(heap, fromSpaceStart, fromSpaceStart + heap.length / 2, IntCopyingGarbageCollector.NODE_FREE);
+    }
+
+    /**
+     * Stop the workers of the collector.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Get the end of the last allocation buffer in the new semispace.
+     */
+    public int getNextTo() {
+        return nextTo.get();
+    }
+
+    public int[] getHeap() {
+        return heap;
+    }
+
+    public int[] getStack() {
+        return stack;
+    }
+
+    public int getNumberOfWorkers() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Evacuate node, unless another worker has copied or is copying it.
+     *
+     * @return The location of the node in the new semi space. The worker's
+     * lastCopied flag tells if the node was copied by this call.
+     */
+    private int evacuate(int node, Worker worker) {
+        worker.lastCopied = false;
+        int tag = (int) CELLS.getAcquire(heap, node);
+        while (true) {
+            if (tag == BUSY) {                                  //Another worker is copying the node
+                Thread.onSpinWait();
+                tag = (int) CELLS.getAcquire(heap, node);
+            } else if (tag < 0) {
+                return tag & ~FORWARD_BIT;                      //Node has been copied
+            } else if (CELLS.compareAndSet(heap, node, tag, BUSY)) {
+                break;                                          //Node claimed by this worker
+            } else {
+                tag = (int) CELLS.getAcquire(heap, node);
+            }
+        }
+
+        int size = nodeSize(tag, node);
+        int nodeNewLocation = worker.allocate(size);
+        heap[nodeNewLocation] = tag;                                        //Copy Node tag
+        System.arraycopy(heap, node + 1, heap, nodeNewLocation + 1, size - 1);  //Copy payload
+        CELLS.setRelease(heap, node, FORWARD_BIT | nodeNewLocation);       //FWD to new location
+
+        worker.copiedObjects++;
+        worker.lastCopied = true;
+        if (tag == NODE_WEAK) {
+            worker.weakNodes.add(nodeNewLocation);
+        }
+        return nodeNewLocation;
+    }
+
+    /**
+     * Scavenge the node at the given location of the new semispace, every node
+     * this worker copies is added to the gray list.
+     */
+    private void scavengeNode(int node, IntList gray, Worker worker) {
+        switch (heap[node]) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                int n = heap[node + 2];
+                for (int i = 0; i < n; i++) {
+                    scavengeCell(node + 3 + i, gray, worker);
+                }
+                break;
+            case NODE_CONS:
+                scavengeCell(node + 1, gray, worker);
+                scavengeCell(node + 2, gray, worker);
+                break;
+            case NODE_IND:
+            case NODE_TYPE:
+                scavengeCell(node + 1, gray, worker);
+                break;
+            default:                                            //No strong pointers
+                break;
+        }
+    }
+
+    /**
+     * Scavenge a cell, copy the node it points into the new space
+     * and update the pointer.
+     */
+    private void scavengeCell(int cell, IntList gray, Worker worker) {
+        heap[cell] = evacuate(heap[cell], worker);
+        if (worker.lastCopied) {
+            gray.add(heap[cell]);
+        }
+    }
+
+    /**
+     * Update the weak pointers that each worker copied.
+     */
+    private void updateWeakPointers() {
+        for (Worker worker : allWorkers) {
+            IntList weakNodes = worker.weakNodes;
+            for (int i = 0; i < weakNodes.size(); i++) {
+                int weakNode = weakNodes.get(i);
+                int weakPointerValue = heap[weakNode + 1];
+                if (weakPointerValue != NULL_POINTER) {
+                    int target = heap[weakPointerValue];
+                    heap[weakNode + 1] = target < 0 ? target & ~FORWARD_BIT : NULL_POINTER;
+                }
+            }
+            weakNodes.clear();
+        }
+    }
+
+    /**
+     * Size of a node given its tag, the tag cell may already hold BUSY.
+     */
+    private int nodeSize(int tag, int node) {
+        switch (tag) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return heap[node + 2] + 3;
+            case NODE_CONS:
+            case NODE_TYPE:
+                return 3;
+            case IntCopyingGarbageCollector.NODE_NULL:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    private void countCopiedObjects() {
+        int copied = 0;
+        for (Worker worker : allWorkers) {
+            copied += worker.copiedObjects;
+        }
+        numberOfObjectsCopied = copied;
+    }
+
+    private Worker newWorker() {
+        Worker worker = new Worker();
+        allWorkers.add(worker);
+        return worker;
+    }
+
+    /**
+     * State of a worker thread : its allocation buffer, the nodes it copied
+     * and the weak pointers it met.
+     */
+    private final class Worker {
+        private int labNext;            //Next free cell of the allocation buffer
+        private int labEnd;             //End of the allocation buffer
+        private int copiedObjects;
+        private boolean lastCopied;
+        private final IntList weakNodes = new IntList();
+
+        /**
+         * Allocate size cells in the new semispace.
+         */
+        private int allocate(int size) {
+            if (labNext + size > labEnd) {
+                if (size > LAB_SIZE / 2) {                      //Large node, do not waste the buffer
+                    return claim(size, size);
+                }
+                labNext = claim(size, LAB_SIZE);
+                labEnd = Math.min(labNext + LAB_SIZE, toSpaceEnd);
+            }
+            int location = labNext;
+            labNext += size;
+            return location;
+        }
+
+        /**
+         * Claim wanted cells of the new semispace, or the rest of it if that is
+         * shorter but still holds size cells. The shared pointer never passes
+         * the end of the semispace, so a failed claim leaves it usable.
+         */
+        private int claim(int size, int wanted) {
+            while (true) {
+                int location = nextTo.get();
+                int cells = Math.min(wanted, toSpaceEnd - location);
+                if (cells < size) {
+                    throw new IllegalStateException("New semispace is full");
+                }
+                if (nextTo.compareAndSet(location, location + cells)) {
+                    return location;
+                }
+            }
+        }
+
+        private void reset() {
+            labNext = labEnd = 0;
+            copiedObjects = 0;
+            weakNodes.clear();
+        }
+    }
+
+    /**
+     * Evacuates a range of the stack, splitting it between workers.
+     */
+    private final class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private IntList copied = new IntList();
+
+        private RootTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_SIZE * 16) {
+                int middle = (from + to) >>> 1;
+                RootTask left = new RootTask(from, middle);
+                RootTask right = new RootTask(middle, to);
+                invokeAll(left, right);
+                copied = left.copied;
+                for (int i = 0; i < right.copied.size(); i++) {
+                    copied.add(right.copied.get(i));
+                }
+                return;
+            }
+            Worker worker = workers.get();
+            for (int i = from; i < to; i++) {
+                if (stack[i] < 0)
+                    continue;
+                stack[i] = evacuate(stack[i], worker);              //Update the root
+                if (worker.lastCopied) {
+                    copied.add(stack[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scavenges a list of gray nodes, and the nodes they make gray.
+     */
+    private final class ScavengeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntList gray;
+
+        private ScavengeTask(IntList gray) {
+            this.gray = gray;
+        }
+
+        @Override
+        protected void compute() {
+            Worker worker = workers.get();
+            List<ScavengeTask> forked = new ArrayList<>();
+            while (!gray.isEmpty()) {
+                if (gray.size() >= 2 * SPLIT_SIZE && getSurplusQueuedTaskCount() == 0) {
+                    ScavengeTask task = new ScavengeTask(gray.split(gray.size() / 2));  //Let idle workers steal half
+                    task.fork();
+                    forked.add(task);
+                }
+                scavengeNode(gray.pop(), gray, worker);
+            }
+            for (ScavengeTask task : forked) {
+                task.join();
+            }
+        }
+    }
+}
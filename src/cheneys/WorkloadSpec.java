@@ -0,0 +1,125 @@
+package cheneys;
+
+import java.util.Arrays;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * cheneys.WorkloadSpec.java                                                     <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Description of a heap generated by the HeapGenerator. The heap is made of
+ * structures of about structureCells cells, every structure is reachable from
+ * its own root node and has no pointer to another structure, so the part of the
+ * heap that is live only depends on the structures that are given a root.
+ * <p>
+ * The shape gives the graph of a structure :
+ * <ul>
+ * <li>LISTS : a list of CONS nodes, ended by a NULL node.</li>
+ * <li>TREES : a balanced binary tree of CONS nodes.</li>
+ * <li>WIDE : a tree of CONSTR and LAMBDA nodes of maxPointers pointers.</li>
+ * <li>CYCLES : a circular list of CONS nodes, the first one points to the last.</li>
+ * <li>DAG : nodes of every type, drawn from typeWeights, that point to the
+ * previous nodes of the structure, so the nodes are shared.</li>
+ * </ul>
+ * The leaves of the lists and of the trees are drawn from the weights of the
+ * value types (INT, DOUBLE, CHAR, BOOL and VAR).
+ * <p>
+ * The fields have the values of the heap of HeapBuilder.generateValidHeap,
+ * 45% of the heap filled with nodes of the same odds, and can be set before
+ * the generation.
+ */
+public class WorkloadSpec {
+
+    public enum Shape {
+        LISTS, TREES, WIDE, CYCLES, DAG
+    }
+
+    //Node types, the indexes of typeWeights
+    public static final int INT = 0;
+    public static final int DOUBLE = 1;
+    public static final int CHAR = 2;
+    public static final int BOOL = 3;
+    public static final int CONSTR = 4;
+    public static final int CONS = 5;
+    public static final int NULL = 6;
+    public static final int LAMBDA = 7;
+    public static final int IND = 8;
+    public static final int VAR = 9;
+    public static final int TYPE = 10;
+    public static final int WEAK = 11;
+    public static final int TYPES = 12;
+
+    public Shape shape = Shape.DAG;
+    public double[] typeWeights = uniformWeights();
+    public double fillFraction = 0.45;      //Part of the heap filled with nodes, at most 0.5 for the copying collectors
+    public double liveFraction = 0.5;       //Part of the structures reachable from the stack
+    public int roots = 100;                 //Stack length, every live structure has at least one root
+    public int structureCells = 4096;
+    public int maxPointers = 8;             //Pointers of the CONSTR and LAMBDA nodes
+    public int segmentCells = 1 << 20;      //Cells generated by a task, the segments are generated in parallel
+    public long seed = 1;
+
+    public WorkloadSpec() {
+    }
+
+    public WorkloadSpec(Shape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Smallest structure of the spec, the cells left at the end of a
+     * segment that cannot hold it are filled with garbage.
+     */
+    public int minimumStructureCells() {
+        return Math.max(16, 3 * maxPointers + 3);
+    }
+
+    /**
+     * Check the fields, an IllegalArgumentException is thrown for the first
+     * invalid one.
+     */
+    public void validate() {
+        if (typeWeights.length != TYPES) {
+            throw new IllegalArgumentException("typeWeights must have " + TYPES + " weights");
+        }
+        double total = 0;
+        for (double weight : typeWeights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative type weight : " + Arrays.toString(typeWeights));
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("All the type weights are 0");
+        }
+        if (fillFraction <= 0 || fillFraction > 1) {
+            throw new IllegalArgumentException("fillFraction must be in (0, 1] : " + fillFraction);
+        }
+        if (liveFraction < 0 || liveFraction > 1) {
+            throw new IllegalArgumentException("liveFraction must be in [0, 1] : " + liveFraction);
+        }
+        if (roots < 0) {
+            throw new IllegalArgumentException("Negative number of roots : " + roots);
+        }
+        if (maxPointers < 2) {
+            throw new IllegalArgumentException("maxPointers must be at least 2 : " + maxPointers);
+        }
+        if (structureCells < minimumStructureCells()) {
+            throw new IllegalArgumentException("structureCells must be at least " + minimumStructureCells());
+        }
+        if (segmentCells < structureCells) {
+            throw new IllegalArgumentException("segmentCells must be at least structureCells");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return shape + " fill=" + fillFraction + " live=" + liveFraction + " roots=" + roots
+                + " structure=" + structureCells + " maxPointers=" + maxPointers + " seed=" + seed;
+    }
+
+    private static double[] uniformWeights() {
+        double[] weights = new double[TYPES];
+        Arrays.fill(weights, 1);
+        return weights;
+    }
+}
@@ -0,0 +1,58 @@
+package engine;
+
+import bartlett.MostlyCopyingGarbageCollector;
+import bartlett.Page;
+import monitoring.GcEvent;
+
+/**
+ * Bartlett's mostly copying collector. A collection evacuates the roots,
+ * scavenges, copies the queue to the start of the heap and clears the other
+ * pages.
+ */
+public class BartlettEngine implements Collector {
+
+    private final String name;
+    private final MostlyCopyingGarbageCollector garbageCollector;
+    private final HeapView view;
+    private final int[] stack;
+    private GcEvent last;                   //Measures given to the listener when the old memory was cleared
+
+    /**
+     * @param compactionThreshold 0, or the threshold of the compacting mode.
+     */
+    public BartlettEngine(String name, Page[] heap, int[] stack, double compactionThreshold) {
+        this.name = name;
+        this.stack = stack;
+        garbageCollector = new MostlyCopyingGarbageCollector(heap, stack, heap.length, compactionThreshold);
+        garbageCollector.addListener(event -> last = event);
+        view = new PageHeapView(heap);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public GcEvent collect() {
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        garbageCollector.copyToNewSpace();
+        garbageCollector.clearOldMemory();
+        return last;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    @Override
+    public int[] getRoots() {
+        return stack;
+    }
+
+    public MostlyCopyingGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+}
@@ -0,0 +1,121 @@
+package engine;
+
+import bartlett.Page;
+import bartlett.PageAllocator;
+import monitoring.GcEvent;
+
+/**
+ * Bartlett's collector and its page allocator. The pointers given to an
+ * allocation are read from the slots, they are updated by the allocator if
+ * it collects.
+ */
+public class BartlettMutator extends MutatorEngine {
+
+    private final String name;
+    private final Page[] heap;
+    private final PageAllocator allocator;
+    private final HeapView view;
+    private final int pageSize;
+    private GcEvent last;                   //Measures given to the listener when the old memory was cleared
+
+    /**
+     * @param compactionThreshold 0, or the threshold of the compacting mode.
+     */
+    public BartlettMutator(String name, int heapSize, int slots, int pageSize, double compactionThreshold) {
+        super(slots);
+        this.name = name;
+        this.pageSize = pageSize;
+        heap = new Page[heapSize / pageSize];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, pageSize);
+        }
+        allocator = new PageAllocator(heap, stack, compactionThreshold);
+        allocator.addListener(event -> last = event);
+        view = new PageHeapView(heap);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void allocateInteger(int slot, int value) {
+        stack[slot] = allocator.allocateInteger(value);
+    }
+
+    @Override
+    public void allocateDouble(int slot, double value) {
+        stack[slot] = allocator.allocateDouble(value);
+    }
+
+    @Override
+    public void allocateChar(int slot, char value) {
+        stack[slot] = allocator.allocateChar(value);
+    }
+
+    @Override
+    public void allocateBoolean(int slot, boolean value) {
+        stack[slot] = allocator.allocateBoolean(value);
+    }
+
+    @Override
+    public void allocateVariable(int slot, String variable) {
+        stack[slot] = allocator.allocateVariable(variable);
+    }
+
+    @Override
+    public void allocateNull(int slot) {
+        stack[slot] = allocator.allocateNull();
+    }
+
+    @Override
+    public void allocateListConstructor(int slot, int head, int tail) {
+        stack[slot] = allocator.allocateListConstructor(stack[head], stack[tail]);
+    }
+
+    @Override
+    public void allocateIndirection(int slot, int target) {
+        stack[slot] = allocator.allocateIndirection(stack[target]);
+    }
+
+    @Override
+    public void allocateWeak(int slot, int target) {
+        stack[slot] = allocator.allocateWeak(stack[target]);
+    }
+
+    @Override
+    public void allocateType(int slot, int target, String type) {
+        stack[slot] = allocator.allocateType(stack[target], type);
+    }
+
+    @Override
+    public void allocateDataConstructor(int slot, String constructor, int[] slots) {
+        stack[slot] = allocator.allocateDataConstructor(constructor, pointers(slots));
+    }
+
+    @Override
+    public void allocateLambda(int slot, String function, int[] slots) {
+        stack[slot] = allocator.allocateLambda(function, pointers(slots));
+    }
+
+    @Override
+    public GcEvent collect() {
+        allocator.collect();
+        return last;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    public PageAllocator getAllocator() {
+        return allocator;
+    }
+
+    @Override
+    protected void writePointer(int cell, int pointer) {
+        heap[cell / pageSize].getMemory()[cell % pageSize] = String.valueOf(pointer);
+    }
+}
@@ -0,0 +1,58 @@
+package engine;
+
+import cheneys.CopyOrder;
+import cheneys.CopyingGarbageCollector;
+import monitoring.GcEvent;
+
+/**
+ * Cheney's collector, with the String heap. A collection evacuates the
+ * roots, scavenges, clears the old semispace and flips. The nodes are copied
+ * in the given CopyOrder, breadth-first by default.
+ */
+public class CheneyEngine implements Collector {
+
+    private final String name;
+    private final CopyingGarbageCollector garbageCollector;
+    private final HeapView view;
+    private GcEvent last;                   //Measures given to the listener at the last flip
+
+    public CheneyEngine(String[] heap, int[] stack) {
+        this("cheney", heap, stack, CopyOrder.BREADTH_FIRST);
+    }
+
+    public CheneyEngine(String name, String[] heap, int[] stack, CopyOrder copyOrder) {
+        this.name = name;
+        garbageCollector = new CopyingGarbageCollector(heap, stack);
+        garbageCollector.setCopyOrder(copyOrder);
+        garbageCollector.addListener(event -> last = event);
+        view = new StringHeapView(heap);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public GcEvent collect() {
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        return last;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    @Override
+    public int[] getRoots() {
+        return garbageCollector.getStack();
+    }
+
+    public CopyingGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+}
@@ -0,0 +1,160 @@
+package engine;
+
+import cheneys.CopyingGarbageCollector;
+import monitoring.GcEvent;
+
+/**
+ * Cheney's collector with the String heap, and a bump allocator in the
+ * semispace in use. The heap is collected when a node does not fit in the rest
+ * of the semispace. The cells are written as the HeapBuilder writes them.
+ */
+public class CheneyMutator extends MutatorEngine {
+
+    private final String[] heap;
+    private final CheneyEngine engine;
+    private int start;                      //Start of the semispace in use
+    private int next;                       //Next free cell of the semispace in use
+
+    public CheneyMutator(int heapSize, int slots) {
+        super(slots);
+        heap = new String[heapSize];
+        engine = new CheneyEngine(heap, stack);
+    }
+
+    @Override
+    public String getName() {
+        return "cheney";
+    }
+
+    @Override
+    public void allocateInteger(int slot, int value) {
+        stack[slot] = allocate(2, CopyingGarbageCollector.NODE_INT, String.valueOf(value));
+    }
+
+    @Override
+    public void allocateDouble(int slot, double value) {
+        stack[slot] = allocate(2, CopyingGarbageCollector.NODE_DOUBLE, String.valueOf(value));
+    }
+
+    @Override
+    public void allocateChar(int slot, char value) {
+        stack[slot] = allocate(2, CopyingGarbageCollector.NODE_CHAR, String.valueOf(value));
+    }
+
+    @Override
+    public void allocateBoolean(int slot, boolean value) {
+        stack[slot] = allocate(2, CopyingGarbageCollector.NODE_BOOL, String.valueOf(value));
+    }
+
+    @Override
+    public void allocateVariable(int slot, String variable) {
+        stack[slot] = allocate(2, CopyingGarbageCollector.NODE_VAR, variable);
+    }
+
+    @Override
+    public void allocateNull(int slot) {
+        stack[slot] = allocate(1, CopyingGarbageCollector.NODE_NULL);
+    }
+
+    @Override
+    public void allocateListConstructor(int slot, int head, int tail) {
+        int node = reserve(3);                          //Pointers are read after the collection
+        write(node, CopyingGarbageCollector.NODE_CONS, pointer(head), pointer(tail));
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateIndirection(int slot, int target) {
+        int node = reserve(2);
+        write(node, CopyingGarbageCollector.NODE_IND, pointer(target));
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateWeak(int slot, int target) {
+        int node = reserve(2);
+        write(node, CopyingGarbageCollector.NODE_WEAK, pointer(target));
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateType(int slot, int target, String type) {
+        int node = reserve(3);
+        write(node, CopyingGarbageCollector.NODE_TYPE, pointer(target), type);
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateDataConstructor(int slot, String constructor, int[] slots) {
+        stack[slot] = allocateWithPointers(CopyingGarbageCollector.NODE_CONSTR, constructor, slots);
+    }
+
+    @Override
+    public void allocateLambda(int slot, String function, int[] slots) {
+        stack[slot] = allocateWithPointers(CopyingGarbageCollector.NODE_LAMBDA, function, slots);
+    }
+
+    @Override
+    public GcEvent collect() {
+        GcEvent event = engine.collect();
+        start = start == 0 ? heap.length / 2 : 0;       //The nodes are in the to-space
+        next = start + (int) event.cellsCopied;
+        return event;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return engine.getHeap();
+    }
+
+    public CopyingGarbageCollector getGarbageCollector() {
+        return engine.getGarbageCollector();
+    }
+
+    @Override
+    protected void writePointer(int cell, int pointer) {
+        heap[cell] = String.valueOf(pointer);
+    }
+
+    private int allocate(int size, String... cells) {
+        int node = reserve(size);
+        write(node, cells);
+        return node;
+    }
+
+    private int allocateWithPointers(String tag, String name, int[] slots) {
+        int node = reserve(slots.length + 3);
+        write(node, tag, name, String.valueOf(slots.length));
+        for (int i = 0; i < slots.length; i++) {
+            heap[node + 3 + i] = pointer(slots[i]);
+        }
+        return node;
+    }
+
+    /**
+     * Cells for a node in the semispace in use, the heap is collected if they
+     * are not left.
+     */
+    private int reserve(int size) {
+        if (next + size > start + heap.length / 2) {
+            collect();
+            if (next + size > start + heap.length / 2) {
+                throw new IllegalStateException("Heap is full");
+            }
+        }
+        int node = next;
+        next += size;
+        return node;
+    }
+
+    private void write(int node, String... cells) {
+        System.arraycopy(cells, 0, heap, node, cells.length);
+    }
+
+    /**
+     * The node of a slot, as a pointer cell.
+     */
+    private String pointer(int slot) {
+        return String.valueOf(stack[slot]);
+    }
+}
@@ -0,0 +1,45 @@
+package engine;
+
+import monitoring.GcEvent;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * engine.Collector.java                                                         <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Common API of the stop-the-world collectors. Each engine hides its own phase
+ * sequence and heap type behind a single collection, and gives the heap as a
+ * {@link HeapView} and the roots as a stack, so callers can switch engines
+ * without knowing them. Engines are created by name with the
+ * {@link EngineRegistry}.
+ */
+public interface Collector {
+
+    /**
+     * Name of the engine in the registry.
+     */
+    String getName();
+
+    /**
+     * Run a whole collection.
+     *
+     * @return The measures of the collection.
+     */
+    GcEvent collect();
+
+    /**
+     * The heap of the engine, the view follows the nodes after every collection.
+     */
+    HeapView getHeap();
+
+    /**
+     * The stack with the roots, pointers to nodes of the heap view, negative
+     * values are empty slots. The collections update it.
+     */
+    int[] getRoots();
+
+    /**
+     * Release the threads of the engine, if it has any.
+     */
+    default void shutdown() {
+    }
+}
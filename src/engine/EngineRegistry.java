@@ -0,0 +1,144 @@
+package engine;
+
+import bartlett.BartlettHeapBuilder;
+import cheneys.ArrayCellHeap;
+import cheneys.CopyOrder;
+import cheneys.HeapBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * engine.EngineRegistry.java                                                    <br>
+ * ----------------------------------------------------------------------------  <br>
+ * The collectors by name. Every engine is created from the same description of
+ * the heap, a heap of Cheney's format (the format of the HeapBuilder) and a
+ * stack with the roots. The engine works on copies of them, converted to its
+ * own representation, so one description can be collected by all the engines.
+ * New engines are added with register.
+ * <p>
+ * The engines that allocate are also registered as mutator engines, created
+ * empty, so that a mutator or the replay of a trace can drive them.
+ */
+public final class EngineRegistry {
+
+    public static final int BARTLETT_PAGE_SIZE = 16;
+    public static final double COMPACTION_THRESHOLD = 0.5;     //Pages less than half live are evacuated
+
+    /**
+     * Creates an engine for a heap of Cheney's format.
+     */
+    public interface EngineFactory {
+        Collector create(String[] heap, int[] stack);
+    }
+
+    /**
+     * Creates an empty engine that allocates.
+     */
+    public interface MutatorFactory {
+        MutatorEngine create(int heapSize, int slots);
+    }
+
+    private static final Map<String, EngineFactory> ENGINES = new LinkedHashMap<>();
+    private static final Map<String, MutatorFactory> MUTATORS = new LinkedHashMap<>();
+
+    static {
+        register("cheney", (heap, stack) -> new CheneyEngine(heap.clone(), stack.clone()));
+        register("cheney-depth-first", (heap, stack) -> new CheneyEngine("cheney-depth-first", heap.clone(),
+                stack.clone(), CopyOrder.APPROXIMATELY_DEPTH_FIRST));
+        register("cheney-hierarchical", (heap, stack) -> new CheneyEngine("cheney-hierarchical", heap.clone(),
+                stack.clone(), CopyOrder.HIERARCHICAL));
+        register("int-cheney", (heap, stack) -> {
+            HeapBuilder builder = new HeapBuilder();
+            return new IntCheneyEngine(new ArrayCellHeap(builder.encodeHeap(heap)), stack.clone(), builder.getSymbols());
+        });
+        register("parallel-cheney", (heap, stack) -> {
+            HeapBuilder builder = new HeapBuilder();
+            return new ParallelCheneyEngine(builder.encodeHeap(heap), stack.clone(),
+                    Runtime.getRuntime().availableProcessors(), builder.getSymbols());
+        });
+        register("bartlett", (heap, stack) -> {
+            int[] roots = stack.clone();
+            return new BartlettEngine("bartlett", new BartlettHeapBuilder(BARTLETT_PAGE_SIZE).buildFromHeap(heap, roots),
+                    roots, 0);
+        });
+        register("bartlett-compacting", (heap, stack) -> {
+            int[] roots = stack.clone();
+            return new BartlettEngine("bartlett-compacting",
+                    new BartlettHeapBuilder(BARTLETT_PAGE_SIZE).buildFromHeap(heap, roots), roots, COMPACTION_THRESHOLD);
+        });
+        register("mark-compact", (heap, stack) -> new MarkCompactEngine(heap.clone(), stack.clone()));
+        register("mark-sweep", (heap, stack) -> new MarkSweepEngine(heap.clone(), stack.clone()));
+
+        registerMutator("cheney", CheneyMutator::new);
+        registerMutator("int-cheney", IntCheneyMutator::new);
+        registerMutator("bartlett", (heapSize, slots) -> new BartlettMutator("bartlett", heapSize, slots,
+                BARTLETT_PAGE_SIZE, 0));
+        registerMutator("bartlett-compacting", (heapSize, slots) -> new BartlettMutator("bartlett-compacting",
+                heapSize, slots, BARTLETT_PAGE_SIZE, COMPACTION_THRESHOLD));
+        registerMutator("mark-sweep", MarkSweepMutator::new);
+    }
+
+    private EngineRegistry() {
+    }
+
+    /**
+     * Add an engine, or replace the one of the same name.
+     */
+    public static void register(String name, EngineFactory factory) {
+        ENGINES.put(name, factory);
+    }
+
+    /**
+     * Create the engine of the given name.
+     *
+     * @param heap  Heap of Cheney's format, it is not modified.
+     * @param stack The roots, it is not modified.
+     */
+    public static Collector create(String name, String[] heap, int[] stack) {
+        EngineFactory factory = ENGINES.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown engine " + name + ", the engines are " + names());
+        }
+        return factory.create(heap, stack);
+    }
+
+    /**
+     * Names of the engines, in order of registration.
+     */
+    public static List<String> names() {
+        return new ArrayList<>(ENGINES.keySet());
+    }
+
+    /**
+     * Add a mutator engine, or replace the one of the same name.
+     */
+    public static void registerMutator(String name, MutatorFactory factory) {
+        MUTATORS.put(name, factory);
+    }
+
+    /**
+     * Create the empty mutator engine of the given name.
+     *
+     * @param heapSize Cells of the heap.
+     * @param slots    Stack slots of the mutator.
+     */
+    public static MutatorEngine createMutator(String name, int heapSize, int slots) {
+        MutatorFactory factory = MUTATORS.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown mutator engine " + name + ", the mutator engines are "
+                    + mutatorNames());
+        }
+        return factory.create(heapSize, slots);
+    }
+
+    /**
+     * Names of the mutator engines, in order of registration.
+     */
+    public static List<String> mutatorNames() {
+        return new ArrayList<>(MUTATORS.keySet());
+    }
+}
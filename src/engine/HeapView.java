@@ -0,0 +1,67 @@
+package engine;
+
+import static cheneys.CopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.CopyingGarbageCollector.NODE_LAMBDA;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * engine.HeapView.java                                                          <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Read only view of the nodes of a heap, whatever its representation. A node
+ * is given by a pointer, its first cell, and has the tag and the pointer layout
+ * of CopyingGarbageCollector.doScavenging :
+ * <pre>
+ *  CONS                 2 pointers
+ *  CONSTR, LAMBDA       n pointers
+ *  IND, TYPE            1 pointer
+ *  WEAK                 1 weak pointer
+ *  others               no pointers
+ * </pre>
+ */
+public interface HeapView {
+
+    /**
+     * Number of cells of the heap.
+     */
+    int length();
+
+    /**
+     * Tag of a node, one of the NODE_ tags of CopyingGarbageCollector.
+     */
+    String tag(int node);
+
+    /**
+     * Number of cells of a node.
+     */
+    int nodeSize(int node);
+
+    /**
+     * Number of strong pointers of a node.
+     */
+    int pointerCount(int node);
+
+    /**
+     * Strong pointer of a node, from 0.
+     */
+    int pointer(int node, int index);
+
+    /**
+     * Cell that holds a strong pointer of a node, from 0.
+     */
+    default int pointerCell(int node, int index) {
+        String tag = tag(node);
+        return tag.equals(NODE_CONSTR) || tag.equals(NODE_LAMBDA) ? node + 3 + index : node + 1 + index;
+    }
+
+    /**
+     * Pointer of a WEAK node, -1 if it has been cleared.
+     */
+    int weakPointer(int node);
+
+    /**
+     * The tag of a node and its cells that are not pointers, as "INT 10" or
+     * "CONSTR constr 1". Nodes with the same content have the same label in
+     * every view.
+     */
+    String label(int node);
+}
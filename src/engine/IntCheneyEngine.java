@@ -0,0 +1,64 @@
+package engine;
+
+import cheneys.CellHeap;
+import cheneys.IntCopyingGarbageCollector;
+import monitoring.GcEvent;
+
+import java.util.List;
+
+/**
+ * Cheney's collector, with a heap of int cells. The collector has no
+ * listeners, the engine measures the phases itself.
+ */
+public class IntCheneyEngine implements Collector {
+
+    private final IntCopyingGarbageCollector garbageCollector;
+    private final HeapView view;
+    private int cycle;
+
+    /**
+     * @param symbols The symbol table of the HeapBuilder that encoded the heap.
+     */
+    public IntCheneyEngine(CellHeap heap, int[] stack, List<String> symbols) {
+        garbageCollector = new IntCopyingGarbageCollector(heap, stack);
+        view = new IntHeapView(heap, symbols);
+    }
+
+    @Override
+    public String getName() {
+        return "int-cheney";
+    }
+
+    @Override
+    public GcEvent collect() {
+        GcEvent event = new GcEvent("IntCheney", ++cycle);
+        int toSpaceStart = garbageCollector.getNextTo();        //Nothing copied since the last flip
+        long start = System.nanoTime();
+        garbageCollector.evacuateRoots();
+        long rootsEvacuated = System.nanoTime();
+        garbageCollector.scavenge();
+        long scavenged = System.nanoTime();
+        event.cellsCopied = garbageCollector.getNextTo() - toSpaceStart;
+        event.objectsCopied = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        event.evacuateRootsNanos = rootsEvacuated - start;
+        event.scavengeNanos = scavenged - rootsEvacuated;       //With the weak pointers
+        event.clearOldMemoryNanos = System.nanoTime() - scavenged;
+        return event;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    @Override
+    public int[] getRoots() {
+        return garbageCollector.getStack();
+    }
+
+    public IntCopyingGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+}
@@ -0,0 +1,176 @@
+package engine;
+
+import cheneys.ArrayCellHeap;
+import cheneys.IntCopyingGarbageCollector;
+import monitoring.GcEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cheney's collector with a heap of int cells, and a bump allocator in the
+ * semispace in use. The heap is collected when a node does not fit in the rest
+ * of the semispace. Identifiers and doubles are kept in a symbol table, as the
+ * HeapBuilder does when it encodes a heap.
+ */
+public class IntCheneyMutator extends MutatorEngine {
+
+    private final int[] heap;
+    private final IntCheneyEngine engine;
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolIndexes = new HashMap<>();
+    private int start;                      //Start of the semispace in use
+    private int next;                       //Next free cell of the semispace in use
+
+    public IntCheneyMutator(int heapSize, int slots) {
+        super(slots);
+        heap = new int[heapSize];
+        engine = new IntCheneyEngine(new ArrayCellHeap(heap), stack, symbols);
+    }
+
+    @Override
+    public String getName() {
+        return "int-cheney";
+    }
+
+    @Override
+    public void allocateInteger(int slot, int value) {
+        stack[slot] = allocate(2, IntCopyingGarbageCollector.NODE_INT, value);
+    }
+
+    @Override
+    public void allocateDouble(int slot, double value) {
+        stack[slot] = allocate(2, IntCopyingGarbageCollector.NODE_DOUBLE, symbol(String.valueOf(value)));
+    }
+
+    @Override
+    public void allocateChar(int slot, char value) {
+        stack[slot] = allocate(2, IntCopyingGarbageCollector.NODE_CHAR, value);
+    }
+
+    @Override
+    public void allocateBoolean(int slot, boolean value) {
+        stack[slot] = allocate(2, IntCopyingGarbageCollector.NODE_BOOL, value ? 1 : 0);
+    }
+
+    @Override
+    public void allocateVariable(int slot, String variable) {
+        stack[slot] = allocate(2, IntCopyingGarbageCollector.NODE_VAR, symbol(variable));
+    }
+
+    @Override
+    public void allocateNull(int slot) {
+        stack[slot] = allocate(1, IntCopyingGarbageCollector.NODE_NULL);
+    }
+
+    @Override
+    public void allocateListConstructor(int slot, int head, int tail) {
+        int node = reserve(3);                          //Pointers are read after the collection
+        write(node, IntCopyingGarbageCollector.NODE_CONS, stack[head], stack[tail]);
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateIndirection(int slot, int target) {
+        int node = reserve(2);
+        write(node, IntCopyingGarbageCollector.NODE_IND, stack[target]);
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateWeak(int slot, int target) {
+        int node = reserve(2);
+        write(node, IntCopyingGarbageCollector.NODE_WEAK, stack[target]);
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateType(int slot, int target, String type) {
+        int node = reserve(3);
+        write(node, IntCopyingGarbageCollector.NODE_TYPE, stack[target], symbol(type));
+        stack[slot] = node;
+    }
+
+    @Override
+    public void allocateDataConstructor(int slot, String constructor, int[] slots) {
+        stack[slot] = allocateWithPointers(IntCopyingGarbageCollector.NODE_CONSTR, constructor, slots);
+    }
+
+    @Override
+    public void allocateLambda(int slot, String function, int[] slots) {
+        stack[slot] = allocateWithPointers(IntCopyingGarbageCollector.NODE_LAMBDA, function, slots);
+    }
+
+    @Override
+    public GcEvent collect() {
+        GcEvent event = engine.collect();
+        start = start == 0 ? heap.length / 2 : 0;       //The nodes are in the to-space
+        next = start + (int) event.cellsCopied;
+        return event;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return engine.getHeap();
+    }
+
+    public IntCopyingGarbageCollector getGarbageCollector() {
+        return engine.getGarbageCollector();
+    }
+
+    @Override
+    protected void writePointer(int cell, int pointer) {
+        heap[cell] = pointer;
+    }
+
+    private int allocate(int size, int... cells) {
+        int node = reserve(size);
+        write(node, cells);
+        return node;
+    }
+
+    private int allocateWithPointers(int tag, String name, int[] slots) {
+        int node = reserve(slots.length + 3);
+        write(node, tag, symbol(name), slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            heap[node + 3 + i] = stack[slots[i]];
+        }
+        return node;
+    }
+
+    /**
+     * Cells for a node in the semispace in use, the heap is collected if they
+     * are not left.
+     */
+    private int reserve(int size) {
+        if (next + size > start + heap.length / 2) {
+            collect();
+            if (next + size > start + heap.length / 2) {
+                throw new IllegalStateException("Heap is full");
+            }
+        }
+        int node = next;
+        next += size;
+        return node;
+    }
+
+    private void write(int node, int... cells) {
+        System.arraycopy(cells, 0, heap, node, cells.length);
+    }
+
+    /**
+     * Index of a symbol in the symbol table, the symbol is
+     * added if it is not already there.
+     */
+    private int symbol(String value) {
+        Integer index = symbolIndexes.get(value);
+        if (index == null) {
+            index = symbols.size();
+            symbols.add(value);
+            symbolIndexes.put(value, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,134 @@
+package engine;
+
+import cheneys.CellHeap;
+import cheneys.CopyingGarbageCollector;
+import cheneys.IntCopyingGarbageCollector;
+
+import java.util.List;
+
+/**
+ * View of a heap of int cells, the heap of the IntCopyingGarbageCollector and
+ * the ParallelCopyingGarbageCollector. The symbols of the heap (the symbol
+ * table of the HeapBuilder that encoded it) give the labels the same content
+ * as in the String views.
+ */
+public class IntHeapView implements HeapView {
+
+    private final CellHeap heap;
+    private final List<String> symbols;
+
+    public IntHeapView(CellHeap heap, List<String> symbols) {
+        this.heap = heap;
+        this.symbols = symbols;
+    }
+
+    @Override
+    public int length() {
+        return heap.length();
+    }
+
+    @Override
+    public String tag(int node) {
+        switch (heap.get(node)) {
+            case IntCopyingGarbageCollector.NODE_INT:
+                return CopyingGarbageCollector.NODE_INT;
+            case IntCopyingGarbageCollector.NODE_DOUBLE:
+                return CopyingGarbageCollector.NODE_DOUBLE;
+            case IntCopyingGarbageCollector.NODE_CHAR:
+                return CopyingGarbageCollector.NODE_CHAR;
+            case IntCopyingGarbageCollector.NODE_BOOL:
+                return CopyingGarbageCollector.NODE_BOOL;
+            case IntCopyingGarbageCollector.NODE_CONSTR:
+                return CopyingGarbageCollector.NODE_CONSTR;
+            case IntCopyingGarbageCollector.NODE_CONS:
+                return CopyingGarbageCollector.NODE_CONS;
+            case IntCopyingGarbageCollector.NODE_NULL:
+                return CopyingGarbageCollector.NODE_NULL;
+            case IntCopyingGarbageCollector.NODE_LAMBDA:
+                return CopyingGarbageCollector.NODE_LAMBDA;
+            case IntCopyingGarbageCollector.NODE_IND:
+                return CopyingGarbageCollector.NODE_IND;
+            case IntCopyingGarbageCollector.NODE_VAR:
+                return CopyingGarbageCollector.NODE_VAR;
+            case IntCopyingGarbageCollector.NODE_TYPE:
+                return CopyingGarbageCollector.NODE_TYPE;
+            case IntCopyingGarbageCollector.NODE_WEAK:
+                return CopyingGarbageCollector.NODE_WEAK;
+            default:
+                throw new IllegalArgumentException("No node at " + node);
+        }
+    }
+
+    @Override
+    public int nodeSize(int node) {
+        switch (heap.get(node)) {
+            case IntCopyingGarbageCollector.NODE_CONSTR:
+            case IntCopyingGarbageCollector.NODE_LAMBDA:
+                return heap.get(node + 2) + 3;
+            case IntCopyingGarbageCollector.NODE_CONS:
+            case IntCopyingGarbageCollector.NODE_TYPE:
+                return 3;
+            case IntCopyingGarbageCollector.NODE_NULL:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    @Override
+    public int pointerCount(int node) {
+        switch (heap.get(node)) {
+            case IntCopyingGarbageCollector.NODE_CONSTR:
+            case IntCopyingGarbageCollector.NODE_LAMBDA:
+                return heap.get(node + 2);
+            case IntCopyingGarbageCollector.NODE_CONS:
+                return 2;
+            case IntCopyingGarbageCollector.NODE_IND:
+            case IntCopyingGarbageCollector.NODE_TYPE:
+                return 1;
+            default:                                        //No strong pointers
+                return 0;
+        }
+    }
+
+    @Override
+    public int pointer(int node, int index) {
+        switch (heap.get(node)) {
+            case IntCopyingGarbageCollector.NODE_CONSTR:
+            case IntCopyingGarbageCollector.NODE_LAMBDA:
+                return heap.get(node + 3 + index);
+            default:
+                return heap.get(node + 1 + index);
+        }
+    }
+
+    @Override
+    public int weakPointer(int node) {
+        int value = heap.get(node + 1);
+        return value == IntCopyingGarbageCollector.NULL_POINTER ? -1 : value;
+    }
+
+    @Override
+    public String label(int node) {
+        String tag = tag(node);
+        int value = heap.get(node + 1);
+        switch (heap.get(node)) {
+            case IntCopyingGarbageCollector.NODE_INT:
+                return tag + " " + value;
+            case IntCopyingGarbageCollector.NODE_CHAR:
+                return tag + " " + (char) value;
+            case IntCopyingGarbageCollector.NODE_BOOL:
+                return tag + " " + (value == 1);
+            case IntCopyingGarbageCollector.NODE_DOUBLE:
+            case IntCopyingGarbageCollector.NODE_VAR:
+                return tag + " " + symbols.get(value);
+            case IntCopyingGarbageCollector.NODE_CONSTR:
+            case IntCopyingGarbageCollector.NODE_LAMBDA:
+                return tag + " " + symbols.get(value) + " " + heap.get(node + 2);
+            case IntCopyingGarbageCollector.NODE_TYPE:
+                return tag + " " + symbols.get(heap.get(node + 2));
+            default:
+                return tag;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package engine;
+
+import cheneys.MarkCompactGarbageCollector;
+import monitoring.GcEvent;
+
+/**
+ * The sliding mark-compact collector, with the String heap.
+ */
+public class MarkCompactEngine implements Collector {
+
+    private final MarkCompactGarbageCollector garbageCollector;
+    private final HeapView view;
+    private GcEvent last;                   //Measures given to the listener at the end of the slide
+
+    public MarkCompactEngine(String[] heap, int[] stack) {
+        garbageCollector = new MarkCompactGarbageCollector(heap, stack);
+        garbageCollector.addListener(event -> last = event);
+        view = new StringHeapView(heap);
+    }
+
+    @Override
+    public String getName() {
+        return "mark-compact";
+    }
+
+    @Override
+    public GcEvent collect() {
+        garbageCollector.collect();
+        return last;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    @Override
+    public int[] getRoots() {
+        return garbageCollector.getStack();
+    }
+
+    public MarkCompactGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+}
@@ -0,0 +1,47 @@
+package engine;
+
+import cheneys.MarkSweepGarbageCollector;
+import monitoring.GcEvent;
+
+/**
+ * The mark-sweep collector, with the String heap. The collection sweeps the
+ * whole heap, instead of leaving it to the allocations.
+ */
+public class MarkSweepEngine implements Collector {
+
+    private final MarkSweepGarbageCollector garbageCollector;
+    private final HeapView view;
+    private GcEvent last;                   //Measures given to the listener at the end of the marking
+
+    public MarkSweepEngine(String[] heap, int[] stack) {
+        garbageCollector = new MarkSweepGarbageCollector(heap, stack);
+        garbageCollector.addListener(event -> last = event);
+        view = new StringHeapView(heap);
+    }
+
+    @Override
+    public String getName() {
+        return "mark-sweep";
+    }
+
+    @Override
+    public GcEvent collect() {
+        garbageCollector.collect();
+        garbageCollector.finishSweep();
+        return last;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    @Override
+    public int[] getRoots() {
+        return garbageCollector.getStack();
+    }
+
+    public MarkSweepGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+}
@@ -0,0 +1,108 @@
+package engine;
+
+import cheneys.MarkSweepGarbageCollector;
+import monitoring.GcEvent;
+
+/**
+ * The mark-sweep collector and its free-list allocator, with the String heap.
+ * The nodes do not move, the heap is swept lazily by the allocations.
+ */
+public class MarkSweepMutator extends MutatorEngine {
+
+    private final MarkSweepGarbageCollector garbageCollector;
+    private final HeapView view;
+    private GcEvent last;                   //Measures given to the listener at the end of the marking
+
+    public MarkSweepMutator(int heapSize, int slots) {
+        super(slots);
+        String[] heap = new String[heapSize];
+        garbageCollector = new MarkSweepGarbageCollector(heap, stack);
+        garbageCollector.addListener(event -> last = event);
+        view = new StringHeapView(heap);
+    }
+
+    @Override
+    public String getName() {
+        return "mark-sweep";
+    }
+
+    @Override
+    public void allocateInteger(int slot, int value) {
+        stack[slot] = garbageCollector.allocateInteger(value);
+    }
+
+    @Override
+    public void allocateDouble(int slot, double value) {
+        stack[slot] = garbageCollector.allocateDouble(value);
+    }
+
+    @Override
+    public void allocateChar(int slot, char value) {
+        stack[slot] = garbageCollector.allocateChar(value);
+    }
+
+    @Override
+    public void allocateBoolean(int slot, boolean value) {
+        stack[slot] = garbageCollector.allocateBoolean(value);
+    }
+
+    @Override
+    public void allocateVariable(int slot, String variable) {
+        stack[slot] = garbageCollector.allocateVariable(variable);
+    }
+
+    @Override
+    public void allocateNull(int slot) {
+        stack[slot] = garbageCollector.allocateNull();
+    }
+
+    @Override
+    public void allocateListConstructor(int slot, int head, int tail) {
+        stack[slot] = garbageCollector.allocateListConstructor(stack[head], stack[tail]);
+    }
+
+    @Override
+    public void allocateIndirection(int slot, int target) {
+        stack[slot] = garbageCollector.allocateIndirection(stack[target]);
+    }
+
+    @Override
+    public void allocateWeak(int slot, int target) {
+        stack[slot] = garbageCollector.allocateWeak(stack[target]);
+    }
+
+    @Override
+    public void allocateType(int slot, int target, String type) {
+        stack[slot] = garbageCollector.allocateType(stack[target], type);
+    }
+
+    @Override
+    public void allocateDataConstructor(int slot, String constructor, int[] slots) {
+        stack[slot] = garbageCollector.allocateDataConstructor(constructor, pointers(slots));
+    }
+
+    @Override
+    public void allocateLambda(int slot, String function, int[] slots) {
+        stack[slot] = garbageCollector.allocateLambda(function, pointers(slots));
+    }
+
+    @Override
+    public GcEvent collect() {
+        garbageCollector.collect();
+        return last;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    public MarkSweepGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+
+    @Override
+    protected void writePointer(int cell, int pointer) {
+        garbageCollector.getHeap()[cell] = String.valueOf(pointer);
+    }
+}
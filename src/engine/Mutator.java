@@ -0,0 +1,67 @@
+package engine;
+
+import monitoring.GcEvent;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * engine.Mutator.java                                                           <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Events of a mutator, given by stack slots instead of pointers, so they stay
+ * valid when the collector moves the nodes. An allocation writes the new node
+ * in a slot, and its pointers are the nodes of other slots. The same events can
+ * drive any engine, or be recorded in a trace (trace.TraceWriter).
+ */
+public interface Mutator {
+
+    void allocateInteger(int slot, int value);
+
+    void allocateDouble(int slot, double value);
+
+    void allocateChar(int slot, char value);
+
+    void allocateBoolean(int slot, boolean value);
+
+    void allocateVariable(int slot, String variable);
+
+    void allocateNull(int slot);
+
+    void allocateListConstructor(int slot, int head, int tail);
+
+    void allocateIndirection(int slot, int target);
+
+    void allocateWeak(int slot, int target);
+
+    void allocateType(int slot, int target, String type);
+
+    void allocateDataConstructor(int slot, String constructor, int[] slots);
+
+    void allocateLambda(int slot, String function, int[] slots);
+
+    /**
+     * Store the node of slot source in the strong pointer index (from 0) of the
+     * node of slot.
+     */
+    void storePointer(int slot, int index, int source);
+
+    /**
+     * Load the strong pointer index (from 0) of the node of slot source in slot.
+     */
+    void loadPointer(int slot, int source, int index);
+
+    /**
+     * Push the node of slot source as a root, in slot.
+     */
+    void pushRoot(int slot, int source);
+
+    /**
+     * Pop the root of slot, the slot becomes empty.
+     */
+    void popRoot(int slot);
+
+    /**
+     * Collect the heap now.
+     *
+     * @return The measures of the collection, null if no collection was run.
+     */
+    GcEvent collect();
+}
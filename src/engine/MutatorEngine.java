@@ -0,0 +1,68 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * An engine that allocates, so a mutator (or the replay of a trace) can drive
+ * it. The roots are the stack slots of the mutator, the empty slots are -1.
+ */
+public abstract class MutatorEngine implements Collector, Mutator {
+
+    protected final int[] stack;
+
+    protected MutatorEngine(int slots) {
+        stack = new int[slots];
+        Arrays.fill(stack, -1);
+    }
+
+    @Override
+    public void storePointer(int slot, int index, int source) {
+        HeapView heap = getHeap();
+        int node = stack[slot];
+        if (index < 0 || index >= heap.pointerCount(node)) {
+            throw new IllegalArgumentException(heap.tag(node) + " node has no pointer " + index);
+        }
+        writePointer(heap.pointerCell(node, index), stack[source]);
+    }
+
+    @Override
+    public void loadPointer(int slot, int source, int index) {
+        HeapView heap = getHeap();
+        int node = stack[source];
+        if (index < 0 || index >= heap.pointerCount(node)) {
+            throw new IllegalArgumentException(heap.tag(node) + " node has no pointer " + index);
+        }
+        stack[slot] = heap.pointer(node, index);
+    }
+
+    @Override
+    public void pushRoot(int slot, int source) {
+        stack[slot] = stack[source];
+    }
+
+    @Override
+    public void popRoot(int slot) {
+        stack[slot] = -1;
+    }
+
+    @Override
+    public int[] getRoots() {
+        return stack;
+    }
+
+    /**
+     * Write a pointer in a cell of the heap.
+     */
+    protected abstract void writePointer(int cell, int pointer);
+
+    /**
+     * The nodes of the given slots.
+     */
+    protected int[] pointers(int[] slots) {
+        int[] pointers = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            pointers[i] = stack[slots[i]];
+        }
+        return pointers;
+    }
+}
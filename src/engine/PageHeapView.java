@@ -0,0 +1,30 @@
+package engine;
+
+import bartlett.Page;
+
+/**
+ * View of the pages of the MostlyCopyingGarbageCollector. A pointer is the
+ * page index times the page size plus the cell in the page, the cells of a
+ * large node continue in the next pages.
+ */
+public class PageHeapView extends StringHeapView {
+
+    private final Page[] heap;
+    private final int pageSize;
+
+    public PageHeapView(Page[] heap) {
+        super(null);
+        this.heap = heap;
+        this.pageSize = heap.length == 0 ? Page.DEFAULT_PAGE_SIZE : heap[0].getPageSize();
+    }
+
+    @Override
+    public int length() {
+        return heap.length * pageSize;
+    }
+
+    @Override
+    protected String cell(int cell) {
+        return heap[cell / pageSize].getMemory()[cell % pageSize];
+    }
+}
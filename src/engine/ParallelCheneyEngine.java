@@ -0,0 +1,67 @@
+package engine;
+
+import cheneys.ArrayCellHeap;
+import cheneys.ParallelCopyingGarbageCollector;
+import monitoring.GcEvent;
+
+import java.util.List;
+
+/**
+ * The parallel version of Cheney's collector, with a heap of int cells. The
+ * collector has no listeners, the engine measures the phases itself.
+ */
+public class ParallelCheneyEngine implements Collector {
+
+    private final ParallelCopyingGarbageCollector garbageCollector;
+    private final HeapView view;
+    private int cycle;
+
+    /**
+     * @param symbols The symbol table of the HeapBuilder that encoded the heap.
+     */
+    public ParallelCheneyEngine(int[] heap, int[] stack, int numberOfWorkers, List<String> symbols) {
+        garbageCollector = new ParallelCopyingGarbageCollector(heap, stack, numberOfWorkers);
+        view = new IntHeapView(new ArrayCellHeap(heap), symbols);
+    }
+
+    @Override
+    public String getName() {
+        return "parallel-cheney";
+    }
+
+    @Override
+    public GcEvent collect() {
+        GcEvent event = new GcEvent("ParallelCheney", ++cycle);
+        long start = System.nanoTime();
+        garbageCollector.evacuateRoots();
+        long rootsEvacuated = System.nanoTime();
+        garbageCollector.scavenge();
+        long scavenged = System.nanoTime();
+        event.objectsCopied = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+        event.evacuateRootsNanos = rootsEvacuated - start;
+        event.scavengeNanos = scavenged - rootsEvacuated;       //With the weak pointers
+        event.clearOldMemoryNanos = System.nanoTime() - scavenged;
+        return event;
+    }
+
+    @Override
+    public HeapView getHeap() {
+        return view;
+    }
+
+    @Override
+    public int[] getRoots() {
+        return garbageCollector.getStack();
+    }
+
+    @Override
+    public void shutdown() {
+        garbageCollector.shutdown();
+    }
+
+    public ParallelCopyingGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+}
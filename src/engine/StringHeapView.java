@@ -0,0 +1,91 @@
+package engine;
+
+import cheneys.CopyingGarbageCollector;
+
+import static cheneys.CopyingGarbageCollector.NODE_CONS;
+import static cheneys.CopyingGarbageCollector.NODE_CONSTR;
+import static cheneys.CopyingGarbageCollector.NODE_IND;
+import static cheneys.CopyingGarbageCollector.NODE_LAMBDA;
+import static cheneys.CopyingGarbageCollector.NODE_NULL;
+import static cheneys.CopyingGarbageCollector.NODE_TYPE;
+import static cheneys.CopyingGarbageCollector.NODE_WEAK;
+
+/**
+ * View of a heap of String cells, the heap of the CopyingGarbageCollector,
+ * the MarkCompactGarbageCollector and the MarkSweepGarbageCollector.
+ */
+public class StringHeapView implements HeapView {
+
+    private final String[] heap;
+
+    public StringHeapView(String[] heap) {
+        this.heap = heap;
+    }
+
+    @Override
+    public int length() {
+        return heap.length;
+    }
+
+    @Override
+    public String tag(int node) {
+        return cell(node);
+    }
+
+    @Override
+    public int nodeSize(int node) {
+        String tag = cell(node);
+        return CopyingGarbageCollector.nodeSize(tag, numberOfPointers(tag, node));
+    }
+
+    @Override
+    public int pointerCount(int node) {
+        String tag = cell(node);
+        return CopyingGarbageCollector.pointerCount(tag, numberOfPointers(tag, node));
+    }
+
+    @Override
+    public int pointer(int node, int index) {
+        return Integer.valueOf(cell(node + CopyingGarbageCollector.firstPointerOffset(cell(node)) + index));
+    }
+
+    @Override
+    public int weakPointer(int node) {
+        String value = cell(node + 1);
+        return value.equals(NODE_NULL) ? -1 : Integer.valueOf(value);
+    }
+
+    @Override
+    public String label(int node) {
+        String tag = cell(node);
+        switch (tag) {
+            case NODE_CONSTR:
+            case NODE_LAMBDA:
+                return tag + " " + cell(node + 1) + " " + cell(node + 2);
+            case NODE_TYPE:
+                return tag + " " + cell(node + 2);
+            case NODE_CONS:
+            case NODE_IND:
+            case NODE_WEAK:
+            case NODE_NULL:
+                return tag;
+            default:
+                return tag + " " + cell(node + 1);
+        }
+    }
+
+    /**
+     * Number of pointers in the third cell of a CONSTR or LAMBDA node, 0 for
+     * the other nodes.
+     */
+    private int numberOfPointers(String tag, int node) {
+        return CopyingGarbageCollector.hasPointerCount(tag) ? Integer.valueOf(cell(node + 2)) : 0;
+    }
+
+    /**
+     * Read a cell of the heap.
+     */
+    protected String cell(int cell) {
+        return heap[cell];
+    }
+}
@@ -0,0 +1,83 @@
+package monitoring;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * monitoring.GcEvent.java                                                       <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Measures of one collection, given to the {@link GcListener}s of a collector.
+ * Phase timings are in nanoseconds. A phase that the collector does not have,
+ * or that was not run in this collection, is 0.
+ */
+public class GcEvent {
+
+    public final String collector;          //Name of the collector that emitted the event
+    public final int cycle;                 //Number of the collection, from 1
+
+    public long evacuateRootsNanos;
+    public long scavengeNanos;              //Scavenging loop, without the weak pointers
+    public long updateWeakPointersNanos;
+    public long computeForwardingNanos;     //Forwarding addresses of a mark-compact collection
+    public long updatePointersNanos;        //Pointers set to the forwarding addresses, without the weak pointers
+    public long copyToNewSpaceNanos;
+    public long clearOldMemoryNanos;
+
+    public int objectsCopied;
+    public long cellsCopied;                //Cells copied, cells of the promoted pages, or cells marked
+    public int pagesPromoted;
+    public int weakPointersUpdated;
+    public int weakPointersCleared;         //Weak pointers set to NULL
+    public long cellsInUse;                 //Cells in use before the collection
+    public long pointersMeasured;           //Strong pointers of the copied nodes, for the locality measures
+    public long pointerDistance;            //Sum of the cells between a node and the nodes it points to
+    public long lineCrossings;              //Pointers to a node in an other cache line
+
+    public GcEvent(String collector, int cycle) {
+        this.collector = collector;
+        this.cycle = cycle;
+    }
+
+    /**
+     * Total time of the phases.
+     */
+    public long getPauseNanos() {
+        return evacuateRootsNanos + scavengeNanos + updateWeakPointersNanos + computeForwardingNanos
+                + updatePointersNanos + copyToNewSpaceNanos + clearOldMemoryNanos;
+    }
+
+    /**
+     * Part of the cells in use that survived the collection.
+     */
+    public double getSurvivalRatio() {
+        return cellsInUse == 0 ? 0 : (double) cellsCopied / cellsInUse;
+    }
+
+    /**
+     * Average cells between a copied node and the nodes it points to.
+     */
+    public double getAveragePointerDistance() {
+        return pointersMeasured == 0 ? 0 : (double) pointerDistance / pointersMeasured;
+    }
+
+    /**
+     * Part of the pointers of the copied nodes that cross a cache line.
+     */
+    public double getLineCrossingRatio() {
+        return pointersMeasured == 0 ? 0 : (double) lineCrossings / pointersMeasured;
+    }
+
+    @Override
+    public String toString() {
+        return collector + " #" + cycle + " pause " + getPauseNanos() / 1000 + "us"
+                + " (roots " + evacuateRootsNanos / 1000 + "us, scavenge " + scavengeNanos / 1000 + "us"
+                + ", weak " + updateWeakPointersNanos / 1000 + "us"
+                + (computeForwardingNanos + updatePointersNanos == 0 ? "" : ", forward " + computeForwardingNanos / 1000
+                + "us, pointers " + updatePointersNanos / 1000 + "us")
+                + ", copy " + copyToNewSpaceNanos / 1000 + "us"
+                + ", clear " + clearOldMemoryNanos / 1000 + "us)"
+                + " objects " + objectsCopied + " cells " + cellsCopied + " pages " + pagesPromoted
+                + " weak updated " + weakPointersUpdated + " cleared " + weakPointersCleared
+                + String.format(" survival %.3f", getSurvivalRatio())
+                + (pointersMeasured == 0 ? "" : String.format(" distance %.1f crossings %.3f",
+                getAveragePointerDistance(), getLineCrossingRatio()));
+    }
+}
@@ -0,0 +1,13 @@
+package monitoring;
+
+/**
+ * Listener of the collections of a garbage collector. It is called once per
+ * collection, on the thread that runs the collector.
+ */
+public interface GcListener {
+
+    /**
+     * Called at the end of a collection.
+     */
+    void onCollection(GcEvent event);
+}
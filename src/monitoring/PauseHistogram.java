@@ -0,0 +1,127 @@
+package monitoring;
+
+import java.util.Arrays;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * monitoring.PauseHistogram.java                                                <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Histogram of pause times in the style of HdrHistogram : every power of two is
+ * split in SUB_BUCKETS linear buckets, so a recorded value is kept with a
+ * relative error below 1 / SUB_BUCKETS, from 1ns up to Long.MAX_VALUE, in a
+ * fixed array of counters. Recording is a few shifts and an increment.
+ * <p>
+ * As a {@link GcListener} it records the pause of every collection.
+ */
+public class PauseHistogram implements GcListener {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;      //Linear buckets per power of two
+
+    private final long[] counts = new long[SUB_BUCKETS * (64 - SUB_BUCKET_BITS + 1)];
+    private long totalCount;
+    private long totalNanos;
+    private long maxNanos;
+    private long minNanos = Long.MAX_VALUE;
+
+    @Override
+    public void onCollection(GcEvent event) {
+        record(event.getPauseNanos());
+    }
+
+    /**
+     * Record a pause.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[index(nanos)]++;
+        totalCount++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        minNanos = Math.min(minNanos, nanos);
+    }
+
+    /**
+     * Pause at the given percentile, it is the upper bound of its bucket.
+     *
+     * @param percentile From 0 to 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= target) {
+                return Math.min(highestValue(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMinNanos() {
+        return totalCount == 0 ? 0 : minNanos;
+    }
+
+    public double getMeanNanos() {
+        return totalCount == 0 ? 0 : (double) totalNanos / totalCount;
+    }
+
+    /**
+     * Forget all the recorded pauses.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = totalNanos = maxNanos = 0;
+        minNanos = Long.MAX_VALUE;
+    }
+
+    /**
+     * Print the count, mean and the usual percentiles of the pauses.
+     */
+    public void printPercentiles() {
+        System.out.println("PAUSES            : " + totalCount + " mean " + (long) getMeanNanos() / 1000 + "us"
+                + " p50 " + getValueAtPercentile(50) / 1000 + "us"
+                + " p90 " + getValueAtPercentile(90) / 1000 + "us"
+                + " p99 " + getValueAtPercentile(99) / 1000 + "us"
+                + " p99.9 " + getValueAtPercentile(99.9) / 1000 + "us"
+                + " max " + maxNanos / 1000 + "us");
+    }
+
+    /**
+     * Bucket of a value. Values below 2 * SUB_BUCKETS have their own bucket,
+     * above every power of two is split in SUB_BUCKETS buckets.
+     */
+    private static int index(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude < SUB_BUCKET_BITS + 1) {
+            return (int) value;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (SUB_BUCKETS * shift) + (int) (value >>> shift);
+    }
+
+    /**
+     * Highest value of a bucket.
+     */
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index - (long) SUB_BUCKETS * shift;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
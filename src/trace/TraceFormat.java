@@ -0,0 +1,45 @@
+package trace;
+
+/**
+ * Layout of a trace file. The header is the magic number (4 bytes), the
+ * version (1 byte) and the stack slots of the mutator (varint). Every event is
+ * its opcode (1 byte) and its operands :
+ * <pre>
+ *  slots, indexes, lengths     unsigned varint
+ *  int values                  zig-zag varint
+ *  char values                 unsigned varint
+ *  boolean values              1 byte
+ *  double values               8 bytes
+ *  identifiers                 symbol index (varint), followed by its length and
+ *                              UTF-8 bytes the first time the symbol is used
+ * </pre>
+ * The file ends after the last event.
+ */
+final class TraceFormat {
+
+    static final int MAGIC = 0x47435452;            //"GCTR"
+    static final byte VERSION = 1;
+
+    static final byte INT = 1;
+    static final byte DOUBLE = 2;
+    static final byte CHAR = 3;
+    static final byte BOOL = 4;
+    static final byte VAR = 5;
+    static final byte NULL = 6;
+    static final byte CONS = 7;
+    static final byte IND = 8;
+    static final byte WEAK = 9;
+    static final byte TYPE = 10;
+    static final byte CONSTR = 11;
+    static final byte LAMBDA = 12;
+    static final byte STORE = 13;
+    static final byte PUSH = 14;
+    static final byte POP = 15;
+    static final byte COLLECT = 16;
+    static final byte LOAD = 17;
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private TraceFormat() {
+    }
+}
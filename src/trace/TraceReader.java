@@ -0,0 +1,221 @@
+package trace;
+
+import engine.Mutator;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * trace.TraceReader.java                                                        <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Reads a trace file written by the {@link TraceWriter} and gives its events,
+ * one at a time, to a Mutator. The file is streamed through a direct buffer
+ * that is refilled from the file channel, so traces of any length are read in
+ * constant memory.
+ */
+public class TraceReader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TraceFormat.BUFFER_SIZE);
+    private final List<String> symbols = new ArrayList<>();
+    private final int slots;
+
+    public long events;
+    public long allocations;
+    public long stores;
+    public long loads;
+    public long rootEvents;                 //Roots pushed or popped
+    public long collections;                //Explicit collections
+
+    /**
+     * Open a trace file and read its header.
+     */
+    public TraceReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.flip();
+        try {
+            if (getInt() != TraceFormat.MAGIC) {
+                throw new IOException(path + " is not a trace file");
+            }
+            byte version = get();
+            if (version != TraceFormat.VERSION) {
+                throw new IOException("Trace version " + version + " is not supported");
+            }
+            slots = getVarint();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stack slots of the mutator that recorded the trace.
+     */
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Give the next event to the mutator.
+     *
+     * @return false if the trace has no more events.
+     */
+    public boolean next(Mutator mutator) throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return false;
+        }
+        byte opcode = buffer.get();
+        events++;
+        if (opcode == TraceFormat.COLLECT) {
+            collections++;
+            mutator.collect();
+            return true;
+        }
+        int slot = getVarint();
+        switch (opcode) {
+            case TraceFormat.INT:
+                int value = getVarint();
+                mutator.allocateInteger(slot, (value >>> 1) ^ -(value & 1));
+                break;
+            case TraceFormat.DOUBLE:
+                mutator.allocateDouble(slot, Double.longBitsToDouble(getLong()));
+                break;
+            case TraceFormat.CHAR:
+                mutator.allocateChar(slot, (char) getVarint());
+                break;
+            case TraceFormat.BOOL:
+                mutator.allocateBoolean(slot, get() != 0);
+                break;
+            case TraceFormat.VAR:
+                mutator.allocateVariable(slot, getSymbol());
+                break;
+            case TraceFormat.NULL:
+                mutator.allocateNull(slot);
+                break;
+            case TraceFormat.CONS:
+                int head = getVarint();
+                mutator.allocateListConstructor(slot, head, getVarint());
+                break;
+            case TraceFormat.IND:
+                mutator.allocateIndirection(slot, getVarint());
+                break;
+            case TraceFormat.WEAK:
+                mutator.allocateWeak(slot, getVarint());
+                break;
+            case TraceFormat.TYPE:
+                int target = getVarint();
+                mutator.allocateType(slot, target, getSymbol());
+                break;
+            case TraceFormat.CONSTR:
+                String constructor = getSymbol();
+                mutator.allocateDataConstructor(slot, constructor, getPointerSlots(getVarint()));
+                break;
+            case TraceFormat.LAMBDA:
+                String function = getSymbol();
+                mutator.allocateLambda(slot, function, getPointerSlots(getVarint()));
+                break;
+            case TraceFormat.STORE:
+                int index = getVarint();
+                mutator.storePointer(slot, index, getVarint());
+                stores++;
+                return true;
+            case TraceFormat.LOAD:
+                int source = getVarint();
+                mutator.loadPointer(slot, source, getVarint());
+                loads++;
+                return true;
+            case TraceFormat.PUSH:
+                mutator.pushRoot(slot, getVarint());
+                rootEvents++;
+                return true;
+            case TraceFormat.POP:
+                mutator.popRoot(slot);
+                rootEvents++;
+                return true;
+            default:
+                throw new IOException("Unknown event " + opcode + " after " + (events - 1) + " events");
+        }
+        allocations++;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int[] getPointerSlots(int n) throws IOException {
+        int[] pointers = new int[n];
+        for (int i = 0; i < n; i++) {
+            pointers[i] = getVarint();
+        }
+        return pointers;
+    }
+
+    /**
+     * A symbol given by its index, read after it the first time it is used.
+     */
+    private String getSymbol() throws IOException {
+        int index = getVarint();
+        if (index < symbols.size()) {
+            return symbols.get(index);
+        }
+        byte[] bytes = new byte[getVarint()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = get();
+        }
+        String symbol = new String(bytes, StandardCharsets.UTF_8);
+        symbols.add(symbol);
+        return symbol;
+    }
+
+    private int getVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private int getInt() throws IOException {
+        return (get() & 0xFF) << 24 | (get() & 0xFF) << 16 | (get() & 0xFF) << 8 | (get() & 0xFF);
+    }
+
+    private long getLong() throws IOException {
+        return (long) getInt() << 32 | getInt() & 0xFFFFFFFFL;
+    }
+
+    private byte get() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            throw new EOFException("Trace ends inside an event");
+        }
+        return buffer.get();
+    }
+
+    /**
+     * Read the next part of the file in the buffer.
+     *
+     * @return false at the end of the file.
+     */
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read = 0;
+        while (read == 0) {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        return read > 0;
+    }
+}
@@ -0,0 +1,64 @@
+package trace;
+
+import engine.EngineRegistry;
+import engine.Mutator;
+import engine.MutatorEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * trace.TraceReplayer.java                                                      <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Replays a trace file on a mutator engine, so the same recorded workload runs
+ * on every engine and configuration with exactly the same events. It reports
+ * the events of the last replay and the time it took, collections included.
+ */
+public class TraceReplayer {
+
+    public int slots;
+    public long events;
+    public long allocations;
+    public long stores;
+    public long loads;
+    public long rootEvents;
+    public long collections;                //Explicit collections of the trace
+    public long replayNanos;
+
+    /**
+     * Replay a trace on a new engine of the registry, with the stack slots of
+     * the trace.
+     *
+     * @return The engine, after the last event.
+     */
+    public MutatorEngine replay(Path path, String engine, int heapSize) throws IOException {
+        int traceSlots;
+        try (TraceReader reader = new TraceReader(path)) {
+            traceSlots = reader.getSlots();
+        }
+        MutatorEngine mutator = EngineRegistry.createMutator(engine, heapSize, traceSlots);
+        replay(path, mutator);
+        return mutator;
+    }
+
+    /**
+     * Replay a trace on a mutator, it must have the stack slots of the trace.
+     */
+    public void replay(Path path, Mutator mutator) throws IOException {
+        try (TraceReader reader = new TraceReader(path)) {
+            long start = System.nanoTime();
+            while (reader.next(mutator)) {
+                //Every event is given to the mutator by the reader
+            }
+            replayNanos = System.nanoTime() - start;
+            slots = reader.getSlots();
+            events = reader.events;
+            allocations = reader.allocations;
+            stores = reader.stores;
+            loads = reader.loads;
+            rootEvents = reader.rootEvents;
+            collections = reader.collections;
+        }
+    }
+}
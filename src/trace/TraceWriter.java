@@ -0,0 +1,242 @@
+package trace;
+
+import engine.Mutator;
+import monitoring.GcEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * trace.TraceWriter.java                                                        <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Records the events of a mutator in a trace file, in the binary format of
+ * {@link TraceFormat}. It is a Mutator itself, so a workload written against
+ * the Mutator API is recorded by running it on a writer. The events are
+ * encoded in a direct buffer that is written to the file channel when it is
+ * full, and when the writer is closed. Nothing is allocated or collected.
+ */
+public class TraceWriter implements Mutator, Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TraceFormat.BUFFER_SIZE);
+    private final Map<String, Integer> symbols = new HashMap<>();
+
+    public long events;
+
+    /**
+     * Create the trace file, or replace it.
+     *
+     * @param slots Stack slots of the mutator.
+     */
+    public TraceWriter(Path path, int slots) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(TraceFormat.MAGIC);
+        buffer.put(TraceFormat.VERSION);
+        putVarint(slots);
+    }
+
+    @Override
+    public void allocateInteger(int slot, int value) {
+        event(TraceFormat.INT, slot);
+        putVarint((value << 1) ^ (value >> 31));            //Zig-zag, small negative values are short
+    }
+
+    @Override
+    public void allocateDouble(int slot, double value) {
+        event(TraceFormat.DOUBLE, slot);
+        buffer.putDouble(value);
+    }
+
+    @Override
+    public void allocateChar(int slot, char value) {
+        event(TraceFormat.CHAR, slot);
+        putVarint(value);
+    }
+
+    @Override
+    public void allocateBoolean(int slot, boolean value) {
+        event(TraceFormat.BOOL, slot);
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    @Override
+    public void allocateVariable(int slot, String variable) {
+        event(TraceFormat.VAR, slot);
+        putSymbol(variable);
+    }
+
+    @Override
+    public void allocateNull(int slot) {
+        event(TraceFormat.NULL, slot);
+    }
+
+    @Override
+    public void allocateListConstructor(int slot, int head, int tail) {
+        event(TraceFormat.CONS, slot);
+        putVarint(head);
+        putVarint(tail);
+    }
+
+    @Override
+    public void allocateIndirection(int slot, int target) {
+        event(TraceFormat.IND, slot);
+        putVarint(target);
+    }
+
+    @Override
+    public void allocateWeak(int slot, int target) {
+        event(TraceFormat.WEAK, slot);
+        putVarint(target);
+    }
+
+    @Override
+    public void allocateType(int slot, int target, String type) {
+        event(TraceFormat.TYPE, slot);
+        putVarint(target);
+        putSymbol(type);
+    }
+
+    @Override
+    public void allocateDataConstructor(int slot, String constructor, int[] slots) {
+        putNodeWithPointers(TraceFormat.CONSTR, slot, constructor, slots);
+    }
+
+    @Override
+    public void allocateLambda(int slot, String function, int[] slots) {
+        putNodeWithPointers(TraceFormat.LAMBDA, slot, function, slots);
+    }
+
+    @Override
+    public void storePointer(int slot, int index, int source) {
+        event(TraceFormat.STORE, slot);
+        putVarint(index);
+        putVarint(source);
+    }
+
+    @Override
+    public void loadPointer(int slot, int source, int index) {
+        event(TraceFormat.LOAD, slot);
+        putVarint(source);
+        putVarint(index);
+    }
+
+    @Override
+    public void pushRoot(int slot, int source) {
+        event(TraceFormat.PUSH, slot);
+        putVarint(source);
+    }
+
+    @Override
+    public void popRoot(int slot) {
+        event(TraceFormat.POP, slot);
+    }
+
+    /**
+     * Record an explicit collection.
+     *
+     * @return null, the writer does not collect.
+     */
+    @Override
+    public GcEvent collect() {
+        ensure(1);
+        buffer.put(TraceFormat.COLLECT);
+        events++;
+        return null;
+    }
+
+    /**
+     * Write the rest of the buffer and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Opcode and slot of an event, with room for the fixed operands after them.
+     */
+    private void event(byte opcode, int slot) {
+        ensure(32);
+        buffer.put(opcode);
+        putVarint(slot);
+        events++;
+    }
+
+    private void putNodeWithPointers(byte opcode, int slot, String name, int[] slots) {
+        event(opcode, slot);
+        putSymbol(name);
+        putVarint(slots.length);
+        for (int pointer : slots) {
+            ensure(5);
+            putVarint(pointer);
+        }
+    }
+
+    /**
+     * Index of the symbol, and the symbol itself the first time it is used.
+     */
+    private void putSymbol(String symbol) {
+        Integer index = symbols.get(symbol);
+        if (index != null) {
+            ensure(5);
+            putVarint(index);
+            return;
+        }
+        symbols.put(symbol, symbols.size());
+        byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+        ensure(10);
+        putVarint(symbols.size() - 1);
+        putVarint(bytes.length);
+        for (int i = 0; i < bytes.length; i += buffer.capacity()) {
+            int length = Math.min(buffer.capacity(), bytes.length - i);
+            ensure(length);
+            buffer.put(bytes, i, length);
+        }
+    }
+
+    /**
+     * Unsigned LEB128, 7 bits per byte.
+     */
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Make room for bytes in the buffer.
+     */
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, used by the collectors for work lists
+ * and side tables so that no Integer is boxed while collecting.
+ */
+public class IntList {
+
+    private int[] elements;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        elements = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Append a value to the end of the list.
+     */
+    public void add(int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * Remove and return the last value, the list must not be empty.
+     */
+    public int pop() {
+        return elements[--size];
+    }
+
+    public int get(int index) {
+        return elements[index];
+    }
+
+    public void set(int index, int value) {
+        elements[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all values, the capacity is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Move the first count values to a new list, the remaining
+     * values are shifted to the start of this list.
+     */
+    public IntList split(int count) {
+        IntList head = new IntList(count);
+        System.arraycopy(elements, 0, head.elements, 0, count);
+        head.size = count;
+        System.arraycopy(elements, count, elements, 0, size - count);
+        size -= count;
+        return head;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,130 @@
+package verify;
+
+import engine.HeapView;
+import util.IntList;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static cheneys.CopyingGarbageCollector.NODE_WEAK;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * verify.HeapSnapshot.java                                                      <br>
+ * ----------------------------------------------------------------------------  <br>
+ * The graph reachable from the roots through strong pointers, taken before a
+ * collection so the HeapVerifier can compare it with the graph after. The nodes
+ * are numbered in breadth-first order and kept in primitive arrays :
+ * <ul>
+ * <li>the pointer of every node before the collection, for the messages,</li>
+ * <li>its label, its tag and the cells that are not pointers,</li>
+ * <li>its strong pointers, as node numbers, from firstPointer[i] to
+ * firstPointer[i + 1],</li>
+ * <li>the WEAK nodes and the node number of their target, WEAK_CLEARED if the
+ * pointer was already cleared, or WEAK_DEAD if the target is not strongly
+ * reachable. The label of a dead target is kept too.</li>
+ * </ul>
+ * The graph is walked by one thread, the labels are read in parallel. They
+ * are kept whole, not hashed, so two labels are never taken for each other.
+ */
+public class HeapSnapshot {
+
+    public static final int WEAK_CLEARED = -1;
+    public static final int WEAK_DEAD = -2;
+
+    final int[] nodes;
+    final String[] labels;
+    final int[] firstPointer;
+    final int[] pointers;
+    final int[] roots;              //Node numbers of the roots, -1 for an empty slot
+    final int[] weakNodes;
+    final int[] weakTargets;
+    final String[] weakLabels;
+
+    private HeapSnapshot(int[] nodes, String[] labels, int[] firstPointer, int[] pointers, int[] roots,
+                         int[] weakNodes, int[] weakTargets, String[] weakLabels) {
+        this.nodes = nodes;
+        this.labels = labels;
+        this.firstPointer = firstPointer;
+        this.pointers = pointers;
+        this.roots = roots;
+        this.weakNodes = weakNodes;
+        this.weakTargets = weakTargets;
+        this.weakLabels = weakLabels;
+    }
+
+    /**
+     * Take the snapshot of a heap and its roots, before they are collected.
+     */
+    public static HeapSnapshot take(HeapView heap, int[] roots) {
+        int[] numbers = new int[heap.length()];          //Node number of a pointer, plus one
+        IntList nodes = new IntList(1024);
+        IntList pointers = new IntList(1024);
+        IntList weakNodes = new IntList();
+        int[] rootNumbers = new int[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            rootNumbers[i] = roots[i] < 0 ? -1 : number(roots[i], numbers, nodes);
+        }
+        int[] firstPointer = new int[16];
+        for (int i = 0; i < nodes.size(); i++) {        //Breadth-first, the list grows while it is scanned
+            int node = nodes.get(i);
+            if (i + 1 >= firstPointer.length) {
+                firstPointer = Arrays.copyOf(firstPointer, firstPointer.length * 2);
+            }
+            firstPointer[i] = pointers.size();
+            for (int j = 0; j < heap.pointerCount(node); j++) {
+                pointers.add(number(heap.pointer(node, j), numbers, nodes));
+            }
+            if (heap.tag(node).equals(NODE_WEAK)) {
+                weakNodes.add(i);
+            }
+        }
+        firstPointer = Arrays.copyOf(firstPointer, nodes.size() + 1);
+        firstPointer[nodes.size()] = pointers.size();
+
+        int[] nodeArray = nodes.toArray();
+        String[] labels = new String[nodeArray.length];
+        IntStream.range(0, nodeArray.length).parallel().forEach(i -> labels[i] = heap.label(nodeArray[i]));
+        int[] weakArray = weakNodes.toArray();
+        int[] weakTargets = new int[weakArray.length];
+        String[] weakLabels = new String[weakArray.length];
+        for (int i = 0; i < weakArray.length; i++) {
+            int target = heap.weakPointer(nodeArray[weakArray[i]]);
+            if (target < 0) {
+                weakTargets[i] = WEAK_CLEARED;
+            } else if (numbers[target] == 0) {
+                weakTargets[i] = WEAK_DEAD;
+                weakLabels[i] = heap.label(target);
+            } else {
+                weakTargets[i] = numbers[target] - 1;
+            }
+        }
+        return new HeapSnapshot(nodeArray, labels, firstPointer, pointers.toArray(), rootNumbers, weakArray,
+                weakTargets, weakLabels);
+    }
+
+    /**
+     * Number of a node, a new node gets the next number.
+     */
+    private static int number(int node, int[] numbers, IntList nodes) {
+        if (numbers[node] == 0) {
+            nodes.add(node);
+            numbers[node] = nodes.size();
+        }
+        return numbers[node] - 1;
+    }
+
+    /**
+     * Number of nodes reachable from the roots.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Number of strong pointers of the reachable nodes.
+     */
+    public int pointers() {
+        return pointers.length;
+    }
+}
@@ -0,0 +1,215 @@
+package verify;
+
+import engine.HeapView;
+import util.IntList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * ----------------------------------------------------------------------------  <br>
+ * verify.HeapVerifier.java                                                      <br>
+ * ----------------------------------------------------------------------------  <br>
+ * Checks that a collection kept the graph of a HeapSnapshot taken before it.
+ * The snapshot and the heap after the collection are walked together from the
+ * roots, root i of the snapshot gives the node of root i after, and pointer j
+ * of a node gives the node of its pointer j, so every node of the snapshot is
+ * mapped to one node after the collection. The verifier checks that :
+ * <ul>
+ * <li>a node is mapped to one node only, and two nodes are not mapped to the
+ * same one (the nodes that were shared are still shared),</li>
+ * <li>a node and its image have the same label (tag and values) and the same
+ * number of pointers,</li>
+ * <li>a weak pointer to a live node points to its image, and a weak pointer to
+ * a dead node, or that was cleared, is cleared. A collector that keeps more
+ * than the live nodes, as Bartlett's promoted pages, may keep the dead node
+ * instead, if it has the same label.</li>
+ * </ul>
+ * The walk is breadth-first, level by level : the nodes of a level are
+ * checked in parallel by chunks, in a fork-join pool, and the map from node
+ * numbers to the nodes after is an atomic int array.
+ */
+public class HeapVerifier {
+
+    public static final int MAX_MESSAGES = 20;
+    private static final int CHUNK = 1024;              //Nodes checked by a task
+
+    private final boolean deadWeakTargetsMayBeKept;
+    private List<String> messages;
+    private AtomicInteger errorCount;
+
+    public int nodesVerified;
+    public int errors;
+    public long verifyNanos;
+
+    /**
+     * @param deadWeakTargetsMayBeKept true for a conservative collector, a
+     *                                 weak pointer to a dead node may still
+     *                                 point to it.
+     */
+    public HeapVerifier(boolean deadWeakTargetsMayBeKept) {
+        this.deadWeakTargetsMayBeKept = deadWeakTargetsMayBeKept;
+    }
+
+    /**
+     * Verifier of an engine of the registry, the Bartlett engines may keep dead
+     * weak targets.
+     */
+    public static HeapVerifier forEngine(String name) {
+        return new HeapVerifier(name.startsWith("bartlett"));
+    }
+
+    /**
+     * Compare the heap and roots after a collection with the snapshot.
+     *
+     * @return The messages of the first MAX_MESSAGES errors, empty if the
+     * graph was kept. errors holds the number of errors.
+     */
+    public List<String> verify(HeapSnapshot snapshot, HeapView heap, int[] roots) {
+        long start = System.nanoTime();
+        messages = Collections.synchronizedList(new ArrayList<>());
+        errorCount = new AtomicInteger();
+        AtomicIntegerArray images = new AtomicIntegerArray(snapshot.size());        //Node after, plus one
+        AtomicIntegerArray owners = new AtomicIntegerArray(heap.length());          //Node number, plus one
+
+        IntList level = new IntList();
+        if (roots.length != snapshot.roots.length) {
+            error("The stack has " + roots.length + " roots, it had " + snapshot.roots.length);
+        }
+        for (int i = 0; i < Math.min(roots.length, snapshot.roots.length); i++) {
+            int number = snapshot.roots[i];
+            if (number < 0 || roots[i] < 0) {
+                if (number >= 0 || roots[i] >= 0) {
+                    error("Root " + i + " is " + roots[i] + ", it was " + (number < 0 ? -1 : snapshot.nodes[number]));
+                }
+            } else if (map(snapshot, number, roots[i], images, owners, heap.length())) {
+                level.add(number);
+            }
+        }
+        while (!level.isEmpty()) {
+            int[] nodes = level.toArray();
+            IntList[] next = new IntList[(nodes.length + CHUNK - 1) / CHUNK];
+            IntStream.range(0, next.length).parallel().forEach(chunk -> {
+                IntList mapped = new IntList();
+                for (int i = chunk * CHUNK; i < Math.min(nodes.length, (chunk + 1) * CHUNK); i++) {
+                    verifyNode(snapshot, nodes[i], heap, images, owners, mapped);
+                }
+                next[chunk] = mapped;
+            });
+            level.clear();
+            for (IntList mapped : next) {
+                for (int i = 0; i < mapped.size(); i++) {
+                    level.add(mapped.get(i));
+                }
+            }
+        }
+        IntStream.range(0, snapshot.weakNodes.length).parallel()
+                .forEach(i -> verifyWeakPointer(snapshot, i, heap, images));
+
+        int verified = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (images.get(i) != 0) {
+                verified++;
+            }
+        }
+        nodesVerified = verified;
+        errors = errorCount.get();
+        verifyNanos = System.nanoTime() - start;
+        return new ArrayList<>(messages);
+    }
+
+    /**
+     * Verify, and throw an IllegalStateException with the first errors if the
+     * graph was not kept.
+     */
+    public void check(HeapSnapshot snapshot, HeapView heap, int[] roots) {
+        List<String> found = verify(snapshot, heap, roots);
+        if (!found.isEmpty()) {
+            throw new IllegalStateException("Heap verification failed, " + errors + " errors : " + found);
+        }
+    }
+
+    /**
+     * Check the label and pointers of a mapped node, and map its pointers. The
+     * nodes mapped for the first time are added to the next level.
+     */
+    private void verifyNode(HeapSnapshot snapshot, int number, HeapView heap, AtomicIntegerArray images,
+                            AtomicIntegerArray owners, IntList mapped) {
+        int node = images.get(number) - 1;
+        int before = snapshot.nodes[number];
+        String label = heap.label(node);
+        if (!label.equals(snapshot.labels[number])) {
+            error("Node " + before + " is " + label + " at " + node + ", it was " + snapshot.labels[number]);
+            return;
+        }
+        int first = snapshot.firstPointer[number];
+        int count = snapshot.firstPointer[number + 1] - first;
+        if (heap.pointerCount(node) != count) {
+            error("Node " + before + " has " + heap.pointerCount(node) + " pointers at " + node + ", it had " + count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int child = snapshot.pointers[first + i];
+            if (map(snapshot, child, heap.pointer(node, i), images, owners, heap.length())) {
+                mapped.add(child);
+            }
+        }
+    }
+
+    private void verifyWeakPointer(HeapSnapshot snapshot, int weak, HeapView heap, AtomicIntegerArray images) {
+        int number = snapshot.weakNodes[weak];
+        int node = images.get(number) - 1;
+        if (node < 0) {
+            return;                                     //Not mapped, the error is known
+        }
+        int pointer = heap.weakPointer(node);
+        int target = snapshot.weakTargets[weak];
+        if (target >= 0) {
+            if (pointer != images.get(target) - 1) {
+                error("Weak node " + snapshot.nodes[number] + " points to " + pointer + ", its live target is at "
+                        + (images.get(target) - 1));
+            }
+        } else if (pointer >= 0) {
+            boolean kept = target == HeapSnapshot.WEAK_DEAD && deadWeakTargetsMayBeKept
+                    && pointer < heap.length() && heap.label(pointer).equals(snapshot.weakLabels[weak]);
+            if (!kept) {
+                error("Weak node " + snapshot.nodes[number] + " points to " + pointer + ", its target "
+                        + (target == HeapSnapshot.WEAK_DEAD ? "is dead" : "was cleared"));
+            }
+        }
+    }
+
+    /**
+     * Map a node number to a node after the collection.
+     *
+     * @return true if the node was not mapped yet.
+     */
+    private boolean map(HeapSnapshot snapshot, int number, int node, AtomicIntegerArray images,
+                        AtomicIntegerArray owners, int length) {
+        if (node < 0 || node >= length) {
+            error("Node " + snapshot.nodes[number] + " is mapped out of the heap, to " + node);
+            return false;
+        }
+        if (images.compareAndSet(number, 0, node + 1)) {
+            if (!owners.compareAndSet(node, 0, number + 1)) {
+                error("Nodes " + snapshot.nodes[number] + " and " + snapshot.nodes[owners.get(node) - 1]
+                        + " are both at " + node);
+            }
+            return true;
+        }
+        if (images.get(number) != node + 1) {
+            error("Node " + snapshot.nodes[number] + " is at " + (images.get(number) - 1) + " and at " + node);
+        }
+        return false;
+    }
+
+    private void error(String message) {
+        if (errorCount.incrementAndGet() <= MAX_MESSAGES) {
+            messages.add(message);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import cache.CacheHierarchy;
+import cache.CacheLevel;
+import cache.HeapTraversal;
+import cache.TracingCellHeap;
+import cheneys.ArrayCellHeap;
+import cheneys.CopyOrder;
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapGenerator;
+import cheneys.IntCopyingGarbageCollector;
+import cheneys.WorkloadSpec;
+import engine.StringHeapView;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the cache simulator, driven by a traced int
+ * heap and by mutator walks.
+ */
+public class CacheSimulatorTest {
+
+    private static final int HEAP_SIZE = 400000;
+    private static final int LINE_BYTES = 64;
+
+    /**
+     * A set of 2 ways keeps the 2 lines used last, the third line of the set
+     * replaces the least recently used one.
+     */
+    @Test
+    public void leastRecentlyUsedLineIsReplaced() {
+        CacheLevel level = new CacheLevel("L1", 4 * LINE_BYTES, 2, LINE_BYTES, 4);     //2 sets
+        assertFalse(level.access(0));
+        assertFalse(level.access(2));                                       //Same set
+        assertTrue(level.access(0));
+        assertFalse(level.access(1));                                       //Other set
+        assertFalse(level.access(4));                                       //Replaces line 2
+        assertTrue(level.access(0));
+        assertFalse(level.access(2));
+        assertEquals(7, level.accesses);
+        assertEquals(5, level.misses);
+    }
+
+    /**
+     * The traced heap is collected as the plain one, its accesses are counted
+     * in the phase of the collection that made them.
+     */
+    @Test
+    public void collectionPhasesOfATracedHeap() {
+        HeapGenerator generator = new HeapGenerator(new WorkloadSpec(WorkloadSpec.Shape.DAG));
+        int[] cells = generator.generateIntHeap(HEAP_SIZE);
+        int[] stack = generator.generateStack();
+        int[] plainCells = cells.clone();
+        int[] plainStack = stack.clone();
+        IntCopyingGarbageCollector plain = new IntCopyingGarbageCollector(plainCells, plainStack);
+        plain.evacuateRoots();
+        plain.scavenge();
+
+        CacheHierarchy hierarchy = CacheHierarchy.typical(LINE_BYTES);
+        IntCopyingGarbageCollector garbageCollector = new IntCopyingGarbageCollector(
+                new TracingCellHeap(new ArrayCellHeap(cells), hierarchy), stack);
+        hierarchy.setPhase("evacuateRoots");
+        garbageCollector.evacuateRoots();
+        hierarchy.setPhase("scavenge");
+        garbageCollector.scavenge();
+        hierarchy.setPhase(CacheHierarchy.DEFAULT_PHASE);
+        hierarchy.printStatistics();
+
+        assertTrue(Arrays.equals(plainCells, cells));
+        assertTrue(Arrays.equals(plainStack, stack));
+        CacheHierarchy.Phase scavenge = hierarchy.getPhase("scavenge");
+        assertNotNull(scavenge);
+        assertNotNull(hierarchy.getPhase("evacuateRoots"));
+        assertEquals(2, hierarchy.getPhases().size());
+        assertTrue(scavenge.getWrites() >= generator.getLiveCells() - hierarchy.getPhase("evacuateRoots").getWrites());
+        assertTrue(scavenge.getMisses(0) >= scavenge.getMisses(1));
+        assertTrue(scavenge.getMisses(1) >= scavenge.getMisses(2));
+        assertTrue(scavenge.getCycles() >= 4 * scavenge.getAccesses());
+    }
+
+    /**
+     * A walk of generated lists misses the first level less often once they
+     * have been copied in a depth-first order.
+     */
+    @Test
+    public void listWalkAfterEveryCopyOrder() {
+        WorkloadSpec spec = new WorkloadSpec(WorkloadSpec.Shape.LISTS);
+        HeapGenerator generator = new HeapGenerator(spec);
+        String[] generatedHeap = generator.generateHeap(HEAP_SIZE);
+        int[] generatedStack = generator.generateStack();
+
+        long[] misses = new long[CopyOrder.values().length];
+        for (CopyOrder order : CopyOrder.values()) {
+            String[] heap = generatedHeap.clone();
+            int[] stack = generatedStack.clone();
+            CopyingGarbageCollector garbageCollector = new CopyingGarbageCollector(heap, stack);
+            garbageCollector.setCopyOrder(order);
+            garbageCollector.evacuateRoots();
+            garbageCollector.scavenge();
+            garbageCollector.clearOldMemory();
+            garbageCollector.flip();
+
+            CacheHierarchy hierarchy = CacheHierarchy.typical(LINE_BYTES);
+            hierarchy.setPhase("walk");
+            int nodes = HeapTraversal.traverse(new StringHeapView(heap), stack, hierarchy);
+            assertTrue(nodes > 0);
+            System.out.println(order + " : " + hierarchy.getPhase("walk"));
+            misses[order.ordinal()] = hierarchy.getPhase("walk").getMisses(0);
+        }
+        assertTrue(misses[CopyOrder.APPROXIMATELY_DEPTH_FIRST.ordinal()] < misses[CopyOrder.BREADTH_FIRST.ordinal()] / 2);
+        assertEquals(misses[CopyOrder.APPROXIMATELY_DEPTH_FIRST.ordinal()], misses[CopyOrder.HIERARCHICAL.ordinal()]);
+    }
+}
@@ -0,0 +1,94 @@
+import cheneys.ConcurrentCopyingGarbageCollector;
+import cheneys.IntCopyingGarbageCollector;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the concurrent collector
+ * behaviour, the test thread is the mutator.
+ */
+public class ConcurrentCopyingGCTest {
+
+    private static final int LIST_LENGTH = 20000;
+    private static final int LIST = 0;
+    private static final int TEMPORARY = 1;
+    private static final int CURSOR = 2;
+    private static final int VALUE = 3;
+    private static final int WEAK = 4;
+
+    /**
+     * A long lived list survives the cycles started by short lived allocations,
+     * while the mutator rewrites its values.
+     */
+    @Test
+    public void listSurvivesConcurrentCycles() {
+        int[] stack = new int[5];
+        Arrays.fill(stack, -1);
+        ConcurrentCopyingGarbageCollector garbageCollector = new ConcurrentCopyingGarbageCollector(400000, stack);
+
+        garbageCollector.allocateNull(LIST);                                //Build list [LIST_LENGTH - 1 .. 0]
+        for (int i = 0; i < LIST_LENGTH; i++) {
+            garbageCollector.allocateInteger(VALUE, i);
+            garbageCollector.allocateListConstructor(LIST, VALUE, LIST);
+        }
+        for (int i = 0; i < 1000000; i++) {                                 //Short lived nodes
+            garbageCollector.allocateInteger(TEMPORARY, i);
+            garbageCollector.allocateListConstructor(TEMPORARY, TEMPORARY, TEMPORARY);
+            if (i % 100000 == 0) {                                          //Rewrite the values of the list
+                garbageCollector.copySlot(CURSOR, LIST);
+                for (int j = LIST_LENGTH - 1; j >= 0; j--) {
+                    garbageCollector.allocateInteger(VALUE, j);
+                    garbageCollector.storePointer(CURSOR, 1, VALUE);
+                    garbageCollector.loadPointer(CURSOR, CURSOR, 2);
+                }
+            }
+        }
+        garbageCollector.collect();
+        garbageCollector.printStatistics();
+
+        assertTrue(garbageCollector.cycles > 1);
+        assertList(garbageCollector);
+        garbageCollector.shutdown();
+    }
+
+    /**
+     * A weak pointer to a node that is no longer on the stack is set to NULL,
+     * the one to a live node follows the copy.
+     */
+    @Test
+    public void weakPointersAfterCycle() {
+        int[] stack = new int[5];
+        Arrays.fill(stack, -1);
+        ConcurrentCopyingGarbageCollector garbageCollector = new ConcurrentCopyingGarbageCollector(1000, stack);
+
+        garbageCollector.allocateInteger(VALUE, 42);
+        garbageCollector.allocateWeak(WEAK, VALUE);
+        garbageCollector.allocateInteger(TEMPORARY, 7);
+        garbageCollector.allocateWeak(CURSOR, TEMPORARY);
+        garbageCollector.clearSlot(TEMPORARY);
+        garbageCollector.collect();
+
+        assertEquals(IntCopyingGarbageCollector.NODE_WEAK, garbageCollector.readValue(WEAK, 0));
+        assertEquals(stack[VALUE], garbageCollector.readValue(WEAK, 1));
+        assertEquals(42, garbageCollector.readValue(VALUE, 1));
+        assertEquals(IntCopyingGarbageCollector.NULL_POINTER, garbageCollector.readValue(CURSOR, 1));
+        assertEquals(3, garbageCollector.numberOfObjectsCopied);
+        garbageCollector.shutdown();
+    }
+
+    private static void assertList(ConcurrentCopyingGarbageCollector garbageCollector) {
+        garbageCollector.copySlot(CURSOR, LIST);
+        for (int i = LIST_LENGTH - 1; i >= 0; i--) {
+            assertEquals(IntCopyingGarbageCollector.NODE_CONS, garbageCollector.readValue(CURSOR, 0));
+            garbageCollector.loadPointer(VALUE, CURSOR, 1);
+            assertEquals(IntCopyingGarbageCollector.NODE_INT, garbageCollector.readValue(VALUE, 0));
+            assertEquals(i, garbageCollector.readValue(VALUE, 1));
+            garbageCollector.loadPointer(CURSOR, CURSOR, 2);
+        }
+        assertEquals(IntCopyingGarbageCollector.NODE_NULL, garbageCollector.readValue(CURSOR, 0));
+    }
+}
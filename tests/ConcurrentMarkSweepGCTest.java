@@ -0,0 +1,154 @@
+import cheneys.ConcurrentMarkSweepGarbageCollector;
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.MarkSweepGarbageCollector;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the concurrent mark-sweep collector
+ * behaviour, the test thread is the mutator.
+ */
+public class ConcurrentMarkSweepGCTest {
+
+    private static final int LIST_LENGTH = 20000;
+    private static final int LIST = 0;
+    private static final int TEMPORARY = 1;
+    private static final int CURSOR = 2;
+    private static final int VALUE = 3;
+    private static final int WEAK = 4;
+    private static final int PREVIOUS = 5;
+    private static final int NEXT = 6;
+    private static final int END = 7;
+
+    /**
+     * A cycle keeps the nodes of the report heap in place, the dead ones become
+     * free runs when the heap is swept and the allocations bump into them.
+     */
+    @Test
+    public void reportHeapIsMarkedInPlace() {
+        String[] heap = new HeapBuilder().buildHeapDescribedInReport(40);
+        String[] heapBefore = heap.clone();
+        int[] stack = new int[]{6, 29, 19, 11, 32};
+        ConcurrentMarkSweepGarbageCollector garbageCollector = new ConcurrentMarkSweepGarbageCollector(heap, stack);
+
+        garbageCollector.collect();
+        assertEquals(1, garbageCollector.cycles);
+        assertEquals(30, garbageCollector.liveCells);
+        assertEquals(CopyingGarbageCollector.NODE_WEAK, heap[0]);           //Not swept yet
+        garbageCollector.finishSweep();
+        System.out.println("Heap after sweep : " + Arrays.toString(heap));
+
+        assertArrayEquals(new int[]{6, 29, 19, 11, 32}, stack);
+        assertEquals(MarkSweepGarbageCollector.TAG_FREE, heap[0]);          //Unreachable WEAK
+        assertEquals(MarkSweepGarbageCollector.TAG_FREE, heap[23]);         //DOUBLE, only weakly reachable
+        assertEquals(CopyingGarbageCollector.NODE_NULL, heap[12]);         //Its weak pointer
+        assertEquals(MarkSweepGarbageCollector.TAG_FREE, heap[34]);         //Unreachable NULL and the free cells after it
+        assertEquals("6", heap[35]);
+        for (int i = 2; i < 34; i++) {
+            if (i != 12 && i != 23 && i != 24) {
+                assertEquals(heapBefore[i], heap[i]);
+            }
+        }
+
+        garbageCollector.allocateInteger(0, 1);
+        assertEquals(0, stack[0]);                                          //First run
+        garbageCollector.allocateListConstructor(0, 0, 1);
+        assertEquals(34, stack[0]);                                         //The run at 23 is too small
+        assertEquals("0", heap[35]);
+        garbageCollector.shutdown();
+    }
+
+    /**
+     * A long lived list survives the cycles started by short lived allocations,
+     * while the mutator reverses it in place. The pointers that the reversal
+     * overwrites are only kept by the barrier.
+     */
+    @Test
+    public void listSurvivesConcurrentReversals() {
+        int[] stack = new int[8];
+        Arrays.fill(stack, -1);
+        ConcurrentMarkSweepGarbageCollector garbageCollector = new ConcurrentMarkSweepGarbageCollector(
+                new String[400000], stack);
+
+        garbageCollector.allocateNull(END);                                 //Build list [LIST_LENGTH - 1 .. 0]
+        garbageCollector.copySlot(LIST, END);
+        for (int i = 0; i < LIST_LENGTH; i++) {
+            garbageCollector.allocateInteger(VALUE, i);
+            garbageCollector.allocateListConstructor(LIST, VALUE, LIST);
+        }
+        int reversals = 0;
+        for (int i = 0; i < 1000000; i++) {                                 //Short lived nodes
+            garbageCollector.allocateInteger(TEMPORARY, i);
+            garbageCollector.allocateListConstructor(TEMPORARY, TEMPORARY, TEMPORARY);
+            if (i % 50000 == 0) {
+                reverse(garbageCollector);
+                reversals++;
+            }
+        }
+        garbageCollector.collect();
+        garbageCollector.printStatistics();
+
+        assertTrue(garbageCollector.cycles > 1);
+        assertTrue(garbageCollector.liveCells >= LIST_LENGTH * 5 + 1);
+        garbageCollector.copySlot(CURSOR, LIST);
+        for (int i = 0; i < LIST_LENGTH; i++) {
+            int value = reversals % 2 == 0 ? LIST_LENGTH - 1 - i : i;
+            assertEquals(CopyingGarbageCollector.NODE_CONS, garbageCollector.readValue(CURSOR, 0));
+            garbageCollector.loadPointer(VALUE, CURSOR, 1);
+            assertEquals(CopyingGarbageCollector.NODE_INT, garbageCollector.readValue(VALUE, 0));
+            assertEquals(String.valueOf(value), garbageCollector.readValue(VALUE, 1));
+            garbageCollector.loadPointer(CURSOR, CURSOR, 2);
+        }
+        assertEquals(CopyingGarbageCollector.NODE_NULL, garbageCollector.readValue(CURSOR, 0));
+        garbageCollector.shutdown();
+    }
+
+    /**
+     * A weak pointer to a node that is no longer on the stack is set to NULL,
+     * the one to a live node stays.
+     */
+    @Test
+    public void weakPointersAfterCycle() {
+        int[] stack = new int[5];
+        Arrays.fill(stack, -1);
+        ConcurrentMarkSweepGarbageCollector garbageCollector = new ConcurrentMarkSweepGarbageCollector(
+                new String[1000], stack);
+
+        garbageCollector.allocateInteger(VALUE, 42);
+        garbageCollector.allocateWeak(WEAK, VALUE);
+        garbageCollector.allocateInteger(TEMPORARY, 7);
+        garbageCollector.allocateWeak(CURSOR, TEMPORARY);
+        garbageCollector.clearSlot(TEMPORARY);
+        garbageCollector.collect();
+
+        assertEquals(CopyingGarbageCollector.NODE_WEAK, garbageCollector.readValue(WEAK, 0));
+        assertEquals(String.valueOf(stack[VALUE]), garbageCollector.readValue(WEAK, 1));
+        assertEquals("42", garbageCollector.readValue(VALUE, 1));
+        assertEquals(CopyingGarbageCollector.NODE_NULL, garbageCollector.readValue(CURSOR, 1));
+        assertEquals(6, garbageCollector.liveCells);
+        garbageCollector.shutdown();
+    }
+
+    /**
+     * Reverse the list in place, the next node is only in the stack once the
+     * pointer to it is overwritten.
+     */
+    private static void reverse(ConcurrentMarkSweepGarbageCollector garbageCollector) {
+        garbageCollector.copySlot(PREVIOUS, END);
+        garbageCollector.copySlot(CURSOR, LIST);
+        while (garbageCollector.readValue(CURSOR, 0).equals(CopyingGarbageCollector.NODE_CONS)) {
+            garbageCollector.loadPointer(NEXT, CURSOR, 2);
+            garbageCollector.storePointer(CURSOR, 2, PREVIOUS);
+            garbageCollector.copySlot(PREVIOUS, CURSOR);
+            garbageCollector.copySlot(CURSOR, NEXT);
+        }
+        garbageCollector.copySlot(LIST, PREVIOUS);
+        garbageCollector.clearSlot(NEXT);
+    }
+}
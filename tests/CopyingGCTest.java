@@ -1,14 +1,23 @@
+import cheneys.CopyOrder;
 import cheneys.CopyingGarbageCollector;
 import cheneys.HeapBuilder;
+import cheneys.HeapGenerator;
+import cheneys.WorkloadSpec;
+import monitoring.GcEvent;
 import org.junit.Test;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -17,7 +26,7 @@ import static org.junit.Assert.fail;
  */
 public class CopyingGCTest {
     private static final int LIMIT = 60;
-    private static final HeapBuilder heapBuilder = new HeapBuilder();
+    private final HeapBuilder heapBuilder = new HeapBuilder();          //One builder per test, it keeps the node positions
 
     private int[] stack;                                //Stack with roots
     private int nextStack;                              //Points to the next free cell in stack
@@ -212,6 +221,96 @@ public class CopyingGCTest {
         System.out.println("\nNumber of objects copied to new Space : " + copiedObjects);
     }
 
+    /**
+     * The lists of a generated heap are copied in every order, twice, with
+     * their values. The depth-first orders copy a CONS node next to the nodes
+     * it points to, so the pointers are shorter and cross fewer cache lines.
+     */
+    @Test
+    public void copyOrdersOfGeneratedLists() {
+        WorkloadSpec spec = new WorkloadSpec(WorkloadSpec.Shape.LISTS);
+        spec.structureCells = 1024;
+        spec.liveFraction = 0.5;
+        HeapGenerator generator = new HeapGenerator(spec);
+        String[] generatedHeap = generator.generateHeap(400000);
+        int[] generatedStack = generator.generateStack();
+        List<String> expected = listValues(generatedHeap, generatedStack);
+
+        Map<CopyOrder, GcEvent> events = new EnumMap<>(CopyOrder.class);
+        for (CopyOrder order : CopyOrder.values()) {
+            heap = generatedHeap.clone();
+            stack = generatedStack.clone();
+            garbageCollector = new CopyingGarbageCollector(heap, stack);
+            garbageCollector.setCopyOrder(order);
+            garbageCollector.addListener(event -> events.put(order, event));
+            for (int i = 0; i < 2; i++) {
+                garbageCollector.evacuateRoots();
+                garbageCollector.scavenge();
+                int rescanned = garbageCollector.numberOfObjectsRescanned;
+                assertEquals(order == CopyOrder.APPROXIMATELY_DEPTH_FIRST, rescanned > 0);
+                garbageCollector.clearOldMemory();
+                garbageCollector.flip();
+                assertEquals(generator.getLiveCells(), events.get(order).cellsCopied);
+                assertEquals(order.toString(), expected, listValues(heap, stack));
+            }
+            System.out.println(order + " : " + events.get(order));
+        }
+        GcEvent breadthFirst = events.get(CopyOrder.BREADTH_FIRST);
+        for (CopyOrder order : new CopyOrder[]{CopyOrder.APPROXIMATELY_DEPTH_FIRST, CopyOrder.HIERARCHICAL}) {
+            assertTrue(events.get(order).getAveragePointerDistance() < breadthFirst.getAveragePointerDistance());
+            assertTrue(events.get(order).getLineCrossingRatio() < breadthFirst.getLineCrossingRatio() / 2);
+        }
+    }
+
+    /**
+     * The values of the lists of the stack, a list is ended by NULL.
+     */
+    private static List<String> listValues(String[] heap, int[] stack) {
+        List<String> values = new ArrayList<>();
+        for (int root : stack) {
+            int node = root;
+            while (heap[node].equals(CopyingGarbageCollector.NODE_CONS)) {
+                int value = Integer.valueOf(heap[node + 1]);
+                values.add(heap[value] + " " + heap[value + 1]);
+                node = Integer.valueOf(heap[node + 2]);
+            }
+            values.add(heap[node]);
+        }
+        return values;
+    }
+
+    /**
+     * Two roots to the same CONS node, and two CONS nodes that share a NULL
+     * node and an INT node. The shared nodes are copied once, in two
+     * collections, and the pointers and roots follow them.
+     */
+    @Test
+    public void sharedRootsAndNullNodesAreCopiedOnce() {
+        heap = new String[40];
+        String[] nodes = {"CONS", "3", "4", "NULL", "INT", "10", "CONS", "3", "4"};
+        System.arraycopy(nodes, 0, heap, 0, nodes.length);
+        stack = new int[]{0, 6, 0};
+        garbageCollector = new CopyingGarbageCollector(heap, stack);
+
+        for (int collection = 0; collection < 2; collection++) {
+            garbageCollector.evacuateRoots();
+            garbageCollector.scavenge();
+            assertEquals(4, garbageCollector.numberOfObjectsCopied);
+            garbageCollector.clearOldMemory();
+            garbageCollector.flip();
+
+            assertEquals(stack[0], stack[2]);
+            assertTrue(stack[0] != stack[1]);
+            assertEquals("CONS", heap[stack[0]]);
+            assertEquals("CONS", heap[stack[1]]);
+            assertEquals(heap[stack[0] + 1], heap[stack[1] + 1]);
+            assertEquals(heap[stack[0] + 2], heap[stack[1] + 2]);
+            assertEquals("NULL", heap[Integer.valueOf(heap[stack[0] + 1])]);
+            assertEquals("INT", heap[Integer.valueOf(heap[stack[0] + 2])]);
+            assertEquals("10", heap[Integer.valueOf(heap[stack[0] + 2]) + 1]);
+        }
+    }
+
     /**
      * Performs mutation
      */
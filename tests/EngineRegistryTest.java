@@ -0,0 +1,86 @@
+import cheneys.HeapBuilder;
+import engine.Collector;
+import engine.EngineRegistry;
+import engine.StringHeapView;
+import monitoring.GcEvent;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class is used to examine that every engine of the registry keeps the
+ * graph reachable from the roots, whatever its heap representation.
+ */
+public class EngineRegistryTest {
+
+    /**
+     * The report heap is collected twice by every engine, the graph seen from
+     * the roots through the heap view is the one of the heap before.
+     */
+    @Test
+    public void everyEngineKeepsTheReportGraph() {
+        String[] heap = new HeapBuilder().buildHeapDescribedInReport(200);
+        int[] stack = new int[]{6, 29, 19, 11, 32, -1};
+        checkEngines(heap, stack);
+        assertEquals(-1, stack[5]);                             //The description is not modified
+        assertEquals(6, stack[0]);
+    }
+
+    /**
+     * Nodes larger than the Bartlett pages, and pointers shared between
+     * them, added after the nodes of the report heap.
+     */
+    @Test
+    public void everyEngineKeepsLargeNodes() {
+        HeapBuilder builder = new HeapBuilder();
+        String[] heap = builder.buildHeapDescribedInReport(200);
+        builder.setNext(35);
+        int value = builder.addInteger(heap, 1);
+        builder.addInteger(heap, 2);                            //Garbage
+        int list = builder.addListConstructor(heap, value, value);
+        int[] pointers = new int[20];
+        for (int i = 0; i < pointers.length; i++) {
+            pointers[i] = i % 2 == 0 ? value : list;
+        }
+        int constructor = builder.addDataConstructor(heap, "large", pointers.length, pointers);
+        int variable = builder.addVariable(heap, "v");
+        int lambda = builder.addLambda(heap, "f", 3, new int[]{constructor, variable, constructor});
+        builder.addWeak(heap, lambda);
+        checkEngines(heap, new int[]{lambda, 32, list});
+    }
+
+    @Test
+    public void unknownEngine() {
+        assertTrue(EngineRegistry.names().contains("cheney"));
+        try {
+            EngineRegistry.create("baker", new String[4], new int[0]);
+            fail("No engine baker");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Unknown engine baker"));
+        }
+    }
+
+    private static void checkEngines(String[] heap, int[] stack) {
+        List<String> expected = HeapGraphs.graph(new StringHeapView(heap), stack);
+        System.out.println("Graph : " + expected);
+        for (String name : EngineRegistry.names()) {
+            Collector collector = EngineRegistry.create(name, heap, stack);
+            try {
+                assertEquals(name, collector.getName());
+                for (int i = 1; i <= 2; i++) {
+                    GcEvent event = collector.collect();
+                    assertNotNull(event);
+                    System.out.println(name + " : " + event);
+                    assertEquals(name, expected, HeapGraphs.graph(collector.getHeap(), collector.getRoots()));
+                }
+            } finally {
+                collector.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import bartlett.BartlettHeapBuilder;
+import bartlett.MostlyCopyingGarbageCollector;
+import bartlett.Page;
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import monitoring.GcEvent;
+import monitoring.PauseHistogram;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the events that the collectors
+ * give to their listeners, and the pause histogram.
+ */
+public class GcListenerTest {
+
+    /**
+     * The heap of the report collected twice by the Cheney collector, one
+     * event per flip with the weak pointers that were updated or cleared.
+     */
+    @Test
+    public void cheneyEmitsOneEventPerCollection() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        String[] heap = heapBuilder.buildHeapDescribedInReport(80);
+        int[] stack = new int[]{6, 29, 19, 11, 32, -1, -1, -1, -1};
+        CopyingGarbageCollector garbageCollector = new CopyingGarbageCollector(heap, stack);
+        List<GcEvent> events = new ArrayList<>();
+        garbageCollector.addListener(events::add);
+
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        int copied = garbageCollector.numberOfObjectsCopied;
+        int nextTo = garbageCollector.getNextTo();
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+
+        assertEquals(1, events.size());
+        GcEvent event = events.get(0);
+        System.out.println(event);
+        assertEquals(1, event.cycle);
+        assertEquals(copied, event.objectsCopied);
+        assertEquals(nextTo - heap.length / 2, event.cellsCopied);
+        assertEquals(1, event.weakPointersUpdated);
+        assertEquals(1, event.weakPointersCleared);
+        assertTrue(event.getSurvivalRatio() > 0 && event.getSurvivalRatio() < 1);
+        assertTrue(event.getPauseNanos() > 0);
+
+        garbageCollector.evacuateRoots();                   //Nothing dies the second time
+        garbageCollector.scavenge();
+        garbageCollector.flip();
+        assertEquals(2, events.size());
+        System.out.println(events.get(1));
+        assertEquals(2, events.get(1).cycle);
+        assertEquals(copied, events.get(1).objectsCopied);
+        assertEquals(1.0, events.get(1).getSurvivalRatio(), 0);
+    }
+
+    /**
+     * The heap of the report collected by the mostly copying collector,
+     * the event counts the promoted pages.
+     */
+    @Test
+    public void bartlettEmitsEventWhenOldMemoryIsCleared() {
+        BartlettHeapBuilder bartlettHeapBuilder = new BartlettHeapBuilder(6);
+        Page[] heap = bartlettHeapBuilder.buildHeapDescribedInReport(84);
+        int[] stack = new int[]{6, 36, 24, 12, 39, -1, -1};
+        MostlyCopyingGarbageCollector garbageCollector =
+                new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+        PauseHistogram histogram = new PauseHistogram();
+        List<GcEvent> events = new ArrayList<>();
+        garbageCollector.addListener(events::add);
+        garbageCollector.addListener(histogram);
+
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        garbageCollector.copyToNewSpace();
+        assertTrue(events.isEmpty());
+        garbageCollector.clearOldMemory();
+
+        assertEquals(1, events.size());
+        GcEvent event = events.get(0);
+        System.out.println(event);
+        assertTrue(event.pagesPromoted > 0);
+        assertTrue(event.cellsCopied <= event.pagesPromoted * garbageCollector.getPageSize());
+        assertTrue(event.getSurvivalRatio() > 0 && event.getSurvivalRatio() <= 1);
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(event.getPauseNanos(), histogram.getMaxNanos());
+    }
+
+    /**
+     * Percentiles of the histogram are within 1% of the recorded values.
+     */
+    @Test
+    public void histogramPercentiles() {
+        PauseHistogram histogram = new PauseHistogram();
+        for (long nanos = 1; nanos <= 100000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        histogram.printPercentiles();
+
+        assertEquals(100000, histogram.getTotalCount());
+        assertEquals(1000, histogram.getMinNanos());
+        assertEquals(100000000, histogram.getMaxNanos());
+        assertEquals(50000000, histogram.getValueAtPercentile(50), 50000000 * 0.01);
+        assertEquals(99000000, histogram.getValueAtPercentile(99), 99000000 * 0.01);
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+        assertEquals(50000500, histogram.getMeanNanos(), 1);
+    }
+}
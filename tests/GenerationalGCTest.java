@@ -0,0 +1,166 @@
+import cheneys.GenerationalGarbageCollector;
+import cheneys.IntCopyingGarbageCollector;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the generational collector
+ * behaviour.
+ */
+public class GenerationalGCTest {
+
+    private static final int LIST_LENGTH = 20000;
+
+    /**
+     * A long lived list survives many minor collections while short lived
+     * nodes are allocated, it is promoted and stays intact.
+     */
+    @Test
+    public void longLivedListIsPromoted() {
+        int[] stack = new int[4];
+        Arrays.fill(stack, -1);
+        GenerationalGarbageCollector garbageCollector = new GenerationalGarbageCollector(400000, 50000, 2, stack);
+
+        stack[0] = garbageCollector.allocateNull();                         //Build list [LIST_LENGTH - 1 .. 0]
+        for (int i = 0; i < LIST_LENGTH; i++) {
+            int value = garbageCollector.allocateInteger(i);
+            stack[0] = garbageCollector.allocateListConstructor(value, stack[0]);
+        }
+        for (int i = 0; i < 1000000; i++) {                                 //Short lived nodes
+            stack[1] = garbageCollector.allocateInteger(i);
+            stack[1] = garbageCollector.allocateListConstructor(stack[1], stack[1]);
+        }
+        garbageCollector.printStatistics();
+
+        assertTrue(garbageCollector.minorCollections > 0);
+        assertTrue(garbageCollector.isOld(stack[0]));
+        assertList(garbageCollector, stack[0]);
+
+        garbageCollector.fullCollection();
+        garbageCollector.printStatistics();
+        assertList(garbageCollector, stack[0]);
+    }
+
+    /**
+     * A young node that is only referenced by an old node survives a minor
+     * collection through the remembered set, a weak pointer to a dead young
+     * node is set to NULL.
+     */
+    @Test
+    public void rememberedSetKeepsYoungNodes() {
+        int[] stack = new int[]{-1, -1, -1};
+        GenerationalGarbageCollector garbageCollector = new GenerationalGarbageCollector(1000, 100, 1, stack);
+
+        stack[0] = garbageCollector.allocateIndirection(garbageCollector.allocateNull());
+        stack[1] = garbageCollector.allocateWeak(garbageCollector.allocateNull());
+        garbageCollector.minorCollection();                                 //Promote IND and WEAK
+        assertTrue(garbageCollector.isOld(stack[0]));
+        assertTrue(garbageCollector.isOld(stack[1]));
+
+        int young = garbageCollector.allocateInteger(42);
+        garbageCollector.writePointer(stack[0], 1, young);                  //Old to young pointer
+        garbageCollector.writePointer(stack[1], 1, garbageCollector.allocateInteger(7));
+        assertEquals(2, garbageCollector.getRememberedSetSize());
+
+        int copiedBefore = garbageCollector.numberOfObjectsCopied;
+        garbageCollector.minorCollection();
+        int[] heap = garbageCollector.getHeap();
+        int node = garbageCollector.readPointer(stack[0], 1);
+        assertEquals(IntCopyingGarbageCollector.NODE_INT, heap[node]);
+        assertEquals(42, heap[node + 1]);
+        assertEquals(1, garbageCollector.numberOfObjectsCopied);              //Only the surviving young node
+        assertEquals(IntCopyingGarbageCollector.NULL_POINTER, garbageCollector.readPointer(stack[1], 1));
+        assertEquals(0, garbageCollector.getRememberedSetSize());
+        System.out.println("Copied objects : " + copiedBefore + " -> " + garbageCollector.numberOfObjectsCopied);
+    }
+
+    /**
+     * Same as above with a card table instead of the remembered set, only
+     * the dirty card is scanned and it is clean after the collection.
+     */
+    @Test
+    public void cardTableKeepsYoungNodes() {
+        int[] stack = new int[]{-1, -1, -1};
+        GenerationalGarbageCollector garbageCollector = new GenerationalGarbageCollector(1000, 400, 2, 16, stack);
+
+        stack[0] = garbageCollector.allocateIndirection(garbageCollector.allocateNull());
+        stack[1] = garbageCollector.allocateWeak(garbageCollector.allocateNull());
+        for (int i = 0; i < 40; i++) {                                      //Fill a few more cards
+            stack[2] = garbageCollector.allocateListConstructor(garbageCollector.allocateInteger(i), stack[2] < 0 ? stack[1] : stack[2]);
+        }
+        garbageCollector.minorCollection();                                 //Promote everything
+        garbageCollector.minorCollection();
+        assertTrue(garbageCollector.isOld(stack[0]));
+        assertTrue(garbageCollector.isOld(stack[1]));
+        assertTrue(garbageCollector.getOldTop() > 3 * 16);
+
+        int young = garbageCollector.allocateInteger(42);
+        garbageCollector.writePointer(stack[0], 1, young);                  //Old to young pointer
+        garbageCollector.writePointer(stack[1], 1, garbageCollector.allocateInteger(7));
+        assertEquals(1, garbageCollector.getRememberedSetSize());           //Both cells in the same card
+
+        garbageCollector.minorCollection();
+        int[] heap = garbageCollector.getHeap();
+        int node = garbageCollector.readPointer(stack[0], 1);
+        assertEquals(IntCopyingGarbageCollector.NODE_INT, heap[node]);
+        assertEquals(42, heap[node + 1]);
+        assertEquals(1, garbageCollector.numberOfObjectsCopied);
+        assertEquals(IntCopyingGarbageCollector.NULL_POINTER, garbageCollector.readPointer(stack[1], 1));
+        assertEquals(1, garbageCollector.getCardTable().dirtyCards);
+        assertTrue(garbageCollector.getCardTable().cardsScanned > 3);
+        assertEquals(1, garbageCollector.getRememberedSetSize());           //Still points to the young node
+
+        garbageCollector.minorCollection();                                 //Young node is promoted
+        assertTrue(garbageCollector.isOld(garbageCollector.readPointer(stack[0], 1)));
+        assertEquals(42, heap[garbageCollector.readPointer(stack[0], 1) + 1]);
+        assertEquals(0, garbageCollector.getRememberedSetSize());
+        garbageCollector.printStatistics();
+    }
+
+    /**
+     * A minor collection called directly with a full old space collects the
+     * whole heap instead of promoting into the nursery.
+     */
+    @Test
+    public void minorCollectionWithFullOldSpace() {
+        int[] stack = new int[10];
+        Arrays.fill(stack, -1);
+        GenerationalGarbageCollector garbageCollector = new GenerationalGarbageCollector(20, 40, 1, stack);
+        for (int i = 0; i < stack.length; i++) {
+            stack[i] = garbageCollector.allocateInteger(i);
+        }
+        garbageCollector.minorCollection();                                 //Promote the 20 cells
+        assertEquals(20, garbageCollector.getOldTop());
+        assertEquals(0, garbageCollector.fullCollections);
+
+        Arrays.fill(stack, 1, stack.length, -1);                            //Old garbage
+        for (int i = 1; i < 5; i++) {
+            stack[i] = garbageCollector.allocateInteger(10 + i);
+        }
+        garbageCollector.minorCollection();
+        assertEquals(1, garbageCollector.fullCollections);
+        assertTrue(garbageCollector.getOldTop() <= 20);
+        int[] heap = garbageCollector.getHeap();
+        assertEquals(0, heap[stack[0] + 1]);
+        for (int i = 1; i < 5; i++) {
+            assertEquals(IntCopyingGarbageCollector.NODE_INT, heap[stack[i]]);
+            assertEquals(10 + i, heap[stack[i] + 1]);
+        }
+    }
+
+    private void assertList(GenerationalGarbageCollector garbageCollector, int list) {
+        int[] heap = garbageCollector.getHeap();
+        for (int i = LIST_LENGTH - 1; i >= 0; i--) {
+            assertEquals(IntCopyingGarbageCollector.NODE_CONS, heap[list]);
+            int value = heap[list + 1];
+            assertEquals(IntCopyingGarbageCollector.NODE_INT, heap[value]);
+            assertEquals(i, heap[value + 1]);
+            list = heap[list + 2];
+        }
+        assertEquals(IntCopyingGarbageCollector.NODE_NULL, heap[list]);
+    }
+}
@@ -0,0 +1,141 @@
+import cheneys.ArrayCellHeap;
+import cheneys.HeapBuilder;
+import cheneys.HeapGenerator;
+import cheneys.OffHeapCellHeap;
+import cheneys.WorkloadSpec;
+import engine.Collector;
+import engine.EngineRegistry;
+import engine.HeapView;
+import engine.IntHeapView;
+import engine.StringHeapView;
+import monitoring.GcEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class is used to examine the heaps of the HeapGenerator : their live
+ * cells, and the two representations of the same spec.
+ */
+public class HeapGeneratorTest {
+
+    private static final int HEAP_SIZE = 1 << 18;
+    private static final String[] ENGINES = {"cheney", "int-cheney", "mark-compact", "mark-sweep"};
+
+    /**
+     * For every shape, the collectors find the live cells of the structures
+     * that are on the stack, about the live fraction of the filled cells.
+     */
+    @Test
+    public void liveCellsOfEveryShape() {
+        for (WorkloadSpec.Shape shape : WorkloadSpec.Shape.values()) {
+            WorkloadSpec spec = spec(shape);
+            HeapGenerator generator = new HeapGenerator(spec);
+            String[] heap = generator.generateHeap(HEAP_SIZE);
+            int[] stack = generator.generateStack();
+            double live = (double) generator.getLiveCells() / (HEAP_SIZE * spec.fillFraction);
+            System.out.println(shape + " : " + generator.numberOfObjects + " nodes, " + generator.numberOfStructures
+                    + " structures, " + generator.getLiveCells() + " live cells (" + live + ")");
+            assertEquals(spec.liveFraction, live, 0.02);
+            for (String name : ENGINES) {
+                Collector collector = EngineRegistry.create(name, heap, stack);
+                GcEvent event = collector.collect();
+                assertEquals(shape + " " + name, generator.getLiveCells(), event.cellsCopied);
+                collector.shutdown();
+            }
+        }
+    }
+
+    /**
+     * The int heap of a spec has the nodes of its String heap, and a second
+     * generation gives the same heap.
+     */
+    @Test
+    public void intHeapHasTheNodesOfTheStringHeap() {
+        WorkloadSpec spec = spec(WorkloadSpec.Shape.DAG);
+        spec.segmentCells = 1 << 14;                            //Several segments
+        HeapGenerator generator = new HeapGenerator(spec);
+        String[] heap = generator.generateHeap(HEAP_SIZE);
+        int[] nodes = generator.getNodePositions();
+        HeapGenerator intGenerator = new HeapGenerator(spec);
+        int[] cells = intGenerator.generateIntHeap(HEAP_SIZE);
+        assertTrue(generator.segments > 1);
+        assertArrayEquals(nodes, intGenerator.getNodePositions());
+        assertArrayEquals(generator.generateStack(), intGenerator.generateStack());
+        assertTrue(Arrays.equals(heap, new HeapGenerator(spec).generateHeap(HEAP_SIZE)));
+
+        HeapView strings = new StringHeapView(heap);
+        HeapView ints = new IntHeapView(new ArrayCellHeap(cells), intGenerator.getSymbols());
+        int position = 0;
+        for (int node : nodes) {
+            assertEquals(position, node);                       //No gap between the nodes
+            assertEquals(strings.label(node), ints.label(node));
+            assertEquals(strings.pointerCount(node), ints.pointerCount(node));
+            for (int i = 0; i < strings.pointerCount(node); i++) {
+                assertEquals(strings.pointer(node, i), ints.pointer(node, i));
+            }
+            position += strings.nodeSize(node);
+        }
+        assertEquals((int) (HEAP_SIZE * spec.fillFraction), position);
+        assertEquals(null, heap[position]);
+    }
+
+    /**
+     * The off-heap heap generated in place has the cells and the nodes of the
+     * int heap of the same spec.
+     */
+    @Test
+    public void offHeapHasTheCellsOfTheIntHeap() {
+        WorkloadSpec spec = spec(WorkloadSpec.Shape.LISTS);
+        spec.segmentCells = 1 << 14;
+        HeapGenerator generator = new HeapGenerator(spec);
+        int[] cells = generator.generateIntHeap(HEAP_SIZE);
+        HeapGenerator offHeapGenerator = new HeapGenerator(spec);
+        OffHeapCellHeap heap = offHeapGenerator.generateOffHeap(HEAP_SIZE);
+        assertEquals(HEAP_SIZE, heap.length());
+        assertArrayEquals(cells, heap.toArray());
+        assertArrayEquals(generator.getNodePositions(), offHeapGenerator.getNodePositions());
+        assertArrayEquals(generator.generateStack(), offHeapGenerator.generateStack());
+    }
+
+    /**
+     * The roots of an int array of positions are the ones of the ArrayList.
+     */
+    @Test
+    public void validStackOfPrimitivePositions() {
+        HeapBuilder builder = new HeapBuilder();
+        builder.generateValidHeap(10000);
+        ArrayList<Integer> positions = builder.getNodesPositions();
+        int[] array = new int[positions.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = positions.get(i);
+        }
+        assertArrayEquals(builder.generateValidStack(positions, 50), builder.generateValidStack(array, 50));
+    }
+
+    @Test
+    public void invalidSpec() {
+        WorkloadSpec spec = new WorkloadSpec();
+        spec.liveFraction = 2;
+        try {
+            new HeapGenerator(spec);
+            fail("Live fraction above 1");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("liveFraction"));
+        }
+    }
+
+    private static WorkloadSpec spec(WorkloadSpec.Shape shape) {
+        WorkloadSpec spec = new WorkloadSpec(shape);
+        spec.structureCells = 512;
+        spec.liveFraction = 0.3;
+        spec.roots = 400;
+        return spec;
+    }
+}
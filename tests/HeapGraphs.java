@@ -0,0 +1,57 @@
+import engine.HeapView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is used by the tests to compare the graphs reachable from the
+ * roots of heaps of any representation.
+ */
+final class HeapGraphs {
+
+    private HeapGraphs() {
+    }
+
+    /**
+     * The nodes reachable from the roots through strong pointers, in depth
+     * first order, as their label and the order of the nodes they point to.
+     * The roots are given by their order too, on the last line. Weak pointers
+     * are not in the graph, a collector may keep their nodes or not.
+     */
+    static List<String> graph(HeapView heap, int[] roots) {
+        Map<Integer, Integer> order = new HashMap<>();
+        List<String> graph = new ArrayList<>();
+        StringBuilder rootOrders = new StringBuilder("roots");
+        for (int root : roots) {
+            rootOrders.append(' ').append(root < 0 ? -1 : visit(heap, root, order, graph));
+        }
+        graph.add(rootOrders.toString());
+        return graph;
+    }
+
+    /**
+     * The description of the node of a root in a graph given by graph.
+     */
+    static String rootNode(List<String> graph, int root) {
+        String[] rootOrders = graph.get(graph.size() - 1).split(" ");
+        return graph.get(Integer.parseInt(rootOrders[root + 1]));
+    }
+
+    private static int visit(HeapView heap, int node, Map<Integer, Integer> order, List<String> graph) {
+        Integer visited = order.get(node);
+        if (visited != null) {
+            return visited;
+        }
+        int index = order.size();
+        order.put(node, index);
+        graph.add(null);
+        StringBuilder description = new StringBuilder(heap.label(node));
+        for (int i = 0; i < heap.pointerCount(node); i++) {
+            description.append(" -> ").append(visit(heap, heap.pointer(node, i), order, graph));
+        }
+        graph.set(index, description.toString());
+        return index;
+    }
+}
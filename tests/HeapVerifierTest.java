@@ -0,0 +1,134 @@
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapGenerator;
+import cheneys.WorkloadSpec;
+import engine.Collector;
+import engine.EngineRegistry;
+import engine.StringHeapView;
+import org.junit.Test;
+import verify.HeapSnapshot;
+import verify.HeapVerifier;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class is used to examine the HeapVerifier : the collections of every
+ * engine keep the graph, and a changed value, pointer or weak pointer is found.
+ */
+public class HeapVerifierTest {
+
+    private static final int HEAP_SIZE = 1 << 18;
+
+    /**
+     * Every engine keeps the reachable graph of generated heaps.
+     */
+    @Test
+    public void everyEngineKeepsTheGraph() {
+        for (WorkloadSpec.Shape shape : new WorkloadSpec.Shape[]{WorkloadSpec.Shape.DAG, WorkloadSpec.Shape.TREES}) {
+            WorkloadSpec spec = new WorkloadSpec(shape);
+            spec.structureCells = 512;
+            spec.liveFraction = 0.3;
+            spec.roots = 400;
+            HeapGenerator generator = new HeapGenerator(spec);
+            String[] heap = generator.generateHeap(HEAP_SIZE);
+            int[] stack = generator.generateStack();
+            for (String name : EngineRegistry.names()) {
+                Collector collector = EngineRegistry.create(name, heap, stack);
+                HeapSnapshot snapshot = HeapSnapshot.take(collector.getHeap(), collector.getRoots());
+                collector.collect();
+                HeapVerifier verifier = HeapVerifier.forEngine(name);
+                List<String> errors = verifier.verify(snapshot, collector.getHeap(), collector.getRoots());
+                System.out.println(shape + " " + name + " : " + verifier.nodesVerified + " nodes in "
+                        + verifier.verifyNanos / 1000 + " us");
+                assertTrue(shape + " " + name + " " + errors, errors.isEmpty());
+                assertEquals(snapshot.size(), verifier.nodesVerified);
+                collector.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void changedValueIsFound() {
+        String[] heap = weakHeap();
+        int[] stack = {0, 9};
+        HeapSnapshot snapshot = HeapSnapshot.take(new StringHeapView(heap), stack);
+        collect(heap, stack);
+        heap[Integer.valueOf(heap[stack[0] + 1]) + 1] = "11";              //Value of the INT of the CONS
+        HeapVerifier verifier = new HeapVerifier(false);
+        List<String> errors = verifier.verify(snapshot, new StringHeapView(heap), stack);
+        assertEquals(1, verifier.errors);
+        assertTrue(errors.get(0), errors.get(0).contains("INT 11"));
+    }
+
+    /**
+     * The labels are compared whole : "Aa" and "BB" have the same hash code.
+     */
+    @Test
+    public void changedValueWithTheSameHashIsFound() {
+        String[] heap = new String[8];
+        String[] nodes = {"IND", "2", "VAR", "Aa"};
+        System.arraycopy(nodes, 0, heap, 0, nodes.length);
+        int[] stack = {0};
+        HeapSnapshot snapshot = HeapSnapshot.take(new StringHeapView(heap), stack);
+        collect(heap, stack);
+        heap[Integer.valueOf(heap[stack[0] + 1]) + 1] = "BB";
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        HeapVerifier verifier = new HeapVerifier(false);
+        List<String> errors = verifier.verify(snapshot, new StringHeapView(heap), stack);
+        assertEquals(1, verifier.errors);
+        assertTrue(errors.get(0), errors.get(0).contains("VAR BB"));
+    }
+
+    @Test
+    public void changedPointerIsFound() {
+        String[] heap = weakHeap();
+        int[] stack = {0, 9};
+        HeapSnapshot snapshot = HeapSnapshot.take(new StringHeapView(heap), stack);
+        collect(heap, stack);
+        heap[stack[0] + 1] = heap[stack[0] + 2];            //Both pointers of the CONS to the same node
+        try {
+            new HeapVerifier(false).check(snapshot, new StringHeapView(heap), stack);
+            fail("Pointer changed");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("are both at"));
+        }
+    }
+
+    /**
+     * The weak pointer to a dead node must be cleared, a conservative
+     * collector may keep the node.
+     */
+    @Test
+    public void keptWeakPointerIsFound() {
+        String[] heap = weakHeap();
+        int[] stack = {0, 9};
+        HeapSnapshot snapshot = HeapSnapshot.take(new StringHeapView(heap), stack);
+        assertEquals(1, new HeapVerifier(false).verify(snapshot, new StringHeapView(heap), stack).size());
+        assertTrue(new HeapVerifier(true).verify(snapshot, new StringHeapView(heap), stack).isEmpty());
+
+        collect(heap, stack);
+        assertTrue(new HeapVerifier(false).verify(snapshot, new StringHeapView(heap), stack).isEmpty());
+    }
+
+    /**
+     * A CONS of an INT and a WEAK node, the target of the WEAK node is dead,
+     * and a second root to a WEAK node whose target is the INT.
+     */
+    private static String[] weakHeap() {
+        String[] heap = new String[40];
+        String[] nodes = {"CONS", "3", "5", "INT", "10", "WEAK", "7", "INT", "20", "WEAK", "3"};
+        System.arraycopy(nodes, 0, heap, 0, nodes.length);
+        return heap;
+    }
+
+    private static void collect(String[] heap, int[] stack) {
+        CopyingGarbageCollector garbageCollector = new CopyingGarbageCollector(heap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+    }
+}
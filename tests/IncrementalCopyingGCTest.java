@@ -0,0 +1,91 @@
+import cheneys.HeapBuilder;
+import cheneys.IncrementalCopyingGarbageCollector;
+import cheneys.IntCopyingGarbageCollector;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the incremental collector
+ * behaviour.
+ */
+public class IncrementalCopyingGCTest {
+
+    private static final int LIST_LENGTH = 20000;
+
+    /**
+     * A cycle done in small steps copies the same objects as the
+     * int engine does in one pause.
+     */
+    @Test
+    public void stepsCopySameObjectsAsIntEngine() {
+        int heapSize = 250000;
+        int roots = (int) (heapSize * 0.1);
+
+        HeapBuilder heapBuilder = new HeapBuilder();
+        int[] heap = heapBuilder.generateValidIntHeap(heapSize);
+        int[] stack = heapBuilder.generateValidStack(heapBuilder.getNodesPositions(), roots);
+
+        IntCopyingGarbageCollector intCollector = new IntCopyingGarbageCollector(heap.clone(), stack.clone());
+        intCollector.evacuateRoots();
+        intCollector.scavenge();
+
+        IncrementalCopyingGarbageCollector garbageCollector = new IncrementalCopyingGarbageCollector(heap, 64, stack);
+        garbageCollector.startCycle();
+        while (garbageCollector.step(64)) {
+        }
+        garbageCollector.printStatistics();
+
+        assertEquals(intCollector.numberOfObjectsCopied, garbageCollector.numberOfObjectsCopied);
+        assertEquals(intCollector.getNextTo(), garbageCollector.getNextTo());
+        assertTrue(garbageCollector.steps > 1);
+    }
+
+    /**
+     * A long lived list survives the cycles started by short lived allocations,
+     * the mutator walks it through the read barrier while cycles run.
+     */
+    @Test
+    public void listSurvivesIncrementalCycles() {
+        int[] stack = new int[]{-1, -1, -1};
+        IncrementalCopyingGarbageCollector garbageCollector = new IncrementalCopyingGarbageCollector(200000, 32, stack);
+
+        stack[0] = garbageCollector.allocateNull();                         //Build list [LIST_LENGTH - 1 .. 0]
+        for (int i = 0; i < LIST_LENGTH; i++) {
+            int value = garbageCollector.allocateInteger(i);
+            stack[0] = garbageCollector.allocateListConstructor(value, stack[0]);
+        }
+        stack[2] = garbageCollector.allocateWeak(garbageCollector.allocateInteger(-1));
+        for (int i = 0; i < 500000; i++) {                                  //Short lived nodes
+            stack[1] = garbageCollector.allocateInteger(i);
+            stack[1] = garbageCollector.allocateListConstructor(stack[1], stack[1]);
+            if (i % 50000 == 0) {
+                assertList(garbageCollector, stack[0]);
+            }
+        }
+        garbageCollector.finishCycle();
+        garbageCollector.printStatistics();
+
+        assertTrue(garbageCollector.cycles > 1);
+        assertTrue(garbageCollector.readBarrierEvacuations > 0);
+        assertFalse(garbageCollector.isCollecting());
+        assertList(garbageCollector, stack[0]);
+        assertEquals(IntCopyingGarbageCollector.NULL_POINTER, garbageCollector.readPointer(stack[2], 1));
+    }
+
+    private static void assertList(IncrementalCopyingGarbageCollector garbageCollector, int list) {
+        int[] heap = garbageCollector.getHeap();
+        for (int i = LIST_LENGTH - 1; i >= 0; i--) {
+            assertEquals(IntCopyingGarbageCollector.NODE_CONS, heap[list]);
+            int value = garbageCollector.readPointer(list, 1);
+            assertEquals(IntCopyingGarbageCollector.NODE_INT, heap[value]);
+            assertEquals(i, heap[value + 1]);
+            list = garbageCollector.readPointer(list, 2);
+        }
+        assertEquals(IntCopyingGarbageCollector.NODE_NULL, heap[list]);
+    }
+}
@@ -0,0 +1,136 @@
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.IntCopyingGarbageCollector;
+import cheneys.OffHeapCellHeap;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class is used to compare the int heap engine
+ * with the String heap copying collector.
+ */
+public class IntCopyingGCTest {
+
+    /**
+     * The heap of the report collected by the int engine, the weak pointer
+     * to the collected double is set to NULL and the one to the variable is updated.
+     */
+    @Test
+    public void intHeapDescribedInReport() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        String[] stringHeap = heapBuilder.buildHeapDescribedInReport(80);
+        int[] heap = heapBuilder.encodeHeap(stringHeap);
+        int[] stack = new int[]{6, 29, 19, 11, 32, -1, -1, -1, -1};
+
+        assertArrayEquals(stringHeap, heapBuilder.decodeHeap(heap));
+
+        IntCopyingGarbageCollector garbageCollector = new IntCopyingGarbageCollector(heap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+        garbageCollector.clearOldMemory();
+        garbageCollector.flip();
+
+        String[] collected = heapBuilder.decodeHeap(heap);
+        System.out.println("STACK -> " + Arrays.toString(stack));
+        System.out.println("HEAP  -> " + Arrays.toString(collected));
+
+        assertEquals(CopyingGarbageCollector.NODE_WEAK, collected[stack[3]]);
+        assertEquals(CopyingGarbageCollector.NODE_NULL, collected[stack[3] + 1]);     //Double was not live
+        assertEquals(CopyingGarbageCollector.NODE_WEAK, collected[stack[4]]);
+        assertEquals(CopyingGarbageCollector.NODE_VAR, collected[Integer.valueOf(collected[stack[4] + 1])]);
+    }
+
+    /**
+     * Both engines collect the same random heap and copy the same objects.
+     */
+    @Test
+    public void intAndStringEnginesCopySameObjects() {
+        int heapSize = 250000;
+        int roots = (int) (heapSize * 0.1);
+
+        HeapBuilder heapBuilder = new HeapBuilder();
+        String[] stringHeap = heapBuilder.generateValidHeap(heapSize);
+        int[] intHeap = heapBuilder.encodeHeap(stringHeap);
+        int[] stack = heapBuilder.generateValidStack(heapBuilder.getNodesPositions(), roots);
+
+        CopyingGarbageCollector stringCollector = new CopyingGarbageCollector(stringHeap, stack.clone());
+        Instant start = Instant.now();
+        stringCollector.evacuateRoots();
+        stringCollector.scavenge();
+        Instant end = Instant.now();
+        System.out.println("String engine collected heap size of :" + heapSize + " in " + Duration.between(start, end));
+
+        IntCopyingGarbageCollector intCollector = new IntCopyingGarbageCollector(intHeap, stack.clone());
+        start = Instant.now();
+        intCollector.evacuateRoots();
+        intCollector.scavenge();
+        end = Instant.now();
+        System.out.println("Int engine collected heap size of :" + heapSize + " in " + Duration.between(start, end));
+
+        assertEquals(stringCollector.numberOfObjectsCopied, intCollector.numberOfObjectsCopied);
+        assertEquals(stringCollector.getNextTo(), intCollector.getNextTo());
+    }
+
+    /**
+     * The int engine collects the same heap kept in an int array
+     * and in off-heap memory to the same result.
+     */
+    @Test
+    public void offHeapCollectionMatchesArrayHeap() {
+        int heapSize = 5000000;
+        int roots = (int) (heapSize * 0.1);
+
+        HeapBuilder heapBuilder = new HeapBuilder();
+        int[] heap = heapBuilder.generateValidIntHeap(heapSize);
+        OffHeapCellHeap offHeap = OffHeapCellHeap.of(heap);
+        int[] stack = heapBuilder.generateValidStack(heapBuilder.getNodesPositions(), roots);
+        int[] offHeapStack = stack.clone();
+
+        IntCopyingGarbageCollector arrayCollector = new IntCopyingGarbageCollector(heap, stack);
+        arrayCollector.evacuateRoots();
+        arrayCollector.scavenge();
+        arrayCollector.clearOldMemory();
+        arrayCollector.flip();
+
+        IntCopyingGarbageCollector offHeapCollector = new IntCopyingGarbageCollector(offHeap, offHeapStack);
+        Instant start = Instant.now();
+        offHeapCollector.evacuateRoots();
+        offHeapCollector.scavenge();
+        Instant end = Instant.now();
+        offHeapCollector.clearOldMemory();
+        offHeapCollector.flip();
+        System.out.println("Off-heap garbage collection in heap size of :" + heapSize + " in " + Duration.between(start, end));
+
+        assertArrayEquals(stack, offHeapStack);
+        assertArrayEquals(heap, offHeap.toArray());
+    }
+
+    /**
+     * Cells copied and filled in bulk read back as the cells of the same
+     * operations on the int array.
+     */
+    @Test
+    public void offHeapBulkCopiesMatchArrayHeap() {
+        int heapSize = 1000000;
+        int[] heap = new HeapBuilder().generateValidIntHeap(heapSize);
+        OffHeapCellHeap offHeap = OffHeapCellHeap.of(heap);
+
+        offHeap.copy(heapSize / 2, 3, 100000);
+        System.arraycopy(heap, heapSize / 2, heap, 3, 100000);
+        offHeap.copy(800000, 150017, 50000);
+        System.arraycopy(heap, 800000, heap, 150017, 50000);
+        offHeap.copy(40, 31, 5);                            //Short copy, cell by cell
+        System.arraycopy(heap, 40, heap, 31, 5);
+        offHeap.fill(200001, 700000, 7);
+        Arrays.fill(heap, 200001, 700000, 7);
+        offHeap.fill(900000, 900005, 0);
+        Arrays.fill(heap, 900000, 900005, 0);
+        assertArrayEquals(heap, offHeap.toArray());
+    }
+}
@@ -0,0 +1,169 @@
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.MarkCompactGarbageCollector;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * This class is used to examine the mark-compact collector
+ * behaviour.
+ */
+public class MarkCompactGCTest {
+
+    /**
+     * The heap of the report fills the whole heap, there is no reserve. The live
+     * nodes slide to the start of the heap in their order, the unreachable weak
+     * node is removed and the weak pointer to the DOUBLE is set to NULL.
+     */
+    @Test
+    public void reportHeapIsCompactedInPlace() {
+        String[] heap = new HeapBuilder().buildHeapDescribedInReport(35);
+        int[] stack = new int[]{6, 29, 19, 11, 32};
+        MarkCompactGarbageCollector garbageCollector = new MarkCompactGarbageCollector(heap, stack);
+        System.out.println("Heap before collection : " + Arrays.toString(heap));
+
+        garbageCollector.collect();
+        System.out.println("Heap after collection  : " + Arrays.toString(heap));
+
+        assertArrayEquals(new Object[]{"INT", "10", "CHAR", "c", "TYPE", "0", "aType", "IND", "11", "WEAK", "NULL",
+                "LAMBDA", "func", "3", "0", "2", "4", "CONSTR", "const", "1", "7", "BOOL", "false", "VAR", "x",
+                "CONS", "21", "23", "WEAK", "23"}, Arrays.copyOf(heap, 30));
+        for (int i = 30; i < heap.length; i++) {
+            assertNull(heap[i]);
+        }
+        assertArrayEquals(new int[]{4, 25, 17, 9, 28}, stack);
+        assertEquals(30, garbageCollector.getTop());
+        assertEquals(11, garbageCollector.numberOfObjectsMarked);
+        assertEquals(11, garbageCollector.numberOfObjectsMoved);
+    }
+
+    /**
+     * The graph reachable from the roots of a random heap is the same after
+     * the collection, the mark-compact collector keeps the objects and cells
+     * that Cheney's collector copies. The second collection of a compacted
+     * heap moves nothing.
+     */
+    @Test
+    public void randomHeapKeepsItsGraph() {
+        int heapSize = 250000;
+        HeapBuilder heapBuilder = new HeapBuilder();
+        String[] heap = heapBuilder.generateValidHeap(heapSize);
+        int[] stack = heapBuilder.generateValidStack(heapBuilder.getNodesPositions(), heapSize / 100);
+        String[] heapBefore = heap.clone();
+        int[] stackBefore = stack.clone();
+
+        CopyingGarbageCollector copyingCollector = new CopyingGarbageCollector(heap.clone(), stack.clone());
+        copyingCollector.evacuateRoots();
+        copyingCollector.scavenge();
+        MarkCompactGarbageCollector garbageCollector = new MarkCompactGarbageCollector(heap, stack);
+        garbageCollector.collect();
+        System.out.println("Objects copied : " + copyingCollector.numberOfObjectsCopied + ", objects marked : "
+                + garbageCollector.numberOfObjectsMarked + ", moved : " + garbageCollector.numberOfObjectsMoved
+                + ", top : " + garbageCollector.getTop());
+
+        assertEquals(copyingCollector.numberOfObjectsCopied, garbageCollector.numberOfObjectsMarked);
+        assertEquals(copyingCollector.getNextTo() - heapSize / 2, garbageCollector.getTop());
+        assertSameGraph(heapBefore, stackBefore, heap, stack);
+
+        garbageCollector.collect();
+        assertEquals(0, garbageCollector.numberOfObjectsMoved);
+    }
+
+    /**
+     * Nodes added after a collection, at the top of the heap, are collected by
+     * the next one.
+     */
+    @Test
+    public void nodesAddedAtTheTopAreCollected() {
+        HeapBuilder heapBuilder = new HeapBuilder();
+        String[] heap = heapBuilder.buildHeapDescribedInReport(40);
+        int[] stack = new int[]{29, -1};
+        MarkCompactGarbageCollector garbageCollector = new MarkCompactGarbageCollector(heap, stack);
+        garbageCollector.collect();                                         //Only CONS 25 27 is live
+        assertEquals(7, garbageCollector.getTop());
+
+        heapBuilder.setNext(garbageCollector.getTop());
+        int integer = heapBuilder.addInteger(heap, 42);
+        stack[1] = heapBuilder.addListConstructor(heap, integer, stack[0]);
+        heapBuilder.addDouble(heap, 1.5);                                   //Garbage
+        stack[0] = -1;
+        garbageCollector.collect();
+        System.out.println("Heap after collection  : " + Arrays.toString(heap));
+
+        assertArrayEquals(new Object[]{"BOOL", "false", "VAR", "x", "CONS", "0", "2", "INT", "42", "CONS", "7", "4"},
+                Arrays.copyOf(heap, 12));
+        assertNull(heap[12]);
+        assertArrayEquals(new int[]{-1, 9}, stack);
+    }
+
+    /**
+     * Walks the graphs of both heaps from the pairs of roots, the nodes must have
+     * the same values and the pointers must go to the same pairs of nodes. A
+     * weak pointer must go to the pair of its node, or be NULL if its node is
+     * not reachable.
+     */
+    private void assertSameGraph(String[] expectedHeap, int[] expectedStack, String[] heap, int[] stack) {
+        Map<Integer, Integer> nodes = new HashMap<>();
+        List<int[]> weakPointers = new ArrayList<>();
+        ArrayDeque<int[]> gray = new ArrayDeque<>();
+        for (int i = 0; i < stack.length; i++) {
+            gray.push(new int[]{expectedStack[i], stack[i]});
+        }
+        while (!gray.isEmpty()) {
+            int[] pair = gray.pop();
+            Integer known = nodes.putIfAbsent(pair[0], pair[1]);
+            if (known != null) {
+                assertEquals((long) known, pair[1]);
+                continue;
+            }
+            String tag = expectedHeap[pair[0]];
+            assertEquals(tag, heap[pair[1]]);
+            switch (tag) {
+                case CopyingGarbageCollector.NODE_CONSTR:
+                case CopyingGarbageCollector.NODE_LAMBDA:
+                    assertEquals(expectedHeap[pair[0] + 1], heap[pair[1] + 1]);
+                    int n = Integer.valueOf(expectedHeap[pair[0] + 2]);
+                    for (int i = 0; i < n; i++) {
+                        gray.push(pointers(expectedHeap, heap, pair, 3 + i));
+                    }
+                    break;
+                case CopyingGarbageCollector.NODE_CONS:
+                    gray.push(pointers(expectedHeap, heap, pair, 1));
+                    gray.push(pointers(expectedHeap, heap, pair, 2));
+                    break;
+                case CopyingGarbageCollector.NODE_IND:
+                    gray.push(pointers(expectedHeap, heap, pair, 1));
+                    break;
+                case CopyingGarbageCollector.NODE_TYPE:
+                    assertEquals(expectedHeap[pair[0] + 2], heap[pair[1] + 2]);
+                    gray.push(pointers(expectedHeap, heap, pair, 1));
+                    break;
+                case CopyingGarbageCollector.NODE_NULL:
+                    break;
+                case CopyingGarbageCollector.NODE_WEAK:                     //Checked when all the nodes are known
+                    weakPointers.add(new int[]{Integer.valueOf(expectedHeap[pair[0] + 1]), pair[1] + 1});
+                    break;
+                default:                                                    //Value nodes
+                    assertEquals(expectedHeap[pair[0] + 1], heap[pair[1] + 1]);
+            }
+        }
+        for (int[] weakPointer : weakPointers) {
+            Integer node = nodes.get(weakPointer[0]);
+            assertEquals(node == null ? CopyingGarbageCollector.NODE_NULL : String.valueOf(node), heap[weakPointer[1]]);
+        }
+    }
+
+    private int[] pointers(String[] expectedHeap, String[] heap, int[] pair, int cell) {
+        return new int[]{Integer.valueOf(expectedHeap[pair[0] + cell]), Integer.valueOf(heap[pair[1] + cell])};
+    }
+}
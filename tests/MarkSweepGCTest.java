@@ -0,0 +1,132 @@
+import cheneys.CopyingGarbageCollector;
+import cheneys.HeapBuilder;
+import cheneys.MarkSweepGarbageCollector;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class is used to examine the mark-sweep collector
+ * behaviour.
+ */
+public class MarkSweepGCTest {
+
+    /**
+     * The collection only marks, the dead nodes of the report heap become free
+     * chunks when the heap is swept. The live nodes do not move.
+     */
+    @Test
+    public void reportHeapIsSweptLazily() {
+        String[] heap = new HeapBuilder().buildHeapDescribedInReport(40);
+        String[] heapBefore = heap.clone();
+        int[] stack = new int[]{6, 29, 19, 11, 32};
+        MarkSweepGarbageCollector garbageCollector = new MarkSweepGarbageCollector(heap, stack);
+        assertEquals(5, garbageCollector.getFreeCells());                  //Cells after the nodes
+
+        garbageCollector.collect();
+        assertEquals(30, garbageCollector.liveCells);
+        assertEquals(0, garbageCollector.getFreeCells());                  //Nothing swept yet
+        assertEquals(0, garbageCollector.sweptBlocks);
+
+        garbageCollector.finishSweep();
+        garbageCollector.printStatistics();
+        System.out.println("Heap after sweep : " + Arrays.toString(heap));
+        assertArrayEquals(new int[]{6, 29, 19, 11, 32}, stack);
+        assertEquals(MarkSweepGarbageCollector.TAG_FREE, heap[0]);          //Unreachable WEAK
+        assertEquals("2", heap[1]);
+        assertEquals(MarkSweepGarbageCollector.TAG_FREE, heap[23]);         //DOUBLE, only weakly reachable
+        assertEquals(CopyingGarbageCollector.NODE_NULL, heap[12]);         //Its weak pointer
+        assertEquals(MarkSweepGarbageCollector.TAG_FREE, heap[34]);         //Unreachable NULL and the free cells after it
+        assertEquals("6", heap[35]);
+        for (int i = 2; i < 34; i++) {
+            if (i != 12 && i != 23 && i != 24) {
+                assertEquals(heapBefore[i], heap[i]);
+            }
+        }
+        assertEquals(10, garbageCollector.getFreeCells());
+        assertEquals(6, garbageCollector.getLargestFreeChunk());
+
+        assertEquals(23, garbageCollector.allocateInteger(1));             //Exact size list
+        assertEquals(34, garbageCollector.allocateNull());                 //Split of the general list
+        assertEquals(35, garbageCollector.allocateListConstructor(23, 34));
+        assertEquals(38, garbageCollector.allocateChar('c'));              //Rest of the split chunk
+        assertEquals(2, garbageCollector.getFreeCells());
+    }
+
+    /**
+     * A list kept by the stack survives a loop of allocations that collects
+     * many times, the garbage between its nodes is reclaimed by the lazy sweep.
+     */
+    @Test
+    public void listSurvivesAllocateCollectLoop() {
+        String[] heap = new String[16384];
+        int[] stack = new int[]{-1, -1};
+        MarkSweepGarbageCollector garbageCollector = new MarkSweepGarbageCollector(heap, stack);
+
+        stack[0] = garbageCollector.allocateNull();
+        for (int i = 0; i < 1000; i++) {
+            int value = garbageCollector.allocateInteger(i);
+            stack[0] = garbageCollector.allocateListConstructor(value, stack[0]);
+            for (int j = 0; j < 20; j++) {
+                garbageCollector.allocateInteger(-j);                       //Garbage
+            }
+            if (i % 10 == 0) {                                              //Garbage of many sizes
+                int[] pointers = new int[i % 7];
+                Arrays.fill(pointers, stack[0]);
+                garbageCollector.allocateDataConstructor("c", pointers);
+            }
+        }
+        stack[1] = garbageCollector.allocateLambda("f", new int[]{stack[0], stack[0], stack[0], stack[0]});
+        garbageCollector.collect();
+        garbageCollector.finishSweep();
+        garbageCollector.printStatistics();
+
+        assertTrue(garbageCollector.collections > 1);
+        assertEquals(1 + 1000 * 5 + 7, garbageCollector.liveCells);
+        assertEquals(heap.length - garbageCollector.liveCells, garbageCollector.getFreeCells());
+        int node = stack[0];
+        for (int i = 999; i >= 0; i--) {
+            assertEquals(CopyingGarbageCollector.NODE_CONS, heap[node]);
+            int value = Integer.valueOf(heap[node + 1]);
+            assertEquals(CopyingGarbageCollector.NODE_INT, heap[value]);
+            assertEquals(String.valueOf(i), heap[value + 1]);
+            node = Integer.valueOf(heap[node + 2]);
+        }
+        assertEquals(CopyingGarbageCollector.NODE_NULL, heap[node]);
+        assertEquals(CopyingGarbageCollector.NODE_LAMBDA, heap[stack[1]]);
+    }
+
+    /**
+     * When every node is live no chunk is left, the allocation that does not
+     * fit after the collection fails.
+     */
+    @Test
+    public void heapIsFullWhenEverythingIsLive() {
+        MarkSweepGarbageCollector garbageCollector = new MarkSweepGarbageCollector(new String[16], new int[]{-1});
+        int[] stack = garbageCollector.getStack();
+        int allocations = 0;
+        try {
+            stack[0] = garbageCollector.allocateNull();
+            allocations++;
+            while (true) {
+                stack[0] = garbageCollector.allocateListConstructor(stack[0], stack[0]);
+                allocations++;
+            }
+        } catch (IllegalStateException e) {
+            assertEquals("Heap is full", e.getMessage());
+        }
+        assertEquals(6, allocations);                                       //1 + 5 * 3 cells
+        assertEquals(1, garbageCollector.collections);
+        try {
+            garbageCollector.allocateNull();
+            fail("The heap is full");
+        } catch (IllegalStateException e) {
+            assertEquals(2, garbageCollector.collections);
+        }
+    }
+}
@@ -3,6 +3,12 @@ import bartlett.MostlyCopyingGarbageCollector;
 import bartlett.Page;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * This class is used to examine the mostly coping collector
  * behaviour.
@@ -49,8 +55,7 @@ public class MostlyCopyingGCTest {
      */
     @Test
     public void MostlyCopyingGCTestHeapDescribedInReport() {
-        Page.PAGE_SIZE = 6;     //Change the page size to fit the largest object
-        BartlettHeapBuilder bartlettHeapBuilder = new BartlettHeapBuilder();
+        BartlettHeapBuilder bartlettHeapBuilder = new BartlettHeapBuilder(6);  //Page size that fits the largest object
         Page[] heap = bartlettHeapBuilder.buildHeapDescribedInReport(84);
         numberOfObjectsInHeap = bartlettHeapBuilder.numberOfObjects;
 
@@ -77,6 +82,204 @@ public class MostlyCopyingGCTest {
 
     }
 
+    /**
+     * A weak pointer to an object in a promoted page is updated, the one
+     * to an object in a page that was not promoted is set to NULL.
+     */
+    @Test
+    public void weakPointersToCollectedPagesAreCleared() {
+        Page[] heap = new Page[8];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, 4);
+        }
+        heap[0].addInteger(5);                                  //0
+        heap[1].addInteger(7);                                  //4
+        heap[2].addWeak(0);                                     //8
+        heap[2].addWeak(4);                                     //10
+        int[] stack = new int[]{8, 0};
+
+        MostlyCopyingGarbageCollector mcgc = new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+        mcgc.evacuateRoots();
+        mcgc.scavenge();
+        mcgc.copyToNewSpace();
+        mcgc.clearOldMemory();
+        displayCollectorInfo(mcgc);
+
+        assertArrayEquals(new int[]{0, 4}, stack);              //Page 2 then page 0
+        assertEquals(MostlyCopyingGarbageCollector.NODE_WEAK, heap[0].getMemory()[0]);
+        assertEquals("4", heap[0].getMemory()[1]);
+        assertEquals(MostlyCopyingGarbageCollector.NODE_NULL, heap[0].getMemory()[3]);
+    }
+
+    /**
+     * A root that points inside an object keeps the object alive, a root that
+     * points to the free cells of a page does not. The variable named "CONS"
+     * is not taken as a list constructor by scavenge.
+     */
+    @Test
+    public void objectStartBitmapResolvesInteriorPointers() {
+        Page[] heap = new Page[8];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, 8);
+        }
+        heap[0].addInteger(5);                                  //0
+        heap[1].addVariable(MostlyCopyingGarbageCollector.NODE_CONS);   //8
+        heap[1].addListConstructor(0, 0);                       //10
+        heap[2].addInteger(7);                                  //16
+        int[] stack = new int[]{12, 20, -1, 1000};
+
+        MostlyCopyingGarbageCollector mcgc = new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+        assertEquals(10, mcgc.findObjectStart(12));
+        assertEquals(8, mcgc.findObjectStart(9));
+        assertEquals(-1, mcgc.findObjectStart(20));
+        assertTrue(heap[1].isObjectStart(2));
+        assertFalse(heap[1].isObjectStart(3));
+        assertEquals(-1, heap[1].nextObjectStart(3));
+
+        mcgc.evacuateRoots();
+        mcgc.scavenge();
+        mcgc.copyToNewSpace();
+        mcgc.clearOldMemory();
+        displayCollectorInfo(mcgc);
+
+        assertArrayEquals(new int[]{4, 20, -1, 1000}, stack);   //Page 1 then page 0, the root keeps its offset
+        assertEquals(MostlyCopyingGarbageCollector.NODE_CONS, heap[0].getMemory()[1]);
+        assertEquals("8", heap[0].getMemory()[3]);
+        assertEquals(MostlyCopyingGarbageCollector.NODE_INT, heap[1].getMemory()[0]);
+        assertEquals("NIL", heap[2].getMemory()[0]);
+    }
+
+    /**
+     * Nodes larger than a page take a run of pages. A root inside a
+     * continuation page promotes the whole run, the run stays contiguous
+     * and the pointers of the large nodes are updated across pages.
+     */
+    @Test
+    public void largeObjectsPromoteTheirWholeRun() {
+        Page[] heap = new Page[14];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, 4);
+        }
+        heap[0].addInteger(5);                                  //0
+        heap[0].addInteger(6);                                  //2
+        heap[1].addInteger(7);                                  //4, garbage
+        assertEquals(8, Page.addLargeLambda(heap, 2, "f", new int[]{0, 2, 0, 2, 0}));
+        assertEquals(-1, Page.addLargeLambda(heap, 3, "g", new int[]{0, 2, 0, 2, 0}));
+        assertEquals(16, Page.addLargeDataConstructor(heap, 4, "big", new int[]{8, 0, 2, 8, 0, 2, 0}));
+        assertEquals(26, heap[6].addInteger(9));                //After the end of the large node
+        assertEquals(3, heap[4].getRunLength());
+        assertEquals(2, heap[6].getRunOffset());
+        int[] stack = new int[]{21, -1};
+
+        MostlyCopyingGarbageCollector mcgc = new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2);
+        assertEquals(16, mcgc.findObjectStart(21));
+        assertEquals(16, mcgc.findObjectStart(25));
+        assertEquals(26, mcgc.findObjectStart(27));
+
+        mcgc.evacuateRoots();
+        mcgc.scavenge();
+        mcgc.copyToNewSpace();
+        mcgc.clearOldMemory();
+        displayCollectorInfo(mcgc);
+
+        assertArrayEquals(new int[]{5, -1}, stack);             //Run 4-6, then run 2-3, then page 0
+        assertArrayEquals(new String[]{"CONSTR", "big", "7", "12"}, heap[0].getMemory());
+        assertArrayEquals(new String[]{"20", "22", "12", "20"}, heap[1].getMemory());
+        assertArrayEquals(new String[]{"22", "20", "INT", "9"}, heap[2].getMemory());
+        assertArrayEquals(new String[]{"LAMBDA", "f", "5", "20"}, heap[3].getMemory());
+        assertArrayEquals(new String[]{"22", "20", "22", "20"}, heap[4].getMemory());
+        assertArrayEquals(new String[]{"INT", "5", "INT", "6"}, heap[5].getMemory());
+        assertEquals("NIL", heap[6].getMemory()[0]);
+    }
+
+    /**
+     * Heaps with different page sizes are collected side by side, the
+     * page size is a property of each heap.
+     */
+    @Test
+    public void heapsWithDifferentPageSizes() {
+        BartlettHeapBuilder reportBuilder = new BartlettHeapBuilder(6);
+        Page[] reportHeap = reportBuilder.buildHeapDescribedInReport(84);
+        Page[] exampleHeap = new BartlettHeapBuilder().buildHeapExample1(32);
+        int[] reportStack = new int[]{6, 36, 24, 12, 39, -1, -1};
+        int[] exampleStack = new int[]{8};
+        MostlyCopyingGarbageCollector reportCollector =
+                new MostlyCopyingGarbageCollector(reportHeap, reportStack, reportHeap.length / 2);
+        MostlyCopyingGarbageCollector exampleCollector =
+                new MostlyCopyingGarbageCollector(exampleHeap, exampleStack, exampleHeap.length / 2);
+        assertEquals(6, reportCollector.getPageSize());
+        assertEquals(Page.DEFAULT_PAGE_SIZE, exampleCollector.getPageSize());
+
+        reportCollector.evacuateRoots();
+        exampleCollector.evacuateRoots();
+        reportCollector.scavenge();
+        exampleCollector.scavenge();
+        reportCollector.copyToNewSpace();
+        exampleCollector.copyToNewSpace();
+        reportCollector.clearOldMemory();
+        exampleCollector.clearOldMemory();
+
+        for (Page page : reportHeap) {
+            assertEquals(6, page.getPageSize());
+        }
+        for (Page page : exampleHeap) {
+            assertEquals(Page.DEFAULT_PAGE_SIZE, page.getPageSize());
+        }
+
+        reportHeap[reportHeap.length - 1] = new Page(reportHeap.length - 1, 4);
+        try {
+            new MostlyCopyingGarbageCollector(reportHeap, reportStack, reportHeap.length / 2);
+            fail("Pages of different sizes in a heap");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * In compacting mode the live nodes of sparse pages are copied into a fresh
+     * page. A sparse page that is referenced by a root stays pinned, and a weak
+     * pointer follows the copy of its node.
+     */
+    @Test
+    public void compactingModeEvacuatesSparsePages() {
+        Page[] heap = new Page[16];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, 8);
+        }
+        for (int i = 1; i <= 4; i++) {
+            heap[0].addInteger(i);                              //0, 2, 4, 6
+        }
+        heap[1].addListConstructor(0, 16);                      //8, pinned by the root
+        heap[1].addInteger(5);                                  //11
+        heap[1].addInteger(6);                                  //13
+        for (int i = 7; i <= 10; i++) {
+            heap[2].addInteger(i);                              //16, 18, 20, 22
+        }
+        heap[3].addWeak(2);                                     //24
+        heap[3].addWeak(0);                                     //26
+        int[] stack = new int[]{8, 24};
+
+        MostlyCopyingGarbageCollector mcgc = new MostlyCopyingGarbageCollector(heap, stack, heap.length / 2, 0.5);
+        mcgc.evacuateRoots();
+        mcgc.scavenge();
+        mcgc.copyToNewSpace();
+        mcgc.clearOldMemory();
+        displayCollectorInfo(mcgc);
+        mcgc.printFragmentation();
+
+        assertArrayEquals(new int[]{0, 8}, stack);
+        assertEquals(9, mcgc.liveCells);                      //The weak node at 26 is not reachable, its page is pinned
+        assertEquals(2, mcgc.pagesPinned);
+        assertEquals(2, mcgc.pagesEvacuated);
+        assertEquals(2, mcgc.objectsCopied);
+        assertArrayEquals(new String[]{"CONS", "16", "18", "INT", "5", "INT", "6", "NIL"}, heap[0].getMemory());
+        assertArrayEquals(new String[]{"WEAK", "NULL", "WEAK", "16", "NIL", "NIL", "NIL", "NIL"}, heap[1].getMemory());
+        assertArrayEquals(new String[]{"INT", "1", "INT", "7", "NIL", "NIL", "NIL", "NIL"}, heap[2].getMemory());
+        assertEquals("NIL", heap[3].getMemory()[0]);
+        assertEquals(1 - 9.0 / 32, mcgc.fragmentationBefore, 1e-9);
+        assertEquals(1 - 9.0 / 24, mcgc.fragmentationAfter, 1e-9);
+    }
+
     /**
      * Prints information as are known from the collector.
      */
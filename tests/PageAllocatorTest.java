@@ -0,0 +1,104 @@
+import bartlett.MostlyCopyingGarbageCollector;
+import bartlett.Page;
+import bartlett.PageAllocator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the page allocator of the
+ * mostly copying heap, and allocate/collect loops on it.
+ */
+public class PageAllocatorTest {
+
+    /**
+     * Nodes are bump allocated in the current page, a node that does not
+     * fit takes the next free page.
+     */
+    @Test
+    public void bumpAllocationFillsPagesInOrder() {
+        PageAllocator allocator = new PageAllocator(emptyHeap(16, 4), new int[]{-1});
+
+        assertEquals(0, allocator.allocateInteger(1));
+        assertEquals(2, allocator.allocateInteger(2));
+        assertEquals(4, allocator.allocateListConstructor(0, 2));
+        assertEquals(7, allocator.allocateNull());
+        assertEquals(8, allocator.allocateDataConstructor("big", new int[]{0, 2, 4, 7, 0}));  //Run of pages 2-3
+        assertEquals(16, allocator.allocateChar('c'));
+        assertEquals(11, allocator.getFreePages());
+        allocator.printStatistics();
+    }
+
+    /**
+     * A list kept by the stack survives a loop of allocations that collects
+     * many times, the garbage between its nodes is reclaimed.
+     */
+    @Test
+    public void listSurvivesAllocateCollectLoop() {
+        Page[] heap = emptyHeap(4096, 4);
+        int[] stack = new int[]{-1, -1};
+        PageAllocator allocator = new PageAllocator(heap, stack);
+
+        stack[0] = allocator.allocateNull();
+        for (int i = 0; i < 1000; i++) {
+            int value = allocator.allocateInteger(i);
+            stack[0] = allocator.allocateListConstructor(value, stack[0]);
+            for (int j = 0; j < 20; j++) {
+                allocator.allocateInteger(-j);                  //Garbage
+            }
+        }
+        stack[1] = allocator.allocateLambda("f", new int[]{stack[0], stack[0], stack[0], stack[0], stack[0], stack[0]});
+        allocator.collect();
+        allocator.printStatistics();
+
+        assertTrue(allocator.collections > 1);
+        int node = stack[0];
+        for (int i = 999; i >= 0; i--) {
+            assertEquals(MostlyCopyingGarbageCollector.NODE_CONS, cell(heap, node, 0));
+            int value = Integer.valueOf(cell(heap, node, 1));
+            assertEquals(MostlyCopyingGarbageCollector.NODE_INT, cell(heap, value, 0));
+            assertEquals(String.valueOf(i), cell(heap, value, 1));
+            node = Integer.valueOf(cell(heap, node, 2));
+        }
+        assertEquals(MostlyCopyingGarbageCollector.NODE_NULL, cell(heap, node, 0));
+        assertEquals(MostlyCopyingGarbageCollector.NODE_LAMBDA, cell(heap, stack[1], 0));
+        assertEquals(String.valueOf(stack[0]), cell(heap, stack[1], 8));
+    }
+
+    /**
+     * Allocation fails when the live nodes fill the heap.
+     */
+    @Test
+    public void heapIsFullWhenEverythingIsLive() {
+        int[] stack = new int[]{-1};
+        PageAllocator allocator = new PageAllocator(emptyHeap(8, 4), stack);
+        stack[0] = allocator.allocateNull();
+        int allocated = 1;
+        try {
+            while (true) {
+                stack[0] = allocator.allocateIndirection(stack[0]);
+                allocated++;
+            }
+        } catch (IllegalStateException e) {
+            assertEquals("Heap is full", e.getMessage());
+        }
+        assertEquals(16, allocated);                            //Null and an indirection in the first page, two in the others
+    }
+
+    private static Page[] emptyHeap(int pages, int pageSize) {
+        Page[] heap = new Page[pages];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new Page(i, pageSize);
+        }
+        return heap;
+    }
+
+    /**
+     * Cell of a node, the cells of a large node continue in the next pages.
+     */
+    private static String cell(Page[] heap, int node, int cell) {
+        int pageSize = heap[0].getPageSize();
+        return heap[(node + cell) / pageSize].getMemory()[(node + cell) % pageSize];
+    }
+}
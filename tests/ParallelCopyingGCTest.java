@@ -0,0 +1,154 @@
+import cheneys.HeapBuilder;
+import cheneys.IntCopyingGarbageCollector;
+import cheneys.ParallelCopyingGarbageCollector;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is used to examine the parallel copying collector
+ * behaviour, against the single-threaded int engine.
+ */
+public class ParallelCopyingGCTest {
+
+    /**
+     * The parallel collector copies the same reachable graph as the
+     * single-threaded collector, for any number of workers.
+     */
+    @Test
+    public void parallelCollectionMatchesSingleThreaded() {
+        int heapSize = 1000000;
+        int roots = (int) (heapSize * 0.1);
+
+        HeapBuilder heapBuilder = new HeapBuilder();
+        int[] generatedHeap = heapBuilder.generateValidIntHeap(heapSize);
+        int[] generatedStack = heapBuilder.generateValidStack(heapBuilder.getNodesPositions(), roots);
+
+        int[] heap = generatedHeap.clone();
+        int[] stack = generatedStack.clone();
+        IntCopyingGarbageCollector garbageCollector = new IntCopyingGarbageCollector(heap, stack);
+        garbageCollector.evacuateRoots();
+        garbageCollector.scavenge();
+
+        for (int workers : new int[]{1, 2, 4, 8}) {
+            int[] parallelHeap = generatedHeap.clone();
+            int[] parallelStack = generatedStack.clone();
+            ParallelCopyingGarbageCollector parallelCollector =
+                    new ParallelCopyingGarbageCollector(parallelHeap, parallelStack, workers);
+
+            Instant start = Instant.now();
+            parallelCollector.evacuateRoots();
+            parallelCollector.scavenge();
+            Instant end = Instant.now();
+            System.out.println("Parallel garbage collection with " + workers + " workers in " + Duration.between(start, end));
+
+            assertEquals(garbageCollector.numberOfObjectsCopied, parallelCollector.numberOfObjectsCopied);
+            assertSameGraph(heap, stack, parallelHeap, parallelStack);
+
+            parallelCollector.clearOldMemory();
+            parallelCollector.flip();
+            parallelCollector.evacuateRoots();                 //Second cycle copies back the same objects
+            parallelCollector.scavenge();
+            assertEquals(garbageCollector.numberOfObjectsCopied, parallelCollector.numberOfObjectsCopied);
+            parallelCollector.shutdown();
+        }
+    }
+
+    /**
+     * Heaps whose semispace is only a few allocation buffers long. The
+     * workers take the last buffers cut to the cells left, and collect the
+     * same graph as the single-threaded collector, twice. Which worker fills
+     * the semispace depends on the scheduling, so many heaps are collected.
+     */
+    @Test
+    public void smallHeapCollectionMatchesSingleThreaded() {
+        int heapSize = 3000;
+        int roots = 20;
+
+        for (int run = 0; run < 200; run++) {
+            HeapBuilder heapBuilder = new HeapBuilder();
+            int[] generatedHeap = heapBuilder.generateValidIntHeap(heapSize);
+            int[] generatedStack = heapBuilder.generateValidStack(heapBuilder.getNodesPositions(), roots);
+
+            int[] heap = generatedHeap.clone();
+            int[] stack = generatedStack.clone();
+            IntCopyingGarbageCollector garbageCollector = new IntCopyingGarbageCollector(heap, stack);
+            garbageCollector.evacuateRoots();
+            garbageCollector.scavenge();
+
+            int[] parallelHeap = generatedHeap.clone();
+            int[] parallelStack = generatedStack.clone();
+            ParallelCopyingGarbageCollector parallelCollector =
+                    new ParallelCopyingGarbageCollector(parallelHeap, parallelStack, 2);
+            for (int collection = 0; collection < 2; collection++) {
+                parallelCollector.evacuateRoots();
+                parallelCollector.scavenge();
+                assertEquals(garbageCollector.numberOfObjectsCopied, parallelCollector.numberOfObjectsCopied);
+                assertTrue(parallelCollector.getNextTo() <= (collection == 0 ? heapSize : heapSize / 2));
+                if (collection == 0) {
+                    assertSameGraph(heap, stack, parallelHeap, parallelStack);
+                }
+                parallelCollector.clearOldMemory();
+                parallelCollector.flip();
+            }
+            parallelCollector.shutdown();
+        }
+    }
+
+    /**
+     * Walks both heaps from the roots in lockstep and checks that
+     * they hold the same nodes, linked the same way.
+     */
+    private void assertSameGraph(int[] expectedHeap, int[] expectedStack, int[] heap, int[] stack) {
+        int[] mapping = new int[expectedHeap.length];
+        Arrays.fill(mapping, -1);
+        ArrayDeque<int[]> pending = new ArrayDeque<>();
+        for (int i = 0; i < stack.length; i++) {
+            pending.add(new int[]{expectedStack[i], stack[i]});
+        }
+        while (!pending.isEmpty()) {
+            int[] pair = pending.poll();
+            int expected = pair[0];
+            int actual = pair[1];
+            if (mapping[expected] != -1) {
+                assertEquals(mapping[expected], actual);
+                continue;
+            }
+            mapping[expected] = actual;
+            int size = IntCopyingGarbageCollector.nodeSize(expectedHeap, expected);
+            assertEquals(size, IntCopyingGarbageCollector.nodeSize(heap, actual));
+            int tag = expectedHeap[expected];
+            for (int i = 0; i < size; i++) {
+                if (isPointer(tag, i)) {
+                    pending.add(new int[]{expectedHeap[expected + i], heap[actual + i]});
+                } else if (tag == IntCopyingGarbageCollector.NODE_WEAK && i == 1) {
+                    int target = expectedHeap[expected + 1];
+                    assertEquals(target == -1 ? -1 : 0, heap[actual + 1] == -1 ? -1 : 0);
+                } else {
+                    assertEquals(expectedHeap[expected + i], heap[actual + i]);
+                }
+            }
+        }
+    }
+
+    private boolean isPointer(int tag, int cell) {
+        switch (tag) {
+            case IntCopyingGarbageCollector.NODE_CONSTR:
+            case IntCopyingGarbageCollector.NODE_LAMBDA:
+                return cell >= 3;
+            case IntCopyingGarbageCollector.NODE_CONS:
+                return cell >= 1;
+            case IntCopyingGarbageCollector.NODE_IND:
+            case IntCopyingGarbageCollector.NODE_TYPE:
+                return cell == 1;
+            default:
+                return false;
+        }
+    }
+}
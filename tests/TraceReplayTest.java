@@ -0,0 +1,161 @@
+import engine.EngineRegistry;
+import engine.HeapView;
+import engine.Mutator;
+import engine.MutatorEngine;
+import org.junit.Test;
+import trace.TraceReader;
+import trace.TraceReplayer;
+import trace.TraceWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class is used to examine the recording of mutator events in a trace
+ * file and their replay on the mutator engines.
+ */
+public class TraceReplayTest {
+
+    private static final int SLOTS = 8;
+    private static final int LIST = 0;
+    private static final int TEMPORARY = 1;
+    private static final int VALUE = 2;
+    private static final int CURSOR = 3;
+    private static final int WEAK = 4;
+    private static final int LARGE = 5;
+    private static final int LIST_LENGTH = 3000;
+    private static final int HEAP_SIZE = 1 << 18;      //Bartlett keeps the garbage of the pages of the list
+
+    /**
+     * A trace replayed on a writer gives the same file, every event is decoded
+     * as it was recorded.
+     */
+    @Test
+    public void traceIsReadAsWritten() throws IOException {
+        Path first = Files.createTempFile("trace", ".gct");
+        Path second = Files.createTempFile("trace", ".gct");
+        try {
+            long events;
+            try (TraceWriter writer = new TraceWriter(first, SLOTS)) {
+                record(writer);
+                events = writer.events;
+            }
+            TraceReplayer replayer = new TraceReplayer();
+            try (TraceWriter writer = new TraceWriter(second, SLOTS)) {
+                replayer.replay(first, writer);
+                assertEquals(events, writer.events);
+            }
+            System.out.println(events + " events in " + Files.size(first) + " bytes");
+            assertEquals(SLOTS, replayer.slots);
+            assertEquals(events, replayer.events);
+            assertEquals(2, replayer.collections);
+            assertTrue(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(second)));
+        } finally {
+            Files.delete(first);
+            Files.delete(second);
+        }
+    }
+
+    /**
+     * The trace is replayed on every mutator engine, it collects in the middle
+     * of the list and at the end. Every engine ends with the graph that the
+     * workload gives when it runs on the engine directly.
+     */
+    @Test
+    public void replayOnEveryMutatorEngine() throws IOException {
+        Path path = Files.createTempFile("trace", ".gct");
+        try {
+            try (TraceWriter writer = new TraceWriter(path, SLOTS)) {
+                record(writer);
+            }
+            for (String name : EngineRegistry.mutatorNames()) {
+                MutatorEngine direct = EngineRegistry.createMutator(name, HEAP_SIZE, SLOTS);
+                record(direct);
+                TraceReplayer replayer = new TraceReplayer();
+                MutatorEngine replayed = replayer.replay(path, name, HEAP_SIZE);
+                System.out.println(name + " : " + replayer.events + " events in " + replayer.replayNanos / 1000
+                        + "us, last collection " + replayed.collect());
+
+                List<String> graph = HeapGraphs.graph(replayed.getHeap(), replayed.getRoots());
+                assertEquals(name, HeapGraphs.graph(direct.getHeap(), direct.getRoots()), graph);
+                assertTrue(name, HeapGraphs.rootNode(graph, LARGE).startsWith("LAMBDA f 20 -> "));
+                checkList(replayed);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void notATrace() throws IOException {
+        Path path = Files.createTempFile("trace", ".gct");
+        try {
+            Files.write(path, new byte[]{1, 2, 3, 4, 5});
+            new TraceReader(path).close();
+            fail("Not a trace file");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().endsWith("is not a trace file"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Builds a list of LIST_LENGTH integers with garbage between its nodes,
+     * increments the values with pointer stores, and keeps a large lambda and
+     * weak pointers.
+     */
+    private static void record(Mutator mutator) {
+        mutator.allocateNull(LIST);
+        for (int i = 0; i < LIST_LENGTH; i++) {
+            mutator.allocateInteger(VALUE, i - LIST_LENGTH / 2);
+            mutator.allocateListConstructor(LIST, VALUE, LIST);
+            mutator.allocateDouble(TEMPORARY, i / 4.0);                     //Garbage of every kind
+            mutator.allocateChar(TEMPORARY, (char) ('a' + i % 26));
+            mutator.allocateBoolean(TEMPORARY, i % 2 == 0);
+            mutator.allocateVariable(TEMPORARY, "v" + i % 10);
+            mutator.allocateType(TEMPORARY, LIST, "list");
+            mutator.allocateIndirection(TEMPORARY, TEMPORARY);
+            mutator.allocateDataConstructor(TEMPORARY, "pair", new int[]{VALUE, TEMPORARY});
+            if (i == LIST_LENGTH / 2) {
+                mutator.allocateWeak(WEAK, LIST);
+                mutator.collect();
+            }
+        }
+        mutator.allocateWeak(TEMPORARY, TEMPORARY);                         //Weak pointer to garbage
+        mutator.pushRoot(CURSOR, LIST);
+        mutator.popRoot(TEMPORARY);
+        int[] pointers = new int[20];
+        Arrays.fill(pointers, LIST);
+        mutator.allocateLambda(LARGE, "f", pointers);
+        mutator.allocateNull(TEMPORARY);
+        mutator.storePointer(LARGE, 19, TEMPORARY);
+        mutator.popRoot(TEMPORARY);
+        for (int i = 0; i < LIST_LENGTH; i++) {                             //Replace the values by i
+            mutator.allocateInteger(VALUE, i);
+            mutator.storePointer(CURSOR, 0, VALUE);
+            mutator.loadPointer(CURSOR, CURSOR, 1);
+        }
+        mutator.popRoot(CURSOR);
+        mutator.popRoot(VALUE);
+        mutator.collect();
+    }
+
+    private static void checkList(MutatorEngine engine) {
+        HeapView heap = engine.getHeap();
+        int node = engine.getRoots()[LIST];
+        for (int i = 0; i < LIST_LENGTH; i++) {
+            assertEquals("CONS", heap.tag(node));
+            assertEquals("INT " + i, heap.label(heap.pointer(node, 0)));
+            node = heap.pointer(node, 1);
+        }
+        assertEquals("NULL", heap.tag(node));
+    }
+}